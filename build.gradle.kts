@@ -9,13 +9,101 @@ repositories {
     mavenCentral()
 }
 
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+val jmhVersjon = "1.37"
+
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.11.2"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     implementation("org.json:json:20240303")
     implementation("io.github.cdimascio:dotenv-java:3.0.2")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:$jmhVersjon")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersjon")
+}
+
+configurations["jmhImplementation"].extendsFrom(configurations.implementation.get())
+configurations["jmhRuntimeOnly"].extendsFrom(configurations.runtimeOnly.get())
+
+// Vektorkjernen for dagsatser bruker Vector API, som fortsatt er en inkubatormodul. Uten modulen
+// faller kalkulatoren tilbake til den skalare kjernen.
+val vektormodul = listOf("--add-modules", "jdk.incubator.vector")
+
+tasks.withType<JavaCompile> {
+    options.compilerArgs.addAll(vektormodul)
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+    jvmArgs(vektormodul)
+}
+
+// Kjører ytelsestestene i jmh-kildesettet. Resultatene skrives som JSON til build/reports/jmh,
+// slik at kjøringer kan sammenlignes mellom versjoner. Bruk -PjmhFilter=<regex> for å velge tester.
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Kjører JMH-ytelsestestene."
+    dependsOn(jmh.classesTaskName)
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    jvmArgs(vektormodul)
+    val resultatfil = layout.buildDirectory.file("reports/jmh/resultater.json")
+    outputs.file(resultatfil)
+    doFirst {
+        resultatfil.get().asFile.parentFile.mkdirs()
+    }
+    args = listOfNotNull(
+        project.findProperty("jmhFilter")?.toString(),
+        "-rf", "json",
+        "-rff", resultatfil.get().asFile.absolutePath
+    )
+}
+
+// Kjører lastgeneratoren mot dagpengetjenesten. Argumenter gis med
+// -PlastArgs="<samtidighet> <sekunder> [adresse]".
+tasks.register<JavaExec>("lasttest") {
+    group = "verification"
+    description = "Måler gjennomstrømning og svartider for dagpengetjenesten."
+    dependsOn(jmh.classesTaskName)
+    classpath = jmh.runtimeClasspath
+    mainClass.set("no.nav.tjeneste.Lastgenerator")
+    jvmArgs(vektormodul)
+    jvmArgs("-Dsun.net.httpserver.nodelay=true")
+    args = project.findProperty("lastArgs")?.toString()?.split(" ") ?: emptyList()
+}
+
+// Lager et AppCDS-arkiv med klassene kommandolinjeversjonen laster, fra en prøvekjøring. Arkivet
+// brukes med -XX:SharedArchiveFile=build/appcds/dagpenger.jsa og samme klassesti som det ble laget
+// med, altså jar-filen til programmet og avhengighetene.
+val programklassesti = files(tasks.jar, configurations.runtimeClasspath)
+val appCdsArkiv = layout.buildDirectory.file("appcds/dagpenger.jsa")
+
+tasks.register<JavaExec>("appCds") {
+    group = "build"
+    description = "Lager et AppCDS-arkiv for dagpengekalkulatoren."
+    classpath = programklassesti
+    mainClass.set("no.nav.Main")
+    outputs.file(appCdsArkiv)
+    doFirst {
+        appCdsArkiv.get().asFile.parentFile.mkdirs()
+        jvmArgs("-XX:ArchiveClassesAtExit=" + appCdsArkiv.get().asFile.absolutePath)
+    }
+}
+
+// Måler tiden fra kommandolinjeversjonen startes til første resultat er skrevet ut, med og uten
+// lagret grunnbeløp og AppCDS-arkiv.
+tasks.register<JavaExec>("oppstartstid") {
+    group = "verification"
+    description = "Måler tiden til første resultat for kommandolinjeversjonen."
+    dependsOn("appCds")
+    classpath = jmh.runtimeClasspath
+    mainClass.set("no.nav.Oppstartsmåling")
+    doFirst {
+        args(programklassesti.asPath, appCdsArkiv.get().asFile.absolutePath)
+    }
+}
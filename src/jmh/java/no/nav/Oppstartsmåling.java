@@ -0,0 +1,108 @@
+package no.nav;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Måler tiden fra kommandolinjeversjonen av kalkulatoren startes til det første resultatet er
+ * skrevet ut.
+ *
+ * <p>
+ * Hver måling starter en ny JVM med {@link Main} i en tom mappe, og måler tiden til linjen med
+ * resultatet kommer på standard ut. Grunnbeløp API'et erstattes av en lokal tjeneste, slik at
+ * målingen ikke avhenger av nettverket. Programmet måles med <code>.env</code> og uten lagret
+ * grunnbeløp, med lagret grunnbeløp, og med lagret grunnbeløp og et AppCDS-arkiv.
+ * </p>
+ *
+ * <p>
+ * Bruk: <code>Oppstartsmåling &lt;klassesti&gt; [appcds-arkiv] [antall]</code>
+ * </p>
+ */
+public class Oppstartsmåling {
+
+  private static final String RESULTATLINJE = "Resultat av dagpengeforespørsel";
+
+  public static void main(String[] args) throws Exception {
+    String klassesti = args[0];
+    String arkiv = args.length > 1 ? args[1] : null;
+    int antall = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    HttpServer grunnbeløpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    grunnbeløpServer.createContext("/grunnbeløp", exchange -> {
+      byte[] svar = "{\"grunnbeløp\": 124028}".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, svar.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(svar);
+      }
+    });
+    grunnbeløpServer.start();
+    String adresse = "http://localhost:" + grunnbeløpServer.getAddress().getPort() + "/grunnbeløp";
+
+    Path mappe = Files.createTempDirectory("oppstartsmåling");
+    Files.writeString(mappe.resolve(".env"), "G_API_URL=" + adresse + "\n");
+    Path lagringsfil = mappe.resolve("grunnbeløp");
+    try {
+      skrivUt("Uten lagret grunnbeløp", mål(List.of(
+          "-Dgrunnbeløp.lagringsfil=", "-cp", klassesti), mappe, antall));
+      skrivUt("Med lagret grunnbeløp", mål(List.of(
+          "-Dgrunnbeløp.lagringsfil=" + lagringsfil, "-cp", klassesti), mappe, antall));
+      if (arkiv != null) {
+        skrivUt("Med lagret grunnbeløp og AppCDS", mål(List.of(
+            "-XX:SharedArchiveFile=" + arkiv, "-Dgrunnbeløp.lagringsfil=" + lagringsfil, "-cp",
+            klassesti), mappe, antall));
+      }
+    } finally {
+      grunnbeløpServer.stop(0);
+    }
+  }
+
+  private static long[] mål(List<String> jvmArgumenter, Path mappe, int antall)
+      throws IOException, InterruptedException {
+    List<String> kommando = new ArrayList<>();
+    kommando.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    kommando.addAll(jvmArgumenter);
+    kommando.add(Main.class.getName());
+
+    // Første kjøring varmer opp filsystemet og lagrer grunnbeløpet, og tas ikke med.
+    long[] tider = new long[antall];
+    for (int i = -1; i < antall; i++) {
+      long start = System.nanoTime();
+      Process prosess = new ProcessBuilder(kommando).directory(mappe.toFile())
+          .redirectErrorStream(true).start();
+      long tid = -1;
+      try (BufferedReader ut = new BufferedReader(
+          new InputStreamReader(prosess.getInputStream(), StandardCharsets.UTF_8))) {
+        String linje;
+        while ((linje = ut.readLine()) != null) {
+          if (tid < 0 && linje.startsWith(RESULTATLINJE)) {
+            tid = System.nanoTime() - start;
+          }
+        }
+      }
+      prosess.waitFor();
+      if (tid < 0) {
+        throw new IllegalStateException("Kalkulatoren skrev ikke ut noe resultat.");
+      }
+      if (i >= 0) {
+        tider[i] = tid;
+      }
+    }
+    return tider;
+  }
+
+  private static void skrivUt(String navn, long[] tider) {
+    Arrays.sort(tider);
+    System.out.printf("%-32s median %6.1f ms, min %6.1f ms, maks %6.1f ms%n", navn,
+        tider[tider.length / 2] / 1e6, tider[0] / 1e6, tider[tider.length - 1] / 1e6);
+  }
+}
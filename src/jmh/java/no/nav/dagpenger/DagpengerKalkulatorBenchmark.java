@@ -0,0 +1,95 @@
+package no.nav.dagpenger;
+
+import java.util.concurrent.TimeUnit;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.resultat.Resultat;
+import no.nav.årslønn.Årslønn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester for {@link DagpengerKalkulator}.
+ *
+ * <p>
+ * Grunnbeløpet er fast, slik at testene ikke kontakter grunnbeløp API'et.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DagpengerKalkulatorBenchmark {
+
+  static final double GRUNNBELØP = 124028;
+
+  @State(Scope.Thread)
+  public static class Kalkulering {
+
+    @Param({"SISTE_ÅRSLØNN", "GJENNOMSNITTET_AV_TRE_ÅR", "MAKS_ÅRLIG_DAGPENGERGRUNNLAG"})
+    public Beregningsmetode beregningsmetode;
+
+    DagpengerKalkulator dagpengerKalkulator;
+
+    @Setup
+    public void forbered() {
+      dagpengerKalkulator = new DagpengerKalkulator(new GrunnbeløpVerktøy(() -> GRUNNBELØP));
+      switch (beregningsmetode) {
+        case SISTE_ÅRSLØNN:
+          leggTil(dagpengerKalkulator, 550000, 24000, 110000);
+          break;
+        case GJENNOMSNITTET_AV_TRE_ÅR:
+          leggTil(dagpengerKalkulator, 330000, 334000, 400000);
+          break;
+        case MAKS_ÅRLIG_DAGPENGERGRUNNLAG:
+          leggTil(dagpengerKalkulator, 830000, 24000, 110000);
+          break;
+      }
+      if (dagpengerKalkulator.velgBeregningsMetode() != beregningsmetode) {
+        throw new IllegalStateException("Feil oppsett for " + beregningsmetode);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Historikk {
+
+    @Param({"3", "40"})
+    public int antallÅr;
+
+    DagpengerKalkulator dagpengerKalkulator;
+
+    @Setup
+    public void forbered() {
+      dagpengerKalkulator = new DagpengerKalkulator(new GrunnbeløpVerktøy(() -> GRUNNBELØP));
+      for (int i = 0; i < antallÅr; i++) {
+        dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2010 + i, 300000 + 1000 * i));
+      }
+    }
+  }
+
+  private static void leggTil(DagpengerKalkulator dagpengerKalkulator, double... årslønner) {
+    for (int i = 0; i < årslønner.length; i++) {
+      dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024 - i, årslønner[i]));
+    }
+  }
+
+  @Benchmark
+  public Resultat kalkulerDagsats(Kalkulering kalkulering) {
+    return kalkulering.dagpengerKalkulator.kalkulerDagsats();
+  }
+
+  @Benchmark
+  public double summerNyligeÅrslønner(Historikk historikk) {
+    return historikk.dagpengerKalkulator.summerNyligeÅrslønner(3);
+  }
+}
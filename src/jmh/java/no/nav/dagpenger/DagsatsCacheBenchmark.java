@@ -0,0 +1,75 @@
+package no.nav.dagpenger;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.søker.Søker;
+import no.nav.årslønn.Årslønn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester som sammenligner kalkulering av søkere med og uten {@link DagsatsCache}.
+ *
+ * <p>
+ * Søkerne trekkes fra et begrenset antall ulike inntektshistorikker, slik at mange søkere har like
+ * inntekter.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DagsatsCacheBenchmark {
+
+  private static final int ANTALL_SØKERE = 4096;
+
+  @Param({"100", "100000"})
+  public int antallUlikeHistorikker;
+
+  private Søker[] søkere;
+  private DagpengerKalkulator utenCache;
+  private DagpengerKalkulator medCache;
+  private int neste;
+
+  @Setup
+  public void forbered() {
+    GrunnbeløpVerktøy grunnbeløpVerktøy =
+        new GrunnbeløpVerktøy(DagpengerKalkulatorBenchmark.GRUNNBELØP);
+    utenCache = new DagpengerKalkulator(grunnbeløpVerktøy);
+    medCache = new DagpengerKalkulator(grunnbeløpVerktøy, null, new DagsatsCache(10_000));
+    Random tilfeldig = new Random(42);
+    søkere = new Søker[ANTALL_SØKERE];
+    for (int i = 0; i < ANTALL_SØKERE; i++) {
+      int historikk = tilfeldig.nextInt(antallUlikeHistorikker);
+      søkere[i] = new Søker("s" + i, List.of(
+          new Årslønn(2024, 300000 + historikk * 10),
+          new Årslønn(2023, 350000),
+          new Årslønn(2022, 400000)));
+    }
+  }
+
+  @Benchmark
+  public long utenCache() {
+    neste = (neste + 1) & (ANTALL_SØKERE - 1);
+    return utenCache.kalkulerDagsats(søkere[neste]).hentDagsatsIØre();
+  }
+
+  @Benchmark
+  public long medCache() {
+    neste = (neste + 1) & (ANTALL_SØKERE - 1);
+    return medCache.kalkulerDagsats(søkere[neste]).hentDagsatsIØre();
+  }
+}
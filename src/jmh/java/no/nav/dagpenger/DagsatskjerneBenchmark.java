@@ -0,0 +1,79 @@
+package no.nav.dagpenger;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import no.nav.beløp.Øre;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester som sammenligner den skalare kjernen, vektorkjernen og kalkulering av én og én
+ * person med {@link DagpengerKalkulator#kalkulerDagsatsIØre(long, long)}.
+ *
+ * <p>
+ * Inntektene er tilfeldige rundt grensene for rett på dagpenger og maks dagpengegrunnlag, slik at
+ * alle beregningsmetodene brukes og forgreningene i den skalare kjernen er vanskelige å forutsi.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class DagsatskjerneBenchmark {
+
+  @Param({"1024", "65536"})
+  public int antallPersoner;
+
+  private GrunnbeløpVerktøy grunnbeløpVerktøy;
+  private DagpengerKalkulator dagpengerKalkulator;
+  private Dagsatsparti parti;
+  private final SkalarDagsatskjerne skalar = new SkalarDagsatskjerne();
+  private final VektorDagsatskjerne vektor = new VektorDagsatskjerne();
+
+  @Setup
+  public void forbered() {
+    grunnbeløpVerktøy = new GrunnbeløpVerktøy(DagpengerKalkulatorBenchmark.GRUNNBELØP);
+    dagpengerKalkulator = new DagpengerKalkulator(grunnbeløpVerktøy);
+    Random tilfeldig = new Random(42);
+    parti = new Dagsatsparti(antallPersoner);
+    for (int i = 0; i < antallPersoner; i++) {
+      double sisteÅrslønn = tilfeldig.nextDouble() * 8 * DagpengerKalkulatorBenchmark.GRUNNBELØP;
+      parti.leggTil(Øre.fraKroner(sisteÅrslønn), Øre.fraKroner(
+          sisteÅrslønn + tilfeldig.nextDouble() * 16 * DagpengerKalkulatorBenchmark.GRUNNBELØP));
+    }
+  }
+
+  @Benchmark
+  public Dagsatsparti skalarKjerne() {
+    skalar.beregn(grunnbeløpVerktøy, parti, 0, antallPersoner);
+    return parti;
+  }
+
+  @Benchmark
+  public Dagsatsparti vektorKjerne() {
+    vektor.beregn(grunnbeløpVerktøy, parti, 0, antallPersoner);
+    return parti;
+  }
+
+  @Benchmark
+  public long énOgÉn() {
+    long sum = 0;
+    for (int i = 0; i < antallPersoner; i++) {
+      sum += dagpengerKalkulator.kalkulerDagsatsIØre(parti.sisteÅrslønner[i], parti.sumTreÅr[i])
+          .hentDagsatsIØre();
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,47 @@
+package no.nav.grunnbeløp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester for grenseverdiene i {@link GrunnbeløpVerktøy}, med et fast grunnbeløp.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GrunnbeløpVerktøyBenchmark {
+
+  private GrunnbeløpVerktøy grunnbeløpVerktøy;
+
+  @Setup
+  public void forbered() {
+    grunnbeløpVerktøy = new GrunnbeløpVerktøy(() -> 124028);
+  }
+
+  @Benchmark
+  public double hentTotaltGrunnbeløpForTreÅr() {
+    return grunnbeløpVerktøy.hentTotaltGrunnbeløpForGittAntallÅr(3);
+  }
+
+  @Benchmark
+  public double hentMinimumÅrslønnForRettPåDagpenger() {
+    return grunnbeløpVerktøy.hentMinimumÅrslønnForRettPåDagpenger();
+  }
+
+  @Benchmark
+  public double hentMaksÅrligDagpengegrunnlag() {
+    return grunnbeløpVerktøy.hentMaksÅrligDagpengegrunnlag();
+  }
+}
@@ -0,0 +1,75 @@
+package no.nav.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import no.nav.resultat.Resultat;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester for registrering av resultater i {@link Resultatjournal}, med og uten venting på
+ * varig lagring.
+ *
+ * <p>
+ * Testene kjøres fra flere tråder, slik at trådene som venter på lagring kan dele på samme
+ * synkronisering mot disk.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ResultatjournalBenchmark {
+
+  private Path mappe;
+  private Resultatjournal journal;
+
+  @Setup
+  public void forbered() throws IOException {
+    mappe = Files.createTempDirectory("resultatjournal");
+    journal = Resultatjournal.åpne(mappe);
+  }
+
+  @TearDown
+  public void ryddOpp() throws IOException {
+    journal.close();
+    try (Stream<Path> filer = Files.walk(mappe)) {
+      for (Path fil : (Iterable<Path>) filer.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(fil);
+      }
+    }
+  }
+
+  @Benchmark
+  public Resultat registrer() throws IOException {
+    Resultat resultat = Resultat.medDagsatsIØre(100000, SaksbehandlerSpesialisering.INNVILGET);
+    journal.registrer(resultat);
+    return resultat;
+  }
+
+  @Benchmark
+  public Resultat registrerOgSynkroniser() throws IOException {
+    Resultat resultat = Resultat.medDagsatsIØre(100000, SaksbehandlerSpesialisering.INNVILGET);
+    journal.registrer(resultat);
+    journal.synkroniser();
+    return resultat;
+  }
+}
@@ -0,0 +1,87 @@
+package no.nav.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatStatus;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester som sammenligner å hente de eldste ubehandlede resultatene for en spesialisering
+ * fra indeksen i {@link Resultatregister}, med å lete gjennom alle resultatene.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultatregisterBenchmark {
+
+  private static final int SIDESTØRRELSE = 50;
+
+  @Param({"100000", "1000000"})
+  public int antallResultater;
+
+  private Path mappe;
+  private Resultatregister register;
+
+  @Setup
+  public void forbered() throws IOException {
+    mappe = Files.createTempDirectory("resultatregister");
+    register = Resultatregister.åpne(mappe);
+    SaksbehandlerSpesialisering[] spesialiseringer = SaksbehandlerSpesialisering.values();
+    for (int i = 0; i < antallResultater; i++) {
+      Resultat resultat = Resultat.medDagsatsIØre(100000, spesialiseringer[i % 3]);
+      register.registrer(resultat);
+      if (i % 10 != 0) {
+        register.endreStatus(resultat, ResultatStatus.INNVILGET);
+      }
+    }
+  }
+
+  @TearDown
+  public void ryddOpp() throws IOException {
+    register.close();
+    try (Stream<Path> filer = Files.walk(mappe)) {
+      for (Path fil : (Iterable<Path>) filer.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(fil);
+      }
+    }
+  }
+
+  @Benchmark
+  public List<Resultat> indeks() {
+    return register.hentSide(SaksbehandlerSpesialisering.INNVILGET, ResultatStatus.UBEHANDLET,
+        SIDESTØRRELSE);
+  }
+
+  @Benchmark
+  public List<Resultat> gjennomsøk() {
+    return register.hentJournal().hentResultater().stream()
+        .filter(resultat -> resultat.hentSpesialisering() == SaksbehandlerSpesialisering.INNVILGET
+            && resultat.hentStatus() == ResultatStatus.UBEHANDLET)
+        .sorted(Comparator.comparingLong(Resultat::hentOpprettet)
+            .thenComparingLong(Resultat::hentSaksnummer))
+        .limit(SIDESTØRRELSE)
+        .collect(Collectors.toList());
+  }
+}
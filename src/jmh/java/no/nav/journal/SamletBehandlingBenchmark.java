@@ -0,0 +1,104 @@
+package no.nav.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import no.nav.resultat.Reservasjon;
+import no.nav.resultat.Reservasjonsforvalter;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatKø;
+import no.nav.saksbehandler.Behandlingsoppsummering;
+import no.nav.saksbehandler.Saksbehandler;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester som sammenligner å behandle reserverte resultater ett og ett, med varig lagring
+ * etter hvert resultat, mot å behandle dem samlet med
+ * {@link Resultatjournal#behandleReservasjoner(Saksbehandler, java.util.Collection)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SamletBehandlingBenchmark {
+
+  private static final Duration LEIETID = Duration.ofMinutes(1);
+
+  @Param({"64"})
+  public int antallResultater;
+
+  private final Saksbehandler saksbehandler =
+      new Saksbehandler("Ytelse", SaksbehandlerSpesialisering.INNVILGET);
+  private final ResultatKø resultatKø = new ResultatKø();
+  private Path mappe;
+  private Resultatjournal journal;
+  private Reservasjonsforvalter forvalter;
+  private List<Reservasjon> reservasjoner;
+
+  @Setup
+  public void forbered() throws IOException {
+    mappe = Files.createTempDirectory("samlet-behandling");
+    journal = Resultatjournal.åpne(mappe);
+    forvalter = new Reservasjonsforvalter(resultatKø);
+  }
+
+  @Setup(Level.Invocation)
+  public void reserver() throws IOException {
+    for (int i = 0; i < antallResultater; i++) {
+      Resultat resultat = Resultat.medDagsatsIØre(100000, SaksbehandlerSpesialisering.INNVILGET);
+      journal.registrer(resultat);
+      resultatKø.leggTil(resultat);
+    }
+    journal.synkroniser();
+    reservasjoner = saksbehandler.reserverResultater(forvalter, antallResultater, LEIETID);
+  }
+
+  @TearDown
+  public void ryddOpp() throws IOException {
+    forvalter.close();
+    journal.close();
+    try (Stream<Path> filer = Files.walk(mappe)) {
+      for (Path fil : (Iterable<Path>) filer.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(fil);
+      }
+    }
+  }
+
+  @Benchmark
+  public int énOgÉn() throws IOException {
+    int behandlet = 0;
+    for (Reservasjon reservasjon : reservasjoner) {
+      if (reservasjon.fullfør()) {
+        journal.behandle(saksbehandler, reservasjon.hentResultat());
+        journal.synkroniser();
+        behandlet++;
+      }
+    }
+    return behandlet;
+  }
+
+  @Benchmark
+  public Behandlingsoppsummering samlet() throws IOException {
+    return journal.behandleReservasjoner(saksbehandler, reservasjoner);
+  }
+}
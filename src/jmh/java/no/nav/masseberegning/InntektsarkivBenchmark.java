@@ -0,0 +1,99 @@
+package no.nav.masseberegning;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.søker.Søker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester for kalkulering av alle personer i en inntektsfil, lest som CSV-tekst og som
+ * {@link Inntektsarkiv}.
+ *
+ * <p>
+ * Hver person har tre årslønner. Teksten ligger i minnet, slik at testene måler tolking og
+ * kalkulering, og ikke disklesing.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InntektsarkivBenchmark {
+
+  @Param({"100000", "1000000"})
+  public int antallPersoner;
+
+  private DagpengerKalkulator dagpengerKalkulator;
+  private String csv;
+  private Path arkivfil;
+  private Inntektsarkiv arkiv;
+
+  @Setup
+  public void forbered() throws IOException {
+    dagpengerKalkulator = new DagpengerKalkulator(new GrunnbeløpVerktøy(124028));
+    StringBuilder tekst = new StringBuilder();
+    for (int i = 0; i < antallPersoner; i++) {
+      for (int år = 2023; år > 2020; år--) {
+        tekst.append('p').append(i).append(',').append(år).append(',')
+            .append(100000 + i % 900000).append('\n');
+      }
+    }
+    csv = tekst.toString();
+
+    arkivfil = Files.createTempFile("inntekter", Inntektsarkiv.FILENDELSE);
+    try (Inntektsleser leser = new Inntektsleser(new BufferedReader(new StringReader(csv)),
+        Filformat.CSV)) {
+      Inntektsarkiv.skriv(leser, arkivfil);
+    }
+    arkiv = Inntektsarkiv.åpne(arkivfil);
+  }
+
+  @TearDown
+  public void ryddOpp() throws IOException {
+    arkiv.close();
+    Files.deleteIfExists(arkivfil);
+  }
+
+  @Benchmark
+  public double kalkulerFraTekst() throws IOException {
+    double sum = 0;
+    try (Inntektsleser leser = new Inntektsleser(new BufferedReader(new StringReader(csv)),
+        Filformat.CSV)) {
+      Søker søker;
+      while ((søker = leser.lesNeste()) != null) {
+        sum += dagpengerKalkulator.kalkulerDagsats(søker).hentDagsats();
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double kalkulerFraArkiv() {
+    double sum = 0;
+    for (int person = 0; person < arkiv.hentAntallPersoner(); person++) {
+      sum += arkiv.kalkulerDagsats(dagpengerKalkulator, person).hentDagsats();
+    }
+    return sum;
+  }
+}
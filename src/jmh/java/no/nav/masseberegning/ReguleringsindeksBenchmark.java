@@ -0,0 +1,75 @@
+package no.nav.masseberegning;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester som sammenligner regulering med {@link Reguleringsindeks} mot å kalkulere alle
+ * sakene på nytt med det nye grunnbeløpet.
+ *
+ * <p>
+ * Hver måling regulerer fram og tilbake mellom to grunnbeløp, slik at indeksen alltid har arbeid å
+ * gjøre.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReguleringsindeksBenchmark {
+
+  @Param({"1000000"})
+  public int antallSaker;
+
+  private final GrunnbeløpVerktøy[] grunnbeløp = {
+      new GrunnbeløpVerktøy(118620), new GrunnbeløpVerktøy(124028)
+  };
+  private long[] sisteÅrslønner;
+  private long[] sumTreÅr;
+  private Reguleringsindeks indeks;
+  private int neste;
+
+  @Setup
+  public void forbered() {
+    Random tilfeldig = new Random(42);
+    sisteÅrslønner = new long[antallSaker];
+    sumTreÅr = new long[antallSaker];
+    for (int sak = 0; sak < antallSaker; sak++) {
+      sisteÅrslønner[sak] = (long) (tilfeldig.nextDouble() * 1_000_000_00L);
+      sumTreÅr[sak] = sisteÅrslønner[sak] + (long) (tilfeldig.nextDouble() * 2_000_000_00L);
+    }
+    indeks = new Reguleringsindeks(sisteÅrslønner, sumTreÅr, grunnbeløp[0]);
+  }
+
+  @Benchmark
+  public int medIndeks() {
+    neste ^= 1;
+    return indeks.reguler(grunnbeløp[neste]);
+  }
+
+  @Benchmark
+  public long fullKalkulering() {
+    neste ^= 1;
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(grunnbeløp[neste]);
+    long sum = 0;
+    for (int sak = 0; sak < antallSaker; sak++) {
+      sum += kalkulator.kalkulerDagsatsIØre(sisteÅrslønner[sak], sumTreÅr[sak]).hentDagsatsIØre();
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,63 @@
+package no.nav.metrikk;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester som måler hva metrikkene koster for kalkuleringer, ved å kjøre de samme
+ * kalkuleringene med standard utvalg og uten metrikker.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class MetrikkerBenchmark {
+
+  private static final int ANTALL = 1024;
+
+  private DagpengerKalkulator dagpengerKalkulator;
+  private final long[] sisteÅrslønner = new long[ANTALL];
+  private final long[] sumTreÅr = new long[ANTALL];
+  private int neste;
+
+  @Setup
+  public void forbered() {
+    dagpengerKalkulator = new DagpengerKalkulator(new GrunnbeløpVerktøy(124028));
+    Random tilfeldig = new Random(42);
+    for (int i = 0; i < ANTALL; i++) {
+      sisteÅrslønner[i] = tilfeldig.nextInt(100_000_000);
+      sumTreÅr[i] = sisteÅrslønner[i] + tilfeldig.nextInt(200_000_000);
+    }
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+  public Object medMetrikker() {
+    return kalkuler();
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector",
+      "-Dmetrikker.utvalgsintervall=0"})
+  public Object utenMetrikker() {
+    return kalkuler();
+  }
+
+  private Object kalkuler() {
+    int i = neste++ & (ANTALL - 1);
+    return dagpengerKalkulator.kalkulerDagsatsIØre(sisteÅrslønner[i], sumTreÅr[i]);
+  }
+}
@@ -0,0 +1,50 @@
+package no.nav.resultat;
+
+import java.util.concurrent.TimeUnit;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester for {@link ResultatKø}, der hver operasjon henter resultatet med høyest prioritet
+ * og legger det tilbake, slik at dybden holdes fast.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ResultatKøBenchmark {
+
+  @Param({"1024", "65536"})
+  public int dybde;
+
+  private ResultatKø resultatKø;
+
+  @Setup
+  public void forbered() {
+    resultatKø = new ResultatKø();
+    for (int i = 0; i < dybde; i++) {
+      resultatKø.leggTil(new Resultat(500.0, SaksbehandlerSpesialisering.INNVILGET));
+    }
+  }
+
+  @Benchmark
+  public Resultat hentOgLeggTilbake() {
+    Resultat resultat = resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET);
+    resultatKø.leggTil(resultat);
+    return resultat;
+  }
+}
@@ -0,0 +1,57 @@
+package no.nav.saksbehandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import no.nav.resultat.Resultat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ytelsestester for {@link Saksbehandler#behandleUbehandledeResultater}.
+ *
+ * <p>
+ * Resultatene fordeles jevnt på spesialiseringene, og opprettes på nytt før hver kjøring slik at
+ * alle er ubehandlet.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SaksbehandlerBenchmark {
+
+  @Param({"10000", "1000000"})
+  public int antallResultater;
+
+  private Saksbehandler saksbehandler;
+  private List<Resultat> resultater;
+
+  @Setup(Level.Invocation)
+  public void forbered() {
+    saksbehandler = new Saksbehandler("Ola Nordmann", SaksbehandlerSpesialisering.INNVILGET);
+    SaksbehandlerSpesialisering[] spesialiseringer = SaksbehandlerSpesialisering.values();
+    resultater = new ArrayList<>(antallResultater);
+    for (int i = 0; i < antallResultater; i++) {
+      resultater.add(new Resultat(1000 + i % 2000, spesialiseringer[i % spesialiseringer.length]));
+    }
+  }
+
+  @Benchmark
+  public List<Resultat> behandleUbehandledeResultater() {
+    saksbehandler.behandleUbehandledeResultater(resultater.iterator());
+    return resultater;
+  }
+}
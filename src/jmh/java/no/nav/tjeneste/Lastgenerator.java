@@ -0,0 +1,118 @@
+package no.nav.tjeneste;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lastgenerator for {@link DagpengerTjeneste}.
+ *
+ * <p>
+ * Sender kalkuleringsforespørsler fra et gitt antall samtidige klienter i en gitt tid, og skriver ut
+ * gjennomstrømning og svartider. Uten adresse startes en tjeneste i samme prosess med et fast
+ * grunnbeløp, slik at målingen ikke avhenger av grunnbeløp API'et.
+ * </p>
+ *
+ * <p>
+ * Bruk: <code>Lastgenerator [samtidighet] [sekunder] [adresse]</code>
+ * </p>
+ */
+public class Lastgenerator {
+
+  private static final String FORESPØRSEL = "{\"årslønner\": ["
+      + "{\"år\": 2024, \"beløp\": 550000},"
+      + "{\"år\": 2023, \"beløp\": 24000},"
+      + "{\"år\": 2022, \"beløp\": 110000}]}";
+
+  public static void main(String[] args) throws Exception {
+    int samtidighet = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+    Duration varighet = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 10);
+
+    DagpengerTjeneste lokalTjeneste = null;
+    URI adresse;
+    if (args.length > 2) {
+      adresse = URI.create(args[2]);
+    } else {
+      lokalTjeneste = new DagpengerTjeneste(0, () -> 124028);
+      lokalTjeneste.start();
+      adresse = URI.create("http://localhost:" + lokalTjeneste.hentPort());
+    }
+
+    try {
+      kjør(adresse.resolve("/dagsats"), samtidighet, varighet);
+    } finally {
+      if (lokalTjeneste != null) {
+        lokalTjeneste.close();
+      }
+    }
+  }
+
+  private static void kjør(URI adresse, int samtidighet, Duration varighet) throws Exception {
+    HttpClient klient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    HttpRequest forespørsel = HttpRequest.newBuilder(adresse)
+        .POST(HttpRequest.BodyPublishers.ofString(FORESPØRSEL))
+        .build();
+
+    ExecutorService klienter = Executors.newFixedThreadPool(samtidighet);
+    long slutt = System.nanoTime() + varighet.toNanos();
+    List<Future<long[]>> målinger = new ArrayList<>();
+    for (int i = 0; i < samtidighet; i++) {
+      målinger.add(klienter.submit(() -> {
+        long[] svartider = new long[1024];
+        int antall = 0;
+        while (System.nanoTime() < slutt) {
+          long start = System.nanoTime();
+          HttpResponse<String> svar = klient.send(forespørsel,
+              HttpResponse.BodyHandlers.ofString());
+          if (svar.statusCode() != 200) {
+            throw new IllegalStateException("Uventet statuskode " + svar.statusCode());
+          }
+          if (antall == svartider.length) {
+            svartider = Arrays.copyOf(svartider, antall * 2);
+          }
+          svartider[antall++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(svartider, antall);
+      }));
+    }
+
+    long[] alleSvartider = new long[0];
+    for (Future<long[]> måling : målinger) {
+      long[] svartider = måling.get();
+      int forrige = alleSvartider.length;
+      alleSvartider = Arrays.copyOf(alleSvartider, forrige + svartider.length);
+      System.arraycopy(svartider, 0, alleSvartider, forrige, svartider.length);
+    }
+    klienter.shutdown();
+    Arrays.sort(alleSvartider);
+
+    double sekunder = varighet.toNanos() / 1e9;
+    System.out.printf("Forespørsler:      %d%n", alleSvartider.length);
+    System.out.printf("Gjennomstrømning:  %.0f forespørsler/s%n", alleSvartider.length / sekunder);
+    System.out.printf("Median svartid:    %.3f ms%n", millis(persentil(alleSvartider, 0.50)));
+    System.out.printf("p99 svartid:       %.3f ms%n", millis(persentil(alleSvartider, 0.99)));
+    System.out.printf("Maks svartid:      %.3f ms%n",
+        millis(alleSvartider.length == 0 ? 0 : alleSvartider[alleSvartider.length - 1]));
+  }
+
+  private static long persentil(long[] sorterteSvartider, double andel) {
+    if (sorterteSvartider.length == 0) {
+      return 0;
+    }
+    int indeks = (int) Math.ceil(andel * sorterteSvartider.length) - 1;
+    return sorterteSvartider[Math.max(0, indeks)];
+  }
+
+  private static double millis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
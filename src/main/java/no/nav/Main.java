@@ -1,14 +1,37 @@
 package no.nav;
 
+import java.nio.file.Path;
 import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.dagpenger.DagsatsCache;
+import no.nav.grunnbeløp.GrunnbeløpCache;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.masseberegning.Inntektsarkiv;
+import no.nav.masseberegning.Masseberegning;
+import no.nav.metrikk.Metrikker;
 import no.nav.resultat.Resultat;
 import no.nav.saksbehandler.Saksbehandler;
 import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import no.nav.tjeneste.DagpengerTjeneste;
 import no.nav.årslønn.Årslønn;
 
 public class Main {
 
+  private static final int STANDARD_PORT = 8080;
+
   public static void main(String[] args) {
+    if (args.length > 0 && args[0].equals("tjeneste")) {
+      startTjeneste(args.length > 1 ? Integer.parseInt(args[1]) : STANDARD_PORT);
+      return;
+    }
+    if (args.length > 2 && args[0].equals("konverter")) {
+      startKonvertering(Path.of(args[1]), Path.of(args[2]));
+      return;
+    }
+    if (args.length > 2 && args[0].equals("masseberegning")) {
+      startMasseberegning(Path.of(args[1]), Path.of(args[2]));
+      return;
+    }
+
     try {
       DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
       dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 500000));
@@ -28,6 +51,45 @@ public class Main {
     }
   }
 
+  private static void startTjeneste(int port) {
+    // Må settes før HttpServer tas i bruk første gang, og kan overstyres på kommandolinjen.
+    if (System.getProperty(DagpengerTjeneste.NODELAY_EGENSKAP) == null) {
+      System.setProperty(DagpengerTjeneste.NODELAY_EGENSKAP, "true");
+    }
+    try {
+      DagpengerTjeneste tjeneste = new DagpengerTjeneste(port, GrunnbeløpCache.felles());
+      Metrikker.registrerIJmx();
+      tjeneste.start();
+      System.out.println("Dagpengetjenesten lytter på port " + tjeneste.hentPort());
+    } catch (Exception e) {
+      System.out.println("Kunne ikke starte dagpengetjenesten: " + e.getMessage());
+    }
+  }
+
+  private static void startMasseberegning(Path inntektsfil, Path resultatfil) {
+    try {
+      long start = System.nanoTime();
+      // Mellomlageret er kun med når -Ddagsatscache.kapasitet=N er oppgitt, se DagsatsCache.
+      Masseberegning masseberegning = new Masseberegning(
+          new DagpengerKalkulator(new GrunnbeløpVerktøy(GrunnbeløpCache.felles()), null,
+              DagsatsCache.fraSystemegenskap()), Runtime.getRuntime().availableProcessors());
+      long antall = masseberegning.beregn(inntektsfil, resultatfil);
+      System.out.println("Kalkulerte " + antall + " dagsatser på "
+          + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    } catch (Exception e) {
+      System.out.println("Kunne ikke gjennomføre masseberegning: " + e.getMessage());
+    }
+  }
+
+  private static void startKonvertering(Path kildefil, Path målfil) {
+    try {
+      int antall = Inntektsarkiv.konverter(kildefil, målfil);
+      System.out.println("Konverterte inntektene til " + antall + " personer.");
+    } catch (Exception e) {
+      System.out.println("Kunne ikke konvertere inntekter: " + e.getMessage());
+    }
+  }
+
   private static void skrivUtEnkeltResultat(Saksbehandler saksbehandler, Resultat resultat) {
     System.out.println("====================================");
     System.out.println("NAV Dagpengerkalkulator");
@@ -0,0 +1,60 @@
+package no.nav.beløp;
+
+/**
+ * Hjelpemetoder for pengebeløp lagret som et helt antall øre i en <code>long</code>.
+ *
+ * <p>
+ * Beregningene bruker øre i stedet for kroner som flyttall, slik at summer, sammenligninger mot
+ * grenseverdier og avrunding blir eksakte. Kroner som flyttall brukes kun når beløp leses inn eller
+ * skrives ut.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ */
+public final class Øre {
+
+  /**
+   * Antall øre i én krone.
+   */
+  public static final long PER_KRONE = 100;
+
+  private Øre() {
+  }
+
+  /**
+   * Gjør om et beløp i kroner til øre, avrundet til nærmeste øre.
+   *
+   * @param kroner beløpet i kroner.
+   * @return beløpet i øre.
+   * @throws IllegalArgumentException hvis beløpet ikke er et endelig tall, eller er for stort.
+   */
+  public static long fraKroner(double kroner) throws IllegalArgumentException {
+    double øre = Math.rint(kroner * PER_KRONE);
+    if (!(Math.abs(øre) < 0x1p63)) {
+      throw new IllegalArgumentException("Ugyldig beløp: " + kroner + " kr.");
+    }
+    return (long) øre;
+  }
+
+  /**
+   * Gjør om et beløp i øre til kroner.
+   *
+   * @param øre beløpet i øre.
+   * @return beløpet i kroner.
+   */
+  public static double tilKroner(long øre) {
+    return (double) øre / PER_KRONE;
+  }
+
+  /**
+   * Deler et beløp og runder resultatet opp til hele kroner.
+   *
+   * @param øre     beløpet som skal deles, i øre.
+   * @param divisor tallet beløpet skal deles på. Må være større enn 0.
+   * @return det delte beløpet rundet opp til hele kroner, i øre.
+   */
+  public static long delOgRundOppTilHeleKroner(long øre, long divisor) {
+    return -Math.floorDiv(-øre, divisor * PER_KRONE) * PER_KRONE;
+  }
+}
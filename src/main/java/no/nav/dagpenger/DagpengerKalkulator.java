@@ -1,11 +1,22 @@
 package no.nav.dagpenger;
 
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import jdk.jfr.FlightRecorder;
+import no.nav.beløp.Øre;
 import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.grunnbeløp.Grunnbeløpshistorikk;
+import no.nav.metrikk.KalkuleringHendelse;
+import no.nav.metrikk.Metrikker;
 import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatKø;
 import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import no.nav.søker.Søker;
 import no.nav.årslønn.Årslønn;
 
 /**
@@ -25,24 +36,85 @@ import no.nav.årslønn.Årslønn;
  * <p>
  * Dagsatsen beregnes med utgangspunkt i 260 arbeidsdager per år, i stedet for 365 dager.
  * </p>
+ * <p>
+ * Alle beløp regnes i hele øre med heltall, slik at sammenligninger mot grenseverdiene og avrunding
+ * av dagsatsen blir eksakte.
+ * </p>
+ * <p>
+ * Rettigheten, beregningsmetoden og dagsatsen for årslønnene i kalkulatoren huskes mellom kall, og
+ * beregnes kun på nytt når en ny eller rettet årslønn endrer de tre nyeste årene, eller når
+ * grunnbeløpet er endret. Gjentatte spørringer uten endringer tar dermed konstant tid. En
+ * kalkulator er ikke trådsikker, og skal kun brukes av én tråd om gangen.
+ * </p>
+ * <p>
+ * En kalkulator kan også få et {@link DagsatsCache} som deles mellom kalkulatorer og tråder, slik at
+ * søkere med like inntekter og samme grunnbeløp ikke kalkuleres på nytt.
+ * </p>
+ * <p>
+ * Tiden et utvalg av kalkuleringene tar registreres i {@link Metrikker#felles()}, per
+ * beregningsmetode. Hver kalkulering med {@link #kalkulerDagsats()} sender også en
+ * {@link KalkuleringHendelse} til JFR når JFR er i gang og hendelsen er slått på.
+ * </p>
  *
  * @author Emil Elton Nilsen, Sigurd Riseth
- * @version 1.1
+ * @version 1.9
  * @see Beregningsmetode
  * @see GrunnbeløpVerktøy
+ * @see Grunnbeløpshistorikk
+ * @see DagsatsCache
  * @see Årslønn
+ * @see Søker
  */
 
 public class DagpengerKalkulator {
 
-  private static final int ARBEIDSDAGER_I_ÅRET = 260;
+  static final int ARBEIDSDAGER_I_ÅRET = 260;
 
   private final GrunnbeløpVerktøy grunnbeløpVerktøy;
-  private final Map<Integer, Årslønn> årslønner;
+  private final ÅrslønnRegister årslønner;
+  private final ResultatKø resultatKø;
+  private final DagsatsCache dagsatsCache;
+  private Avledet avledet;
+  private int tilNesteMåling = Metrikker.førsteUtvalg();
 
   public DagpengerKalkulator() {
-    this.grunnbeløpVerktøy = new GrunnbeløpVerktøy();
-    this.årslønner = new HashMap<>();
+    this(new GrunnbeløpVerktøy());
+  }
+
+  /**
+   * Oppretter en kalkulator som bruker grunnbeløpet fra gitt verktøy.
+   *
+   * @param grunnbeløpVerktøy verktøyet som gir grunnbeløpsverdiene til beregningene.
+   */
+  public DagpengerKalkulator(GrunnbeløpVerktøy grunnbeløpVerktøy) {
+    this(grunnbeløpVerktøy, null);
+  }
+
+  /**
+   * Oppretter en kalkulator som legger hvert kalkulerte resultat i en resultatkø.
+   *
+   * @param grunnbeløpVerktøy verktøyet som gir grunnbeløpsverdiene til beregningene.
+   * @param resultatKø        køen resultatene legges i, eller <code>null</code> for ingen kø.
+   */
+  public DagpengerKalkulator(GrunnbeløpVerktøy grunnbeløpVerktøy, ResultatKø resultatKø) {
+    this(grunnbeløpVerktøy, resultatKø, null);
+  }
+
+  /**
+   * Oppretter en kalkulator som slår opp kalkulerte dagsatser i et mellomlager før de kalkuleres.
+   * Mellomlageret kan deles mellom mange kalkulatorer og tråder.
+   *
+   * @param grunnbeløpVerktøy verktøyet som gir grunnbeløpsverdiene til beregningene.
+   * @param resultatKø        køen resultatene legges i, eller <code>null</code> for ingen kø.
+   * @param dagsatsCache      mellomlageret for dagsatser, eller <code>null</code> for ingen
+   *                          mellomlagring.
+   */
+  public DagpengerKalkulator(GrunnbeløpVerktøy grunnbeløpVerktøy, ResultatKø resultatKø,
+      DagsatsCache dagsatsCache) {
+    this.grunnbeløpVerktøy = grunnbeløpVerktøy;
+    this.årslønner = new ÅrslønnRegister();
+    this.resultatKø = resultatKø;
+    this.dagsatsCache = dagsatsCache;
   }
 
   /**
@@ -62,43 +134,318 @@ public class DagpengerKalkulator {
    *   <li><code>MAKS_ÅRLIG_DAGPENGERGRUNNLAG</code>: Dagsatsen begrenses av det maksimale årlige dagpengegrunnlaget.</li>
    * </ul>
    * </p>
+   * <p>
+   * Siste årslønn og summen av de tre siste årslønnene hentes én gang, og brukes både til å avgjøre
+   * rettigheten, velge beregningsmetode og beregne dagsatsen.
+   * </p>
+   * <p>
+   * Har kalkulatoren en resultatkø, legges resultatet i køen før det returneres.
+   * </p>
    *
    * @return dagsatsen personen har rett på, i norske kroner. Hvis personen ikke har rett på
    * dagpenger, returneres 0 kr.
    * @throws IllegalArgumentException hvis beregningsmetoden er ugyldig eller uventet.
    */
   public Resultat kalkulerDagsats() throws IllegalArgumentException {
-    double dagsats = 0;
-    SaksbehandlerSpesialisering kalkulertResultat = SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT;
+    if (FlightRecorder.isInitialized()) {
+      return kalkulerMedHendelse();
+    }
+    return kalkulerUtenHendelse();
+  }
+
+  private Resultat kalkulerUtenHendelse() {
+    if (--tilNesteMåling == 0) {
+      return kalkulerOgMål(0, 0, true);
+    }
+    return lagResultat(hentAvledetMedÅrslønn());
+  }
 
-    if (harRettigheterTilDagpenger()) {
-      switch (velgBeregningsMetode()) {
+  /**
+   * Kalkulerer som {@link #kalkulerDagsats()}, og sender en {@link KalkuleringHendelse}. Ligger i en
+   * egen metode, slik at hendelsesklassen ikke lastes før JFR er i gang, siden den første
+   * hendelsesklassen tar lang tid å laste.
+   */
+  private Resultat kalkulerMedHendelse() {
+    KalkuleringHendelse hendelse = new KalkuleringHendelse();
+    hendelse.begin();
+    Resultat resultat = kalkulerUtenHendelse();
+    if (hendelse.shouldCommit()) {
+      hendelse.registrer(avledet.harRett ? avledet.beregningsmetode : null, resultat);
+      hendelse.commit();
+    }
+    return resultat;
+  }
+
+  private Avledet hentAvledetMedÅrslønn() {
+    Avledet avledet = hentAvledet();
+    if (avledet.harRett) {
+      sjekkAtÅrslønnFinnes();
+    }
+    return avledet;
+  }
+
+  /**
+   * Kalkulerer dagsatsen ut ifra allerede summerte årslønner i kroner.
+   *
+   * @param sisteÅrslønn årslønnen for det siste året, i kroner.
+   * @param sumTreÅr     summen av årslønnene for de tre siste årene, i kroner.
+   * @return resultatet av kalkuleringen.
+   * @see #kalkulerDagsatsIØre(long, long)
+   */
+  public Resultat kalkulerDagsats(double sisteÅrslønn, double sumTreÅr) {
+    return kalkulerDagsatsIØre(Øre.fraKroner(sisteÅrslønn), Øre.fraKroner(sumTreÅr));
+  }
+
+  /**
+   * Kalkulerer dagsatsen ut ifra allerede summerte årslønner i øre, uten å bruke årslønnene i denne
+   * kalkulatoren.
+   *
+   * <p>
+   * Dette lar kallere som har inntektene lagret på annen måte, for eksempel i et
+   * {@link no.nav.masseberegning.Inntektsarkiv}, kalkulere uten å opprette årslønner eller
+   * kalkulatorer for hver person. Kalleren er ansvarlig for at personen har minst én årslønn.
+   * </p>
+   *
+   * @param sisteÅrslønnIØre årslønnen for det siste året, i øre.
+   * @param sumTreÅrIØre     summen av årslønnene for de tre siste årene, i øre.
+   * @return resultatet av kalkuleringen.
+   * @see #kalkulerDagsats()
+   */
+  public Resultat kalkulerDagsatsIØre(long sisteÅrslønnIØre, long sumTreÅrIØre) {
+    if (--tilNesteMåling == 0) {
+      return kalkulerOgMål(sisteÅrslønnIØre, sumTreÅrIØre, false);
+    }
+    return lagResultat(hentAvledet(sisteÅrslønnIØre, sumTreÅrIØre));
+  }
+
+  /**
+   * Kalkulerer som {@link #kalkulerDagsats()} eller {@link #kalkulerDagsatsIØre(long, long)}, og
+   * registrerer tiden det tok. Ligger i en egen metode, slik at kalkuleringene som ikke måles forblir
+   * små nok til å legges inn i kalleren.
+   */
+  private Resultat kalkulerOgMål(long sisteÅrslønnIØre, long sumTreÅrIØre,
+      boolean medÅrslønner) {
+    tilNesteMåling = Metrikker.nesteUtvalg();
+    long start = System.nanoTime();
+    Avledet avledet = medÅrslønner
+        ? hentAvledetMedÅrslønn()
+        : hentAvledet(sisteÅrslønnIØre, sumTreÅrIØre);
+    Resultat resultat = lagResultat(avledet);
+    Metrikker.felles().registrerKalkulering(avledet.harRett ? avledet.beregningsmetode : null,
+        System.nanoTime() - start);
+    return resultat;
+  }
+
+  private Resultat lagResultat(Avledet avledet) {
+    Resultat resultat = Resultat.medDagsatsIØre(avledet.dagsats, avledet.spesialisering);
+    if (resultatKø != null) {
+      resultatKø.leggTil(resultat);
+    }
+    return resultat;
+  }
+
+  /**
+   * Henter de avledede verdiene for årslønnene i kalkulatoren, og beregner dem på nytt kun hvis
+   * årslønnene i vinduet eller grunnbeløpet er endret siden sist.
+   */
+  private Avledet hentAvledet() {
+    Avledet avledet = this.avledet;
+    if (avledet == null || avledet.grunnbeløp != grunnbeløpVerktøy.hentGrunnbeløpIØre()) {
+      avledet = hentAvledet(årslønner.summerNylige(1),
+          årslønner.summerNylige(ÅrslønnRegister.VINDU));
+      this.avledet = avledet;
+    }
+    return avledet;
+  }
+
+  private Avledet hentAvledet(long sisteÅrslønn, long sumTreÅr) {
+    if (dagsatsCache == null) {
+      return beregnAvledet(sisteÅrslønn, sumTreÅr);
+    }
+    return dagsatsCache.hentEllerBeregn(sisteÅrslønn, sumTreÅr,
+        grunnbeløpVerktøy.hentGrunnbeløpIØre(), this);
+  }
+
+  Avledet beregnAvledet(long sisteÅrslønn, long sumTreÅr) {
+    boolean harRett = harRettigheterTilDagpenger(sisteÅrslønn, sumTreÅr);
+    Beregningsmetode beregningsmetode = velgBeregningsMetode(sisteÅrslønn, sumTreÅr);
+    long dagsats = 0;
+    SaksbehandlerSpesialisering spesialisering = SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT;
+
+    if (harRett) {
+      switch (beregningsmetode) {
         case SISTE_ÅRSLØNN:
-          dagsats = beregnDagsats(summerNyligeÅrslønner(1));
-          kalkulertResultat = SaksbehandlerSpesialisering.INNVILGET;
+          dagsats = beregnDagsats(sisteÅrslønn, 1);
+          spesialisering = SaksbehandlerSpesialisering.INNVILGET;
           break;
         case GJENNOMSNITTET_AV_TRE_ÅR:
-          dagsats = beregnDagsats(summerNyligeÅrslønner(3) / 3);
-          kalkulertResultat = SaksbehandlerSpesialisering.INNVILGET;
+          dagsats = beregnDagsats(sumTreÅr, 3);
+          spesialisering = SaksbehandlerSpesialisering.INNVILGET;
           break;
         case MAKS_ÅRLIG_DAGPENGERGRUNNLAG:
-          dagsats = beregnDagsats(grunnbeløpVerktøy.hentMaksÅrligDagpengegrunnlag());
-          kalkulertResultat = SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS;
+          dagsats = beregnDagsats(grunnbeløpVerktøy.hentMaksÅrligDagpengegrunnlagIØre(), 1);
+          spesialisering = SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS;
           break;
       }
     }
+    return new Avledet(grunnbeløpVerktøy.hentGrunnbeløpIØre(), harRett, beregningsmetode, dagsats,
+        spesialisering);
+  }
 
-    return new Resultat(dagsats, kalkulertResultat);
+  /**
+   * Kalkulerer dagsatsen for en enkelt søker, uten å endre årslønnene i denne kalkulatoren.
+   *
+   * @param søker søkeren som dagsatsen skal kalkuleres for.
+   * @return resultatet av kalkuleringen for søkeren.
+   * @see #kalkulerDagsats()
+   */
+  public Resultat kalkulerDagsats(Søker søker) {
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(grunnbeløpVerktøy, resultatKø,
+        dagsatsCache);
+    søker.hentÅrslønner().forEach(kalkulator::leggTilÅrslønn);
+    return kalkulator.kalkulerDagsats();
+  }
+
+  /**
+   * Kalkulerer dagsatsen for en enkelt søker med grunnbeløpet som var i kraft på beregningsdatoen,
+   * slått opp i den felles grunnbeløpshistorikken.
+   *
+   * @param søker          søkeren som dagsatsen skal kalkuleres for.
+   * @param beregningsdato datoen grunnbeløpet skal hentes for.
+   * @return resultatet av kalkuleringen for søkeren.
+   * @throws IllegalArgumentException hvis historikken ikke har noe grunnbeløp for datoen.
+   * @see Grunnbeløpshistorikk#felles()
+   */
+  public Resultat kalkulerDagsats(Søker søker, LocalDate beregningsdato)
+      throws IllegalArgumentException {
+    return kalkulerDagsats(søker, Grunnbeløpshistorikk.felles(), beregningsdato);
+  }
+
+  /**
+   * Kalkulerer dagsatsen for en enkelt søker med grunnbeløpet som var i kraft på beregningsdatoen,
+   * uten å endre årslønnene i denne kalkulatoren.
+   *
+   * <p>
+   * Ved beregning av mange gamle saker bør kalleren hente én historikk og bruke den for alle sakene,
+   * slik at en regulering som registreres underveis ikke gir ulike grunnbeløp i samme kjøring.
+   * Oppslaget gjøres i minnet, og kontakter aldri NAVs grunnbeløp API.
+   * </p>
+   *
+   * @param søker          søkeren som dagsatsen skal kalkuleres for.
+   * @param historikk      historikken grunnbeløpet slås opp i.
+   * @param beregningsdato datoen grunnbeløpet skal hentes for.
+   * @return resultatet av kalkuleringen for søkeren.
+   * @throws IllegalArgumentException hvis historikken ikke har noe grunnbeløp for datoen.
+   */
+  public Resultat kalkulerDagsats(Søker søker, Grunnbeløpshistorikk historikk,
+      LocalDate beregningsdato) throws IllegalArgumentException {
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(historikk.hentVerktøy(beregningsdato),
+        resultatKø, dagsatsCache);
+    søker.hentÅrslønner().forEach(kalkulator::leggTilÅrslønn);
+    return kalkulator.kalkulerDagsats();
+  }
+
+  /**
+   * Kalkulerer dagsatsen for mange søkere parallelt i JVM-ens felles trådbasseng,
+   * {@link ForkJoinPool#commonPool()}.
+   *
+   * @param søkere søkerne som dagsatsene skal kalkuleres for.
+   * @return resultatene i samme rekkefølge som søkerne.
+   * @see #kalkulerDagsatser(Stream, ForkJoinPool)
+   */
+  public List<Resultat> kalkulerDagsatser(Collection<Søker> søkere) {
+    return kalkulerDagsatser(søkere.stream(), ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Kalkulerer dagsatsen for mange søkere parallelt i et gitt trådbasseng.
+   *
+   * @param søkere      søkerne som dagsatsene skal kalkuleres for.
+   * @param trådbasseng trådbassenget kalkuleringene skal kjøres i.
+   * @return resultatene i samme rekkefølge som søkerne.
+   * @see #kalkulerDagsatser(Stream, ForkJoinPool)
+   */
+  public List<Resultat> kalkulerDagsatser(Collection<Søker> søkere, ForkJoinPool trådbasseng) {
+    return kalkulerDagsatser(søkere.stream(), trådbasseng);
+  }
+
+  /**
+   * Kalkulerer dagsatsen for en strøm av søkere parallelt i et gitt trådbasseng.
+   *
+   * <p>
+   * Hver søker kalkuleres uavhengig av de andre og av årslønnene i denne kalkulatoren, slik at
+   * arbeidet kan fordeles fritt mellom trådene. Resultatene returneres i samme rekkefølge som
+   * søkerne i strømmen.
+   * </p>
+   *
+   * <p>
+   * Det koster å starte og stoppe tråder, så trådbassenget bør leve lenger enn ett kall. Kallere som
+   * vil begrense antall tråder oppretter ett basseng med ønsket parallellitet og gjenbruker det for
+   * alle kalkuleringene.
+   * </p>
+   *
+   * @param søkere      søkerne som dagsatsene skal kalkuleres for.
+   * @param trådbasseng trådbassenget kalkuleringene skal kjøres i.
+   * @return resultatene i samme rekkefølge som søkerne.
+   */
+  public List<Resultat> kalkulerDagsatser(Stream<Søker> søkere, ForkJoinPool trådbasseng) {
+    return trådbasseng.submit(() -> søkere.parallel()
+        .map(this::kalkulerDagsats)
+        .collect(Collectors.toList())).join();
+  }
+
+  /**
+   * Kalkulerer dagsatsen for alle personene i et parti samlet, og lagrer dagsats, beregningsmetode
+   * og spesialisering i partiet.
+   *
+   * <p>
+   * Kalkuleringen gjøres med SIMD-instruksjoner når modulen <code>jdk.incubator.vector</code> er
+   * lagt til JVM-en med <code>--add-modules</code>, og ellers ett og ett element av gangen.
+   * Resultatene er de samme som fra {@link #kalkulerDagsatsIØre(long, long)} for hver person.
+   * </p>
+   *
+   * @param parti partiet som skal kalkuleres.
+   * @return resultatene i samme rekkefølge som personene i partiet.
+   */
+  public List<Resultat> kalkulerDagsatser(Dagsatsparti parti) {
+    beregnDagsatser(parti);
+    List<Resultat> resultater = new ArrayList<>(parti.hentAntall());
+    for (int i = 0; i < parti.hentAntall(); i++) {
+      Resultat resultat = Resultat.medDagsatsIØre(parti.hentDagsatsIØre(i),
+          parti.hentSpesialisering(i));
+      if (resultatKø != null) {
+        resultatKø.leggTil(resultat);
+      }
+      resultater.add(resultat);
+    }
+    return resultater;
   }
 
   /**
-   * Beregner dagsatsen basert på en gitt årslønn.
+   * Kalkulerer dagsatsen for alle personene i et parti samlet, og lagrer dagsats, beregningsmetode
+   * og spesialisering i partiet, uten å opprette resultater.
    *
-   * @param årslønn årslønnen som dagsatsen skal beregnes ut ifra.
-   * @return dagsatsen basert på årslønnen.
+   * <p>
+   * Passer for kallere som kun trenger tallene, som ved ny kalkulering av lagrede saker. Det
+   * opprettes ingen objekter, og ingen saksnumre tas i bruk.
+   * </p>
+   *
+   * @param parti partiet som skal kalkuleres.
+   * @see #kalkulerDagsatser(Dagsatsparti)
    */
-  private double beregnDagsats(double årslønn) {
-    return Math.ceil(årslønn / ARBEIDSDAGER_I_ÅRET);
+  public void beregnDagsatser(Dagsatsparti parti) {
+    Dagsatskjerne.FORETRUKKET.beregn(grunnbeløpVerktøy, parti, 0, parti.hentAntall());
+  }
+
+  /**
+   * Beregner dagsatsen basert på summen av et gitt antall årslønner, rundet opp til hele kroner.
+   *
+   * @param sumIØre  summen av årslønnene som dagsatsen skal beregnes ut ifra, i øre.
+   * @param antallÅr antall årslønner i summen.
+   * @return dagsatsen basert på gjennomsnittet av årslønnene, i øre.
+   */
+  static long beregnDagsats(long sumIØre, int antallÅr) {
+    return Øre.delOgRundOppTilHeleKroner(sumIØre, (long) ARBEIDSDAGER_I_ÅRET * antallÅr);
   }
 
   /**
@@ -115,14 +462,17 @@ public class DagpengerKalkulator {
    * @return true hvis personen har rett på dagpenger, false ellers.
    */
   public boolean harRettigheterTilDagpenger() {
+    return hentAvledet().harRett;
+  }
+
+  private boolean harRettigheterTilDagpenger(long sisteÅrslønn, long sumTreÅr) {
     // Sjekker case 1 (3år >= 3G)
-    if (summerNyligeÅrslønner(3) >= grunnbeløpVerktøy.hentTotaltGrunnbeløpForGittAntallÅr(3)) {
+    if (sumTreÅr >= grunnbeløpVerktøy.hentTotaltGrunnbeløpForGittAntallÅrIØre(3)) {
       return true;
     }
 
     // Sjekker case 2 (sist år >= 1.5G)
-    if (summerNyligeÅrslønner(1)
-        >= grunnbeløpVerktøy.hentMinimumÅrslønnForRettPåDagpenger()) {
+    if (sisteÅrslønn >= grunnbeløpVerktøy.hentMinimumÅrslønnForRettPåDagpengerIØre()) {
       return true;
     }
 
@@ -137,16 +487,22 @@ public class DagpengerKalkulator {
    * @throws IllegalStateException hvis det ikke finnes årslønn tilgjengelig.
    */
   public Beregningsmetode velgBeregningsMetode() throws IllegalStateException {
-    if (årslønner.isEmpty()) {
+    sjekkAtÅrslønnFinnes();
+    return hentAvledet().beregningsmetode;
+  }
+
+  private void sjekkAtÅrslønnFinnes() throws IllegalStateException {
+    if (årslønner.erTomt()) {
       throw new IllegalStateException("Ingen årslønn tilgjengelig for beregning.");
     }
+  }
 
-    double sisteÅrslønn = summerNyligeÅrslønner(1);
-    double gjennomsnittTreÅr = summerNyligeÅrslønner(3) / 3;
-    double maksDagpengegrunnlag = grunnbeløpVerktøy.hentMaksÅrligDagpengegrunnlag();
+  private Beregningsmetode velgBeregningsMetode(long sisteÅrslønn, long sumTreÅr) {
+    long maksDagpengegrunnlag = grunnbeløpVerktøy.hentMaksÅrligDagpengegrunnlagIØre();
 
-    // Velg beregningsmetode basert på inntektsgrunnlag
-    if (sisteÅrslønn > gjennomsnittTreÅr) {
+    // Velg beregningsmetode basert på inntektsgrunnlag. For heltall er siste årslønn høyere enn
+    // gjennomsnittet nøyaktig når den er høyere enn summen delt på tre og rundet ned.
+    if (sisteÅrslønn > Math.floorDiv(sumTreÅr, 3)) {
       if (sisteÅrslønn >= maksDagpengegrunnlag) {
         return Beregningsmetode.MAKS_ÅRLIG_DAGPENGERGRUNNLAG;
       }
@@ -157,12 +513,18 @@ public class DagpengerKalkulator {
   }
 
   /**
-   * Legger til en ny årslønn i registeret.
+   * Legger til en ny årslønn i registeret, eller retter årslønnen for et år som allerede finnes.
+   *
+   * <p>
+   * Tidligere beregnede verdier forkastes kun hvis årslønnen endrer de tre nyeste årene.
+   * </p>
    *
    * @param årslønn årslønnen som skal legges til i registeret.
    */
   public void leggTilÅrslønn(Årslønn årslønn) {
-    this.årslønner.put(årslønn.hentÅretForLønn(), årslønn);
+    if (this.årslønner.leggTil(årslønn.hentÅretForLønn(), årslønn.hentÅrslønnIØre())) {
+      this.avledet = null;
+    }
   }
 
   /**
@@ -177,11 +539,28 @@ public class DagpengerKalkulator {
     if (antallÅrÅSummere <= 0) {
       throw new IllegalArgumentException("Antall år å summere må være større enn 0.");
     }
-    return årslønner.values().stream()
-        .sorted(Comparator.comparing(Årslønn::hentÅretForLønn).reversed())
-        .limit(antallÅrÅSummere)
-        .mapToDouble(Årslønn::hentÅrslønn)
-        .sum();
+    return Øre.tilKroner(årslønner.summerNylige(antallÅrÅSummere));
   }
 
+  /**
+   * Verdiene som avledes fra siste årslønn og summen av de tre siste årslønnene, sammen med
+   * grunnbeløpet i øre de ble beregnet med.
+   */
+  static final class Avledet {
+
+    private final long grunnbeløp;
+    private final boolean harRett;
+    private final Beregningsmetode beregningsmetode;
+    private final long dagsats;
+    private final SaksbehandlerSpesialisering spesialisering;
+
+    private Avledet(long grunnbeløp, boolean harRett, Beregningsmetode beregningsmetode,
+        long dagsats, SaksbehandlerSpesialisering spesialisering) {
+      this.grunnbeløp = grunnbeløp;
+      this.harRett = harRett;
+      this.beregningsmetode = beregningsmetode;
+      this.dagsats = dagsats;
+      this.spesialisering = spesialisering;
+    }
+  }
 }
@@ -0,0 +1,236 @@
+package no.nav.dagpenger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mellomlagrer kalkulerte dagsatser, med siste årslønn, summen av de tre siste årslønnene og
+ * grunnbeløpet som nøkkel.
+ *
+ * <p>
+ * Kalkuleringen er bestemt av disse tre verdiene alene, så søkere med like inntekter de siste årene,
+ * for eksempel ansatte med fast lønn, kan dele det samme kalkulerte resultatet. Kalkulatoren lager
+ * likevel et nytt {@link no.nav.resultat.Resultat} for hver kalkulering, siden hvert resultat er en
+ * egen sak. Grunnbeløpet er en del av nøkkelen, så et nytt grunnbeløp gir aldri et gammelt
+ * resultat. Resultater for gamle grunnbeløp brukes ikke lenger, og blir kastet ut etter hvert.
+ * </p>
+ * <p>
+ * Mellomlageret har en fast største størrelse, og er delt i striper med hver sin lås og hvert sitt
+ * LRU-register, slik at tråder som slår opp ulike nøkler sjelden venter på hverandre. Når en stripe
+ * er full, kastes nøkkelen som er brukt minst nylig i den stripen ut.
+ * </p>
+ * <p>
+ * Mellomlageret er av som standard, og slås kun på med {@value #KAPASITET_EGENSKAP}. Med
+ * heltallsberegningen i {@link DagpengerKalkulator} er en kalkulering billigere enn et oppslag:
+ * <code>DagsatsCacheBenchmark</code> måler rundt 120–145 ns per søker med mellomlageret mot
+ * 75–95 ns uten. Det lønner seg først hvis reglene blir dyrere å beregne.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see DagpengerKalkulator#DagpengerKalkulator(no.nav.grunnbeløp.GrunnbeløpVerktøy,
+ * no.nav.resultat.ResultatKø, DagsatsCache)
+ */
+public final class DagsatsCache {
+
+  /**
+   * Systemegenskapen som setter kapasiteten til mellomlageret i {@link #fraSystemegenskap()}.
+   */
+  public static final String KAPASITET_EGENSKAP = "dagsatscache.kapasitet";
+
+  private static final int STANDARD_ANTALL_STRIPER = 16;
+
+  private final Stripe[] striper;
+  private final LongAdder treff = new LongAdder();
+  private final LongAdder bom = new LongAdder();
+  private final LongAdder utkastelser = new LongAdder();
+
+  /**
+   * Oppretter et mellomlager med gitt kapasitet, delt i 16 striper.
+   *
+   * @param kapasitet største antall resultater som lagres. Må være minst 16.
+   * @throws IllegalArgumentException hvis kapasiteten er for liten.
+   */
+  public DagsatsCache(int kapasitet) throws IllegalArgumentException {
+    this(kapasitet, STANDARD_ANTALL_STRIPER);
+  }
+
+  /**
+   * Oppretter et mellomlager med gitt kapasitet og antall striper.
+   *
+   * @param kapasitet     største antall resultater som lagres. Må være minst antall striper.
+   * @param antallStriper antall striper. Må være en potens av 2.
+   * @throws IllegalArgumentException hvis antall striper ikke er en potens av 2, eller kapasiteten
+   *                                  er mindre enn antall striper.
+   */
+  public DagsatsCache(int kapasitet, int antallStriper) throws IllegalArgumentException {
+    if (antallStriper <= 0 || Integer.bitCount(antallStriper) != 1) {
+      throw new IllegalArgumentException("Antall striper må være en potens av 2.");
+    }
+    if (kapasitet < antallStriper) {
+      throw new IllegalArgumentException("Kapasiteten må være minst like stor som antall striper.");
+    }
+    this.striper = new Stripe[antallStriper];
+    for (int i = 0; i < antallStriper; i++) {
+      striper[i] = new Stripe(kapasitet / antallStriper);
+    }
+  }
+
+  /**
+   * Oppretter et mellomlager med kapasiteten i systemegenskapen {@value #KAPASITET_EGENSKAP}.
+   *
+   * @return mellomlageret, eller <code>null</code> hvis egenskapen ikke er satt eller er 0.
+   * @throws IllegalArgumentException hvis egenskapen ikke er et gyldig tall.
+   */
+  public static DagsatsCache fraSystemegenskap() throws IllegalArgumentException {
+    int kapasitet = Integer.getInteger(KAPASITET_EGENSKAP, 0);
+    return kapasitet == 0 ? null : new DagsatsCache(kapasitet);
+  }
+
+  /**
+   * Henter et lagret resultat, eller kalkulerer og lagrer det hvis det mangler.
+   *
+   * <p>
+   * Kalkuleringen gjøres utenfor låsen. To tråder som bommer på samme nøkkel samtidig kan derfor
+   * begge kalkulere, men siden kalkuleringen gir samme svar for samme nøkkel, spiller det ingen
+   * rolle hvilket av resultatene som lagres.
+   * </p>
+   */
+  DagpengerKalkulator.Avledet hentEllerBeregn(long sisteÅrslønn, long sumTreÅr, long grunnbeløp,
+      DagpengerKalkulator kalkulator) {
+    Nøkkel nøkkel = new Nøkkel(sisteÅrslønn, sumTreÅr, grunnbeløp);
+    Stripe stripe = striper[nøkkel.hashCode() & (striper.length - 1)];
+    DagpengerKalkulator.Avledet avledet;
+    synchronized (stripe) {
+      avledet = stripe.get(nøkkel);
+    }
+    if (avledet != null) {
+      treff.increment();
+      return avledet;
+    }
+    bom.increment();
+    avledet = kalkulator.beregnAvledet(sisteÅrslønn, sumTreÅr);
+    synchronized (stripe) {
+      stripe.put(nøkkel, avledet);
+    }
+    return avledet;
+  }
+
+  /**
+   * Henter antall oppslag som fant et lagret resultat.
+   *
+   * @return antall treff.
+   */
+  public long hentTreff() {
+    return treff.sum();
+  }
+
+  /**
+   * Henter antall oppslag som måtte kalkulere resultatet.
+   *
+   * @return antall bom.
+   */
+  public long hentBom() {
+    return bom.sum();
+  }
+
+  /**
+   * Henter antall resultater som er kastet ut fordi mellomlageret var fullt.
+   *
+   * @return antall utkastelser.
+   */
+  public long hentUtkastelser() {
+    return utkastelser.sum();
+  }
+
+  /**
+   * Henter andelen av oppslagene som fant et lagret resultat.
+   *
+   * @return treffraten mellom 0 og 1, eller 0 hvis ingen oppslag er gjort.
+   */
+  public double hentTreffrate() {
+    long antallTreff = treff.sum();
+    long antallOppslag = antallTreff + bom.sum();
+    return antallOppslag == 0 ? 0 : (double) antallTreff / antallOppslag;
+  }
+
+  /**
+   * Henter antall resultater som er lagret nå.
+   *
+   * @return antall lagrede resultater.
+   */
+  public int hentStørrelse() {
+    int størrelse = 0;
+    for (Stripe stripe : striper) {
+      synchronized (stripe) {
+        størrelse += stripe.size();
+      }
+    }
+    return størrelse;
+  }
+
+  /**
+   * Fjerner alle lagrede resultater. Tellerne for treff, bom og utkastelser beholdes.
+   */
+  public void tøm() {
+    for (Stripe stripe : striper) {
+      synchronized (stripe) {
+        stripe.clear();
+      }
+    }
+  }
+
+  /**
+   * Én stripe med eget LRU-register, der hvert oppslag flytter nøkkelen bakerst.
+   */
+  private final class Stripe extends LinkedHashMap<Nøkkel, DagpengerKalkulator.Avledet> {
+
+    private final int kapasitet;
+
+    private Stripe(int kapasitet) {
+      super(16, 0.75f, true);
+      this.kapasitet = kapasitet;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Nøkkel, DagpengerKalkulator.Avledet> eldste) {
+      if (size() > kapasitet) {
+        utkastelser.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private static final class Nøkkel {
+
+    private final long sisteÅrslønn;
+    private final long sumTreÅr;
+    private final long grunnbeløp;
+
+    private Nøkkel(long sisteÅrslønn, long sumTreÅr, long grunnbeløp) {
+      this.sisteÅrslønn = sisteÅrslønn;
+      this.sumTreÅr = sumTreÅr;
+      this.grunnbeløp = grunnbeløp;
+    }
+
+    @Override
+    public boolean equals(Object objekt) {
+      if (!(objekt instanceof Nøkkel)) {
+        return false;
+      }
+      Nøkkel annen = (Nøkkel) objekt;
+      return sisteÅrslønn == annen.sisteÅrslønn && sumTreÅr == annen.sumTreÅr
+          && grunnbeløp == annen.grunnbeløp;
+    }
+
+    @Override
+    public int hashCode() {
+      long blandet = (sisteÅrslønn * 31 + sumTreÅr) * 31 + grunnbeløp;
+      // Blander de høye bitene inn i de lave, siden stripen velges med de laveste bitene.
+      blandet *= 0x9E3779B97F4A7C15L;
+      return (int) (blandet ^ (blandet >>> 32));
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package no.nav.dagpenger;
+
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+
+/**
+ * Kalkulerer dagsatser for et helt {@link Dagsatsparti} av gangen.
+ *
+ * <p>
+ * En kjerne gir nøyaktig de samme dagsatsene, bit for bit, som
+ * {@link DagpengerKalkulator#kalkulerDagsats(double, double)}. Kalkulatoren bruker vektorkjernen når
+ * modulen <code>jdk.incubator.vector</code> er tilgjengelig, og ellers den skalare kjernen.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see SkalarDagsatskjerne
+ * @see VektorDagsatskjerne
+ */
+interface Dagsatskjerne {
+
+  /**
+   * Den raskeste kjernen som er tilgjengelig i denne JVM-en.
+   */
+  Dagsatskjerne FORETRUKKET = velg();
+
+  /**
+   * Kalkulerer dagsats, beregningsmetode og spesialisering for personene i et utsnitt av partiet.
+   *
+   * @param grunnbeløpVerktøy verktøyet som gir grunnbeløpsverdiene til beregningene.
+   * @param parti             partiet som skal kalkuleres.
+   * @param fra               indeksen til første person som skal kalkuleres.
+   * @param til               indeksen etter siste person som skal kalkuleres.
+   */
+  void beregn(GrunnbeløpVerktøy grunnbeløpVerktøy, Dagsatsparti parti, int fra, int til);
+
+  private static Dagsatskjerne velg() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      try {
+        return new VektorDagsatskjerne();
+      } catch (LinkageError error) {
+        // Vektormodulen er ikke brukbar, og den skalare kjernen brukes i stedet.
+      }
+    }
+    return new SkalarDagsatskjerne();
+  }
+}
@@ -0,0 +1,152 @@
+package no.nav.dagpenger;
+
+import no.nav.beløp.Øre;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+
+/**
+ * Et parti med summerte årslønner for mange personer, og dagsatsene som kalkuleres for dem.
+ *
+ * <p>
+ * Verdiene lagres i primitive tabeller, én per felt, slik at et parti kan kalkuleres samlet uten
+ * objekter per person. Hver person legges til med sin siste årslønn og summen av de tre siste
+ * årslønnene, og får etter kalkulering en dagsats og en beregningsmetode. Spesialiseringen for
+ * resultatet følger av beregningsmetoden. Alle beløp lagres i hele øre.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see DagpengerKalkulator#kalkulerDagsatser(Dagsatsparti)
+ */
+public final class Dagsatsparti {
+
+  /**
+   * Koden for beregningsmetode når personen ikke har rett på dagpenger.
+   */
+  static final byte INGEN_RETT = -1;
+
+  /**
+   * Det høyeste beløpet i øre som kan legges til. Grensen gjør at kjernene kan regne med tre ganger
+   * et beløp uten overflyt.
+   */
+  static final long MAKS_BELØP_I_ØRE = Long.MAX_VALUE / 3;
+
+  private static final Beregningsmetode[] BEREGNINGSMETODER = Beregningsmetode.values();
+
+  final long[] sisteÅrslønner;
+  final long[] sumTreÅr;
+  final long[] dagsatser;
+  final byte[] beregningsmetoder;
+  final long[] grunnlagsbuffer;
+  final long[] kodebuffer;
+  private int antall;
+
+  /**
+   * Oppretter et tomt parti med plass til et gitt antall personer.
+   *
+   * @param kapasitet antall personer partiet har plass til. Må være større enn 0.
+   * @throws IllegalArgumentException hvis kapasiteten er negativ eller null (0).
+   */
+  public Dagsatsparti(int kapasitet) throws IllegalArgumentException {
+    if (kapasitet <= 0) {
+      throw new IllegalArgumentException("Kapasiteten må være større enn 0.");
+    }
+    this.sisteÅrslønner = new long[kapasitet];
+    this.sumTreÅr = new long[kapasitet];
+    this.dagsatser = new long[kapasitet];
+    this.beregningsmetoder = new byte[kapasitet];
+    this.grunnlagsbuffer = new long[kapasitet];
+    this.kodebuffer = new long[kapasitet];
+  }
+
+  /**
+   * Legger til en person i partiet.
+   *
+   * @param sisteÅrslønnIØre årslønnen for det siste året, i øre.
+   * @param sumTreÅrIØre     summen av årslønnene for de tre siste årene, i øre.
+   * @throws IllegalArgumentException hvis et av beløpene er negativt eller urimelig stort.
+   * @throws IllegalStateException    hvis partiet er fullt.
+   */
+  public void leggTil(long sisteÅrslønnIØre, long sumTreÅrIØre)
+      throws IllegalArgumentException, IllegalStateException {
+    if (antall == sisteÅrslønner.length) {
+      throw new IllegalStateException("Partiet er fullt.");
+    }
+    sjekkBeløp(sisteÅrslønnIØre);
+    sjekkBeløp(sumTreÅrIØre);
+    this.sisteÅrslønner[antall] = sisteÅrslønnIØre;
+    this.sumTreÅr[antall] = sumTreÅrIØre;
+    antall++;
+  }
+
+  /**
+   * Fjerner alle personer fra partiet, slik at det kan brukes på nytt.
+   */
+  public void tøm() {
+    antall = 0;
+  }
+
+  public int hentAntall() {
+    return antall;
+  }
+
+  /**
+   * Henter den kalkulerte dagsatsen for en person.
+   *
+   * @param indeks indeksen til personen i partiet.
+   * @return dagsatsen personen har rett på, eller 0 kr hvis personen ikke har rett på dagpenger.
+   */
+  public double hentDagsats(int indeks) {
+    return Øre.tilKroner(hentDagsatsIØre(indeks));
+  }
+
+  /**
+   * Henter den kalkulerte dagsatsen for en person i øre.
+   *
+   * @param indeks indeksen til personen i partiet.
+   * @return dagsatsen personen har rett på i øre, eller 0 hvis personen ikke har rett på dagpenger.
+   */
+  public long hentDagsatsIØre(int indeks) {
+    return dagsatser[sjekkIndeks(indeks)];
+  }
+
+  /**
+   * Henter beregningsmetoden som ble brukt for en person.
+   *
+   * @param indeks indeksen til personen i partiet.
+   * @return beregningsmetoden, eller <code>null</code> hvis personen ikke har rett på dagpenger.
+   */
+  public Beregningsmetode hentBeregningsmetode(int indeks) {
+    byte kode = beregningsmetoder[sjekkIndeks(indeks)];
+    return kode == INGEN_RETT ? null : BEREGNINGSMETODER[kode];
+  }
+
+  /**
+   * Henter spesialiseringen resultatet for en person skal behandles av.
+   *
+   * @param indeks indeksen til personen i partiet.
+   * @return spesialiseringen for personens resultat.
+   */
+  public SaksbehandlerSpesialisering hentSpesialisering(int indeks) {
+    Beregningsmetode beregningsmetode = hentBeregningsmetode(indeks);
+    if (beregningsmetode == null) {
+      return SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT;
+    }
+    if (beregningsmetode == Beregningsmetode.MAKS_ÅRLIG_DAGPENGERGRUNNLAG) {
+      return SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS;
+    }
+    return SaksbehandlerSpesialisering.INNVILGET;
+  }
+
+  private static void sjekkBeløp(long beløpIØre) {
+    if (beløpIØre < 0 || beløpIØre > MAKS_BELØP_I_ØRE) {
+      throw new IllegalArgumentException("Ugyldig beløp i øre: " + beløpIØre);
+    }
+  }
+
+  private int sjekkIndeks(int indeks) {
+    if (indeks < 0 || indeks >= antall) {
+      throw new IndexOutOfBoundsException("Ugyldig indeks i partiet: " + indeks);
+    }
+    return indeks;
+  }
+}
@@ -0,0 +1,50 @@
+package no.nav.dagpenger;
+
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+
+/**
+ * Kalkulerer dagsatser for ett og ett element i partiet, med de samme reglene og regneoperasjonene
+ * som {@link DagpengerKalkulator}.
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Dagsatskjerne
+ */
+final class SkalarDagsatskjerne implements Dagsatskjerne {
+
+  @Override
+  public void beregn(GrunnbeløpVerktøy grunnbeløpVerktøy, Dagsatsparti parti, int fra, int til) {
+    long treG = grunnbeløpVerktøy.hentTotaltGrunnbeløpForGittAntallÅrIØre(3);
+    long halvannenG = grunnbeløpVerktøy.hentMinimumÅrslønnForRettPåDagpengerIØre();
+    long seksG = grunnbeløpVerktøy.hentMaksÅrligDagpengegrunnlagIØre();
+
+    for (int i = fra; i < til; i++) {
+      long sisteÅrslønn = parti.sisteÅrslønner[i];
+      long sumTreÅr = parti.sumTreÅr[i];
+
+      if (sumTreÅr >= treG || sisteÅrslønn >= halvannenG) {
+        if (3 * sisteÅrslønn > sumTreÅr) {
+          if (sisteÅrslønn >= seksG) {
+            sett(parti, i, DagpengerKalkulator.beregnDagsats(seksG, 1),
+                Beregningsmetode.MAKS_ÅRLIG_DAGPENGERGRUNNLAG);
+          } else {
+            sett(parti, i, DagpengerKalkulator.beregnDagsats(sisteÅrslønn, 1),
+                Beregningsmetode.SISTE_ÅRSLØNN);
+          }
+        } else {
+          sett(parti, i, DagpengerKalkulator.beregnDagsats(sumTreÅr, 3),
+              Beregningsmetode.GJENNOMSNITTET_AV_TRE_ÅR);
+        }
+      } else {
+        sett(parti, i, 0, null);
+      }
+    }
+  }
+
+  private static void sett(Dagsatsparti parti, int i, long dagsats,
+      Beregningsmetode beregningsmetode) {
+    parti.dagsatser[i] = dagsats;
+    parti.beregningsmetoder[i] =
+        beregningsmetode == null ? Dagsatsparti.INGEN_RETT : (byte) beregningsmetode.ordinal();
+  }
+}
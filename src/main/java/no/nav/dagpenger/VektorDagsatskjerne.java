@@ -0,0 +1,76 @@
+package no.nav.dagpenger;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import no.nav.beløp.Øre;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+
+/**
+ * Kalkulerer dagsatser for mange elementer i partiet samtidig, med SIMD-instruksjoner via
+ * <code>jdk.incubator.vector</code>.
+ *
+ * <p>
+ * Alle valgene i kalkuleringen gjøres med masker i stedet for forgreninger. Vektor-API-et har ingen
+ * rask heltallsdivisjon, så vektorene velger kun grunnlaget og beregningsmetoden, og lagrer dem i
+ * partiets buffere. Grunnlaget for siste årslønn og maks dagpengegrunnlag ganges med tre, slik at
+ * alle grunnlagene kan deles på det samme tallet i en egen løkke, der divisjonen med en konstant
+ * blir til en multiplikasjon. Elementene som ikke fyller en hel vektor kalkuleres av den skalare
+ * kjernen.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Dagsatskjerne
+ */
+final class VektorDagsatskjerne implements Dagsatskjerne {
+
+  private static final VectorSpecies<Long> ART = LongVector.SPECIES_PREFERRED;
+  private static final long DELER = 3L * DagpengerKalkulator.ARBEIDSDAGER_I_ÅRET;
+
+  private static final long SISTE_ÅRSLØNN = Beregningsmetode.SISTE_ÅRSLØNN.ordinal();
+  private static final long GJENNOMSNITTET_AV_TRE_ÅR =
+      Beregningsmetode.GJENNOMSNITTET_AV_TRE_ÅR.ordinal();
+  private static final long MAKS_ÅRLIG_DAGPENGERGRUNNLAG =
+      Beregningsmetode.MAKS_ÅRLIG_DAGPENGERGRUNNLAG.ordinal();
+
+  private final SkalarDagsatskjerne rest = new SkalarDagsatskjerne();
+
+  @Override
+  public void beregn(GrunnbeløpVerktøy grunnbeløpVerktøy, Dagsatsparti parti, int fra, int til) {
+    long treG = grunnbeløpVerktøy.hentTotaltGrunnbeløpForGittAntallÅrIØre(3);
+    long halvannenG = grunnbeløpVerktøy.hentMinimumÅrslønnForRettPåDagpengerIØre();
+    long seksG = grunnbeløpVerktøy.hentMaksÅrligDagpengegrunnlagIØre();
+
+    int grense = fra + ART.loopBound(til - fra);
+    for (int i = fra; i < grense; i += ART.length()) {
+      LongVector sisteÅrslønn = LongVector.fromArray(ART, parti.sisteÅrslønner, i);
+      LongVector sumTreÅr = LongVector.fromArray(ART, parti.sumTreÅr, i);
+
+      VectorMask<Long> ingenRett = sumTreÅr.compare(VectorOperators.GE, treG)
+          .or(sisteÅrslønn.compare(VectorOperators.GE, halvannenG))
+          .not();
+      LongVector treGangerSiste = sisteÅrslønn.mul(3);
+      VectorMask<Long> sisteErHøyest = treGangerSiste.compare(VectorOperators.GT, sumTreÅr);
+      VectorMask<Long> maks = sisteErHøyest.and(
+          sisteÅrslønn.compare(VectorOperators.GE, seksG));
+
+      sumTreÅr.blend(treGangerSiste, sisteErHøyest)
+          .blend(3 * seksG, maks)
+          .blend(0, ingenRett)
+          .intoArray(parti.grunnlagsbuffer, i);
+
+      LongVector.broadcast(ART, GJENNOMSNITTET_AV_TRE_ÅR)
+          .blend(SISTE_ÅRSLØNN, sisteErHøyest)
+          .blend(MAKS_ÅRLIG_DAGPENGERGRUNNLAG, maks)
+          .blend(Dagsatsparti.INGEN_RETT, ingenRett)
+          .intoArray(parti.kodebuffer, i);
+    }
+    for (int i = fra; i < grense; i++) {
+      parti.dagsatser[i] = Øre.delOgRundOppTilHeleKroner(parti.grunnlagsbuffer[i], DELER);
+      parti.beregningsmetoder[i] = (byte) parti.kodebuffer[i];
+    }
+    rest.beregn(grunnbeløpVerktøy, parti, grense, til);
+  }
+}
@@ -0,0 +1,108 @@
+package no.nav.dagpenger;
+
+import java.util.Arrays;
+
+/**
+ * Register over en persons årslønner, lagret som primitive verdier i øre sortert på år.
+ *
+ * <p>
+ * Årene holdes i synkende rekkefølge, slik at de nyeste årslønnene alltid ligger først. Summering av
+ * de siste årene krever dermed verken sortering eller nye objekter. Et nytt beløp for et år som
+ * allerede finnes erstatter det gamle beløpet.
+ * </p>
+ * <p>
+ * Siste årslønn og summen av de tre nyeste årslønnene, som er vinduet kalkulatoren bruker, holdes
+ * oppdatert ved hver endring. Endringer utenfor vinduet påvirker dem ikke, og
+ * {@link #leggTil(int, long)} sier fra om vinduet ble endret, slik at avledede verdier kun trenger å
+ * beregnes på nytt når det er nødvendig.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see DagpengerKalkulator
+ */
+final class ÅrslønnRegister {
+
+  /**
+   * Antall nyeste år som inngår i vinduet.
+   */
+  static final int VINDU = 3;
+
+  private static final int STARTKAPASITET = 4;
+
+  private int[] år = new int[STARTKAPASITET];
+  private long[] beløp = new long[STARTKAPASITET];
+  private int antall;
+  private long sisteÅrslønn;
+  private long sumVindu;
+
+  /**
+   * Legger til eller erstatter årslønnen for et gitt år.
+   *
+   * @param åretForLønn året som lønnen tilhører.
+   * @param årslønnIØre lønnen for det gitte året, i øre.
+   * @return <code>true</code> hvis beløpene i vinduet med de tre nyeste årene ble endret.
+   */
+  boolean leggTil(int åretForLønn, long årslønnIØre) {
+    int indeks = 0;
+    while (indeks < antall && år[indeks] > åretForLønn) {
+      indeks++;
+    }
+    if (indeks < antall && år[indeks] == åretForLønn) {
+      if (beløp[indeks] == årslønnIØre) {
+        return false;
+      }
+      beløp[indeks] = årslønnIØre;
+      return oppdaterVindu(indeks);
+    }
+
+    if (antall == år.length) {
+      år = Arrays.copyOf(år, antall * 2);
+      beløp = Arrays.copyOf(beløp, antall * 2);
+    }
+    System.arraycopy(år, indeks, år, indeks + 1, antall - indeks);
+    System.arraycopy(beløp, indeks, beløp, indeks + 1, antall - indeks);
+    år[indeks] = åretForLønn;
+    beløp[indeks] = årslønnIØre;
+    antall++;
+    return oppdaterVindu(indeks);
+  }
+
+  private boolean oppdaterVindu(int endretIndeks) {
+    if (endretIndeks >= VINDU) {
+      return false;
+    }
+    sisteÅrslønn = beløp[0];
+    sumVindu = summer(VINDU);
+    return true;
+  }
+
+  /**
+   * Summerer de nyeste årslønnene. Finnes det færre årslønner enn etterspurt, summeres alle.
+   *
+   * @param antallÅr antall år som skal summeres.
+   * @return summen av de nyeste årslønnene, i øre.
+   */
+  long summerNylige(int antallÅr) {
+    if (antallÅr == 1) {
+      return sisteÅrslønn;
+    }
+    if (antallÅr == VINDU) {
+      return sumVindu;
+    }
+    return summer(antallÅr);
+  }
+
+  private long summer(int antallÅr) {
+    int grense = Math.min(antallÅr, antall);
+    long sum = 0;
+    for (int i = 0; i < grense; i++) {
+      sum += beløp[i];
+    }
+    return sum;
+  }
+
+  boolean erTomt() {
+    return antall == 0;
+  }
+}
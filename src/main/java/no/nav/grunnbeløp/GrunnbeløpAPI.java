@@ -6,22 +6,117 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import jdk.jfr.FlightRecorder;
+import no.nav.metrikk.GrunnbeløphentingHendelse;
+import no.nav.metrikk.Metrikker;
 import org.json.JSONObject;
 
 /**
  * Har ansvaret for å kontakte grunnbeløp API'et til NAV og henter dagens grunnbeløp.
  *
+ * <p>
+ * Forespørselen bygges én gang, og alle klienter med standard tilkoblingstid deler samme
+ * <code>HttpClient</code>. Samtidige hentinger slås sammen til én forespørsel mot API'et. Svarer ikke
+ * API'et innen en gitt forsinkelse, sendes én ekstra forespørsel, og det første svaret brukes.
+ * Feiler den første forespørselen før det, sendes den ekstra forespørselen med en gang. Tiden og
+ * utfallet av hver forespørsel registreres i {@link Metrikker#felles()}, og sendes som en
+ * {@link GrunnbeløphentingHendelse} til JFR når JFR er i gang og hendelsen er slått på.
+ * </p>
+ *
+ * <p>
+ * Både den felles <code>HttpClient</code> og <code>.env</code> lastes først når de trengs, siden de
+ * står for mesteparten av oppstartstiden til en kort kjøring.
+ * </p>
+ *
  * @author Emil Elton Nilsen
- * @version 1.0
+ * @version 1.5
+ * @see GrunnbeløpKilde
  */
-public class GrunnbeløpAPI {
+public class GrunnbeløpAPI implements GrunnbeløpKilde {
 
-  private final static Dotenv DOTENV = Dotenv.load();
+  private static final Duration STANDARD_TILKOBLINGSTID = Duration.ofSeconds(2);
+  private static final Duration STANDARD_SVARTID = Duration.ofSeconds(5);
+  private static final Duration STANDARD_EKSTRAFORSINKELSE = Duration.ofSeconds(1);
+  private static final int MAKS_ANTALL_FORESPØRSLER = 2;
 
   private final HttpClient grunnbeløpHTTPKlient;
+  private final HttpRequest grunnbeløpSpørring;
+  private final Duration ekstraforsinkelse;
+  private final AtomicReference<CompletableFuture<Double>> pågåendeHenting =
+      new AtomicReference<>();
+
+  /**
+   * Oppretter en klient mot grunnbeløp API'et som er konfigurert med <code>G_API_URL</code>, enten
+   * som miljøvariabel eller i <code>.env</code>.
+   *
+   * @throws IllegalStateException hvis <code>G_API_URL</code> ikke er satt.
+   */
+  public GrunnbeløpAPI() throws IllegalStateException {
+    this(URI.create(hentKonfigurertAdresse()));
+  }
+
+  /**
+   * Oppretter en klient mot et grunnbeløp API på gitt adresse, med standard tidsgrenser.
+   *
+   * @param grunnbeløpURI adressen til grunnbeløp API'et.
+   */
+  public GrunnbeløpAPI(URI grunnbeløpURI) {
+    this(FellesKlient.HTTP_KLIENT, grunnbeløpURI, STANDARD_SVARTID, STANDARD_EKSTRAFORSINKELSE);
+  }
 
-  public GrunnbeløpAPI() {
-    this.grunnbeløpHTTPKlient = HttpClient.newHttpClient();
+  /**
+   * Oppretter en klient mot et grunnbeløp API på gitt adresse, med egne tidsgrenser.
+   *
+   * @param grunnbeløpURI     adressen til grunnbeløp API'et.
+   * @param tilkoblingstid    hvor lenge det kan ta å koble til API'et.
+   * @param svartid           hvor lenge det kan ta før API'et svarer på en forespørsel.
+   * @param ekstraforsinkelse hvor lenge det ventes på svar før en ekstra forespørsel sendes.
+   */
+  public GrunnbeløpAPI(URI grunnbeløpURI, Duration tilkoblingstid, Duration svartid,
+      Duration ekstraforsinkelse) {
+    this(HttpClient.newBuilder().connectTimeout(tilkoblingstid).build(), grunnbeløpURI, svartid,
+        ekstraforsinkelse);
+  }
+
+  private GrunnbeløpAPI(HttpClient grunnbeløpHTTPKlient, URI grunnbeløpURI, Duration svartid,
+      Duration ekstraforsinkelse) {
+    this.grunnbeløpHTTPKlient = grunnbeløpHTTPKlient;
+    this.grunnbeløpSpørring = HttpRequest.newBuilder(grunnbeløpURI).timeout(svartid).build();
+    this.ekstraforsinkelse = ekstraforsinkelse;
+  }
+
+  /**
+   * Lager en kilde som henter grunnbeløpet fra API'et som er konfigurert med <code>G_API_URL</code>.
+   *
+   * <p>
+   * Verken konfigurasjonen eller klienten lastes før grunnbeløpet hentes første gang, slik at en
+   * prosess som aldri trenger å kontakte API'et heller ikke betaler for dem ved oppstart. Mangler
+   * konfigurasjonen, feiler hentingen med en {@link IOException}.
+   * </p>
+   *
+   * @return kilden.
+   */
+  public static GrunnbeløpKilde konfigurert() {
+    AtomicReference<GrunnbeløpAPI> klient = new AtomicReference<>();
+    return () -> {
+      GrunnbeløpAPI api = klient.get();
+      if (api == null) {
+        if (Konfigurasjon.G_API_URL == null) {
+          throw new IOException("G_API_URL er ikke satt.");
+        }
+        klient.compareAndSet(null, new GrunnbeløpAPI());
+        api = klient.get();
+      }
+      return api.hentGrunnbeløp();
+    };
   }
 
   /**
@@ -30,16 +125,126 @@ public class GrunnbeløpAPI {
    * fra JSON objektet.
    *
    * @return dagens grunnbeløp.
-   * @throws IOException
-   * @throws InterruptedException
+   * @throws IOException          hvis API'et ikke svarer, eller svarer med en feil.
+   * @throws InterruptedException hvis tråden blir avbrutt mens den venter på svar.
+   * @see #hentGrunnbeløpAsynkront()
    */
+  @Override
   public double hentGrunnbeløp() throws IOException, InterruptedException {
-    HttpRequest grunnbeløpSpørring = HttpRequest.newBuilder(URI.create(DOTENV.get("G_API_URL")))
-        .build();
+    try {
+      return hentGrunnbeløpAsynkront().get();
+    } catch (ExecutionException exception) {
+      Throwable årsak = exception.getCause();
+      if (årsak instanceof IOException) {
+        throw (IOException) årsak;
+      }
+      throw new IOException("Kunne ikke hente grunnbeløpet.", årsak);
+    }
+  }
+
+  /**
+   * Henter dagens grunnbeløp uten å blokkere tråden.
+   *
+   * <p>
+   * Pågår det allerede en henting, returneres den samme hentingen, slik at samtidige kall kun gir én
+   * forespørsel mot API'et. Hver kaller får sin egen kopi av hentingen, slik at én kaller som avbryter
+   * ikke påvirker de andre.
+   * </p>
+   *
+   * @return en fremtidig verdi med dagens grunnbeløp.
+   */
+  public CompletableFuture<Double> hentGrunnbeløpAsynkront() {
+    CompletableFuture<Double> henting = pågåendeHenting.get();
+    if (henting != null) {
+      return henting.copy();
+    }
+
+    CompletableFuture<Double> nyHenting = new CompletableFuture<>();
+    if (!pågåendeHenting.compareAndSet(null, nyHenting)) {
+      return hentGrunnbeløpAsynkront();
+    }
+
+    AtomicInteger antallSendt = new AtomicInteger(1);
+    AtomicInteger antallFeilet = new AtomicInteger();
+    send(nyHenting, antallSendt, antallFeilet);
+    CompletableFuture.delayedExecutor(ekstraforsinkelse.toNanos(), TimeUnit.NANOSECONDS)
+        .execute(() -> {
+          if (!nyHenting.isDone() && antallSendt.compareAndSet(1, MAKS_ANTALL_FORESPØRSLER)) {
+            send(nyHenting, antallSendt, antallFeilet);
+          }
+        });
+    return nyHenting.copy();
+  }
+
+  private void send(CompletableFuture<Double> henting, AtomicInteger antallSendt,
+      AtomicInteger antallFeilet) {
+    long start = System.nanoTime();
+    // Hendelsesklassen lastes ikke før JFR er i gang, siden den første hendelsesklassen tar lang tid
+    // å laste.
+    GrunnbeløphentingHendelse hendelse =
+        FlightRecorder.isInitialized() ? new GrunnbeløphentingHendelse() : null;
+    if (hendelse != null) {
+      hendelse.begin();
+    }
+    grunnbeløpHTTPKlient.sendAsync(grunnbeløpSpørring, HttpResponse.BodyHandlers.ofString())
+        .thenApply(respons -> lesGrunnbeløp(respons, hendelse))
+        .whenComplete((grunnbeløp, feil) -> {
+          Metrikker.felles().registrerGrunnbeløphenting(System.nanoTime() - start, feil != null);
+          if (hendelse != null && hendelse.shouldCommit()) {
+            hendelse.registrerFeil(feil instanceof CompletionException ? feil.getCause() : feil);
+            hendelse.commit();
+          }
+          if (feil == null) {
+            // Hentingen fjernes før den fullføres, slik at kallere som ser svaret starter en ny.
+            pågåendeHenting.compareAndSet(henting, null);
+            henting.complete(grunnbeløp);
+            return;
+          }
+          int feilet = antallFeilet.incrementAndGet();
+          if (feilet == 1 && antallSendt.compareAndSet(1, MAKS_ANTALL_FORESPØRSLER)) {
+            send(henting, antallSendt, antallFeilet);
+          } else if (feilet == MAKS_ANTALL_FORESPØRSLER) {
+            pågåendeHenting.compareAndSet(henting, null);
+            henting.completeExceptionally(
+                feil instanceof CompletionException ? feil.getCause() : feil);
+          }
+        });
+  }
 
-    HttpResponse<String> grunnbeløpRespons = this.grunnbeløpHTTPKlient.send(grunnbeløpSpørring,
-        HttpResponse.BodyHandlers.ofString());
+  private static String hentKonfigurertAdresse() throws IllegalStateException {
+    if (Konfigurasjon.G_API_URL == null) {
+      throw new IllegalStateException("G_API_URL er ikke satt.");
+    }
+    return Konfigurasjon.G_API_URL;
+  }
 
+  private static double lesGrunnbeløp(HttpResponse<String> grunnbeløpRespons,
+      GrunnbeløphentingHendelse hendelse) {
+    if (hendelse != null && hendelse.isEnabled()) {
+      hendelse.registrerSvar(grunnbeløpRespons.statusCode(),
+          grunnbeløpRespons.body().getBytes(StandardCharsets.UTF_8).length);
+    }
+    if (grunnbeløpRespons.statusCode() != 200) {
+      throw new CompletionException(new IOException(
+          "Grunnbeløp API'et svarte med statuskode " + grunnbeløpRespons.statusCode() + "."));
+    }
     return new JSONObject(grunnbeløpRespons.body()).getDouble("grunnbeløp");
   }
+
+  /**
+   * Leser <code>.env</code> først når adressen til API'et trengs. Mangler filen, brukes kun
+   * miljøvariablene.
+   */
+  private static final class Konfigurasjon {
+
+    private static final String G_API_URL =
+        Dotenv.configure().ignoreIfMissing().load().get("G_API_URL");
+  }
+
+  private static final class FellesKlient {
+
+    private static final HttpClient HTTP_KLIENT = HttpClient.newBuilder()
+        .connectTimeout(STANDARD_TILKOBLINGSTID)
+        .build();
+  }
 }
@@ -0,0 +1,347 @@
+package no.nav.grunnbeløp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Mellomlagrer grunnbeløpet fra en {@link GrunnbeløpKilde}, slik at kilden ikke kontaktes for hver
+ * beregning.
+ *
+ * <p>
+ * Et hentet grunnbeløp er gyldig i en konfigurerbar levetid. Når en gitt andel av levetiden har
+ * gått, startes en oppfriskning i bakgrunnen mens det gjeldende grunnbeløpet fortsatt returneres.
+ * Er levetiden ute, hentes grunnbeløpet på nytt før det returneres. Feiler hentingen, returneres det
+ * sist kjente grunnbeløpet i stedet for en feil.
+ * </p>
+ *
+ * <p>
+ * Kun én tråd henter fra kilden av gangen. Andre tråder venter på den samme hentingen, eller får det
+ * sist kjente grunnbeløpet dersom det finnes.
+ * </p>
+ *
+ * <p>
+ * Med en lagringsfil lagres hvert hentet grunnbeløp i filen, og det sist lagrede grunnbeløpet leses
+ * når mellomlagringen opprettes. En ny prosess kan dermed kalkulere med en gang, uten å vente på
+ * kilden. Et lagret grunnbeløp som er eldre enn levetiden brukes mens det friskes opp i bakgrunnen.
+ * Har en regulering 1. mai trådt i kraft siden det ble hentet, er det utdatert, og hentes på nytt før
+ * det brukes, med det lagrede som reserve hvis kilden feiler.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.3
+ * @see GrunnbeløpKilde
+ * @see GrunnbeløpVerktøy
+ */
+public class GrunnbeløpCache implements GrunnbeløpKilde {
+
+  /**
+   * Systemegenskapen med filen {@link #felles()} lagrer grunnbeløpet i.
+   */
+  public static final String LAGRINGSFIL_EGENSKAP = "grunnbeløp.lagringsfil";
+
+  /**
+   * Systemegenskapen med levetiden til grunnbeløpet i {@link #felles()}.
+   */
+  public static final String LEVETID_EGENSKAP = "grunnbeløp.levetid";
+
+  private static final Duration STANDARD_LEVETID = Duration.ofHours(1);
+  private static final double STANDARD_OPPFRISKINGSANDEL = 0.8;
+
+  private final GrunnbeløpKilde kilde;
+  private final Path lagringsfil;
+  private final long levetidNanos;
+  private final long oppfriskEtterNanos;
+  private final LongSupplier klokke;
+  private final Executor bakgrunnsutfører;
+  private final AtomicBoolean oppfriskningPågår = new AtomicBoolean();
+  private final Object hentelås = new Object();
+
+  private volatile Grunnbeløp gjeldende;
+
+  /**
+   * Oppretter en mellomlagring med gitt levetid. Oppfriskning i bakgrunnen starter når 80% av
+   * levetiden har gått.
+   *
+   * @param kilde   kilden grunnbeløpet hentes fra.
+   * @param levetid hvor lenge et hentet grunnbeløp er gyldig. Må være positiv.
+   * @throws IllegalArgumentException hvis levetiden ikke er positiv.
+   */
+  public GrunnbeløpCache(GrunnbeløpKilde kilde, Duration levetid) throws IllegalArgumentException {
+    this(kilde, levetid, null);
+  }
+
+  /**
+   * Oppretter en mellomlagring med gitt levetid, som lagrer grunnbeløpet i en fil og starter med det
+   * sist lagrede grunnbeløpet.
+   *
+   * @param kilde       kilden grunnbeløpet hentes fra.
+   * @param levetid     hvor lenge et hentet grunnbeløp er gyldig. Må være positiv.
+   * @param lagringsfil filen grunnbeløpet lagres i, eller <code>null</code> for ingen lagring.
+   * @throws IllegalArgumentException hvis levetiden ikke er positiv.
+   */
+  public GrunnbeløpCache(GrunnbeløpKilde kilde, Duration levetid, Path lagringsfil)
+      throws IllegalArgumentException {
+    this(kilde, levetid, STANDARD_OPPFRISKINGSANDEL, System::nanoTime, lagBakgrunnsutfører(),
+        lagringsfil);
+  }
+
+  GrunnbeløpCache(GrunnbeløpKilde kilde, Duration levetid, double oppfriskingsandel,
+      LongSupplier klokke, Executor bakgrunnsutfører) {
+    this(kilde, levetid, oppfriskingsandel, klokke, bakgrunnsutfører, null);
+  }
+
+  GrunnbeløpCache(GrunnbeløpKilde kilde, Duration levetid, double oppfriskingsandel,
+      LongSupplier klokke, Executor bakgrunnsutfører, Path lagringsfil) {
+    if (levetid.isNegative() || levetid.isZero()) {
+      throw new IllegalArgumentException("Levetiden til grunnbeløpet må være positiv.");
+    }
+    if (oppfriskingsandel <= 0 || oppfriskingsandel > 1) {
+      throw new IllegalArgumentException("Oppfriskingsandelen må være mellom 0 og 1.");
+    }
+    this.kilde = kilde;
+    this.levetidNanos = levetid.toNanos();
+    this.oppfriskEtterNanos = (long) (levetidNanos * oppfriskingsandel);
+    this.klokke = klokke;
+    this.bakgrunnsutfører = bakgrunnsutfører;
+    this.lagringsfil = lagringsfil;
+    this.gjeldende = lesLagret();
+  }
+
+  /**
+   * Henter den felles mellomlagringen for prosessen, som ligger foran NAVs grunnbeløp API.
+   *
+   * <p>
+   * Levetiden kan settes med systemegenskapen {@value #LEVETID_EGENSKAP} som en ISO-8601
+   * varighet, for eksempel <code>PT30M</code>. Standard levetid er én time, som også brukes hvis
+   * egenskapen ikke er en gyldig, positiv varighet. Grunnbeløpet lagres kun
+   * hvis systemegenskapen {@value #LAGRINGSFIL_EGENSKAP} er satt til en fil. Uten egenskapen, eller
+   * med en tom verdi, skrives ingenting til disken.
+   * </p>
+   *
+   * @return den felles mellomlagringen.
+   */
+  public static GrunnbeløpCache felles() {
+    return FellesHolder.FELLES;
+  }
+
+  /**
+   * Henter grunnbeløpet fra mellomlagringen, og fra kilden ved behov.
+   *
+   * @return gjeldende grunnbeløp.
+   * @throws IOException          hvis grunnbeløpet aldri har blitt hentet og kilden feiler.
+   * @throws InterruptedException hvis tråden blir avbrutt mens grunnbeløpet hentes.
+   */
+  @Override
+  public double hentGrunnbeløp() throws IOException, InterruptedException {
+    Grunnbeløp grunnbeløp = gjeldende;
+    if (grunnbeløp == null) {
+      return hentFraKilde(null).verdi;
+    }
+
+    long alder = klokke.getAsLong() - grunnbeløp.hentetNanos;
+    if (alder >= levetidNanos) {
+      return hentFraKilde(grunnbeløp).verdi;
+    }
+    if (alder >= oppfriskEtterNanos) {
+      oppfriskIBakgrunnen();
+    }
+    return grunnbeløp.verdi;
+  }
+
+  /**
+   * Henter grunnbeløpet fra kilden, med mindre en annen tråd allerede har gjort det mens denne
+   * tråden ventet. Feiler kilden, returneres det utløpte grunnbeløpet dersom det finnes.
+   */
+  private Grunnbeløp hentFraKilde(Grunnbeløp utløpt) throws IOException, InterruptedException {
+    synchronized (hentelås) {
+      Grunnbeløp grunnbeløp = gjeldende;
+      if (grunnbeløp != utløpt) {
+        return grunnbeløp;
+      }
+      try {
+        return oppdater();
+      } catch (IOException exception) {
+        if (utløpt == null) {
+          throw exception;
+        }
+        System.out.println("Problemer med oppfriskning av grunnbeløpet, bruker sist kjente "
+            + "grunnbeløp: " + exception.getMessage());
+        // Det sist kjente grunnbeløpet brukes videre mens kilden prøves på nytt i bakgrunnen.
+        Grunnbeløp foreldet = new Grunnbeløp(utløpt.verdi,
+            klokke.getAsLong() - oppfriskEtterNanos);
+        gjeldende = foreldet;
+        return foreldet;
+      }
+    }
+  }
+
+  private void oppfriskIBakgrunnen() {
+    if (!oppfriskningPågår.compareAndSet(false, true)) {
+      return;
+    }
+    bakgrunnsutfører.execute(() -> {
+      try {
+        synchronized (hentelås) {
+          oppdater();
+        }
+      } catch (IOException exception) {
+        System.out.println("Problemer med oppfriskning av grunnbeløpet: " + exception.getMessage());
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      } finally {
+        oppfriskningPågår.set(false);
+      }
+    });
+  }
+
+  private Grunnbeløp oppdater() throws IOException, InterruptedException {
+    Grunnbeløp grunnbeløp = new Grunnbeløp(kilde.hentGrunnbeløp(), klokke.getAsLong());
+    gjeldende = grunnbeløp;
+    lagre(grunnbeløp.verdi);
+    return grunnbeløp;
+  }
+
+  /**
+   * Leser det lagrede grunnbeløpet, med en alder som gjør at det friskes opp i bakgrunnen hvis det er
+   * eldre enn tiden før oppfriskning, og hentes på nytt før bruk hvis en regulering har trådt i kraft
+   * siden det ble hentet.
+   *
+   * <p>
+   * Filen har grunnbeløpet, når det ble hentet og når neste regulering trer i kraft, slik at den kan
+   * leses uten å laste tidssonene. Lesingen gjøres ved oppstart, og tidssonene står ellers for
+   * mesteparten av tiden.
+   * </p>
+   */
+  private Grunnbeløp lesLagret() {
+    if (lagringsfil == null || !Files.isRegularFile(lagringsfil)) {
+      return null;
+    }
+    try {
+      String innhold = Files.readString(lagringsfil).trim();
+      int første = innhold.indexOf(' ');
+      int andre = innhold.indexOf(' ', første + 1);
+      double verdi = Double.parseDouble(innhold.substring(0, første));
+      long hentetMillis = Long.parseLong(innhold.substring(første + 1, andre));
+      long nesteReguleringMillis = Long.parseLong(innhold.substring(andre + 1));
+      if (!(verdi > 0)) {
+        return null;
+      }
+
+      long nåMillis = System.currentTimeMillis();
+      long nå = klokke.getAsLong();
+      if (nåMillis >= nesteReguleringMillis) {
+        return new Grunnbeløp(verdi, nå - levetidNanos);
+      }
+      long alderNanos = Math.max(0, nåMillis - hentetMillis) * 1_000_000;
+      return new Grunnbeløp(verdi, nå - Math.min(alderNanos, oppfriskEtterNanos));
+    } catch (IOException | RuntimeException exception) {
+      System.out.println("Kunne ikke lese lagret grunnbeløp: " + exception.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Lagrer grunnbeløpet i lagringsfilen. Filen skrives ferdig ved siden av og flyttes på plass, slik
+   * at en annen prosess aldri leser en halvskrevet fil.
+   */
+  private void lagre(double verdi) {
+    if (lagringsfil == null) {
+      return;
+    }
+    try {
+      long nesteRegulering = hentNesteRegulering(LocalDate.now())
+          .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+      Path midlertidig = lagringsfil.resolveSibling(lagringsfil.getFileName() + ".ny");
+      Files.writeString(midlertidig,
+          verdi + " " + System.currentTimeMillis() + " " + nesteRegulering);
+      Files.move(midlertidig, lagringsfil, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException exception) {
+      System.out.println("Kunne ikke lagre grunnbeløpet: " + exception.getMessage());
+    }
+  }
+
+  /**
+   * Leser lagringsfilen fra systemegenskapen {@value #LAGRINGSFIL_EGENSKAP}.
+   *
+   * @return lagringsfilen, eller <code>null</code> hvis egenskapen ikke er satt, er tom eller er
+   * ugyldig.
+   */
+  static Path lesLagringsfil() {
+    String lagringsfil = System.getProperty(LAGRINGSFIL_EGENSKAP);
+    if (lagringsfil == null || lagringsfil.isEmpty()) {
+      return null;
+    }
+    try {
+      return Path.of(lagringsfil);
+    } catch (InvalidPathException exception) {
+      System.out.println("Ugyldig lagringsfil for grunnbeløpet: " + exception.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Leser levetiden fra systemegenskapen {@value #LEVETID_EGENSKAP}.
+   *
+   * @return levetiden, eller standard levetid hvis egenskapen ikke er satt, ikke kan leses eller
+   * ikke er positiv.
+   */
+  static Duration lesLevetid() {
+    String levetid = System.getProperty(LEVETID_EGENSKAP);
+    if (levetid == null) {
+      return STANDARD_LEVETID;
+    }
+    try {
+      Duration varighet = Duration.parse(levetid);
+      if (!varighet.isNegative() && !varighet.isZero()) {
+        return varighet;
+      }
+      System.out.println("Levetiden til grunnbeløpet må være positiv: " + levetid);
+    } catch (DateTimeParseException exception) {
+      System.out.println("Ugyldig levetid for grunnbeløpet: " + exception.getMessage());
+    }
+    return STANDARD_LEVETID;
+  }
+
+  static LocalDate hentNesteRegulering(LocalDate dato) {
+    LocalDate regulering = LocalDate.of(dato.getYear(), Grunnbeløpshistorikk.REGULERINGSMÅNED, 1);
+    return dato.isBefore(regulering) ? regulering : regulering.plusYears(1);
+  }
+
+  private static ExecutorService lagBakgrunnsutfører() {
+    return Executors.newSingleThreadExecutor(oppgave -> {
+      Thread tråd = new Thread(oppgave, "grunnbeløp-oppfriskning");
+      tråd.setDaemon(true);
+      return tråd;
+    });
+  }
+
+  private static final class Grunnbeløp {
+
+    private final double verdi;
+    private final long hentetNanos;
+
+    private Grunnbeløp(double verdi, long hentetNanos) {
+      this.verdi = verdi;
+      this.hentetNanos = hentetNanos;
+    }
+  }
+
+  private static final class FellesHolder {
+
+    private static final GrunnbeløpCache FELLES = new GrunnbeløpCache(
+        GrunnbeløpAPI.konfigurert(), lesLevetid(), lesLagringsfil());
+  }
+}
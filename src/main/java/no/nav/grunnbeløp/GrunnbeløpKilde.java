@@ -0,0 +1,28 @@
+package no.nav.grunnbeløp;
+
+import java.io.IOException;
+
+/**
+ * Representerer en kilde som kan levere dagens grunnbeløp (1G).
+ *
+ * <p>
+ * Kilden kan være NAVs grunnbeløp API, en mellomlagring foran API'et eller en fast verdi i tester.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see GrunnbeløpAPI
+ * @see GrunnbeløpCache
+ */
+@FunctionalInterface
+public interface GrunnbeløpKilde {
+
+  /**
+   * Henter dagens grunnbeløp.
+   *
+   * @return dagens grunnbeløp.
+   * @throws IOException          hvis grunnbeløpet ikke kunne hentes.
+   * @throws InterruptedException hvis tråden blir avbrutt mens grunnbeløpet hentes.
+   */
+  double hentGrunnbeløp() throws IOException, InterruptedException;
+}
@@ -1,41 +1,81 @@
 package no.nav.grunnbeløp;
 
 import java.io.IOException;
-
+import no.nav.beløp.Øre;
+import no.nav.metrikk.Metrikker;
 
 /**
  * Verktøy med forskjellige hjelpemetoder for å kalkulere grunnbeløpsverdier.
  *
  * <p>
- * Denne klassen benytter NAVs grunnbeløp API for å hente dagens grunnbeløp, og tilbyr metoder for å
+ * Denne klassen henter dagens grunnbeløp fra en {@link GrunnbeløpKilde}, og tilbyr metoder for å
  * kalkulere beløp relatert til dagpenger basert på grunnbeløpet.
  *
+ * <p>
+ * Grenseverdiene regnes ut i hele øre én gang når grunnbeløpet er kjent, slik at beregningene kan
+ * sammenligne årslønner mot dem med heltall. Grensen på 1,5G rundes opp til nærmeste øre, siden en
+ * årslønn i hele øre er minst 1,5G nøyaktig når den er minst den avrundede grensen.
+ * </p>
+ *
  * @author Emil Elton Nilsen, Sigurd Riseth
- * @version 1.1
+ * @version 1.4
  * @see GrunnbeløpAPI
+ * @see GrunnbeløpCache
  */
 public class GrunnbeløpVerktøy {
 
   private static final double MINIMUM_MULTIPLIKATOR_DAGPENGER = 1.5; // 1.5G
   private static final double MAKS_MULTIPLIKATOR_DAGPENGER = 6.0; // 6G
   private double grunnbeløp;
+  private long grunnbeløpIØre;
+  private long minimumÅrslønnIØre;
+  private long maksDagpengegrunnlagIØre;
 
   /**
    * Konstruktør for {@link GrunnbeløpVerktøy}-klassen.
    *
    * <p>
-   * Denne konstruktøren initialiserer et nytt {@link GrunnbeløpVerktøy}-objekt ved å hente dagens
-   * grunnbeløp fra NAVs grunnbeløp API. Dersom det oppstår problemer med tilkoblingen til API'et,
-   * vil en feilmelding skrives ut til konsollen.
+   * Denne konstruktøren initialiserer et nytt {@link GrunnbeløpVerktøy}-objekt med dagens grunnbeløp
+   * fra den felles mellomlagringen foran NAVs grunnbeløp API.
+   *
+   * @see GrunnbeløpCache#felles()
    */
   public GrunnbeløpVerktøy() {
+    this(GrunnbeløpCache.felles());
+  }
+
+  /**
+   * Initialiserer et nytt {@link GrunnbeløpVerktøy}-objekt ved å hente dagens grunnbeløp fra gitt
+   * kilde. Dersom det oppstår problemer med å hente grunnbeløpet, vil en feilmelding skrives ut til
+   * konsollen, og feilen telles i {@link Metrikker#felles()}.
+   *
+   * @param grunnbeløpKilde kilden dagens grunnbeløp hentes fra.
+   */
+  public GrunnbeløpVerktøy(GrunnbeløpKilde grunnbeløpKilde) {
     try {
-      this.grunnbeløp = new GrunnbeløpAPI().hentGrunnbeløp();
+      settGrunnbeløp(grunnbeløpKilde.hentGrunnbeløp());
     } catch (IOException | InterruptedException exception) {
+      Metrikker.felles().registrerGrunnbeløpUtilgjengelig();
       System.out.println("Problemer med tilkobling til grunnbeløp API'et" + exception.getMessage());
     }
   }
 
+  /**
+   * Initialiserer et nytt {@link GrunnbeløpVerktøy}-objekt med et kjent grunnbeløp.
+   *
+   * @param grunnbeløp grunnbeløpet som skal brukes i beregningene.
+   */
+  public GrunnbeløpVerktøy(double grunnbeløp) {
+    settGrunnbeløp(grunnbeløp);
+  }
+
+  private void settGrunnbeløp(double grunnbeløp) {
+    this.grunnbeløp = grunnbeløp;
+    this.grunnbeløpIØre = Øre.fraKroner(grunnbeløp);
+    this.minimumÅrslønnIØre = -Math.floorDiv(-grunnbeløpIØre * 3, 2);
+    this.maksDagpengegrunnlagIØre = grunnbeløpIØre * 6;
+  }
+
   /**
    * Kalkulerer det totale grunnbeløpet for et gitt antall år.
    *
@@ -63,4 +103,41 @@ public class GrunnbeløpVerktøy {
   public double hentMaksÅrligDagpengegrunnlag() {
     return this.grunnbeløp * MAKS_MULTIPLIKATOR_DAGPENGER;
   }
+
+  /**
+   * Henter grunnbeløpet som et helt antall øre.
+   *
+   * @return grunnbeløpet i øre.
+   */
+  public long hentGrunnbeløpIØre() {
+    return grunnbeløpIØre;
+  }
+
+  /**
+   * Kalkulerer det totale grunnbeløpet for et gitt antall år, i øre.
+   *
+   * @param antallÅr antall år med grunnbeløp som skal kalkuleres.
+   * @return det totale grunnbeløpet for det angitte antallet år, i øre.
+   */
+  public long hentTotaltGrunnbeløpForGittAntallÅrIØre(int antallÅr) {
+    return grunnbeløpIØre * antallÅr;
+  }
+
+  /**
+   * Henter minimum årslønn en person må tjene det siste året for å ha rett på dagpenger, i øre.
+   *
+   * @return 1.5G rundet opp til nærmeste øre.
+   */
+  public long hentMinimumÅrslønnForRettPåDagpengerIØre() {
+    return minimumÅrslønnIØre;
+  }
+
+  /**
+   * Henter det maksimale årlige dagpengegrunnlaget en person kan ha, i øre.
+   *
+   * @return 6G i øre.
+   */
+  public long hentMaksÅrligDagpengegrunnlagIØre() {
+    return maksDagpengegrunnlagIØre;
+  }
 }
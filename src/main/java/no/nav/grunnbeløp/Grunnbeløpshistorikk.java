@@ -0,0 +1,210 @@
+package no.nav.grunnbeløp;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Uforanderlig tabell over grunnbeløpene som har vært i kraft, med datoen hvert grunnbeløp gjaldt
+ * fra.
+ *
+ * <p>
+ * Grunnbeløpet reguleres hvert år med virkning fra 1. mai. Ved beregning av gamle saker må
+ * grunnbeløpet som gjaldt på beregningsdatoen brukes, og ikke dagens grunnbeløp. Tabellen slår opp
+ * grunnbeløpet for en dato med binærsøk i en sortert tabell, og holder et ferdig
+ * {@link GrunnbeløpVerktøy} for hver periode, slik at oppslag verken kontakter NAVs grunnbeløp API
+ * eller oppretter nye objekter.
+ * </p>
+ * <p>
+ * Den felles tabellen for prosessen er forhåndslastet med de kjente grunnbeløpene. Når en ny
+ * regulering publiseres, byttes hele tabellen ut atomisk med {@link #registrerRegulering(LocalDate,
+ * double)}. Kallere som har hentet en tabell fortsetter med den, slik at alle sakene i en kjøring
+ * beregnes med de samme grunnbeløpene.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see GrunnbeløpVerktøy
+ */
+public final class Grunnbeløpshistorikk {
+
+  /**
+   * Måneden den årlige reguleringen av grunnbeløpet gjelder fra.
+   */
+  public static final Month REGULERINGSMÅNED = Month.MAY;
+
+  private static final int[] KJENTE_ÅR = {
+      2009, 2010, 2011, 2012, 2013, 2014, 2015, 2016, 2017, 2018, 2019, 2020, 2021, 2022, 2023,
+      2024, 2025
+  };
+  private static final double[] KJENTE_GRUNNBELØP = {
+      72881, 75641, 79216, 82122, 85245, 88370, 90068, 92576, 93634, 96883, 99858, 101351,
+      106399, 111477, 118620, 124028, 130160
+  };
+
+  private static final AtomicReference<Grunnbeløpshistorikk> FELLES =
+      new AtomicReference<>(lagStandard());
+
+  private final long[] fraDager;
+  private final double[] grunnbeløp;
+  private final GrunnbeløpVerktøy[] verktøy;
+
+  /**
+   * Oppretter en tabell med gitte grunnbeløp.
+   *
+   * @param grunnbeløpFraDato grunnbeløpene, med datoen hvert grunnbeløp gjelder fra.
+   * @throws IllegalArgumentException hvis tabellen er tom, eller et grunnbeløp ikke er positivt.
+   */
+  public Grunnbeløpshistorikk(Map<LocalDate, Double> grunnbeløpFraDato)
+      throws IllegalArgumentException {
+    if (grunnbeløpFraDato.isEmpty()) {
+      throw new IllegalArgumentException("Grunnbeløpshistorikken må ha minst ett grunnbeløp.");
+    }
+    TreeMap<LocalDate, Double> sortert = new TreeMap<>(grunnbeløpFraDato);
+    this.fraDager = new long[sortert.size()];
+    this.grunnbeløp = new double[sortert.size()];
+    this.verktøy = new GrunnbeløpVerktøy[sortert.size()];
+    int indeks = 0;
+    for (Map.Entry<LocalDate, Double> periode : sortert.entrySet()) {
+      double beløp = periode.getValue();
+      if (!(beløp > 0)) {
+        throw new IllegalArgumentException(
+            "Grunnbeløpet fra " + periode.getKey() + " må være positivt.");
+      }
+      fraDager[indeks] = periode.getKey().toEpochDay();
+      grunnbeløp[indeks] = beløp;
+      verktøy[indeks] = new GrunnbeløpVerktøy(beløp);
+      indeks++;
+    }
+  }
+
+  private static Grunnbeløpshistorikk lagStandard() {
+    Map<LocalDate, Double> perioder = new TreeMap<>();
+    for (int i = 0; i < KJENTE_ÅR.length; i++) {
+      perioder.put(LocalDate.of(KJENTE_ÅR[i], REGULERINGSMÅNED, 1), KJENTE_GRUNNBELØP[i]);
+    }
+    return new Grunnbeløpshistorikk(perioder);
+  }
+
+  /**
+   * Henter den felles tabellen for prosessen, med alle reguleringene som er registrert så langt.
+   *
+   * @return den gjeldende felles tabellen.
+   */
+  public static Grunnbeløpshistorikk felles() {
+    return FELLES.get();
+  }
+
+  /**
+   * Bytter ut den felles tabellen med en ny tabell.
+   *
+   * @param historikk tabellen som skal brukes fra nå av.
+   * @throws IllegalArgumentException hvis tabellen er null.
+   */
+  public static void byttFelles(Grunnbeløpshistorikk historikk) throws IllegalArgumentException {
+    if (historikk == null) {
+      throw new IllegalArgumentException("Grunnbeløpshistorikken kan ikke være null.");
+    }
+    FELLES.set(historikk);
+  }
+
+  /**
+   * Registrerer en ny regulering i den felles tabellen. Den nye tabellen publiseres atomisk, også
+   * når flere reguleringer registreres samtidig.
+   *
+   * @param fraDato    datoen det nye grunnbeløpet gjelder fra.
+   * @param grunnbeløp det nye grunnbeløpet.
+   * @return den nye felles tabellen.
+   * @throws IllegalArgumentException hvis grunnbeløpet ikke er positivt.
+   */
+  public static Grunnbeløpshistorikk registrerRegulering(LocalDate fraDato, double grunnbeløp)
+      throws IllegalArgumentException {
+    return FELLES.updateAndGet(historikk -> historikk.medRegulering(fraDato, grunnbeløp));
+  }
+
+  /**
+   * Lager en ny tabell med en regulering lagt til. En regulering med samme dato som en eksisterende
+   * periode erstatter den perioden. Denne tabellen endres ikke.
+   *
+   * @param fraDato    datoen det nye grunnbeløpet gjelder fra.
+   * @param grunnbeløp det nye grunnbeløpet.
+   * @return en ny tabell med reguleringen.
+   * @throws IllegalArgumentException hvis grunnbeløpet ikke er positivt.
+   */
+  public Grunnbeløpshistorikk medRegulering(LocalDate fraDato, double grunnbeløp)
+      throws IllegalArgumentException {
+    Map<LocalDate, Double> perioder = new TreeMap<>();
+    for (int i = 0; i < fraDager.length; i++) {
+      perioder.put(LocalDate.ofEpochDay(fraDager[i]), this.grunnbeløp[i]);
+    }
+    perioder.put(fraDato, grunnbeløp);
+    return new Grunnbeløpshistorikk(perioder);
+  }
+
+  /**
+   * Henter grunnbeløpet som var i kraft på en gitt dato.
+   *
+   * @param dato datoen grunnbeløpet skal gjelde for.
+   * @return grunnbeløpet på datoen.
+   * @throws IllegalArgumentException hvis datoen er før det første grunnbeløpet i tabellen.
+   */
+  public double hentGrunnbeløp(LocalDate dato) throws IllegalArgumentException {
+    return grunnbeløp[finnPeriode(dato)];
+  }
+
+  /**
+   * Henter grunnbeløpet for et år, som er grunnbeløpet fra den årlige reguleringen 1. mai det året.
+   *
+   * @param år året grunnbeløpet skal gjelde for.
+   * @return grunnbeløpet for året.
+   * @throws IllegalArgumentException hvis året er før det første grunnbeløpet i tabellen.
+   */
+  public double hentGrunnbeløp(int år) throws IllegalArgumentException {
+    return hentGrunnbeløp(LocalDate.of(år, REGULERINGSMÅNED, 1));
+  }
+
+  /**
+   * Henter et verktøy for grunnbeløpet som var i kraft på en gitt dato. Verktøyet er det samme for
+   * alle datoer i en periode.
+   *
+   * @param dato datoen grunnbeløpet skal gjelde for.
+   * @return verktøyet med grunnbeløpet på datoen.
+   * @throws IllegalArgumentException hvis datoen er før det første grunnbeløpet i tabellen.
+   */
+  public GrunnbeløpVerktøy hentVerktøy(LocalDate dato) throws IllegalArgumentException {
+    return verktøy[finnPeriode(dato)];
+  }
+
+  /**
+   * Henter datoen det første grunnbeløpet i tabellen gjelder fra.
+   *
+   * @return den første datoen i tabellen.
+   */
+  public LocalDate hentFørsteDato() {
+    return LocalDate.ofEpochDay(fraDager[0]);
+  }
+
+  /**
+   * Henter antall perioder med ulike grunnbeløp i tabellen.
+   *
+   * @return antall perioder.
+   */
+  public int hentAntallPerioder() {
+    return fraDager.length;
+  }
+
+  private int finnPeriode(LocalDate dato) {
+    int indeks = Arrays.binarySearch(fraDager, dato.toEpochDay());
+    if (indeks < 0) {
+      // Binærsøket gir -(innsettingspunkt) - 1, og perioden er den før innsettingspunktet.
+      indeks = -indeks - 2;
+    }
+    if (indeks < 0) {
+      throw new IllegalArgumentException("Ingen grunnbeløp før " + hentFørsteDato() + ": " + dato);
+    }
+    return indeks;
+  }
+}
@@ -0,0 +1,166 @@
+package no.nav.journal;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatStatus;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+
+/**
+ * En hendelse for et resultat, slik den lagres i {@link Hendelseslogg} og i øyeblikksbilder.
+ *
+ * <p>
+ * Hver hendelse lagres som en post med fast bredde på 32 byte:
+ * <ul>
+ * <li>byte 0-7: saksnummeret.</li>
+ * <li>byte 8-15: dagsatsen i øre.</li>
+ * <li>byte 16-23: opprettelsestidspunktet til resultatet, i millisekunder siden epoken.</li>
+ * <li>byte 24-27: koden, med statusen i de laveste 8 bitene, spesialiseringen i de neste 8 bitene,
+ * typen pluss 1 i de neste 8 bitene og fristen i dager i de høyeste 8 bitene. Poster skrevet før
+ * fristen ble lagret har 0 der, og får standardfristen.</li>
+ * <li>byte 28-31: CRC32C av byte 0-27.</li>
+ * </ul>
+ * Sjekksummen gjør at halvskrevne poster og ubrukt plass etter siste post kan kjennes igjen ved
+ * gjenoppretting.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.2
+ * @see Hendelsestype
+ */
+public final class Hendelse {
+
+  /**
+   * Antall byte hver hendelse tar.
+   */
+  public static final int POSTBREDDE = 32;
+
+  private static final int DATABREDDE = 28;
+  private static final int KODE = 24;
+  private static final Hendelsestype[] TYPER = Hendelsestype.values();
+  private static final SaksbehandlerSpesialisering[] SPESIALISERINGER =
+      SaksbehandlerSpesialisering.values();
+  private static final ResultatStatus[] STATUSER = ResultatStatus.values();
+
+  private final Hendelsestype type;
+  private final long saksnummer;
+  private final long dagsatsIØre;
+  private final long opprettet;
+  private final int fristDager;
+  private final SaksbehandlerSpesialisering spesialisering;
+  private final ResultatStatus status;
+
+  private Hendelse(Hendelsestype type, long saksnummer, long dagsatsIØre, long opprettet,
+      int fristDager, SaksbehandlerSpesialisering spesialisering, ResultatStatus status) {
+    this.type = type;
+    this.saksnummer = saksnummer;
+    this.dagsatsIØre = dagsatsIØre;
+    this.opprettet = opprettet;
+    this.fristDager = fristDager;
+    this.spesialisering = spesialisering;
+    this.status = status;
+  }
+
+  /**
+   * Lager en hendelse for et registrert resultat, med resultatets nåværende status.
+   *
+   * @param resultat resultatet som er registrert.
+   * @return hendelsen.
+   */
+  public static Hendelse opprettet(Resultat resultat) {
+    return new Hendelse(Hendelsestype.OPPRETTET, resultat.hentSaksnummer(),
+        resultat.hentDagsatsIØre(), resultat.hentOpprettet(), resultat.hentFristDager(),
+        resultat.hentSpesialisering(), resultat.hentStatus());
+  }
+
+  /**
+   * Lager en hendelse for en endret status.
+   *
+   * @param resultat resultatet som har fått ny status.
+   * @param status   den nye statusen.
+   * @return hendelsen.
+   */
+  public static Hendelse statusEndret(Resultat resultat, ResultatStatus status) {
+    return new Hendelse(Hendelsestype.STATUS_ENDRET, resultat.hentSaksnummer(),
+        resultat.hentDagsatsIØre(), resultat.hentOpprettet(), resultat.hentFristDager(),
+        resultat.hentSpesialisering(), status);
+  }
+
+  /**
+   * Skriver hendelsen som en post på gitt posisjon.
+   *
+   * @param buffer    bufferet posten skrives til.
+   * @param posisjon  posisjonen til posten i bufferet.
+   * @param sjekksum  en CRC32C som kan gjenbrukes av kalleren.
+   */
+  void skrivTil(ByteBuffer buffer, int posisjon, CRC32C sjekksum) {
+    buffer.putLong(posisjon, saksnummer);
+    buffer.putLong(posisjon + 8, dagsatsIØre);
+    buffer.putLong(posisjon + 16, opprettet);
+    buffer.putInt(posisjon + KODE,
+        fristDager << 24 | (type.ordinal() + 1) << 16 | spesialisering.ordinal() << 8
+            | status.ordinal());
+    buffer.putInt(posisjon + DATABREDDE, beregnSjekksum(buffer, posisjon, sjekksum));
+  }
+
+  /**
+   * Leser en post på gitt posisjon.
+   *
+   * @param buffer   bufferet posten leses fra.
+   * @param posisjon posisjonen til posten i bufferet.
+   * @param sjekksum en CRC32C som kan gjenbrukes av kalleren.
+   * @return hendelsen, eller <code>null</code> hvis posten er ubrukt eller ødelagt.
+   */
+  static Hendelse lesFra(ByteBuffer buffer, int posisjon, CRC32C sjekksum) {
+    if (buffer.getInt(posisjon + DATABREDDE) != beregnSjekksum(buffer, posisjon, sjekksum)) {
+      return null;
+    }
+    int kode = buffer.getInt(posisjon + KODE);
+    int fristDager = kode >>> 24;
+    int type = ((kode >>> 16) & 0xFF) - 1;
+    int spesialisering = (kode >>> 8) & 0xFF;
+    int status = kode & 0xFF;
+    if (type < 0 || type >= TYPER.length || spesialisering >= SPESIALISERINGER.length
+        || status >= STATUSER.length) {
+      return null;
+    }
+    return new Hendelse(TYPER[type], buffer.getLong(posisjon), buffer.getLong(posisjon + 8),
+        buffer.getLong(posisjon + 16),
+        fristDager == 0 ? Resultat.STANDARD_FRIST_DAGER : fristDager,
+        SPESIALISERINGER[spesialisering], STATUSER[status]);
+  }
+
+  private static int beregnSjekksum(ByteBuffer buffer, int posisjon, CRC32C sjekksum) {
+    sjekksum.reset();
+    sjekksum.update(buffer.slice(posisjon, DATABREDDE));
+    return (int) sjekksum.getValue();
+  }
+
+  public Hendelsestype hentType() {
+    return type;
+  }
+
+  public long hentSaksnummer() {
+    return saksnummer;
+  }
+
+  public long hentDagsatsIØre() {
+    return dagsatsIØre;
+  }
+
+  public long hentOpprettet() {
+    return opprettet;
+  }
+
+  public int hentFristDager() {
+    return fristDager;
+  }
+
+  public SaksbehandlerSpesialisering hentSpesialisering() {
+    return spesialisering;
+  }
+
+  public ResultatStatus hentStatus() {
+    return status;
+  }
+}
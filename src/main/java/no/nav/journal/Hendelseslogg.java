@@ -0,0 +1,417 @@
+package no.nav.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * En varig logg der hendelser kun legges til på slutten.
+ *
+ * <p>
+ * Loggen er delt i segmentfiler med plass til et fast antall hendelser, og hver segmentfil mappes
+ * inn i minnet. Hver hendelse får et sekvensnummer som bestemmer hvilket segment og hvilken
+ * posisjon den skrives til, slik at en skriving kun er en kopiering til minnet. En egen tråd
+ * skriver det som er lagt til ned på disk med én {@link MappedByteBuffer#force(int, int)} for alt
+ * som er skrevet siden forrige gang, slik at mange skrivinger deler på samme synkronisering.
+ * Kallere som må vite at en hendelse er varig lagret venter med {@link #venTilLagret(long)}.
+ * </p>
+ *
+ * <p>
+ * Ved åpning spilles segmentene av parallelt, fram til den første posten som er ubrukt eller har
+ * feil sjekksum. Resten av loggen regnes som ikke skrevet, og blir overskrevet. Segmenter som
+ * kun inneholder hendelser før et gitt sekvensnummer kan slettes med
+ * {@link #slettSegmenterFør(long)} når de er dekket av et øyeblikksbilde.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.2
+ * @see Hendelse
+ * @see Resultatjournal
+ */
+public final class Hendelseslogg implements Closeable {
+
+  private static final String PREFIKS = "hendelser-";
+  private static final String ENDELSE = ".logg";
+  private static final long LAGRINGSINTERVALL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+  private final Path mappe;
+  private final int hendelserPerSegment;
+  private final ConcurrentSkipListMap<Long, MappedByteBuffer> segmenter =
+      new ConcurrentSkipListMap<>();
+  private final Object skrivelås = new Object();
+  private final Object lagringslås = new Object();
+  private final CRC32C sjekksum = new CRC32C();
+  private final Thread lagrer;
+
+  private long nesteSekvens;
+  private volatile long skrevetTil;
+  private volatile long lagretTil;
+  private volatile IOException lagringsfeil;
+  private volatile boolean lukket;
+
+  /**
+   * Åpner loggen i en mappe, og spiller av hendelsene fra et gitt sekvensnummer.
+   *
+   * <p>
+   * Avspillingen skjer parallelt for segmentene, så mottakeren må tåle å bli kalt fra flere tråder
+   * samtidig og i en annen rekkefølge enn hendelsene ble skrevet i.
+   * </p>
+   *
+   * @param mappe               mappen segmentfilene ligger i. Opprettes hvis den ikke finnes.
+   * @param hendelserPerSegment antall hendelser det er plass til i hvert segment.
+   * @param fraSekvens          sekvensnummeret til den første hendelsen som skal spilles av.
+   *                            Segmenter med kun tidligere hendelser slettes.
+   * @param mottaker            mottakeren av hendelsene som spilles av.
+   * @throws IOException              hvis loggen ikke kan leses eller opprettes.
+   * @throws IllegalArgumentException hvis antall hendelser per segment eller sekvensnummeret er
+   *                                  ugyldig.
+   */
+  public Hendelseslogg(Path mappe, int hendelserPerSegment, long fraSekvens,
+      Consumer<Hendelse> mottaker) throws IOException, IllegalArgumentException {
+    if (hendelserPerSegment <= 0 || hendelserPerSegment > Integer.MAX_VALUE / Hendelse.POSTBREDDE) {
+      throw new IllegalArgumentException("Ugyldig antall hendelser per segment: "
+          + hendelserPerSegment);
+    }
+    if (fraSekvens < 0) {
+      throw new IllegalArgumentException("Sekvensnummeret kan ikke være negativt.");
+    }
+    this.mappe = Files.createDirectories(mappe);
+    this.hendelserPerSegment = hendelserPerSegment;
+
+    long slutt = gjenopprett(fraSekvens, mottaker);
+    this.nesteSekvens = Math.max(slutt, fraSekvens);
+    this.skrevetTil = nesteSekvens;
+    this.lagretTil = nesteSekvens;
+
+    this.lagrer = new Thread(this::lagreLøpende, "hendelseslogg-lagrer");
+    lagrer.setDaemon(true);
+    lagrer.start();
+  }
+
+  /**
+   * Legger til en hendelse på slutten av loggen. Hendelsen er ikke nødvendigvis varig lagret når
+   * metoden returnerer.
+   *
+   * @param hendelse hendelsen som skal legges til.
+   * @return sekvensnummeret hendelsen fikk.
+   * @throws IOException           hvis et nytt segment ikke kan opprettes.
+   * @throws IllegalStateException hvis loggen er lukket.
+   */
+  public long skriv(Hendelse hendelse) throws IOException, IllegalStateException {
+    synchronized (skrivelås) {
+      if (lukket) {
+        throw new IllegalStateException("Hendelsesloggen er lukket.");
+      }
+      long sekvens = nesteSekvens;
+      hendelse.skrivTil(segment(sekvens / hendelserPerSegment),
+          posisjon(sekvens), sjekksum);
+      nesteSekvens = sekvens + 1;
+      skrevetTil = nesteSekvens;
+      return sekvens;
+    }
+  }
+
+  /**
+   * Legger til flere hendelser etter hverandre på slutten av loggen, uten at hendelser fra andre
+   * tråder kommer imellom. Hendelsene er ikke nødvendigvis varig lagret når metoden returnerer.
+   *
+   * <p>
+   * Kan et nytt segment ikke opprettes underveis, beholdes hendelsene som allerede er skrevet.
+   * </p>
+   *
+   * @param hendelser hendelsene som skal legges til.
+   * @return sekvensnummeret den første hendelsen fikk.
+   * @throws IOException           hvis et nytt segment ikke kan opprettes.
+   * @throws IllegalStateException hvis loggen er lukket.
+   */
+  public long skrivAlle(List<Hendelse> hendelser) throws IOException, IllegalStateException {
+    synchronized (skrivelås) {
+      if (lukket) {
+        throw new IllegalStateException("Hendelsesloggen er lukket.");
+      }
+      long første = nesteSekvens;
+      long sekvens = første;
+      try {
+        for (Hendelse hendelse : hendelser) {
+          hendelse.skrivTil(segment(sekvens / hendelserPerSegment),
+              posisjon(sekvens), sjekksum);
+          sekvens++;
+        }
+      } finally {
+        nesteSekvens = sekvens;
+        skrevetTil = sekvens;
+      }
+      return første;
+    }
+  }
+
+  /**
+   * Venter til alle hendelser før et gitt sekvensnummer er varig lagret.
+   *
+   * @param sekvens sekvensnummeret alle tidligere hendelser skal være lagret til.
+   * @throws IOException hvis lagringen har feilet.
+   */
+  public void venTilLagret(long sekvens) throws IOException {
+    sekvens = Math.min(sekvens, skrevetTil);
+    while (lagretTil < sekvens) {
+      IOException feil = lagringsfeil;
+      if (feil != null) {
+        throw new IOException("Hendelsesloggen kunne ikke lagres.", feil);
+      }
+      LockSupport.unpark(lagrer);
+      synchronized (lagringslås) {
+        if (lagretTil < sekvens && lagringsfeil == null) {
+          try {
+            lagringslås.wait(1);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Avbrutt under venting på lagring.", e);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Henter sekvensnummeret den neste hendelsen får.
+   *
+   * @return sekvensnummeret til neste hendelse.
+   */
+  public long hentNesteSekvens() {
+    return skrevetTil;
+  }
+
+  /**
+   * Henter sekvensnummeret alle tidligere hendelser er varig lagret til.
+   *
+   * @return sekvensnummeret til den første hendelsen som ikke er bekreftet lagret.
+   */
+  public long hentLagretTil() {
+    return lagretTil;
+  }
+
+  /**
+   * Sletter segmenter som kun inneholder hendelser før et gitt sekvensnummer. Hendelsene må være
+   * dekket av et varig lagret øyeblikksbilde og selv være lagret, se {@link #venTilLagret(long)}.
+   *
+   * @param sekvens sekvensnummeret til den første hendelsen som skal beholdes.
+   * @return antall segmenter som ble slettet.
+   * @throws IOException hvis et segment ikke kan slettes.
+   */
+  public int slettSegmenterFør(long sekvens) throws IOException {
+    long grense = Math.min(sekvens, lagretTil) / hendelserPerSegment;
+    int antall = 0;
+    for (Long nummer : segmenter.headMap(grense).keySet()) {
+      segmenter.remove(nummer);
+      Files.deleteIfExists(segmentfil(nummer));
+      antall++;
+    }
+    return antall;
+  }
+
+  public int hentAntallSegmenter() {
+    return segmenter.size();
+  }
+
+  /**
+   * Lagrer alt som er skrevet og lukker loggen.
+   *
+   * @throws IOException hvis det som er skrevet ikke kan lagres.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (skrivelås) {
+      if (lukket) {
+        return;
+      }
+      lukket = true;
+    }
+    LockSupport.unpark(lagrer);
+    try {
+      lagrer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    lagre();
+    IOException feil = lagringsfeil;
+    if (feil != null) {
+      throw new IOException("Hendelsesloggen kunne ikke lagres.", feil);
+    }
+  }
+
+  private long gjenopprett(long fraSekvens, Consumer<Hendelse> mottaker) throws IOException {
+    long førsteSegment = fraSekvens / hendelserPerSegment;
+    long[] nummer;
+    try (Stream<Path> filer = Files.list(mappe)) {
+      nummer = filer.map(fil -> fil.getFileName().toString())
+          .filter(navn -> navn.startsWith(PREFIKS) && navn.endsWith(ENDELSE))
+          .mapToLong(navn -> Long.parseLong(
+              navn.substring(PREFIKS.length(), navn.length() - ENDELSE.length())))
+          .sorted()
+          .toArray();
+    }
+    for (long n : nummer) {
+      if (n < førsteSegment) {
+        Files.delete(segmentfil(n));
+      } else {
+        segmenter.put(n, map(n));
+      }
+    }
+
+    // Finner antall gyldige poster i hvert segment parallelt, og deretter slutten av loggen.
+    long[] lest = segmenter.keySet().stream().mapToLong(Long::longValue).toArray();
+    int[] gyldige = new int[lest.length];
+    IntStream.range(0, lest.length).parallel().forEach(i -> gyldige[i] =
+        tellGyldige(segmenter.get(lest[i]), lest[i] == førsteSegment
+            ? (int) (fraSekvens - førsteSegment * hendelserPerSegment) : 0));
+    long slutt = førsteSegment * hendelserPerSegment;
+    int antallLest = 0;
+    for (int i = 0; i < lest.length && lest[i] == førsteSegment + i; i++) {
+      slutt = lest[i] * hendelserPerSegment + gyldige[i];
+      antallLest = i + 1;
+      if (gyldige[i] < hendelserPerSegment) {
+        break;
+      }
+    }
+    long gyldigSlutt = Math.max(slutt, fraSekvens);
+
+    IntStream.range(0, antallLest).parallel().forEach(i -> {
+      CRC32C lokalSjekksum = new CRC32C();
+      MappedByteBuffer buffer = segmenter.get(lest[i]);
+      long start = Math.max(fraSekvens, lest[i] * hendelserPerSegment);
+      long stopp = Math.min(gyldigSlutt, (lest[i] + 1) * hendelserPerSegment);
+      for (long sekvens = start; sekvens < stopp; sekvens++) {
+        mottaker.accept(Hendelse.lesFra(buffer, posisjon(sekvens), lokalSjekksum));
+      }
+    });
+
+    // Fjerner alt etter slutten, slik at gamle poster der ikke kan bli tatt for gyldige senere.
+    long sisteSegment = gyldigSlutt / hendelserPerSegment;
+    for (long n : lest) {
+      if (n > sisteSegment) {
+        segmenter.remove(n);
+        Files.delete(segmentfil(n));
+      }
+    }
+    MappedByteBuffer siste = segmenter.get(sisteSegment);
+    if (siste != null) {
+      int fra = posisjon(gyldigSlutt);
+      for (int p = fra; p < siste.capacity(); p += Hendelse.POSTBREDDE) {
+        siste.putLong(p, 0).putLong(p + 8, 0).putLong(p + 16, 0);
+      }
+      siste.force(fra, siste.capacity() - fra);
+    }
+    return slutt;
+  }
+
+  private int tellGyldige(MappedByteBuffer buffer, int fra) {
+    CRC32C lokalSjekksum = new CRC32C();
+    int indeks = fra;
+    while (indeks < hendelserPerSegment
+        && Hendelse.lesFra(buffer, indeks * Hendelse.POSTBREDDE, lokalSjekksum) != null) {
+      indeks++;
+    }
+    return indeks;
+  }
+
+  private void lagreLøpende() {
+    while (!lukket) {
+      if (lagretTil < skrevetTil) {
+        lagre();
+      } else {
+        LockSupport.parkNanos(LAGRINGSINTERVALL_NANOS);
+      }
+    }
+  }
+
+  private void lagre() {
+    long fra = lagretTil;
+    long til = skrevetTil;
+    try {
+      for (long sekvens = fra; sekvens < til; ) {
+        long nummer = sekvens / hendelserPerSegment;
+        long stopp = Math.min(til, (nummer + 1) * hendelserPerSegment);
+        MappedByteBuffer buffer = segmenter.get(nummer);
+        if (buffer != null) {
+          buffer.force(posisjon(sekvens), (int) (stopp - sekvens) * Hendelse.POSTBREDDE);
+        }
+        sekvens = stopp;
+      }
+      lagretTil = til;
+    } catch (UncheckedIOException e) {
+      lagringsfeil = e.getCause();
+      lukket = true;
+    }
+    synchronized (lagringslås) {
+      lagringslås.notifyAll();
+    }
+  }
+
+  private MappedByteBuffer segment(long nummer) throws IOException {
+    MappedByteBuffer buffer = segmenter.get(nummer);
+    if (buffer == null) {
+      buffer = map(nummer);
+      segmenter.put(nummer, buffer);
+    }
+    return buffer;
+  }
+
+  private MappedByteBuffer map(long nummer) throws IOException {
+    Path fil = segmentfil(nummer);
+    boolean ny = !Files.exists(fil);
+    MappedByteBuffer buffer;
+    try (FileChannel kanal = FileChannel.open(fil, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      buffer = kanal.map(FileChannel.MapMode.READ_WRITE, 0,
+          (long) hendelserPerSegment * Hendelse.POSTBREDDE);
+    }
+    if (ny) {
+      // Ellers kan et strømbrudd ta med seg hele segmentfilen, selv om hendelsene i den er lagret.
+      synkroniserMappe(mappe);
+    }
+    return buffer;
+  }
+
+  /**
+   * Skriver endringer i innholdet i en mappe, som nye, flyttede eller slettede filer, ned på disk.
+   *
+   * @param mappe mappen som skal synkroniseres.
+   * @throws IOException hvis mappen ikke kan synkroniseres.
+   */
+  static void synkroniserMappe(Path mappe) throws IOException {
+    try (FileChannel katalog = FileChannel.open(mappe, StandardOpenOption.READ)) {
+      katalog.force(true);
+    }
+  }
+
+  private int posisjon(long sekvens) {
+    return (int) (sekvens % hendelserPerSegment) * Hendelse.POSTBREDDE;
+  }
+
+  private Path segmentfil(long nummer) {
+    return mappe.resolve(String.format("%s%020d%s", PREFIKS, nummer, ENDELSE));
+  }
+
+  /**
+   * Gir alle segmentene som er åpne, etter segmentnummer. Brukes av testene.
+   *
+   * @return segmentene.
+   */
+  Map<Long, MappedByteBuffer> hentSegmenter() {
+    return segmenter;
+  }
+}
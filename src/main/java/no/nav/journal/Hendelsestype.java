@@ -0,0 +1,21 @@
+package no.nav.journal;
+
+/**
+ * Typene hendelser som skrives til {@link Hendelseslogg}.
+ *
+ * <p>
+ * Mulige typer er:
+ * <ul>
+ * <li><code>OPPRETTET</code>: Et resultat er registrert, med dagsats, spesialisering og status.</li>
+ * <li><code>STATUS_ENDRET</code>: Statusen til et resultat er endret fra ubehandlet.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see Hendelse
+ */
+public enum Hendelsestype {
+  OPPRETTET,
+  STATUS_ENDRET
+}
@@ -0,0 +1,491 @@
+package no.nav.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import no.nav.resultat.Reservasjon;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatStatus;
+import no.nav.resultat.Statuslytter;
+import no.nav.saksbehandler.Behandlingsoppsummering;
+import no.nav.saksbehandler.Behandlingsutfall;
+import no.nav.saksbehandler.Saksbehandler;
+
+/**
+ * Holder resultatene i minnet, og lagrer hver registrering og statusendring varig i en
+ * {@link Hendelseslogg}.
+ *
+ * <p>
+ * Med jevne mellomrom skrives et øyeblikksbilde av alle resultatene til en egen fil, og segmentene
+ * i loggen som bildet dekker slettes. Ved oppstart leses det nyeste bildet, og kun hendelsene etter
+ * det spilles av. Både bildet og loggen leses parallelt. En hendelse inneholder alt som trengs for
+ * å gjenskape resultatet, og status kan kun endres én gang fra ubehandlet, så rekkefølgen hendelsene
+ * spilles av i har ingen betydning, og en hendelse som allerede er med i bildet kan spilles av på
+ * nytt uten å endre noe.
+ * </p>
+ *
+ * <p>
+ * Journalen er {@link Statuslytter} for resultatene den har registrert, så en statusendring logges
+ * uansett om den gjøres gjennom journalen eller direkte, for eksempel av en {@link Saksbehandler}.
+ * Endringer gjøres på resultatet før hendelsen legges til loggen. Dermed er alle hendelser før
+ * sekvensnummeret et bilde tas ved med i bildet. Metodene som endrer noe returnerer før endringen er
+ * varig lagret; bruk {@link #synkroniser()} for å vente på det. Unntaket er
+ * {@link #behandleReservasjoner(Saksbehandler, Collection)}, som lagrer en hel gruppe endringer med
+ * én felles lagring før den returnerer.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.5
+ * @see Hendelseslogg
+ * @see Hendelse
+ */
+public final class Resultatjournal implements Closeable {
+
+  /**
+   * Standard antall hendelser per segment i loggen.
+   */
+  public static final int STANDARD_HENDELSER_PER_SEGMENT = 1 << 16;
+
+  /**
+   * Standard antall hendelser mellom hvert øyeblikksbilde.
+   */
+  public static final long STANDARD_ØYEBLIKKSBILDEINTERVALL = 1 << 20;
+
+  private static final String BILDEPREFIKS = "tilstand-";
+  private static final String BILDEENDELSE = ".bilde";
+  private static final int MAGI = 0x524A4231;
+  private static final int VERSJON = 2;
+  private static final int HODEBREDDE = 24;
+  private static final int POSTER_PER_SKRIVING = 4096;
+  private static final int POSTER_PER_VINDU = 1 << 20;
+
+  private final Path mappe;
+  private final long øyeblikksbildeintervall;
+  private final Map<Long, Resultat> resultater = new ConcurrentHashMap<>();
+  private final Hendelseslogg logg;
+  private final Object bildelås = new Object();
+  private final AtomicBoolean tarBilde = new AtomicBoolean();
+  private final ExecutorService bakgrunnsutfører;
+  private final Statuslytter statuslytter = this::loggStatus;
+  private final ThreadLocal<List<Hendelse>> gruppe = new ThreadLocal<>();
+  private volatile Statuslytter indekslytter;
+  private volatile long sisteBilde;
+
+  private Resultatjournal(Path mappe, int hendelserPerSegment, long øyeblikksbildeintervall)
+      throws IOException {
+    this.mappe = Files.createDirectories(mappe);
+    this.øyeblikksbildeintervall = øyeblikksbildeintervall;
+    slettUferdigeBilder();
+    this.sisteBilde = lesØyeblikksbilde();
+    this.logg = new Hendelseslogg(mappe, hendelserPerSegment, sisteBilde, this::anvend);
+    this.bakgrunnsutfører = Executors.newSingleThreadExecutor(oppgave -> {
+      Thread tråd = new Thread(oppgave, "resultatjournal-øyeblikksbilde");
+      tråd.setDaemon(true);
+      return tråd;
+    });
+    for (Resultat resultat : resultater.values()) {
+      resultat.settStatuslytter(statuslytter);
+    }
+  }
+
+  /**
+   * Åpner journalen i en mappe med standard segmentstørrelse og intervall for øyeblikksbilder.
+   *
+   * @param mappe mappen journalen ligger i. Opprettes hvis den ikke finnes.
+   * @return journalen, med resultatene som var lagret.
+   * @throws IOException hvis journalen ikke kan leses eller opprettes.
+   */
+  public static Resultatjournal åpne(Path mappe) throws IOException {
+    return åpne(mappe, STANDARD_HENDELSER_PER_SEGMENT, STANDARD_ØYEBLIKKSBILDEINTERVALL);
+  }
+
+  /**
+   * Åpner journalen i en mappe.
+   *
+   * @param mappe                   mappen journalen ligger i. Opprettes hvis den ikke finnes.
+   * @param hendelserPerSegment     antall hendelser i hvert segment av loggen.
+   * @param øyeblikksbildeintervall antall hendelser mellom hvert automatiske øyeblikksbilde, eller 0
+   *                                for kun å ta bilder med {@link #taØyeblikksbilde()}.
+   * @return journalen, med resultatene som var lagret.
+   * @throws IOException              hvis journalen ikke kan leses eller opprettes.
+   * @throws IllegalArgumentException hvis segmentstørrelsen eller intervallet er ugyldig.
+   */
+  public static Resultatjournal åpne(Path mappe, int hendelserPerSegment,
+      long øyeblikksbildeintervall) throws IOException, IllegalArgumentException {
+    if (øyeblikksbildeintervall < 0) {
+      throw new IllegalArgumentException("Intervallet kan ikke være negativt.");
+    }
+    return new Resultatjournal(mappe, hendelserPerSegment, øyeblikksbildeintervall);
+  }
+
+  /**
+   * Registrerer et nytt resultat.
+   *
+   * @param resultat resultatet som skal registreres.
+   * @throws IOException              hvis hendelsen ikke kan skrives til loggen.
+   * @throws IllegalArgumentException hvis et resultat med samme saksnummer allerede er registrert.
+   * @throws IllegalStateException    hvis resultatet allerede er registrert i en annen journal.
+   */
+  public void registrer(Resultat resultat)
+      throws IOException, IllegalArgumentException, IllegalStateException {
+    if (resultater.putIfAbsent(resultat.hentSaksnummer(), resultat) != null) {
+      throw new IllegalArgumentException("Saksnummer " + resultat.hentSaksnummer()
+          + " er allerede registrert.");
+    }
+    try {
+      resultat.settStatuslytter(statuslytter);
+    } catch (IllegalStateException e) {
+      resultater.remove(resultat.hentSaksnummer());
+      throw e;
+    }
+    skriv(Hendelse.opprettet(resultat));
+  }
+
+  /**
+   * Endrer statusen til et registrert resultat, og logger endringen.
+   *
+   * @param resultat resultatet som skal endres.
+   * @param nyStatus den avgjorte statusen resultatet skal få.
+   * @return true hvis statusen ble endret, false hvis resultatet allerede var behandlet.
+   * @throws IOException              hvis hendelsen ikke kan skrives til loggen.
+   * @throws IllegalArgumentException hvis den nye statusen er {@link ResultatStatus#UBEHANDLET}.
+   * @see Resultat#endreStatus(ResultatStatus)
+   */
+  public boolean endreStatus(Resultat resultat, ResultatStatus nyStatus)
+      throws IOException, IllegalArgumentException {
+    try {
+      return resultat.endreStatus(nyStatus);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Lar en saksbehandler behandle et registrert resultat, og logger statusen hvis den ble endret.
+   *
+   * @param saksbehandler saksbehandleren som behandler resultatet.
+   * @param resultat      resultatet som skal behandles.
+   * @return utfallet av behandlingen.
+   * @throws IOException              hvis hendelsen ikke kan skrives til loggen.
+   * @throws IllegalArgumentException hvis resultatet har feil spesialisering for saksbehandleren.
+   * @see Saksbehandler#behandleResultat(Resultat)
+   */
+  public Behandlingsutfall behandle(Saksbehandler saksbehandler, Resultat resultat)
+      throws IOException, IllegalArgumentException {
+    try {
+      return saksbehandler.behandleResultat(resultat);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Lar en saksbehandler behandle flere reserverte resultater samlet, og lagrer alle
+   * statusendringene som én gruppe.
+   *
+   * <p>
+   * Statusendringene samles opp mens saksbehandleren behandler resultatene, og hendelsene skrives
+   * deretter etter hverandre i loggen med én låsing. Metoden venter på én felles
+   * lagring. I motsetning til de andre metodene som endrer noe, er endringene derfor varig lagret
+   * når metoden returnerer.
+   * </p>
+   *
+   * @param saksbehandler saksbehandleren som behandler resultatene.
+   * @param reservasjoner reservasjonene som skal behandles.
+   * @return en oppsummering av behandlingen.
+   * @throws IOException hvis hendelsene ikke kan skrives til loggen eller lagres.
+   * @see Saksbehandler#behandleReservasjoner(Collection)
+   */
+  public Behandlingsoppsummering behandleReservasjoner(Saksbehandler saksbehandler,
+      Collection<Reservasjon> reservasjoner) throws IOException {
+    List<Hendelse> hendelser = new ArrayList<>(reservasjoner.size());
+    Behandlingsoppsummering oppsummering;
+    gruppe.set(hendelser);
+    try {
+      oppsummering = saksbehandler.behandleReservasjoner(reservasjoner);
+    } finally {
+      gruppe.remove();
+    }
+    if (!hendelser.isEmpty()) {
+      long neste = logg.skrivAlle(hendelser) + hendelser.size();
+      vurderØyeblikksbilde(neste - 1);
+      logg.venTilLagret(neste);
+    }
+    return oppsummering;
+  }
+
+  /**
+   * Venter til alle endringer som er gjort så langt er varig lagret.
+   *
+   * @throws IOException hvis loggen ikke kan lagres.
+   */
+  public void synkroniser() throws IOException {
+    logg.venTilLagret(logg.hentNesteSekvens());
+  }
+
+  /**
+   * Skriver et øyeblikksbilde av alle resultatene, og sletter loggsegmentene og de eldre bildene
+   * som det dekker.
+   *
+   * @return sekvensnummeret bildet dekker hendelsene fram til.
+   * @throws IOException hvis bildet ikke kan skrives.
+   */
+  public long taØyeblikksbilde() throws IOException {
+    synchronized (bildelås) {
+      long sekvens = logg.hentNesteSekvens();
+      Path midlertidig = mappe.resolve(bildenavn(sekvens) + ".tmp");
+      try (FileChannel kanal = FileChannel.open(midlertidig, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(POSTER_PER_SKRIVING * Hendelse.POSTBREDDE);
+        CRC32C sjekksum = new CRC32C();
+        long antall = 0;
+        kanal.position(HODEBREDDE);
+        for (Resultat resultat : resultater.values()) {
+          if (!buffer.hasRemaining()) {
+            skrivAlt(kanal, buffer);
+          }
+          Hendelse.opprettet(resultat).skrivTil(buffer, buffer.position(), sjekksum);
+          buffer.position(buffer.position() + Hendelse.POSTBREDDE);
+          antall++;
+        }
+        skrivAlt(kanal, buffer);
+        buffer.putInt(MAGI).putInt(VERSJON).putLong(sekvens).putLong(antall);
+        kanal.position(0);
+        skrivAlt(kanal, buffer);
+        kanal.force(true);
+      }
+      Files.move(midlertidig, mappe.resolve(bildenavn(sekvens)),
+          StandardCopyOption.ATOMIC_MOVE);
+      // Flyttingen må være varig før segmentene slettes, ellers kan et strømbrudd ta med seg både
+      // det nye bildet og hendelsene det dekker.
+      Hendelseslogg.synkroniserMappe(mappe);
+
+      logg.venTilLagret(sekvens);
+      logg.slettSegmenterFør(sekvens);
+      for (long eldre : finnBilder()) {
+        if (eldre < sekvens) {
+          Files.delete(mappe.resolve(bildenavn(eldre)));
+        }
+      }
+      sisteBilde = sekvens;
+      return sekvens;
+    }
+  }
+
+  /**
+   * Henter et registrert resultat.
+   *
+   * @param saksnummer saksnummeret til resultatet.
+   * @return resultatet, eller <code>null</code> hvis det ikke er registrert.
+   */
+  public Resultat hent(long saksnummer) {
+    return resultater.get(saksnummer);
+  }
+
+  public int hentAntall() {
+    return resultater.size();
+  }
+
+  public Collection<Resultat> hentResultater() {
+    return Collections.unmodifiableCollection(resultater.values());
+  }
+
+  /**
+   * Venter på et eventuelt øyeblikksbilde som tas, lagrer loggen og lukker journalen.
+   *
+   * @throws IOException hvis loggen ikke kan lagres.
+   */
+  @Override
+  public void close() throws IOException {
+    bakgrunnsutfører.shutdown();
+    try {
+      bakgrunnsutfører.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    logg.close();
+  }
+
+  Hendelseslogg hentLogg() {
+    return logg;
+  }
+
+  /**
+   * Setter en lytter som kalles etter at en statusendring er logget, slik at et register kan holde
+   * indeksen sin oppdatert.
+   */
+  void settIndekslytter(Statuslytter lytter) {
+    this.indekslytter = lytter;
+  }
+
+  /**
+   * Logger en statusendring på et registrert resultat. Under en samlet behandling legges hendelsen i
+   * gruppen til tråden, og skrives sammen med resten av gruppen.
+   */
+  private void loggStatus(Resultat resultat, ResultatStatus nyStatus) {
+    Hendelse hendelse = Hendelse.statusEndret(resultat, nyStatus);
+    List<Hendelse> hendelser = gruppe.get();
+    if (hendelser != null) {
+      hendelser.add(hendelse);
+    } else {
+      try {
+        skriv(hendelse);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    Statuslytter lytter = indekslytter;
+    if (lytter != null) {
+      lytter.statusEndret(resultat, nyStatus);
+    }
+  }
+
+  private void skriv(Hendelse hendelse) throws IOException {
+    vurderØyeblikksbilde(logg.skriv(hendelse));
+  }
+
+  private void vurderØyeblikksbilde(long sekvens) {
+    if (øyeblikksbildeintervall > 0 && sekvens + 1 - sisteBilde >= øyeblikksbildeintervall
+        && tarBilde.compareAndSet(false, true)) {
+      try {
+        bakgrunnsutfører.execute(() -> {
+          try {
+            taØyeblikksbilde();
+          } catch (IOException e) {
+            // Loggen er fortsatt komplett, så neste intervall prøver på nytt.
+            System.out.println("Kunne ikke ta øyeblikksbilde av resultatjournalen: "
+                + e.getMessage());
+          } finally {
+            tarBilde.set(false);
+          }
+        });
+      } catch (RuntimeException e) {
+        tarBilde.set(false);
+      }
+    }
+  }
+
+  private void anvend(Hendelse hendelse) {
+    Resultat resultat = resultater.computeIfAbsent(hendelse.hentSaksnummer(),
+        saksnummer -> Resultat.medSaksnummer(saksnummer, hendelse.hentDagsatsIØre(),
+            hendelse.hentSpesialisering(), hendelse.hentOpprettet(),
+            hendelse.hentFristDager()));
+    if (hendelse.hentStatus() != ResultatStatus.UBEHANDLET) {
+      resultat.endreStatus(hendelse.hentStatus());
+    }
+  }
+
+  private long lesØyeblikksbilde() throws IOException {
+    long[] bilder = finnBilder();
+    if (bilder.length == 0) {
+      return 0;
+    }
+    long sekvens = bilder[bilder.length - 1];
+    Path fil = mappe.resolve(bildenavn(sekvens));
+    try (FileChannel kanal = FileChannel.open(fil, StandardOpenOption.READ)) {
+      long størrelse = kanal.size();
+      if (størrelse < HODEBREDDE) {
+        throw new IOException("Ugyldig øyeblikksbilde: " + fil);
+      }
+      MappedByteBuffer hode = kanal.map(FileChannel.MapMode.READ_ONLY, 0, HODEBREDDE);
+      long antall = hode.getLong(16);
+      if (hode.getInt(0) != MAGI
+          || hode.getInt(4) != VERSJON || hode.getLong(8) != sekvens
+          || antall != (størrelse - HODEBREDDE) / Hendelse.POSTBREDDE) {
+        throw new IOException("Ugyldig øyeblikksbilde: " + fil);
+      }
+      // Bildet leses i vinduer som hver mappes for seg, slik at også bilder over 2 GiB kan leses.
+      long perVindu = Math.min(POSTER_PER_VINDU, Math.max(POSTER_PER_SKRIVING,
+          antall / (Runtime.getRuntime().availableProcessors() * 4L) + 1));
+      long vinduer = (antall + perVindu - 1) / perVindu;
+      boolean gyldig;
+      try {
+        gyldig = LongStream.range(0, vinduer).parallel().allMatch(vindu -> {
+          long første = vindu * perVindu;
+          int poster = (int) Math.min(perVindu, antall - første);
+          MappedByteBuffer buffer;
+          try {
+            buffer = kanal.map(FileChannel.MapMode.READ_ONLY,
+                HODEBREDDE + første * Hendelse.POSTBREDDE, (long) poster * Hendelse.POSTBREDDE);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          CRC32C sjekksum = new CRC32C();
+          for (int i = 0; i < poster; i++) {
+            Hendelse hendelse = Hendelse.lesFra(buffer, i * Hendelse.POSTBREDDE, sjekksum);
+            if (hendelse == null) {
+              return false;
+            }
+            anvend(hendelse);
+          }
+          return true;
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      if (!gyldig) {
+        throw new IOException("Ødelagt post i øyeblikksbilde: " + fil);
+      }
+    }
+    return sekvens;
+  }
+
+  /**
+   * Sletter midlertidige bildefiler etter et øyeblikksbilde som ble avbrutt før det var ferdig.
+   */
+  private void slettUferdigeBilder() throws IOException {
+    List<Path> uferdige;
+    try (Stream<Path> filer = Files.list(mappe)) {
+      uferdige = filer.filter(fil -> {
+        String navn = fil.getFileName().toString();
+        return navn.startsWith(BILDEPREFIKS) && navn.endsWith(BILDEENDELSE + ".tmp");
+      }).toList();
+    }
+    for (Path fil : uferdige) {
+      Files.deleteIfExists(fil);
+    }
+  }
+
+  private long[] finnBilder() throws IOException {
+    try (Stream<Path> filer = Files.list(mappe)) {
+      return filer.map(fil -> fil.getFileName().toString())
+          .filter(navn -> navn.startsWith(BILDEPREFIKS) && navn.endsWith(BILDEENDELSE))
+          .mapToLong(navn -> Long.parseLong(
+              navn.substring(BILDEPREFIKS.length(), navn.length() - BILDEENDELSE.length())))
+          .sorted()
+          .toArray();
+    }
+  }
+
+  private static String bildenavn(long sekvens) {
+    return String.format("%s%020d%s", BILDEPREFIKS, sekvens, BILDEENDELSE);
+  }
+
+  private static void skrivAlt(FileChannel kanal, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      kanal.write(buffer);
+    }
+    buffer.clear();
+  }
+}
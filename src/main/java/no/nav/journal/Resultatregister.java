@@ -0,0 +1,347 @@
+package no.nav.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import no.nav.resultat.Reservasjon;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatStatus;
+import no.nav.saksbehandler.Behandlingsoppsummering;
+import no.nav.saksbehandler.Behandlingsutfall;
+import no.nav.saksbehandler.Saksbehandler;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+
+/**
+ * Et innebygd, varig register over resultater, med oppslag på saksnummer og en sekundærindeks på
+ * spesialisering, status og opprettelsestidspunkt.
+ *
+ * <p>
+ * Resultatene lagres i en {@link Resultatjournal}, som også er primærnøkkelen på saksnummer.
+ * Indeksen har ett sortert kart per kombinasjon av spesialisering og status, sortert etter
+ * opprettelsestidspunkt og deretter saksnummer. Et oppslag som «alle ubehandlede resultater for
+ * min spesialisering, eldste først» tar dermed tid etter antall resultater som hentes, og ikke etter
+ * antall resultater i registeret. Sider hentes med nøkkelen til det siste resultatet på forrige side,
+ * slik at hver side tar like kort tid uansett hvor langt ut i indeksen den ligger.
+ * </p>
+ *
+ * <p>
+ * Indeksen holdes kun i minnet, og bygges opp igjen fra journalen når registeret åpnes. Journalen
+ * får beskjed om hver statusendring på et registrert resultat, også når en {@link Saksbehandler}
+ * endrer statusen direkte, og flytter resultatet i indeksen i samme kall som endringen logges.
+ * Mens et resultat flyttes kan det et øyeblikk ligge under den gamle statusen, så
+ * oppslagene hopper over resultater som ikke lenger har statusen det spørres etter.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.3
+ * @see Resultatjournal
+ */
+public final class Resultatregister implements Closeable {
+
+  private static final int ANTALL_STATUSER = ResultatStatus.values().length;
+
+  private final Resultatjournal journal;
+  private final ConcurrentSkipListMap<Indeksnøkkel, Resultat>[] indeks;
+  private final AtomicLong[] antall;
+
+  @SuppressWarnings("unchecked")
+  private Resultatregister(Resultatjournal journal) {
+    this.journal = journal;
+    int antallNøkler = SaksbehandlerSpesialisering.values().length * ANTALL_STATUSER;
+    this.indeks = new ConcurrentSkipListMap[antallNøkler];
+    this.antall = new AtomicLong[antallNøkler];
+    for (int i = 0; i < antallNøkler; i++) {
+      indeks[i] = new ConcurrentSkipListMap<>();
+      antall[i] = new AtomicLong();
+    }
+    journal.settIndekslytter(this::flytt);
+    journal.hentResultater().parallelStream()
+        .forEach(resultat -> leggTilIndeks(resultat, resultat.hentStatus()));
+  }
+
+  /**
+   * Åpner registeret i en mappe med standard innstillinger for journalen.
+   *
+   * @param mappe mappen registeret ligger i. Opprettes hvis den ikke finnes.
+   * @return registeret, med resultatene som var lagret.
+   * @throws IOException hvis registeret ikke kan leses eller opprettes.
+   */
+  public static Resultatregister åpne(Path mappe) throws IOException {
+    return new Resultatregister(Resultatjournal.åpne(mappe));
+  }
+
+  /**
+   * Åpner registeret i en mappe.
+   *
+   * @param mappe                   mappen registeret ligger i. Opprettes hvis den ikke finnes.
+   * @param hendelserPerSegment     antall hendelser i hvert segment av journalens logg.
+   * @param øyeblikksbildeintervall antall hendelser mellom hvert automatiske øyeblikksbilde, eller 0
+   *                                for ingen automatiske bilder.
+   * @return registeret, med resultatene som var lagret.
+   * @throws IOException              hvis registeret ikke kan leses eller opprettes.
+   * @throws IllegalArgumentException hvis segmentstørrelsen eller intervallet er ugyldig.
+   * @see Resultatjournal#åpne(Path, int, long)
+   */
+  public static Resultatregister åpne(Path mappe, int hendelserPerSegment,
+      long øyeblikksbildeintervall) throws IOException, IllegalArgumentException {
+    return new Resultatregister(
+        Resultatjournal.åpne(mappe, hendelserPerSegment, øyeblikksbildeintervall));
+  }
+
+  /**
+   * Registrerer et nytt resultat.
+   *
+   * @param resultat resultatet som skal registreres.
+   * @throws IOException              hvis resultatet ikke kan lagres.
+   * @throws IllegalArgumentException hvis et resultat med samme saksnummer allerede er registrert.
+   */
+  public void registrer(Resultat resultat) throws IOException, IllegalArgumentException {
+    // Resultatet legges i indeksen før journalen setter lytteren, slik at en statusendring rett etter
+    // registreringen finner det i indeksen og flytter det. Avviser journalen resultatet, fjernes det
+    // igjen, på samme måte som journalen selv rydder opp.
+    ResultatStatus status = resultat.hentStatus();
+    boolean lagtTil = leggTilIndeks(resultat, status);
+    try {
+      journal.registrer(resultat);
+    } catch (RuntimeException e) {
+      if (lagtTil) {
+        fjernFraIndeks(resultat, status);
+      }
+      throw e;
+    }
+    if (resultat.hentStatus() != status) {
+      // Endret før lytteren var satt.
+      flytt(resultat, resultat.hentStatus());
+    }
+  }
+
+  /**
+   * Henter et resultat på saksnummer.
+   *
+   * @param saksnummer saksnummeret til resultatet.
+   * @return resultatet, eller <code>null</code> hvis det ikke er registrert.
+   */
+  public Resultat hent(long saksnummer) {
+    return journal.hent(saksnummer);
+  }
+
+  /**
+   * Lar en saksbehandler behandle et registrert resultat. Hvis statusen endres, logges endringen
+   * og resultatet flyttes i indeksen.
+   *
+   * @param saksbehandler saksbehandleren som behandler resultatet.
+   * @param resultat      resultatet som skal behandles.
+   * @return utfallet av behandlingen.
+   * @throws IOException              hvis endringen ikke kan lagres.
+   * @throws IllegalArgumentException hvis resultatet har feil spesialisering for saksbehandleren.
+   * @see Saksbehandler#behandleResultat(Resultat)
+   */
+  public Behandlingsutfall behandle(Saksbehandler saksbehandler, Resultat resultat)
+      throws IOException, IllegalArgumentException {
+    return journal.behandle(saksbehandler, resultat);
+  }
+
+  /**
+   * Lar en saksbehandler behandle flere reserverte resultater samlet. Resultatene som fikk endret
+   * status flyttes i indeksen, og endringene er varig lagret når metoden returnerer.
+   *
+   * @param saksbehandler saksbehandleren som behandler resultatene.
+   * @param reservasjoner reservasjonene som skal behandles.
+   * @return en oppsummering av behandlingen.
+   * @throws IOException hvis endringene ikke kan lagres.
+   * @see Resultatjournal#behandleReservasjoner(Saksbehandler, Collection)
+   */
+  public Behandlingsoppsummering behandleReservasjoner(Saksbehandler saksbehandler,
+      Collection<Reservasjon> reservasjoner) throws IOException {
+    return journal.behandleReservasjoner(saksbehandler, reservasjoner);
+  }
+
+  /**
+   * Endrer statusen til et registrert resultat, flytter det i indeksen og logger endringen.
+   *
+   * @param resultat resultatet som skal endres.
+   * @param nyStatus den avgjorte statusen resultatet skal få.
+   * @return true hvis statusen ble endret, false hvis resultatet allerede var behandlet.
+   * @throws IOException              hvis endringen ikke kan lagres.
+   * @throws IllegalArgumentException hvis den nye statusen er {@link ResultatStatus#UBEHANDLET}.
+   */
+  public boolean endreStatus(Resultat resultat, ResultatStatus nyStatus)
+      throws IOException, IllegalArgumentException {
+    return journal.endreStatus(resultat, nyStatus);
+  }
+
+  /**
+   * Henter den første siden med resultater med gitt spesialisering og status, eldste først.
+   *
+   * @param spesialisering spesialiseringen resultatene skal ha.
+   * @param status         statusen resultatene skal ha.
+   * @param maksAntall     det største antallet resultater på siden.
+   * @return resultatene på siden.
+   */
+  public List<Resultat> hentSide(SaksbehandlerSpesialisering spesialisering,
+      ResultatStatus status, int maksAntall) {
+    return hentSide(indeks(spesialisering, status), status, maksAntall);
+  }
+
+  /**
+   * Henter neste side med resultater med gitt spesialisering og status, etter et resultat fra
+   * forrige side.
+   *
+   * @param spesialisering spesialiseringen resultatene skal ha.
+   * @param status         statusen resultatene skal ha.
+   * @param forrige        det siste resultatet på forrige side.
+   * @param maksAntall     det største antallet resultater på siden.
+   * @return resultatene på siden.
+   */
+  public List<Resultat> hentSideEtter(SaksbehandlerSpesialisering spesialisering,
+      ResultatStatus status, Resultat forrige, int maksAntall) {
+    return hentSide(indeks(spesialisering, status).tailMap(new Indeksnøkkel(forrige), false),
+        status, maksAntall);
+  }
+
+  /**
+   * Går gjennom resultatene med gitt spesialisering og status, eldste først. Iteratoren kan gis
+   * direkte til {@link Saksbehandler#behandleUbehandledeResultater(Iterator)}, og statusendringene
+   * logges og flytter resultatene i indeksen som ellers.
+   *
+   * @param spesialisering spesialiseringen resultatene skal ha.
+   * @param status         statusen resultatene skal ha.
+   * @return en iterator over resultatene.
+   */
+  public Iterator<Resultat> hentIterator(SaksbehandlerSpesialisering spesialisering,
+      ResultatStatus status) {
+    Iterator<Resultat> alle = indeks(spesialisering, status).values().iterator();
+    return new Iterator<>() {
+      private Resultat neste = finnNeste();
+
+      @Override
+      public boolean hasNext() {
+        return neste != null;
+      }
+
+      @Override
+      public Resultat next() {
+        if (neste == null) {
+          throw new NoSuchElementException();
+        }
+        Resultat resultat = neste;
+        neste = finnNeste();
+        return resultat;
+      }
+
+      private Resultat finnNeste() {
+        while (alle.hasNext()) {
+          Resultat resultat = alle.next();
+          if (resultat.hentStatus() == status) {
+            return resultat;
+          }
+        }
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Teller resultatene med gitt spesialisering og status.
+   *
+   * @param spesialisering spesialiseringen resultatene skal ha.
+   * @param status         statusen resultatene skal ha.
+   * @return antall resultater.
+   */
+  public long tell(SaksbehandlerSpesialisering spesialisering, ResultatStatus status) {
+    return antall[nøkkel(spesialisering, status)].get();
+  }
+
+  public int hentAntall() {
+    return journal.hentAntall();
+  }
+
+  /**
+   * Venter til alle endringer som er gjort så langt er varig lagret.
+   *
+   * @throws IOException hvis endringene ikke kan lagres.
+   */
+  public void synkroniser() throws IOException {
+    journal.synkroniser();
+  }
+
+  @Override
+  public void close() throws IOException {
+    journal.close();
+  }
+
+  Resultatjournal hentJournal() {
+    return journal;
+  }
+
+  private static List<Resultat> hentSide(ConcurrentNavigableMap<Indeksnøkkel, Resultat> utvalg,
+      ResultatStatus status, int maksAntall) {
+    List<Resultat> side = new ArrayList<>(Math.min(maksAntall, 1024));
+    for (Iterator<Resultat> iterator = utvalg.values().iterator();
+        side.size() < maksAntall && iterator.hasNext(); ) {
+      Resultat resultat = iterator.next();
+      if (resultat.hentStatus() == status) {
+        side.add(resultat);
+      }
+    }
+    return side;
+  }
+
+  private boolean leggTilIndeks(Resultat resultat, ResultatStatus status) {
+    int nøkkel = nøkkel(resultat.hentSpesialisering(), status);
+    if (indeks[nøkkel].putIfAbsent(new Indeksnøkkel(resultat), resultat) == null) {
+      antall[nøkkel].incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  private void fjernFraIndeks(Resultat resultat, ResultatStatus status) {
+    int nøkkel = nøkkel(resultat.hentSpesialisering(), status);
+    if (indeks[nøkkel].remove(new Indeksnøkkel(resultat)) != null) {
+      antall[nøkkel].decrementAndGet();
+    }
+  }
+
+  private void flytt(Resultat resultat, ResultatStatus nyStatus) {
+    leggTilIndeks(resultat, nyStatus);
+    fjernFraIndeks(resultat, ResultatStatus.UBEHANDLET);
+  }
+
+  private ConcurrentSkipListMap<Indeksnøkkel, Resultat> indeks(
+      SaksbehandlerSpesialisering spesialisering, ResultatStatus status) {
+    return indeks[nøkkel(spesialisering, status)];
+  }
+
+  private static int nøkkel(SaksbehandlerSpesialisering spesialisering, ResultatStatus status) {
+    return spesialisering.ordinal() * ANTALL_STATUSER + status.ordinal();
+  }
+
+  /**
+   * Nøkkelen til et resultat i indeksen, sortert etter opprettelsestidspunkt og saksnummer.
+   */
+  private static final class Indeksnøkkel implements Comparable<Indeksnøkkel> {
+
+    private final long opprettet;
+    private final long saksnummer;
+
+    private Indeksnøkkel(Resultat resultat) {
+      this.opprettet = resultat.hentOpprettet();
+      this.saksnummer = resultat.hentSaksnummer();
+    }
+
+    @Override
+    public int compareTo(Indeksnøkkel annen) {
+      int sammenligning = Long.compare(opprettet, annen.opprettet);
+      return sammenligning != 0 ? sammenligning : Long.compare(saksnummer, annen.saksnummer);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package no.nav.masseberegning;
+
+/**
+ * Representerer tekstformatene som støttes ved masseberegning.
+ *
+ * <p>
+ * Mulige formater er:
+ * <ul>
+ * <li><code>CSV</code>: Én post per linje, med kommaseparerte felter og valgfri overskriftslinje.</li>
+ * <li><code>NDJSON</code>: Ett JSON-objekt per linje.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see Masseberegning
+ */
+public enum Filformat {
+  CSV,
+  NDJSON;
+
+  /**
+   * Finner formatet ut ifra filendelsen til et filnavn.
+   *
+   * @param filnavn filnavnet formatet skal finnes for.
+   * @return formatet til filen.
+   * @throws IllegalArgumentException hvis filendelsen ikke tilhører et kjent format.
+   */
+  public static Filformat fraFilnavn(String filnavn) throws IllegalArgumentException {
+    String navn = filnavn.toLowerCase();
+    if (navn.endsWith(".csv")) {
+      return CSV;
+    }
+    if (navn.endsWith(".ndjson") || navn.endsWith(".jsonl")) {
+      return NDJSON;
+    }
+    throw new IllegalArgumentException("Ukjent filformat for " + filnavn + ".");
+  }
+}
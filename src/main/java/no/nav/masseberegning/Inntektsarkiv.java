@@ -0,0 +1,446 @@
+package no.nav.masseberegning;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.dagpenger.Dagsatsparti;
+import no.nav.resultat.Resultat;
+import no.nav.søker.Søker;
+import no.nav.årslønn.Årslønn;
+import org.json.JSONObject;
+
+/**
+ * Inntektshistorikk for mange personer, lagret kolonnevis i en binærfil som leses via minnekartlagte
+ * kanaler.
+ *
+ * <p>
+ * Filen består av et hode etterfulgt av fem kolonner, hver justert til 8 byte:
+ * <ul>
+ * <li><code>poststart</code>: Indeksen til første post for hver person, pluss en avsluttende
+ * indeks.</li>
+ * <li><code>år</code>: Året for hver post.</li>
+ * <li><code>beløp</code>: Beløpet for hver post, i øre.</li>
+ * <li><code>idstart</code>: Posisjonen til hver persons id i id-kolonnen, pluss en avsluttende
+ * posisjon.</li>
+ * <li><code>id</code>: Id-ene til personene, kodet som UTF-8.</li>
+ * </ul>
+ * Postene til en person ligger etter hverandre, sortert med det nyeste året først. Alle tall lagres
+ * i little-endian.
+ * </p>
+ *
+ * <p>
+ * Kalkulering leser rett fra de kartlagte kolonnene, uten å kopiere data eller opprette objekter
+ * per post. Hver kolonne kartlegges for seg, og kan derfor være opptil 2 GB.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Masseberegning
+ */
+public final class Inntektsarkiv implements Closeable {
+
+  /**
+   * Filendelsen for inntektsarkiver.
+   */
+  public static final String FILENDELSE = ".dpa";
+
+  private static final int MAGISK_TALL = 0x44504131;
+  private static final int VERSJON = 1;
+  private static final int HODESTØRRELSE = 32;
+  private static final int BUFFERSTØRRELSE = 1 << 16;
+  private static final ByteOrder REKKEFØLGE = ByteOrder.LITTLE_ENDIAN;
+
+  private final FileChannel kanal;
+  private final int antallPersoner;
+  private final int antallPoster;
+  private final IntBuffer poststart;
+  private final IntBuffer år;
+  private final LongBuffer beløp;
+  private final IntBuffer idstart;
+  private final ByteBuffer id;
+
+  private Inntektsarkiv(FileChannel kanal, int antallPersoner, int antallPoster, long idlengde)
+      throws IOException {
+    this.kanal = kanal;
+    this.antallPersoner = antallPersoner;
+    this.antallPoster = antallPoster;
+
+    long posisjon = HODESTØRRELSE;
+    this.poststart = kartlegg(kanal, posisjon, 4L * (antallPersoner + 1)).asIntBuffer();
+    posisjon = juster(posisjon + 4L * (antallPersoner + 1));
+    this.år = kartlegg(kanal, posisjon, 4L * antallPoster).asIntBuffer();
+    posisjon = juster(posisjon + 4L * antallPoster);
+    this.beløp = kartlegg(kanal, posisjon, 8L * antallPoster).asLongBuffer();
+    posisjon = juster(posisjon + 8L * antallPoster);
+    this.idstart = kartlegg(kanal, posisjon, 4L * (antallPersoner + 1)).asIntBuffer();
+    posisjon = juster(posisjon + 4L * (antallPersoner + 1));
+    this.id = kartlegg(kanal, posisjon, idlengde);
+  }
+
+  /**
+   * Åpner et inntektsarkiv for lesing.
+   *
+   * @param arkivfil filen arkivet ligger i.
+   * @return det åpnede arkivet.
+   * @throws IOException hvis filen ikke kan leses, eller ikke er et gyldig inntektsarkiv.
+   */
+  public static Inntektsarkiv åpne(Path arkivfil) throws IOException {
+    FileChannel kanal = FileChannel.open(arkivfil, StandardOpenOption.READ);
+    try {
+      ByteBuffer hode = ByteBuffer.allocate(HODESTØRRELSE).order(REKKEFØLGE);
+      while (hode.hasRemaining() && kanal.read(hode, hode.position()) >= 0) {
+        // Leser til hodet er fullt eller filen er slutt.
+      }
+      if (hode.hasRemaining() || hode.getInt(0) != MAGISK_TALL) {
+        throw new IOException(arkivfil + " er ikke et inntektsarkiv.");
+      }
+      if (hode.getInt(4) != VERSJON) {
+        throw new IOException("Ukjent versjon av inntektsarkiv: " + hode.getInt(4) + ".");
+      }
+      return new Inntektsarkiv(kanal, hode.getInt(8), hode.getInt(12), hode.getLong(16));
+    } catch (IOException | RuntimeException exception) {
+      kanal.close();
+      throw exception;
+    }
+  }
+
+  /**
+   * Leser alle søkere fra en leser og skriver dem til et nytt inntektsarkiv. Kolonnene mellomlagres
+   * i midlertidige filer ved siden av arkivet, slik at minnebruken ikke avhenger av antall søkere.
+   *
+   * <p>
+   * Har en søker flere årslønner for samme år, beholdes den siste.
+   * </p>
+   *
+   * @param leser    leseren søkerne hentes fra.
+   * @param arkivfil filen arkivet skal skrives til.
+   * @return antall personer i arkivet.
+   * @throws IOException              hvis lesing eller skriving feiler, eller arkivet blir for stort.
+   * @throws IllegalArgumentException hvis leseren møter en ugyldig post.
+   */
+  public static int skriv(Inntektsleser leser, Path arkivfil)
+      throws IOException, IllegalArgumentException {
+    Path mappe = arkivfil.toAbsolutePath().getParent();
+    try (Kolonne poststart = new Kolonne(mappe);
+        Kolonne år = new Kolonne(mappe);
+        Kolonne beløp = new Kolonne(mappe);
+        Kolonne idstart = new Kolonne(mappe);
+        Kolonne id = new Kolonne(mappe)) {
+      int antallPersoner = 0;
+      long antallPoster = 0;
+      long idlengde = 0;
+      poststart.skrivInt(0);
+      idstart.skrivInt(0);
+
+      int[] årene = new int[4];
+      long[] beløpene = new long[4];
+      Søker søker;
+      while ((søker = leser.lesNeste()) != null) {
+        List<Årslønn> årslønner = søker.hentÅrslønner();
+        if (årslønner.size() > årene.length) {
+          årene = new int[årslønner.size()];
+          beløpene = new long[årslønner.size()];
+        }
+        int antall = sorterNyesteFørst(årslønner, årene, beløpene);
+        for (int i = 0; i < antall; i++) {
+          år.skrivInt(årene[i]);
+          beløp.skrivLong(beløpene[i]);
+        }
+        byte[] personId = søker.hentId().getBytes(StandardCharsets.UTF_8);
+        id.skriv(personId);
+
+        antallPoster += antall;
+        idlengde += personId.length;
+        antallPersoner++;
+        if (antallPoster > Integer.MAX_VALUE || idlengde > Integer.MAX_VALUE
+            || antallPersoner == Integer.MAX_VALUE) {
+          throw new IOException("Inntektsarkivet har ikke plass til flere poster.");
+        }
+        poststart.skrivInt((int) antallPoster);
+        idstart.skrivInt((int) idlengde);
+      }
+
+      try (FileChannel ut = FileChannel.open(arkivfil, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        ByteBuffer hode = ByteBuffer.allocate(HODESTØRRELSE).order(REKKEFØLGE);
+        hode.putInt(MAGISK_TALL).putInt(VERSJON).putInt(antallPersoner).putInt((int) antallPoster)
+            .putLong(idlengde).clear();
+        while (hode.hasRemaining()) {
+          ut.write(hode);
+        }
+        for (Kolonne kolonne : List.of(poststart, år, beløp, idstart, id)) {
+          ByteBuffer utfylling = ByteBuffer.allocate((int) (juster(ut.position()) - ut.position()));
+          while (utfylling.hasRemaining()) {
+            ut.write(utfylling);
+          }
+          kolonne.overførTil(ut);
+        }
+      }
+      return antallPersoner;
+    }
+  }
+
+  /**
+   * Konverterer mellom tekstformatene og inntektsarkiv. Retningen bestemmes av filendelsene: er
+   * målfilen et arkiv, leses kildefilen som tekst, og er kildefilen et arkiv, skrives målfilen som
+   * tekst.
+   *
+   * @param kildefil filen som skal konverteres.
+   * @param målfil   filen resultatet av konverteringen skrives til.
+   * @return antall personer som ble konvertert.
+   * @throws IOException              hvis en av filene ikke kan leses eller skrives.
+   * @throws IllegalArgumentException hvis ingen eller begge filene er arkiver, eller kildefilen
+   *                                  inneholder en ugyldig post.
+   * @see Filformat#fraFilnavn(String)
+   */
+  public static int konverter(Path kildefil, Path målfil)
+      throws IOException, IllegalArgumentException {
+    if (erArkiv(kildefil) == erArkiv(målfil)) {
+      throw new IllegalArgumentException("Nøyaktig én av filene må være et inntektsarkiv.");
+    }
+    if (erArkiv(målfil)) {
+      try (Inntektsleser leser = new Inntektsleser(new BufferedReader(new InputStreamReader(
+          Files.newInputStream(kildefil), StandardCharsets.UTF_8), BUFFERSTØRRELSE),
+          Filformat.fraFilnavn(kildefil.toString()))) {
+        return skriv(leser, målfil);
+      }
+    }
+    try (Inntektsarkiv arkiv = åpne(kildefil);
+        BufferedWriter skriver = new BufferedWriter(new OutputStreamWriter(
+            Files.newOutputStream(målfil), StandardCharsets.UTF_8), BUFFERSTØRRELSE)) {
+      arkiv.eksporter(skriver, Filformat.fraFilnavn(målfil.toString()));
+      return arkiv.hentAntallPersoner();
+    }
+  }
+
+  /**
+   * Sjekker om en fil er et inntektsarkiv ut ifra filendelsen.
+   *
+   * @param fil filen som skal sjekkes.
+   * @return true hvis filen har filendelsen til et inntektsarkiv, false ellers.
+   */
+  public static boolean erArkiv(Path fil) {
+    return fil.toString().toLowerCase().endsWith(FILENDELSE);
+  }
+
+  /**
+   * Skriver alle inntektspostene i arkivet som tekst, i samme format som {@link Inntektsleser}
+   * leser.
+   *
+   * @param skriver målet postene skrives til.
+   * @param format  formatet postene skal skrives i.
+   * @throws IOException hvis postene ikke kan skrives.
+   */
+  public void eksporter(BufferedWriter skriver, Filformat format) throws IOException {
+    if (format == Filformat.CSV) {
+      skriver.write("person,år,beløp");
+      skriver.newLine();
+    }
+    for (int person = 0; person < antallPersoner; person++) {
+      String personId = hentPersonId(person);
+      for (int post = poststart.get(person); post < poststart.get(person + 1); post++) {
+        BigDecimal kroner = BigDecimal.valueOf(beløp.get(post), 2).stripTrailingZeros();
+        if (format == Filformat.CSV) {
+          skriver.write(personId + "," + år.get(post) + "," + kroner.toPlainString());
+        } else {
+          skriver.write(new JSONObject()
+              .put("person", personId)
+              .put("år", år.get(post))
+              .put("beløp", kroner)
+              .toString());
+        }
+        skriver.newLine();
+      }
+    }
+    skriver.flush();
+  }
+
+  /**
+   * Kalkulerer dagsatsen for en person i arkivet, rett fra de kartlagte kolonnene.
+   *
+   * @param dagpengerKalkulator kalkulatoren som kalkulerer dagsatsen.
+   * @param person              indeksen til personen.
+   * @return resultatet av kalkuleringen for personen.
+   * @see DagpengerKalkulator#kalkulerDagsatsIØre(long, long)
+   */
+  public Resultat kalkulerDagsats(DagpengerKalkulator dagpengerKalkulator, int person) {
+    return dagpengerKalkulator.kalkulerDagsatsIØre(summerNyligeIØre(person, 1),
+        summerNyligeIØre(person, 3));
+  }
+
+  /**
+   * Legger til de summerte årslønnene for en person i et parti, slik at dagsatsen kan kalkuleres
+   * sammen med andre personer.
+   *
+   * @param parti  partiet personen legges til i.
+   * @param person indeksen til personen.
+   * @see DagpengerKalkulator#kalkulerDagsatser(Dagsatsparti)
+   */
+  public void leggTil(Dagsatsparti parti, int person) {
+    parti.leggTil(summerNyligeIØre(person, 1), summerNyligeIØre(person, 3));
+  }
+
+  /**
+   * Summerer de nyeste årslønnene til en person. Finnes det færre årslønner enn etterspurt,
+   * summeres alle.
+   *
+   * @param person   indeksen til personen.
+   * @param antallÅr antall år som skal summeres.
+   * @return summen av de nyeste årslønnene, i øre.
+   */
+  public long summerNyligeIØre(int person, int antallÅr) {
+    int start = poststart.get(person);
+    int slutt = Math.min(start + antallÅr, poststart.get(person + 1));
+    long sum = 0;
+    for (int post = start; post < slutt; post++) {
+      sum += beløp.get(post);
+    }
+    return sum;
+  }
+
+  /**
+   * Henter id-en til en person.
+   *
+   * @param person indeksen til personen.
+   * @return id-en til personen.
+   */
+  public String hentPersonId(int person) {
+    int start = idstart.get(person);
+    byte[] bytes = new byte[idstart.get(person + 1) - start];
+    id.get(start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Henter antall personer i arkivet.
+   *
+   * @return antall personer.
+   */
+  public int hentAntallPersoner() {
+    return antallPersoner;
+  }
+
+  /**
+   * Henter antall inntektsposter i arkivet, for alle personer samlet.
+   *
+   * @return antall inntektsposter.
+   */
+  public int hentAntallPoster() {
+    return antallPoster;
+  }
+
+  @Override
+  public void close() throws IOException {
+    kanal.close();
+  }
+
+  private static int sorterNyesteFørst(List<Årslønn> årslønner, int[] årene, long[] beløpene) {
+    int antall = 0;
+    for (Årslønn årslønn : årslønner) {
+      int indeks = 0;
+      while (indeks < antall && årene[indeks] > årslønn.hentÅretForLønn()) {
+        indeks++;
+      }
+      long øre = årslønn.hentÅrslønnIØre();
+      if (indeks < antall && årene[indeks] == årslønn.hentÅretForLønn()) {
+        beløpene[indeks] = øre;
+        continue;
+      }
+      System.arraycopy(årene, indeks, årene, indeks + 1, antall - indeks);
+      System.arraycopy(beløpene, indeks, beløpene, indeks + 1, antall - indeks);
+      årene[indeks] = årslønn.hentÅretForLønn();
+      beløpene[indeks] = øre;
+      antall++;
+    }
+    return antall;
+  }
+
+  private static ByteBuffer kartlegg(FileChannel kanal, long posisjon, long størrelse)
+      throws IOException {
+    if (størrelse > Integer.MAX_VALUE || posisjon + størrelse > kanal.size()) {
+      throw new IOException("Ugyldig kolonne i inntektsarkiv.");
+    }
+    return kanal.map(FileChannel.MapMode.READ_ONLY, posisjon, størrelse).order(REKKEFØLGE);
+  }
+
+  private static long juster(long posisjon) {
+    return (posisjon + 7) & ~7L;
+  }
+
+  /**
+   * En kolonne som skrives sekvensielt til en midlertidig fil, og slettes når den lukkes.
+   */
+  private static final class Kolonne implements Closeable {
+
+    private final FileChannel kanal;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFERSTØRRELSE).order(REKKEFØLGE);
+
+    private Kolonne(Path mappe) throws IOException {
+      this.kanal = FileChannel.open(Files.createTempFile(mappe, "inntektsarkiv", ".kolonne"),
+          StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    private void skrivInt(int verdi) throws IOException {
+      if (buffer.remaining() < Integer.BYTES) {
+        tøm();
+      }
+      buffer.putInt(verdi);
+    }
+
+    private void skrivLong(long verdi) throws IOException {
+      if (buffer.remaining() < Long.BYTES) {
+        tøm();
+      }
+      buffer.putLong(verdi);
+    }
+
+    private void skriv(byte[] bytes) throws IOException {
+      int posisjon = 0;
+      while (posisjon < bytes.length) {
+        if (!buffer.hasRemaining()) {
+          tøm();
+        }
+        int lengde = Math.min(buffer.remaining(), bytes.length - posisjon);
+        buffer.put(bytes, posisjon, lengde);
+        posisjon += lengde;
+      }
+    }
+
+    private void tøm() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        kanal.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    private void overførTil(FileChannel ut) throws IOException {
+      tøm();
+      long størrelse = kanal.size();
+      long overført = 0;
+      while (overført < størrelse) {
+        overført += kanal.transferTo(overført, størrelse - overført, ut);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      kanal.close();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package no.nav.masseberegning;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import no.nav.søker.Søker;
+import no.nav.årslønn.Årslønn;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Leser inntektsposter linje for linje, og samler påfølgende poster for samme person til én
+ * {@link Søker}.
+ *
+ * <p>
+ * Hver post består av en person, et år og et beløp. I CSV-format er feltene
+ * <code>person,år,beløp</code>, og en første linje som starter med <code>person</code> tolkes som
+ * overskrift. I NDJSON-format har hvert objekt feltene <code>person</code>, <code>år</code> og
+ * <code>beløp</code>. Postene til en person må ligge etter hverandre i filen.
+ * </p>
+ *
+ * <p>
+ * Leseren holder kun på postene til én person av gangen, slik at minnebruken ikke avhenger av
+ * størrelsen på filen.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see Masseberegning
+ */
+public class Inntektsleser implements Closeable {
+
+  private final BufferedReader leser;
+  private final Filformat format;
+  private long linjenummer;
+  private Inntektspost neste;
+
+  /**
+   * Oppretter en leser for inntektsposter i gitt format.
+   *
+   * @param leser  kilden postene leses fra.
+   * @param format formatet postene er skrevet i.
+   */
+  public Inntektsleser(BufferedReader leser, Filformat format) {
+    this.leser = leser;
+    this.format = format;
+  }
+
+  /**
+   * Leser alle påfølgende poster for neste person.
+   *
+   * @return neste søker, eller <code>null</code> hvis det ikke er flere poster.
+   * @throws IOException              hvis kilden ikke kan leses.
+   * @throws IllegalArgumentException hvis en linje ikke er en gyldig inntektspost.
+   */
+  public Søker lesNeste() throws IOException, IllegalArgumentException {
+    Inntektspost post = neste != null ? neste : lesPost();
+    if (post == null) {
+      return null;
+    }
+
+    List<Årslønn> årslønner = new ArrayList<>(4);
+    String person = post.person;
+    while (post != null && post.person.equals(person)) {
+      årslønner.add(post.årslønn);
+      post = lesPost();
+    }
+    neste = post;
+    return new Søker(person, årslønner);
+  }
+
+  private Inntektspost lesPost() throws IOException {
+    String linje;
+    do {
+      linje = leser.readLine();
+      if (linje == null) {
+        return null;
+      }
+      linjenummer++;
+    } while (linje.isBlank() || (linjenummer == 1 && erOverskrift(linje)));
+
+    try {
+      return format == Filformat.CSV ? lesCsv(linje) : lesNdjson(linje);
+    } catch (JSONException | IllegalArgumentException exception) {
+      throw new IllegalArgumentException(
+          "Ugyldig inntektspost på linje " + linjenummer + ": " + exception.getMessage(),
+          exception);
+    }
+  }
+
+  private boolean erOverskrift(String linje) {
+    return format == Filformat.CSV && linje.regionMatches(true, 0, "person", 0, 6);
+  }
+
+  private static Inntektspost lesCsv(String linje) {
+    int førsteKomma = linje.indexOf(',');
+    int andreKomma = førsteKomma < 0 ? -1 : linje.indexOf(',', førsteKomma + 1);
+    if (andreKomma < 0) {
+      throw new IllegalArgumentException("Forventet tre felter.");
+    }
+    return new Inntektspost(linje.substring(0, førsteKomma).trim(), new Årslønn(
+        Integer.parseInt(linje.substring(førsteKomma + 1, andreKomma).trim()),
+        Double.parseDouble(linje.substring(andreKomma + 1).trim())));
+  }
+
+  private static Inntektspost lesNdjson(String linje) {
+    JSONObject post = new JSONObject(linje);
+    return new Inntektspost(post.get("person").toString(),
+        new Årslønn(post.getInt("år"), post.getDouble("beløp")));
+  }
+
+  @Override
+  public void close() throws IOException {
+    leser.close();
+  }
+
+  private static final class Inntektspost {
+
+    private final String person;
+    private final Årslønn årslønn;
+
+    private Inntektspost(String person, Årslønn årslønn) {
+      this.person = person;
+      this.årslønn = årslønn;
+    }
+  }
+}
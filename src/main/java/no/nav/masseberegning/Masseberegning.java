@@ -0,0 +1,302 @@
+package no.nav.masseberegning;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.dagpenger.Dagsatsparti;
+import no.nav.resultat.Resultat;
+import no.nav.søker.Søker;
+
+/**
+ * Kalkulerer dagsatser for store mengder søkere, lest fra og skrevet til tekstfiler.
+ *
+ * <p>
+ * Beregningen går i tre trinn som kjører samtidig: lesing av inntektsposter, kalkulering av
+ * dagsatser og skriving av resultater. Søkerne sendes mellom trinnene i partier gjennom køer med
+ * begrenset kapasitet. Et trinn som ligger foran venter på trinnet etter, slik at kun et fast antall
+ * partier er i minnet samtidig, uansett hvor stor filen er. Resultatene skrives i samme rekkefølge
+ * som søkerne ble lest.
+ * </p>
+ *
+ * <p>
+ * Kalkuleringen kjører i et trådbasseng som lever like lenge som masseberegningen, slik at
+ * gjentatte beregninger ikke starter nye tråder.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Inntektsleser
+ * @see Resultatskriver
+ * @see Inntektsarkiv
+ * @see DagpengerKalkulator#kalkulerDagsatser(java.util.stream.Stream, ForkJoinPool)
+ */
+public class Masseberegning {
+
+  private static final int PARTISTØRRELSE = 1024;
+  private static final int KØKAPASITET = 4;
+  private static final int BUFFERSTØRRELSE = 1 << 16;
+  private static final Parti SLUTT = new Parti(List.of());
+
+  private final DagpengerKalkulator dagpengerKalkulator;
+  private final ForkJoinPool trådbasseng;
+
+  /**
+   * Oppretter en masseberegning som kalkulerer i JVM-ens felles trådbasseng,
+   * {@link ForkJoinPool#commonPool()}.
+   *
+   * @param dagpengerKalkulator kalkulatoren som kalkulerer dagsatsene.
+   */
+  public Masseberegning(DagpengerKalkulator dagpengerKalkulator) {
+    this(dagpengerKalkulator, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Oppretter en masseberegning med et eget trådbasseng med gitt antall tråder til kalkulering.
+   * Trådene avsluttes av seg selv når de har stått ledige en stund.
+   *
+   * @param dagpengerKalkulator kalkulatoren som kalkulerer dagsatsene.
+   * @param parallellitet       antall tråder som brukes til kalkulering. Må være større enn 0.
+   * @throws IllegalArgumentException hvis parallelliteten er negativ eller null (0).
+   */
+  public Masseberegning(DagpengerKalkulator dagpengerKalkulator, int parallellitet)
+      throws IllegalArgumentException {
+    this(dagpengerKalkulator, lagTrådbasseng(parallellitet));
+  }
+
+  /**
+   * Oppretter en masseberegning som kalkulerer i et gitt trådbasseng. Trådbassenget stoppes ikke av
+   * masseberegningen.
+   *
+   * @param dagpengerKalkulator kalkulatoren som kalkulerer dagsatsene.
+   * @param trådbasseng         trådbassenget kalkuleringene kjøres i.
+   */
+  public Masseberegning(DagpengerKalkulator dagpengerKalkulator, ForkJoinPool trådbasseng) {
+    this.dagpengerKalkulator = dagpengerKalkulator;
+    this.trådbasseng = trådbasseng;
+  }
+
+  /**
+   * Kalkulerer dagsatser for alle søkere i en inntektsfil, og skriver resultatene til en
+   * resultatfil. Formatene bestemmes av filendelsene, og inntektsfilen kan også være et
+   * {@link Inntektsarkiv}.
+   *
+   * @param inntektsfil filen inntektspostene leses fra.
+   * @param resultatfil filen resultatene skrives til.
+   * @return antall søkere som ble kalkulert.
+   * @throws IOException              hvis en av filene ikke kan leses eller skrives.
+   * @throws InterruptedException     hvis tråden blir avbrutt under beregningen.
+   * @throws IllegalArgumentException hvis inntektsfilen inneholder en ugyldig post.
+   * @see Filformat#fraFilnavn(String)
+   */
+  public long beregn(Path inntektsfil, Path resultatfil)
+      throws IOException, InterruptedException, IllegalArgumentException {
+    if (Inntektsarkiv.erArkiv(inntektsfil)) {
+      try (Inntektsarkiv arkiv = Inntektsarkiv.åpne(inntektsfil);
+          Resultatskriver skriver = new Resultatskriver(new BufferedWriter(new OutputStreamWriter(
+              Files.newOutputStream(resultatfil), StandardCharsets.UTF_8), BUFFERSTØRRELSE),
+              Filformat.fraFilnavn(resultatfil.toString()))) {
+        return beregn(arkiv, skriver);
+      }
+    }
+    try (Inntektsleser leser = new Inntektsleser(new BufferedReader(new InputStreamReader(
+        Files.newInputStream(inntektsfil), StandardCharsets.UTF_8), BUFFERSTØRRELSE),
+        Filformat.fraFilnavn(inntektsfil.toString()));
+        Resultatskriver skriver = new Resultatskriver(new BufferedWriter(new OutputStreamWriter(
+            Files.newOutputStream(resultatfil), StandardCharsets.UTF_8), BUFFERSTØRRELSE),
+            Filformat.fraFilnavn(resultatfil.toString()))) {
+      return beregn(leser, skriver);
+    }
+  }
+
+  /**
+   * Kalkulerer dagsatser for alle søkere fra en leser, og skriver resultatene til en skriver.
+   * Leseren og skriveren lukkes ikke.
+   *
+   * @param leser   leseren søkerne hentes fra.
+   * @param skriver skriveren resultatene skrives til.
+   * @return antall søkere som ble kalkulert.
+   * @throws IOException              hvis lesing eller skriving feiler.
+   * @throws InterruptedException     hvis tråden blir avbrutt under beregningen.
+   * @throws IllegalArgumentException hvis leseren møter en ugyldig post.
+   */
+  public long beregn(Inntektsleser leser, Resultatskriver skriver)
+      throws IOException, InterruptedException, IllegalArgumentException {
+    BlockingQueue<Parti> tilKalkulering = new ArrayBlockingQueue<>(KØKAPASITET);
+    BlockingQueue<Parti> tilSkriving = new ArrayBlockingQueue<>(KØKAPASITET);
+    ExecutorService trinn = Executors.newFixedThreadPool(2);
+
+    try {
+      Future<?> lesing = trinn.submit(() -> les(leser, tilKalkulering));
+      Future<Long> skriving = trinn.submit(() -> skriv(skriver, tilSkriving));
+      RuntimeException kalkuleringsfeil = null;
+      try {
+        kalkuler(tilKalkulering, tilSkriving);
+      } catch (RuntimeException exception) {
+        kalkuleringsfeil = exception;
+        tøm(tilKalkulering);
+      } finally {
+        tilSkriving.put(SLUTT);
+      }
+
+      vent(lesing);
+      long antall = vent(skriving);
+      if (kalkuleringsfeil != null) {
+        throw kalkuleringsfeil;
+      }
+      return antall;
+    } finally {
+      trinn.shutdownNow();
+    }
+  }
+
+  /**
+   * Kalkulerer dagsatser for alle personer i et inntektsarkiv, og skriver resultatene til en
+   * skriver. Arkivet og skriveren lukkes ikke.
+   *
+   * <p>
+   * Kalkuleringen leser rett fra arkivet, uten å tolke tekst eller opprette søkere. Hvert parti
+   * kalkuleres samlet med {@link DagpengerKalkulator#kalkulerDagsatser(Dagsatsparti)}, og flere
+   * partier kalkuleres mens tidligere partier skrives.
+   * </p>
+   *
+   * @param arkiv   arkivet inntektene hentes fra.
+   * @param skriver skriveren resultatene skrives til.
+   * @return antall personer som ble kalkulert.
+   * @throws IOException hvis skriving feiler.
+   */
+  public long beregn(Inntektsarkiv arkiv, Resultatskriver skriver) throws IOException {
+    int antallPersoner = arkiv.hentAntallPersoner();
+    int parallellitet = trådbasseng.getParallelism();
+    Deque<ForkJoinTask<List<Resultat>>> underveis = new ArrayDeque<>();
+    int neste = 0;
+    for (int start = 0; start < antallPersoner; start += PARTISTØRRELSE) {
+      while (neste < antallPersoner && underveis.size() <= parallellitet) {
+        underveis.add(kalkulerParti(arkiv, neste));
+        neste += PARTISTØRRELSE;
+      }
+      List<Resultat> resultater = underveis.poll().join();
+      for (int i = 0; i < resultater.size(); i++) {
+        skriver.skriv(arkiv.hentPersonId(start + i), resultater.get(i));
+      }
+    }
+    skriver.flush();
+    return antallPersoner;
+  }
+
+  private ForkJoinTask<List<Resultat>> kalkulerParti(Inntektsarkiv arkiv, int start) {
+    int slutt = Math.min(start + PARTISTØRRELSE, arkiv.hentAntallPersoner());
+    return trådbasseng.submit(() -> {
+      Dagsatsparti parti = new Dagsatsparti(slutt - start);
+      for (int person = start; person < slutt; person++) {
+        arkiv.leggTil(parti, person);
+      }
+      return dagpengerKalkulator.kalkulerDagsatser(parti);
+    });
+  }
+
+  private static ForkJoinPool lagTrådbasseng(int parallellitet) throws IllegalArgumentException {
+    if (parallellitet <= 0) {
+      throw new IllegalArgumentException("Parallelliteten må være større enn 0.");
+    }
+    return new ForkJoinPool(parallellitet);
+  }
+
+  private static Void les(Inntektsleser leser, BlockingQueue<Parti> tilKalkulering)
+      throws IOException, InterruptedException {
+    try {
+      List<Søker> søkere = new ArrayList<>(PARTISTØRRELSE);
+      Søker søker;
+      while ((søker = leser.lesNeste()) != null) {
+        søkere.add(søker);
+        if (søkere.size() == PARTISTØRRELSE) {
+          tilKalkulering.put(new Parti(søkere));
+          søkere = new ArrayList<>(PARTISTØRRELSE);
+        }
+      }
+      if (!søkere.isEmpty()) {
+        tilKalkulering.put(new Parti(søkere));
+      }
+      return null;
+    } finally {
+      tilKalkulering.put(SLUTT);
+    }
+  }
+
+  private void kalkuler(BlockingQueue<Parti> tilKalkulering, BlockingQueue<Parti> tilSkriving)
+      throws InterruptedException {
+    Parti parti;
+    while ((parti = tilKalkulering.take()) != SLUTT) {
+      parti.resultater = dagpengerKalkulator.kalkulerDagsatser(parti.søkere.stream(), trådbasseng);
+      tilSkriving.put(parti);
+    }
+  }
+
+  private static long skriv(Resultatskriver skriver, BlockingQueue<Parti> tilSkriving)
+      throws IOException, InterruptedException {
+    long antall = 0;
+    try {
+      Parti parti;
+      while ((parti = tilSkriving.take()) != SLUTT) {
+        for (int i = 0; i < parti.søkere.size(); i++) {
+          skriver.skriv(parti.søkere.get(i).hentId(), parti.resultater.get(i));
+        }
+        antall += parti.søkere.size();
+      }
+      skriver.flush();
+      return antall;
+    } catch (IOException | RuntimeException exception) {
+      // Trinnene foran må ikke bli stående og vente på plass i køen.
+      tøm(tilSkriving);
+      throw exception;
+    }
+  }
+
+  private static void tøm(BlockingQueue<Parti> kø) throws InterruptedException {
+    while (kø.take() != SLUTT) {
+      // Partier som ikke skal behandles forkastes.
+    }
+  }
+
+  private static <T> T vent(Future<T> trinn) throws IOException, InterruptedException {
+    try {
+      return trinn.get();
+    } catch (ExecutionException exception) {
+      Throwable årsak = exception.getCause();
+      if (årsak instanceof IOException) {
+        throw (IOException) årsak;
+      }
+      if (årsak instanceof RuntimeException) {
+        throw (RuntimeException) årsak;
+      }
+      throw new IOException("Masseberegningen feilet.", årsak);
+    }
+  }
+
+  private static final class Parti {
+
+    private final List<Søker> søkere;
+    private List<Resultat> resultater;
+
+    private Parti(List<Søker> søkere) {
+      this.søkere = søkere;
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package no.nav.masseberegning;
+
+import java.util.BitSet;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.dagpenger.Dagsatsparti;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+
+/**
+ * Indeks over lagrede saker, sortert på siste årslønn og på summen av de tre siste årslønnene, med
+ * det gjeldende resultatet for hver sak.
+ *
+ * <p>
+ * Når grunnbeløpet reguleres, kan kun saker der siste årslønn ligger mellom gammel og ny grense for
+ * 1,5G eller 6G, eller der summen ligger mellom gammel og ny grense for 3G, få en annen rettighet
+ * eller beregningsmetode. Valget mellom siste årslønn og gjennomsnittet avhenger ikke av
+ * grunnbeløpet, og dagsatsen for disse metodene avhenger bare av inntektene. Ved en regulering
+ * finnes de berørte sakene derfor med binærsøk i de sorterte nøklene, og bare de kalkuleres på nytt
+ * med {@link DagpengerKalkulator}. For de andre sakene er det kun dagsatsen for saker med maks
+ * dagpengegrunnlag som endres, og den settes i en enkel løkke.
+ * </p>
+ * <p>
+ * Sakene kalkuleres i partier med {@link DagpengerKalkulator#beregnDagsatser(Dagsatsparti)}, så det
+ * opprettes ingen resultater og ingen saksnumre tas i bruk.
+ * </p>
+ * <p>
+ * Indeksen er ikke trådsikker, og skal kun brukes av én tråd om gangen.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Inntektsarkiv
+ */
+public final class Reguleringsindeks {
+
+  private static final int PARTISTØRRELSE = 1024;
+
+  private final long[] sisteÅrslønner;
+  private final long[] sumTreÅr;
+  private final int[] sakerEtterSisteÅrslønn;
+  private final long[] sortertSisteÅrslønn;
+  private final int[] sakerEtterSumTreÅr;
+  private final long[] sortertSumTreÅr;
+  private final long[] dagsatser;
+  private final SaksbehandlerSpesialisering[] spesialiseringer;
+  private GrunnbeløpVerktøy grunnbeløpVerktøy;
+
+  /**
+   * Oppretter en indeks over gitte saker, og kalkulerer resultatet for hver sak med gitt
+   * grunnbeløp.
+   *
+   * @param sisteÅrslønner    siste årslønn for hver sak, i øre.
+   * @param sumTreÅr          summen av de tre siste årslønnene for hver sak, i øre.
+   * @param grunnbeløpVerktøy verktøyet med grunnbeløpet sakene skal kalkuleres med.
+   * @throws IllegalArgumentException hvis tabellene har ulik lengde, eller et beløp er ugyldig.
+   */
+  public Reguleringsindeks(long[] sisteÅrslønner, long[] sumTreÅr,
+      GrunnbeløpVerktøy grunnbeløpVerktøy) throws IllegalArgumentException {
+    if (sisteÅrslønner.length != sumTreÅr.length) {
+      throw new IllegalArgumentException("Det må være like mange siste årslønner som summer.");
+    }
+    this.sisteÅrslønner = sisteÅrslønner.clone();
+    this.sumTreÅr = sumTreÅr.clone();
+    this.sakerEtterSisteÅrslønn = sorterSaker(this.sisteÅrslønner);
+    this.sortertSisteÅrslønn = hentSortert(this.sisteÅrslønner, sakerEtterSisteÅrslønn);
+    this.sakerEtterSumTreÅr = sorterSaker(this.sumTreÅr);
+    this.sortertSumTreÅr = hentSortert(this.sumTreÅr, sakerEtterSumTreÅr);
+    this.dagsatser = new long[sisteÅrslønner.length];
+    this.spesialiseringer = new SaksbehandlerSpesialisering[sisteÅrslønner.length];
+    this.grunnbeløpVerktøy = grunnbeløpVerktøy;
+    kalkulerAlle();
+  }
+
+  /**
+   * Oppretter en indeks over alle personene i et inntektsarkiv, med én sak per person.
+   *
+   * @param arkiv             arkivet med inntektene.
+   * @param grunnbeløpVerktøy verktøyet med grunnbeløpet sakene skal kalkuleres med.
+   * @return indeksen over personene i arkivet.
+   */
+  public static Reguleringsindeks fraArkiv(Inntektsarkiv arkiv,
+      GrunnbeløpVerktøy grunnbeløpVerktøy) {
+    long[] sisteÅrslønner = new long[arkiv.hentAntallPersoner()];
+    long[] sumTreÅr = new long[arkiv.hentAntallPersoner()];
+    for (int person = 0; person < sisteÅrslønner.length; person++) {
+      sisteÅrslønner[person] = arkiv.summerNyligeIØre(person, 1);
+      sumTreÅr[person] = arkiv.summerNyligeIØre(person, 3);
+    }
+    return new Reguleringsindeks(sisteÅrslønner, sumTreÅr, grunnbeløpVerktøy);
+  }
+
+  private void kalkulerAlle() {
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(grunnbeløpVerktøy);
+    Dagsatsparti parti = new Dagsatsparti(PARTISTØRRELSE);
+    for (int fra = 0; fra < dagsatser.length; fra += PARTISTØRRELSE) {
+      int til = Math.min(fra + PARTISTØRRELSE, dagsatser.length);
+      parti.tøm();
+      for (int sak = fra; sak < til; sak++) {
+        parti.leggTil(sisteÅrslønner[sak], sumTreÅr[sak]);
+      }
+      kalkulator.beregnDagsatser(parti);
+      for (int sak = fra; sak < til; sak++) {
+        dagsatser[sak] = parti.hentDagsatsIØre(sak - fra);
+        spesialiseringer[sak] = parti.hentSpesialisering(sak - fra);
+      }
+    }
+  }
+
+  /**
+   * Oppdaterer resultatene for alle sakene til et nytt grunnbeløp.
+   *
+   * <p>
+   * Sakene som kan få ny rettighet eller beregningsmetode finnes med områdesøk i indeksen og
+   * kalkuleres på nytt. Resten av sakene med maks dagpengegrunnlag får den nye maks dagsatsen.
+   * </p>
+   *
+   * @param nyttVerktøy verktøyet med det nye grunnbeløpet.
+   * @return antall saker som ble kalkulert på nytt.
+   */
+  public int reguler(GrunnbeløpVerktøy nyttVerktøy) {
+    GrunnbeløpVerktøy gammeltVerktøy = this.grunnbeløpVerktøy;
+    BitSet berørte = new BitSet(dagsatser.length);
+    merkOmråde(sortertSisteÅrslønn, sakerEtterSisteÅrslønn,
+        gammeltVerktøy.hentMinimumÅrslønnForRettPåDagpengerIØre(),
+        nyttVerktøy.hentMinimumÅrslønnForRettPåDagpengerIØre(), berørte);
+    merkOmråde(sortertSisteÅrslønn, sakerEtterSisteÅrslønn,
+        gammeltVerktøy.hentMaksÅrligDagpengegrunnlagIØre(),
+        nyttVerktøy.hentMaksÅrligDagpengegrunnlagIØre(), berørte);
+    merkOmråde(sortertSumTreÅr, sakerEtterSumTreÅr,
+        gammeltVerktøy.hentTotaltGrunnbeløpForGittAntallÅrIØre(3),
+        nyttVerktøy.hentTotaltGrunnbeløpForGittAntallÅrIØre(3), berørte);
+
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(nyttVerktøy);
+    Dagsatsparti parti = new Dagsatsparti(PARTISTØRRELSE);
+    parti.leggTil(nyttVerktøy.hentMaksÅrligDagpengegrunnlagIØre(),
+        nyttVerktøy.hentMaksÅrligDagpengegrunnlagIØre());
+    kalkulator.beregnDagsatser(parti);
+    long maksDagsats = parti.hentDagsatsIØre(0);
+    for (int sak = 0; sak < dagsatser.length; sak++) {
+      if (spesialiseringer[sak] == SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS) {
+        dagsatser[sak] = maksDagsats;
+      }
+    }
+
+    int[] saker = new int[PARTISTØRRELSE];
+    int sak = berørte.nextSetBit(0);
+    while (sak >= 0) {
+      parti.tøm();
+      int antall = 0;
+      for (; sak >= 0 && antall < PARTISTØRRELSE; sak = berørte.nextSetBit(sak + 1)) {
+        saker[antall++] = sak;
+        parti.leggTil(sisteÅrslønner[sak], sumTreÅr[sak]);
+      }
+      kalkulator.beregnDagsatser(parti);
+      for (int i = 0; i < antall; i++) {
+        dagsatser[saker[i]] = parti.hentDagsatsIØre(i);
+        spesialiseringer[saker[i]] = parti.hentSpesialisering(i);
+      }
+    }
+    this.grunnbeløpVerktøy = nyttVerktøy;
+    return berørte.cardinality();
+  }
+
+  /**
+   * Merker sakene med nøkkel mellom gammel og ny grense. En sak oppfyller en grense når nøkkelen er
+   * minst like stor som grensen, så det er nøyaktig disse sakene som kan bytte side.
+   */
+  private static void merkOmråde(long[] sortertNøkkel, int[] saker, long gammelGrense,
+      long nyGrense, BitSet berørte) {
+    int fra = nedreGrense(sortertNøkkel, Math.min(gammelGrense, nyGrense));
+    int til = nedreGrense(sortertNøkkel, Math.max(gammelGrense, nyGrense));
+    for (int i = fra; i < til; i++) {
+      berørte.set(saker[i]);
+    }
+  }
+
+  /**
+   * Finner den første posisjonen i en sortert tabell med en verdi som er minst like stor som gitt
+   * verdi.
+   */
+  private static int nedreGrense(long[] sortert, long verdi) {
+    int lav = 0;
+    int høy = sortert.length;
+    while (lav < høy) {
+      int midt = (lav + høy) >>> 1;
+      if (sortert[midt] < verdi) {
+        lav = midt + 1;
+      } else {
+        høy = midt;
+      }
+    }
+    return lav;
+  }
+
+  /**
+   * Sorterer saksnumrene etter nøklene med flettesortering, uten å pakke tallene inn i objekter.
+   */
+  private static int[] sorterSaker(long[] nøkler) {
+    int[] saker = new int[nøkler.length];
+    for (int i = 0; i < saker.length; i++) {
+      saker[i] = i;
+    }
+    int[] buffer = new int[saker.length];
+    for (int bredde = 1; bredde < saker.length; bredde *= 2) {
+      for (int fra = 0; fra < saker.length; fra += 2 * bredde) {
+        int midt = Math.min(fra + bredde, saker.length);
+        int til = Math.min(fra + 2 * bredde, saker.length);
+        int venstre = fra;
+        int høyre = midt;
+        for (int i = fra; i < til; i++) {
+          if (høyre >= til || (venstre < midt && nøkler[saker[venstre]] <= nøkler[saker[høyre]])) {
+            buffer[i] = saker[venstre++];
+          } else {
+            buffer[i] = saker[høyre++];
+          }
+        }
+      }
+      int[] byttet = saker;
+      saker = buffer;
+      buffer = byttet;
+    }
+    return saker;
+  }
+
+  private static long[] hentSortert(long[] nøkler, int[] saker) {
+    long[] sortert = new long[saker.length];
+    for (int i = 0; i < saker.length; i++) {
+      sortert[i] = nøkler[saker[i]];
+    }
+    return sortert;
+  }
+
+  public int hentAntallSaker() {
+    return dagsatser.length;
+  }
+
+  /**
+   * Henter den gjeldende dagsatsen for en sak.
+   *
+   * @param sak indeksen til saken.
+   * @return dagsatsen i øre, eller 0 hvis saken ikke har rett på dagpenger.
+   */
+  public long hentDagsatsIØre(int sak) {
+    return dagsatser[sak];
+  }
+
+  /**
+   * Henter den gjeldende spesialiseringen for en sak.
+   *
+   * @param sak indeksen til saken.
+   * @return spesialiseringen for sakens resultat.
+   */
+  public SaksbehandlerSpesialisering hentSpesialisering(int sak) {
+    return spesialiseringer[sak];
+  }
+
+  /**
+   * Henter verktøyet med grunnbeløpet resultatene sist ble kalkulert med.
+   *
+   * @return det gjeldende grunnbeløpsverktøyet.
+   */
+  public GrunnbeløpVerktøy hentGrunnbeløpVerktøy() {
+    return grunnbeløpVerktøy;
+  }
+}
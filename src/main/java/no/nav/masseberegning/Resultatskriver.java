@@ -0,0 +1,117 @@
+package no.nav.masseberegning;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import no.nav.resultat.Resultat;
+import org.json.JSONObject;
+
+/**
+ * Skriver resultater linje for linje, med personen resultatet gjelder.
+ *
+ * <p>
+ * I CSV-format starter filen med overskriften
+ * <code>person,saksnummer,dagsats,spesialisering,status</code>. Personen settes i anførselstegn
+ * etter RFC 4180 når den inneholder komma, anførselstegn eller linjeskift, og anførselstegn i den
+ * dobles. De andre feltene er tall og navn på konstanter, og trenger det aldri. I NDJSON-format
+ * skrives hvert resultat som et JSON-objekt med de samme feltene.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Masseberegning
+ */
+public class Resultatskriver implements Closeable, Flushable {
+
+  static final String CSV_OVERSKRIFT = "person,saksnummer,dagsats,spesialisering,status";
+
+  private final BufferedWriter skriver;
+  private final Filformat format;
+  private boolean harSkrevet;
+
+  /**
+   * Oppretter en skriver for resultater i gitt format.
+   *
+   * @param skriver målet resultatene skrives til.
+   * @param format  formatet resultatene skal skrives i.
+   */
+  public Resultatskriver(BufferedWriter skriver, Filformat format) {
+    this.skriver = skriver;
+    this.format = format;
+  }
+
+  /**
+   * Skriver et resultat for en person.
+   *
+   * @param person   personen resultatet gjelder.
+   * @param resultat resultatet som skal skrives.
+   * @throws IOException hvis resultatet ikke kan skrives.
+   */
+  public void skriv(String person, Resultat resultat) throws IOException {
+    if (!harSkrevet) {
+      harSkrevet = true;
+      if (format == Filformat.CSV) {
+        skriver.write(CSV_OVERSKRIFT);
+        skriver.newLine();
+      }
+    }
+
+    if (format == Filformat.CSV) {
+      skrivCsvFelt(person);
+      skriver.write(',');
+      skriver.write(Long.toString(resultat.hentSaksnummer()));
+      skriver.write(',');
+      skriver.write(Double.toString(resultat.hentDagsats()));
+      skriver.write(',');
+      skriver.write(resultat.hentSpesialisering().name());
+      skriver.write(',');
+      skriver.write(resultat.hentStatus().name());
+    } else {
+      skriver.write(new JSONObject()
+          .put("person", person)
+          .put("saksnummer", resultat.hentSaksnummer())
+          .put("dagsats", resultat.hentDagsats())
+          .put("spesialisering", resultat.hentSpesialisering().name())
+          .put("status", resultat.hentStatus().name())
+          .toString());
+    }
+    skriver.newLine();
+  }
+
+  private void skrivCsvFelt(String felt) throws IOException {
+    if (!trengerAnførselstegn(felt)) {
+      skriver.write(felt);
+      return;
+    }
+    skriver.write('"');
+    for (int i = 0; i < felt.length(); i++) {
+      char tegn = felt.charAt(i);
+      if (tegn == '"') {
+        skriver.write('"');
+      }
+      skriver.write(tegn);
+    }
+    skriver.write('"');
+  }
+
+  private static boolean trengerAnførselstegn(String felt) {
+    for (int i = 0; i < felt.length(); i++) {
+      char tegn = felt.charAt(i);
+      if (tegn == ',' || tegn == '"' || tegn == '\n' || tegn == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    skriver.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    skriver.close();
+  }
+}
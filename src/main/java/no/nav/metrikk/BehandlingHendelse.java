@@ -0,0 +1,69 @@
+package no.nav.metrikk;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatStatus;
+import no.nav.saksbehandler.Behandlingsutfall;
+
+/**
+ * En JFR-hendelse for én behandling av et resultat, med spesialiseringen og statusovergangen.
+ *
+ * <p>
+ * Hendelsen er slått av som standard, og slås på i et opptak med profilen <code>dagpenger.jfc</code>
+ * eller med <code>no.nav.dagpenger.Behandling#enabled=true</code>.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see no.nav.saksbehandler.Saksbehandler#behandleResultat(Resultat)
+ */
+@Name("no.nav.dagpenger.Behandling")
+@Label("Behandling av resultat")
+@Description("Én saksbehandlers behandling av et resultat.")
+@Category("Dagpenger")
+@Enabled(false)
+@StackTrace(false)
+public final class BehandlingHendelse extends Event {
+
+  @Label("Saksnummer")
+  private long saksnummer;
+
+  @Label("Spesialisering")
+  private String spesialisering;
+
+  @Label("Saksbehandler")
+  private String saksbehandler;
+
+  @Label("Fra status")
+  private String fraStatus;
+
+  @Label("Til status")
+  private String tilStatus;
+
+  @Label("Utfall")
+  private String utfall;
+
+  /**
+   * Fyller inn behandlingen.
+   *
+   * @param saksbehandler navnet til saksbehandleren.
+   * @param resultat      resultatet som ble behandlet.
+   * @param fraStatus     statusen resultatet hadde før behandlingen.
+   * @param utfall        utfallet av behandlingen.
+   */
+  public void registrer(String saksbehandler, Resultat resultat, ResultatStatus fraStatus,
+      Behandlingsutfall utfall) {
+    this.saksnummer = resultat.hentSaksnummer();
+    this.spesialisering = resultat.hentSpesialisering().name();
+    this.saksbehandler = saksbehandler;
+    this.fraStatus = fraStatus.name();
+    this.tilStatus = resultat.hentStatus().name();
+    this.utfall = utfall.name();
+  }
+}
@@ -0,0 +1,62 @@
+package no.nav.metrikk;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * En JFR-hendelse for én forespørsel mot grunnbeløp API'et, med statuskoden, størrelsen på svaret og
+ * tiden forespørselen tok.
+ *
+ * <p>
+ * Hendelsen er slått av som standard, og slås på i et opptak med profilen <code>dagpenger.jfc</code>
+ * eller med <code>no.nav.dagpenger.Grunnbeløphenting#enabled=true</code>.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see no.nav.grunnbeløp.GrunnbeløpAPI#hentGrunnbeløp()
+ */
+@Name("no.nav.dagpenger.Grunnbeløphenting")
+@Label("Henting av grunnbeløp")
+@Description("Én forespørsel mot grunnbeløp API'et.")
+@Category("Dagpenger")
+@Enabled(false)
+public final class GrunnbeløphentingHendelse extends Event {
+
+  @Label("Statuskode")
+  @Description("HTTP-statuskoden API'et svarte med, eller 0 hvis det ikke svarte.")
+  private int statuskode;
+
+  @Label("Svarstørrelse")
+  @DataAmount
+  private long antallBytes;
+
+  @Label("Feil")
+  @Description("Feilen forespørselen endte med, eller tom hvis grunnbeløpet ble hentet.")
+  private String feil;
+
+  /**
+   * Fyller inn svaret fra API'et.
+   *
+   * @param statuskode  HTTP-statuskoden API'et svarte med.
+   * @param antallBytes antall bytes i svaret.
+   */
+  public void registrerSvar(int statuskode, long antallBytes) {
+    this.statuskode = statuskode;
+    this.antallBytes = antallBytes;
+  }
+
+  /**
+   * Fyller inn feilen forespørselen endte med.
+   *
+   * @param feil feilen, eller <code>null</code> hvis grunnbeløpet ble hentet.
+   */
+  public void registrerFeil(Throwable feil) {
+    this.feil = feil == null ? null : feil.toString();
+  }
+}
@@ -0,0 +1,83 @@
+package no.nav.metrikk;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Teller hendelser og måler hvor mange som skjer per sekund.
+ *
+ * <p>
+ * En registrering øker kun en {@link LongAdder}, så den er billig også når mange tråder registrerer
+ * samtidig. Hastigheten regnes ut når den leses, fra hvor mye telleren har økt siden forrige måling.
+ * En ny måling tas når det har gått minst ett sekund siden forrige, og ellers returneres den forrige
+ * hastigheten.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Metrikker
+ */
+public final class Hastighet {
+
+  private static final long MÅLEINTERVALL_NANOS = 1_000_000_000L;
+
+  private final LongAdder totalt = new LongAdder();
+  private final LongSupplier klokke;
+  private long forrigeTotalt;
+  private long forrigeNanos;
+  private double perSekund;
+
+  /**
+   * Oppretter en teller som måler hastigheten med systemets klokke.
+   */
+  public Hastighet() {
+    this(System::nanoTime);
+  }
+
+  Hastighet(LongSupplier klokke) {
+    this.klokke = klokke;
+    this.forrigeNanos = klokke.getAsLong();
+  }
+
+  /**
+   * Registrerer én hendelse.
+   */
+  public void registrer() {
+    totalt.increment();
+  }
+
+  /**
+   * Registrerer flere hendelser på én gang.
+   *
+   * @param antall antall hendelser.
+   */
+  public void registrer(long antall) {
+    totalt.add(antall);
+  }
+
+  /**
+   * Henter antall hendelser som er registrert totalt.
+   *
+   * @return antall hendelser.
+   */
+  public long hentTotalt() {
+    return totalt.sum();
+  }
+
+  /**
+   * Henter antall hendelser per sekund i det siste hele måleintervallet.
+   *
+   * @return hendelser per sekund.
+   */
+  public synchronized double hentPerSekund() {
+    long nå = klokke.getAsLong();
+    long gått = nå - forrigeNanos;
+    if (gått >= MÅLEINTERVALL_NANOS) {
+      long sum = totalt.sum();
+      perSekund = (sum - forrigeTotalt) * 1e9 / gått;
+      forrigeTotalt = sum;
+      forrigeNanos = nå;
+    }
+    return perSekund;
+  }
+}
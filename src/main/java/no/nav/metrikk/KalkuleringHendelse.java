@@ -0,0 +1,57 @@
+package no.nav.metrikk;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import no.nav.dagpenger.Beregningsmetode;
+import no.nav.resultat.Resultat;
+
+/**
+ * En JFR-hendelse for én kalkulering av dagsats, med beregningsmetoden, utfallet og tiden den tok.
+ *
+ * <p>
+ * Hendelsen er slått av som standard, og slås på i et opptak med profilen <code>dagpenger.jfc</code>
+ * eller med <code>no.nav.dagpenger.Kalkulering#enabled=true</code>. Når den er av, lages og sendes
+ * den ikke, og koster kun en sjekk av om den er på.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see no.nav.dagpenger.DagpengerKalkulator#kalkulerDagsats()
+ */
+@Name("no.nav.dagpenger.Kalkulering")
+@Label("Kalkulering av dagsats")
+@Description("Én kalkulering av dagsats med beregningsmetode og utfall.")
+@Category("Dagpenger")
+@Enabled(false)
+@StackTrace(false)
+public final class KalkuleringHendelse extends Event {
+
+  @Label("Beregningsmetode")
+  @Description("Beregningsmetoden som ble brukt, eller tom hvis søkeren ikke har rett.")
+  private String beregningsmetode;
+
+  @Label("Utfall")
+  @Description("Spesialiseringen resultatet skal behandles av.")
+  private String utfall;
+
+  @Label("Dagsats i øre")
+  private long dagsatsIØre;
+
+  /**
+   * Fyller inn utfallet av kalkuleringen.
+   *
+   * @param beregningsmetode beregningsmetoden som ble brukt, eller <code>null</code> hvis søkeren
+   *                         ikke har rett på dagpenger.
+   * @param resultat         resultatet av kalkuleringen.
+   */
+  public void registrer(Beregningsmetode beregningsmetode, Resultat resultat) {
+    this.beregningsmetode = beregningsmetode == null ? null : beregningsmetode.name();
+    this.utfall = resultat.hentSpesialisering().name();
+    this.dagsatsIØre = resultat.hentDagsatsIØre();
+  }
+}
@@ -0,0 +1,145 @@
+package no.nav.metrikk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram over tider i nanosekunder, med faste bøtter og uten låser.
+ *
+ * <p>
+ * Hver tosierpotens deles i fire like store bøtter, slik at en persentil som leses ut har en
+ * relativ feil på høyst 25%. Bøttene dekker alle positive <code>long</code>-verdier, så histogrammet
+ * trenger ingen konfigurasjon og kan aldri flyte over. En registrering er noen få atomiske
+ * operasjoner på forhåndsallokerte tabeller, og allokerer ingenting.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see Metrikker
+ */
+public final class Latenshistogram implements LatenshistogramMXBean {
+
+  private static final int UNDERBØTTEBITS = 2;
+  private static final int UNDERBØTTER = 1 << UNDERBØTTEBITS;
+  private static final int ANTALL_BØTTER = (Long.SIZE - UNDERBØTTEBITS) * UNDERBØTTER;
+
+  private final AtomicLongArray bøtter = new AtomicLongArray(ANTALL_BØTTER);
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong maks = new AtomicLong();
+
+  /**
+   * Registrerer en tid.
+   *
+   * @param nanos tiden i nanosekunder. Negative tider registreres som 0.
+   */
+  public void registrer(long nanos) {
+    nanos = Math.max(nanos, 0);
+    bøtter.incrementAndGet(bøtte(nanos));
+    sum.addAndGet(nanos);
+    long gjeldende = maks.get();
+    while (nanos > gjeldende && !maks.compareAndSet(gjeldende, nanos)) {
+      gjeldende = maks.get();
+    }
+  }
+
+  /**
+   * Henter antall registrerte tider.
+   *
+   * @return antall tider.
+   */
+  public long hentAntall() {
+    long antall = 0;
+    for (int i = 0; i < ANTALL_BØTTER; i++) {
+      antall += bøtter.get(i);
+    }
+    return antall;
+  }
+
+  /**
+   * Henter en persentil av de registrerte tidene.
+   *
+   * @param persentil persentilen som skal hentes, fra og med 0 til og med 100.
+   * @return den øvre grensen til bøtten persentilen ligger i, eller 0 hvis ingen tider er
+   * registrert.
+   * @throws IllegalArgumentException hvis persentilen er utenfor 0 til 100.
+   */
+  public long hentPersentilNanos(double persentil) throws IllegalArgumentException {
+    if (!(persentil >= 0 && persentil <= 100)) {
+      throw new IllegalArgumentException("Persentilen må være mellom 0 og 100: " + persentil);
+    }
+    long[] kopi = new long[ANTALL_BØTTER];
+    long antall = 0;
+    for (int i = 0; i < ANTALL_BØTTER; i++) {
+      kopi[i] = bøtter.get(i);
+      antall += kopi[i];
+    }
+    if (antall == 0) {
+      return 0;
+    }
+    long rang = Math.max(1, (long) Math.ceil(antall * persentil / 100));
+    long sett = 0;
+    for (int i = 0; i < ANTALL_BØTTER; i++) {
+      sett += kopi[i];
+      if (sett >= rang) {
+        return Math.min(øvreGrense(i), maks.get());
+      }
+    }
+    return maks.get();
+  }
+
+  @Override
+  public long getAntall() {
+    return hentAntall();
+  }
+
+  @Override
+  public double getGjennomsnittNanos() {
+    long antall = hentAntall();
+    return antall == 0 ? 0 : (double) sum.get() / antall;
+  }
+
+  @Override
+  public long getMedianNanos() {
+    return hentPersentilNanos(50);
+  }
+
+  @Override
+  public long getPersentil99Nanos() {
+    return hentPersentilNanos(99);
+  }
+
+  @Override
+  public long getPersentil999Nanos() {
+    return hentPersentilNanos(99.9);
+  }
+
+  @Override
+  public long getMaksNanos() {
+    return maks.get();
+  }
+
+  /**
+   * Finner bøtten for en tid. Tider under fire har hver sin bøtte, og ellers gir de to bitene etter
+   * den høyeste satte biten hvilken av de fire bøttene i tosierpotensen tiden hører til.
+   */
+  static int bøtte(long nanos) {
+    if (nanos < UNDERBØTTER) {
+      return (int) nanos;
+    }
+    int eksponent = 63 - Long.numberOfLeadingZeros(nanos);
+    int underbøtte = (int) (nanos >>> (eksponent - UNDERBØTTEBITS)) & (UNDERBØTTER - 1);
+    return (eksponent - UNDERBØTTEBITS + 1) * UNDERBØTTER + underbøtte;
+  }
+
+  /**
+   * Finner den største tiden som hører til en bøtte.
+   */
+  static long øvreGrense(int bøtte) {
+    if (bøtte < UNDERBØTTER) {
+      return bøtte;
+    }
+    int eksponent = bøtte / UNDERBØTTER + UNDERBØTTEBITS - 1;
+    long nedre = (long) (UNDERBØTTER + bøtte % UNDERBØTTER) << (eksponent - UNDERBØTTEBITS);
+    return nedre + (1L << (eksponent - UNDERBØTTEBITS)) - 1;
+  }
+}
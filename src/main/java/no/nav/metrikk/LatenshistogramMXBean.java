@@ -0,0 +1,23 @@
+package no.nav.metrikk;
+
+/**
+ * JMX-grensesnittet til et {@link Latenshistogram}. Alle tider er i nanosekunder.
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see Latenshistogram
+ */
+public interface LatenshistogramMXBean {
+
+  long getAntall();
+
+  double getGjennomsnittNanos();
+
+  long getMedianNanos();
+
+  long getPersentil99Nanos();
+
+  long getPersentil999Nanos();
+
+  long getMaksNanos();
+}
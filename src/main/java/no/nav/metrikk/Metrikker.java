@@ -0,0 +1,393 @@
+package no.nav.metrikk;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import no.nav.dagpenger.Beregningsmetode;
+import no.nav.resultat.ResultatKø;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+
+/**
+ * Metrikker for kalkuleringer, henting av grunnbeløpet og behandling av saker, som kan leses over
+ * JMX.
+ *
+ * <p>
+ * Metrikkene er:
+ * <ul>
+ * <li>Tiden en kalkulering tar, per {@link Beregningsmetode} og for søkere uten rett.</li>
+ * <li>Tiden hver forespørsel mot grunnbeløp API'et tar, antall forespørsler som feilet, og antall
+ * ganger et {@link no.nav.grunnbeløp.GrunnbeløpVerktøy} ble opprettet uten grunnbeløp.</li>
+ * <li>Antall resultater i køen og alderen til det eldste av dem, per
+ * {@link SaksbehandlerSpesialisering}.</li>
+ * <li>Antall behandlede resultater og behandlinger per sekund, per spesialisering og per
+ * registrert saksbehandler.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Saksbehandlere telles kun hver for seg når de er registrert med
+ * {@link #registrerSaksbehandler(String)}, og høyst {@link #MAKS_SAKSBEHANDLERE} av dem. Flere
+ * registreringer enn det telles samlet under {@value #ANDRE_SAKSBEHANDLERE}, slik at antall
+ * JMX-nøkler ikke vokser med hvert navn som dukker opp. Grensen settes med systemegenskapen
+ * <code>metrikker.maksSaksbehandlere</code>, og er 256 som standard.
+ * </p>
+ *
+ * <p>
+ * En kalkulering tar mindre tid enn to kall til {@link System#nanoTime()}, så kun én av
+ * {@link #UTVALGSINTERVALL} kalkuleringer måles. Hver kalkulator teller selv ned til neste måling,
+ * slik at valget koster én nedtelling i et felt, og den målte kalkuleringen gjøres i en egen metode
+ * som ikke legges inn i kalleren. Intervallet settes med systemegenskapen
+ * <code>metrikker.utvalgsintervall</code>, og er 1024 som standard. Med 0 måles ingen kalkuleringer.
+ * Alle målinger registreres låsefritt og uten å allokere.
+ * </p>
+ *
+ * <p>
+ * Metrikkene registreres i plattformens MBean-server med {@link #registrerIJmx()}, under domenet
+ * {@value #DOMENE}.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.3
+ * @see Latenshistogram
+ * @see Hastighet
+ */
+public final class Metrikker implements MetrikkerMXBean {
+
+  /**
+   * JMX-domenet metrikkene registreres under.
+   */
+  public static final String DOMENE = "no.nav.dagpenger";
+
+  /**
+   * Hvor mange kalkuleringer det er per kalkulering som måles, eller 0 hvis ingen måles.
+   */
+  public static final int UTVALGSINTERVALL = lesUtvalgsintervall();
+
+  /**
+   * Hvor mange saksbehandlere som kan telles hver for seg.
+   */
+  public static final int MAKS_SAKSBEHANDLERE = lesMaksSaksbehandlere();
+
+  /**
+   * Nøkkelen behandlinger gjort av saksbehandlere utover {@link #MAKS_SAKSBEHANDLERE} telles under.
+   */
+  public static final String ANDRE_SAKSBEHANDLERE = "ANDRE";
+
+  private static final String INGEN_RETT = "INGEN_RETT";
+  private static final Beregningsmetode[] BEREGNINGSMETODER = Beregningsmetode.values();
+  private static final SaksbehandlerSpesialisering[] SPESIALISERINGER =
+      SaksbehandlerSpesialisering.values();
+
+  private final Latenshistogram[] kalkuleringstid;
+  private final Latenshistogram grunnbeløpHentetid = new Latenshistogram();
+  private final LongAdder grunnbeløpFeil = new LongAdder();
+  private final LongAdder grunnbeløpUtilgjengelig = new LongAdder();
+  private final Hastighet[] behandletPerSpesialisering;
+  private final Map<String, Hastighet> behandletPerSaksbehandler = new ConcurrentHashMap<>();
+  private final Hastighet behandletAvAndre = new Hastighet();
+  private final int maksSaksbehandlere;
+  private volatile ResultatKø overvåketKø;
+
+  Metrikker() {
+    this(MAKS_SAKSBEHANDLERE);
+  }
+
+  Metrikker(int maksSaksbehandlere) {
+    this.maksSaksbehandlere = maksSaksbehandlere;
+    this.kalkuleringstid = new Latenshistogram[BEREGNINGSMETODER.length + 1];
+    for (int i = 0; i < kalkuleringstid.length; i++) {
+      kalkuleringstid[i] = new Latenshistogram();
+    }
+    this.behandletPerSpesialisering = new Hastighet[SPESIALISERINGER.length];
+    for (int i = 0; i < behandletPerSpesialisering.length; i++) {
+      behandletPerSpesialisering[i] = new Hastighet();
+    }
+  }
+
+  /**
+   * Henter de felles metrikkene for prosessen.
+   *
+   * @return metrikkene.
+   */
+  public static Metrikker felles() {
+    return FellesHolder.FELLES;
+  }
+
+  /**
+   * Registrerer de felles metrikkene i plattformens MBean-server. Gjør ingenting hvis de allerede er
+   * registrert.
+   *
+   * @throws IllegalStateException hvis metrikkene ikke kan registreres.
+   */
+  public static void registrerIJmx() throws IllegalStateException {
+    Metrikker metrikker = felles();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      registrer(server, metrikker, "type=Metrikker");
+      registrer(server, metrikker.grunnbeløpHentetid, "type=Grunnbeløphenting");
+      for (Beregningsmetode metode : BEREGNINGSMETODER) {
+        registrer(server, metrikker.hentKalkuleringstid(metode),
+            "type=Kalkuleringstid,beregningsmetode=" + metode.name());
+      }
+      registrer(server, metrikker.hentKalkuleringstid(null),
+          "type=Kalkuleringstid,beregningsmetode=" + INGEN_RETT);
+    } catch (JMException exception) {
+      throw new IllegalStateException("Kunne ikke registrere metrikkene i JMX.", exception);
+    }
+  }
+
+  private static void registrer(MBeanServer server, Object mbean, String egenskaper)
+      throws JMException {
+    try {
+      server.registerMBean(mbean, new ObjectName(DOMENE + ":" + egenskaper));
+    } catch (InstanceAlreadyExistsException exception) {
+      // Allerede registrert.
+    }
+  }
+
+  /**
+   * Henter hvor mange kalkuleringer en ny teller skal telle ned før den første som måles. Starten er
+   * tilfeldig, slik at også tellere som kun brukes til én kalkulering gir et jevnt utvalg.
+   *
+   * @return antall kalkuleringer fram til og med den første som måles.
+   */
+  public static int førsteUtvalg() {
+    return UTVALGSINTERVALL == 0
+        ? Integer.MAX_VALUE : ThreadLocalRandom.current().nextInt(UTVALGSINTERVALL) + 1;
+  }
+
+  /**
+   * Henter hvor mange kalkuleringer en teller skal telle ned etter en kalkulering som er målt.
+   * Avstanden er tilfeldig med {@link #UTVALGSINTERVALL} i snitt, slik at utvalget ikke følger et
+   * mønster i kalkuleringene, som at annenhver kalkulering gir rett på dagpenger.
+   *
+   * @return antall kalkuleringer fram til og med den neste som måles.
+   */
+  public static int nesteUtvalg() {
+    return UTVALGSINTERVALL == 0
+        ? Integer.MAX_VALUE : ThreadLocalRandom.current().nextInt(2 * UTVALGSINTERVALL - 1) + 1;
+  }
+
+  /**
+   * Registrerer tiden en målt kalkulering tok.
+   *
+   * @param beregningsmetode beregningsmetoden som ble brukt, eller <code>null</code> hvis søkeren
+   *                         ikke hadde rett på dagpenger.
+   * @param nanos            tiden kalkuleringen tok, i nanosekunder.
+   */
+  public void registrerKalkulering(Beregningsmetode beregningsmetode, long nanos) {
+    hentKalkuleringstid(beregningsmetode).registrer(nanos);
+  }
+
+  /**
+   * Registrerer en forespørsel mot grunnbeløp API'et.
+   *
+   * @param nanos  tiden forespørselen tok, i nanosekunder.
+   * @param feilet true hvis forespørselen feilet.
+   */
+  public void registrerGrunnbeløphenting(long nanos, boolean feilet) {
+    grunnbeløpHentetid.registrer(nanos);
+    if (feilet) {
+      grunnbeløpFeil.increment();
+    }
+  }
+
+  /**
+   * Registrerer at et grunnbeløpverktøy ble opprettet uten at grunnbeløpet kunne hentes.
+   */
+  public void registrerGrunnbeløpUtilgjengelig() {
+    grunnbeløpUtilgjengelig.increment();
+  }
+
+  /**
+   * Registrerer at et resultat er behandlet.
+   *
+   * @param spesialisering spesialiseringen til resultatet.
+   * @param saksbehandler  telleren til saksbehandleren som behandlet det, fra
+   *                       {@link #registrerSaksbehandler(String)}, eller <code>null</code> hvis
+   *                       saksbehandleren ikke er registrert.
+   */
+  public void registrerBehandlet(SaksbehandlerSpesialisering spesialisering,
+      Hastighet saksbehandler) {
+    behandletPerSpesialisering[spesialisering.ordinal()].registrer();
+    if (saksbehandler != null) {
+      saksbehandler.registrer();
+    }
+  }
+
+  /**
+   * Registrerer at flere resultater er behandlet samlet, med én oppdatering av hver teller.
+   *
+   * @param spesialisering spesialiseringen til resultatene.
+   * @param saksbehandler  telleren til saksbehandleren som behandlet dem, fra
+   *                       {@link #registrerSaksbehandler(String)}, eller <code>null</code> hvis
+   *                       saksbehandleren ikke er registrert.
+   * @param antall         antall resultater som ble behandlet.
+   */
+  public void registrerBehandlet(SaksbehandlerSpesialisering spesialisering,
+      Hastighet saksbehandler, long antall) {
+    if (antall > 0) {
+      behandletPerSpesialisering[spesialisering.ordinal()].registrer(antall);
+      if (saksbehandler != null) {
+        saksbehandler.registrer(antall);
+      }
+    }
+  }
+
+  /**
+   * Registrerer en saksbehandler, og henter telleren for behandlingene den gjør, slik at den kan slås
+   * opp én gang og ikke for hver behandling. Saksbehandlere med samme navn deler teller. Er
+   * {@link #MAKS_SAKSBEHANDLERE} allerede registrert, telles saksbehandleren under
+   * {@value #ANDRE_SAKSBEHANDLERE}.
+   *
+   * @param navn navnet til saksbehandleren.
+   * @return telleren til saksbehandleren.
+   */
+  public synchronized Hastighet registrerSaksbehandler(String navn) {
+    Hastighet teller = behandletPerSaksbehandler.get(String.valueOf(navn));
+    if (teller != null) {
+      return teller;
+    }
+    if (behandletPerSaksbehandler.size() >= maksSaksbehandlere) {
+      return behandletAvAndre;
+    }
+    teller = new Hastighet();
+    behandletPerSaksbehandler.put(String.valueOf(navn), teller);
+    return teller;
+  }
+
+  /**
+   * Fjerner tellingen for en saksbehandler, for eksempel når saksbehandleren slutter. Behandlinger
+   * registrert på en teller som allerede er hentet, telles ikke lenger.
+   *
+   * @param navn navnet til saksbehandleren.
+   */
+  public synchronized void avregistrerSaksbehandler(String navn) {
+    behandletPerSaksbehandler.remove(String.valueOf(navn));
+  }
+
+  /**
+   * Setter køen som dybden og alderen til det eldste resultatet per spesialisering leses fra.
+   *
+   * @param resultatKø køen som skal overvåkes, eller <code>null</code> for ingen.
+   */
+  public void overvåkKø(ResultatKø resultatKø) {
+    this.overvåketKø = resultatKø;
+  }
+
+  /**
+   * Henter histogrammet for kalkuleringstiden med en beregningsmetode.
+   *
+   * @param beregningsmetode beregningsmetoden, eller <code>null</code> for søkere uten rett.
+   * @return histogrammet.
+   */
+  public Latenshistogram hentKalkuleringstid(Beregningsmetode beregningsmetode) {
+    return kalkuleringstid[beregningsmetode == null
+        ? BEREGNINGSMETODER.length : beregningsmetode.ordinal()];
+  }
+
+  public Latenshistogram hentGrunnbeløpHentetid() {
+    return grunnbeløpHentetid;
+  }
+
+  @Override
+  public Map<String, Integer> getKødybdePerSpesialisering() {
+    Map<String, Integer> dybder = new TreeMap<>();
+    ResultatKø resultatKø = overvåketKø;
+    if (resultatKø != null) {
+      for (SaksbehandlerSpesialisering spesialisering : SPESIALISERINGER) {
+        dybder.put(spesialisering.name(), resultatKø.hentDybde(spesialisering));
+      }
+    }
+    return dybder;
+  }
+
+  @Override
+  public Map<String, Long> getEldsteSaksalderMillisPerSpesialisering() {
+    Map<String, Long> aldre = new TreeMap<>();
+    ResultatKø resultatKø = overvåketKø;
+    if (resultatKø != null) {
+      long nå = System.currentTimeMillis();
+      for (SaksbehandlerSpesialisering spesialisering : SPESIALISERINGER) {
+        long eldste = resultatKø.hentEldsteOpprettet(spesialisering);
+        aldre.put(spesialisering.name(), eldste < 0 ? 0 : Math.max(nå - eldste, 0));
+      }
+    }
+    return aldre;
+  }
+
+  @Override
+  public Map<String, Long> getBehandletPerSpesialisering() {
+    return perSpesialisering(Hastighet::hentTotalt);
+  }
+
+  @Override
+  public Map<String, Double> getBehandletPerSekundPerSpesialisering() {
+    return perSpesialisering(Hastighet::hentPerSekund);
+  }
+
+  @Override
+  public Map<String, Long> getBehandletPerSaksbehandler() {
+    return perSaksbehandler(Hastighet::hentTotalt);
+  }
+
+  @Override
+  public Map<String, Double> getBehandletPerSekundPerSaksbehandler() {
+    return perSaksbehandler(Hastighet::hentPerSekund);
+  }
+
+  @Override
+  public long getGrunnbeløpFeil() {
+    return grunnbeløpFeil.sum();
+  }
+
+  @Override
+  public long getGrunnbeløpUtilgjengelig() {
+    return grunnbeløpUtilgjengelig.sum();
+  }
+
+  @Override
+  public int getUtvalgsintervall() {
+    return UTVALGSINTERVALL;
+  }
+
+  private <T> Map<String, T> perSpesialisering(Function<Hastighet, T> verdi) {
+    Map<String, T> verdier = new TreeMap<>();
+    for (SaksbehandlerSpesialisering spesialisering : SPESIALISERINGER) {
+      verdier.put(spesialisering.name(),
+          verdi.apply(behandletPerSpesialisering[spesialisering.ordinal()]));
+    }
+    return verdier;
+  }
+
+  private <T> Map<String, T> perSaksbehandler(Function<Hastighet, T> verdi) {
+    Map<String, T> verdier = new TreeMap<>();
+    behandletPerSaksbehandler.forEach((navn, hastighet) -> verdier.put(navn, verdi.apply(hastighet)));
+    if (behandletAvAndre.hentTotalt() > 0) {
+      verdier.put(ANDRE_SAKSBEHANDLERE, verdi.apply(behandletAvAndre));
+    }
+    return verdier;
+  }
+
+  private static int lesUtvalgsintervall() {
+    int intervall = Integer.getInteger("metrikker.utvalgsintervall", 1024);
+    return Math.min(Math.max(intervall, 0), 1 << 30);
+  }
+
+  private static int lesMaksSaksbehandlere() {
+    return Math.max(Integer.getInteger("metrikker.maksSaksbehandlere", 256), 0);
+  }
+
+  private static final class FellesHolder {
+
+    private static final Metrikker FELLES = new Metrikker();
+  }
+}
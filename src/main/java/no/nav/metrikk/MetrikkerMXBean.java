@@ -0,0 +1,32 @@
+package no.nav.metrikk;
+
+import java.util.Map;
+
+/**
+ * JMX-grensesnittet til {@link Metrikker}. Tidene for kalkuleringer og henting av grunnbeløpet
+ * ligger i egne {@link LatenshistogramMXBean}-er.
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Metrikker
+ */
+public interface MetrikkerMXBean {
+
+  Map<String, Integer> getKødybdePerSpesialisering();
+
+  Map<String, Long> getEldsteSaksalderMillisPerSpesialisering();
+
+  Map<String, Long> getBehandletPerSpesialisering();
+
+  Map<String, Double> getBehandletPerSekundPerSpesialisering();
+
+  Map<String, Long> getBehandletPerSaksbehandler();
+
+  Map<String, Double> getBehandletPerSekundPerSaksbehandler();
+
+  long getGrunnbeløpFeil();
+
+  long getGrunnbeløpUtilgjengelig();
+
+  int getUtvalgsintervall();
+}
@@ -0,0 +1,97 @@
+package no.nav.resultat;
+
+import no.nav.beløp.Øre;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+
+/**
+ * Flyvekt som leser og endrer et resultat i et {@link Resultatlager}.
+ *
+ * <p>
+ * Flyvekten har ingen egne data utover plassen den peker på. Alle metodene leser fra og skriver til
+ * plassen i lageret, så endringer gjennom én flyvekt er synlige gjennom alle andre som peker på den
+ * samme plassen. En flyvekt kan flyttes til en ny plass med {@link #flyttTil(long)}, slik at ett
+ * objekt kan brukes for mange resultater.
+ * </p>
+ *
+ * <p>
+ * En {@link Statuslytter} hører til flyvekten og ikke til plassen, og får beskjed om endringer gjort
+ * gjennom denne flyvekten, uansett hvilken plass den peker på.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.3
+ * @see Resultatlager
+ */
+public final class LagretResultat extends Resultat {
+
+  private final Resultatlager lager;
+  long plass;
+
+  LagretResultat(Resultatlager lager) {
+    this.lager = lager;
+  }
+
+  /**
+   * Flytter flyvekten til en annen plass i lageret.
+   *
+   * @param plass plassen flyvekten skal peke på.
+   * @return denne flyvekten.
+   * @throws IndexOutOfBoundsException hvis plassen ikke er tatt i bruk.
+   */
+  public LagretResultat flyttTil(long plass) throws IndexOutOfBoundsException {
+    lager.sjekkPlass(plass);
+    this.plass = plass;
+    return this;
+  }
+
+  public long hentPlass() {
+    return plass;
+  }
+
+  @Override
+  public long hentSaksnummer() {
+    return lager.lesSaksnummer(plass);
+  }
+
+  @Override
+  public SaksbehandlerSpesialisering hentSpesialisering() {
+    return lager.lesSpesialisering(plass);
+  }
+
+  @Override
+  public long hentOpprettet() {
+    return lager.lesOpprettet(plass);
+  }
+
+  @Override
+  public int hentFristDager() {
+    return lager.lesFristDager(plass);
+  }
+
+  @Override
+  public boolean endreStatus(ResultatStatus nyStatus) throws IllegalArgumentException {
+    if (nyStatus == ResultatStatus.UBEHANDLET) {
+      throw new IllegalArgumentException("Et resultat kan ikke endres tilbake til ubehandlet.");
+    }
+    if (!lager.endreStatus(plass, nyStatus)) {
+      return false;
+    }
+    varsleStatuslytter(nyStatus);
+    return true;
+  }
+
+  @Override
+  public ResultatStatus hentStatus() {
+    return lager.lesStatus(plass);
+  }
+
+  @Override
+  public double hentDagsats() {
+    return Øre.tilKroner(hentDagsatsIØre());
+  }
+
+  @Override
+  public long hentDagsatsIØre() {
+    return lager.lesDagsatsIØre(plass);
+  }
+}
@@ -0,0 +1,89 @@
+package no.nav.resultat;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Representerer en tidsbegrenset reservasjon av et ubehandlet resultat.
+ *
+ * <p>
+ * En saksbehandler som har reservert et resultat har enerett til å behandle det til reservasjonen
+ * utløper. En reservasjon som ikke fullføres eller forlenges i tide, utløper, og resultatet legges
+ * tilbake i {@link ResultatKø}.
+ * </p>
+ *
+ * <p>
+ * Utløpstidspunktet og tilstanden til reservasjonen lagres i én atomisk verdi. Et ikke-negativt tall
+ * er utløpstidspunktet til en aktiv reservasjon, mens negative tall markerer at reservasjonen er
+ * fullført eller utløpt. Forlengelse, fullføring og utløp kan dermed ikke overlappe hverandre.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Reservasjonsforvalter
+ */
+public final class Reservasjon {
+
+  private static final long FULLFØRT = -1;
+  private static final long UTLØPT = -2;
+
+  private final Resultat resultat;
+  private final AtomicLong utløperNanos;
+
+  Reservasjon(Resultat resultat, long utløperNanos) {
+    this.resultat = resultat;
+    this.utløperNanos = new AtomicLong(utløperNanos);
+  }
+
+  /**
+   * Henter resultatet som er reservert.
+   *
+   * @return det reserverte resultatet.
+   */
+  public Resultat hentResultat() {
+    return resultat;
+  }
+
+  /**
+   * Sjekker om reservasjonen fortsatt er aktiv, altså verken fullført eller utløpt.
+   *
+   * @return true hvis reservasjonen er aktiv, false ellers.
+   */
+  public boolean erAktiv() {
+    return utløperNanos.get() >= 0;
+  }
+
+  /**
+   * Fullfører reservasjonen, slik at resultatet ikke legges tilbake i køen.
+   *
+   * @return true hvis reservasjonen ble fullført, false hvis den allerede var fullført eller utløpt.
+   */
+  public boolean fullfør() {
+    long utløper;
+    do {
+      utløper = utløperNanos.get();
+      if (utløper < 0) {
+        return false;
+      }
+    } while (!utløperNanos.compareAndSet(utløper, FULLFØRT));
+    return true;
+  }
+
+  long hentUtløperNanos() {
+    return utløperNanos.get();
+  }
+
+  long forleng(long nyUtløperNanos) {
+    long utløper;
+    do {
+      utløper = utløperNanos.get();
+      if (utløper < 0) {
+        return utløper;
+      }
+    } while (!utløperNanos.compareAndSet(utløper, nyUtløperNanos));
+    return utløper;
+  }
+
+  boolean utløp(long utløperNanos) {
+    return this.utløperNanos.compareAndSet(utløperNanos, UTLØPT);
+  }
+}
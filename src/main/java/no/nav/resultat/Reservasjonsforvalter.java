@@ -0,0 +1,252 @@
+package no.nav.resultat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+
+/**
+ * Deler ut tidsbegrensede reservasjoner av resultater fra en {@link ResultatKø}, og legger resultater
+ * med utløpte reservasjoner tilbake i køen.
+ *
+ * <p>
+ * Reservasjonene holdes i et tidshjul: en ring av spor der hvert spor dekker ett tikk. En ny
+ * reservasjon legges i sporet for tikket den utløper i, uten låsing. For hvert tikk gjennomgås kun
+ * sporet som hører til tikket. Reservasjoner som er fullført fjernes der, forlengede reservasjoner
+ * flyttes til sitt nye spor, og utløpte reservasjoner legger resultatet tilbake i køen.
+ * </p>
+ *
+ * <p>
+ * Reservering, forlengelse og fullføring tar dermed konstant tid, og saksbehandlere som arbeider
+ * samtidig konkurrerer ikke om noen felles lås.
+ * </p>
+ *
+ * <p>
+ * Den som holder oversikt over utdelte reservasjoner kan oppgi en lytter som får beskjed når en
+ * reservasjon utløper, slik at reservasjonen kan glemmes.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.3
+ * @see Reservasjon
+ * @see ResultatKø
+ */
+public class Reservasjonsforvalter implements AutoCloseable {
+
+  private static final Duration STANDARD_TIKK = Duration.ofMillis(100);
+  private static final int ANTALL_SPOR = 512;
+
+  private final ResultatKø resultatKø;
+  private final Consumer<Reservasjon> utløpslytter;
+  private final long tikkNanos;
+  private final LongSupplier klokke;
+  private final long startNanos;
+  private final Queue<Reservasjon>[] spor;
+  private final ScheduledExecutorService tikker;
+
+  private volatile long behandletTikk;
+
+  /**
+   * Oppretter en forvalter for gitt kø. Utløpte reservasjoner frigis automatisk hvert tiendedels
+   * sekund av en egen bakgrunnstråd.
+   *
+   * @param resultatKø køen resultatene reserveres fra og legges tilbake i.
+   */
+  public Reservasjonsforvalter(ResultatKø resultatKø) {
+    this(resultatKø, reservasjon -> { });
+  }
+
+  /**
+   * Oppretter en forvalter for gitt kø, som gir beskjed til en lytter hver gang en reservasjon
+   * utløper. Utløpte reservasjoner frigis automatisk hvert tiendedels sekund av en egen
+   * bakgrunnstråd.
+   *
+   * @param resultatKø   køen resultatene reserveres fra og legges tilbake i.
+   * @param utløpslytter kalles fra bakgrunnstråden med hver reservasjon som utløper, før resultatet
+   *                     legges tilbake i køen.
+   */
+  public Reservasjonsforvalter(ResultatKø resultatKø, Consumer<Reservasjon> utløpslytter) {
+    this(resultatKø, utløpslytter, STANDARD_TIKK, System::nanoTime, true);
+  }
+
+  @SuppressWarnings("unchecked")
+  Reservasjonsforvalter(ResultatKø resultatKø, Consumer<Reservasjon> utløpslytter, Duration tikk,
+      LongSupplier klokke, boolean startTikker) {
+    this.resultatKø = resultatKø;
+    this.utløpslytter = utløpslytter;
+    this.tikkNanos = tikk.toNanos();
+    this.klokke = klokke;
+    this.startNanos = klokke.getAsLong();
+    this.spor = new Queue[ANTALL_SPOR];
+    for (int i = 0; i < ANTALL_SPOR; i++) {
+      spor[i] = new ConcurrentLinkedQueue<>();
+    }
+
+    if (startTikker) {
+      this.tikker = Executors.newSingleThreadScheduledExecutor(oppgave -> {
+        Thread tråd = new Thread(oppgave, "reservasjon-tikker");
+        tråd.setDaemon(true);
+        return tråd;
+      });
+      tikker.scheduleAtFixedRate(this::frigiUtløpte, tikkNanos, tikkNanos, TimeUnit.NANOSECONDS);
+    } else {
+      this.tikker = null;
+    }
+  }
+
+  /**
+   * Reserverer inntil et gitt antall resultater fra køen til en spesialisering. Resultater i køen som
+   * allerede er behandlet, tas ut uten å reserveres.
+   *
+   * @param spesialisering spesialiseringen det skal reserveres resultater for.
+   * @param maksAntall     det største antallet resultater som skal reserveres.
+   * @param leietid        hvor lenge reservasjonene varer før de utløper. Må være positiv.
+   * @return reservasjonene, som kan være færre enn etterspurt hvis køen har færre resultater.
+   * @throws IllegalArgumentException hvis leietiden ikke er positiv.
+   */
+  public List<Reservasjon> reserver(SaksbehandlerSpesialisering spesialisering, int maksAntall,
+      Duration leietid) throws IllegalArgumentException {
+    long utløper = beregnUtløp(leietid);
+    List<Reservasjon> reservasjoner = new ArrayList<>(Math.min(maksAntall, 64));
+    Resultat resultat;
+    while (reservasjoner.size() < maksAntall
+        && (resultat = resultatKø.hent(spesialisering)) != null) {
+      if (resultat.hentStatus() != ResultatStatus.UBEHANDLET) {
+        continue;
+      }
+      Reservasjon reservasjon = new Reservasjon(resultat, utløper);
+      leggISpor(reservasjon, utløper);
+      reservasjoner.add(reservasjon);
+    }
+    return reservasjoner;
+  }
+
+  /**
+   * Forlenger en aktiv reservasjon, slik at den utløper etter gitt leietid regnet fra nå. Er den nye
+   * leietiden kortere enn det som gjenstår, utløper reservasjonen tidligere enn før.
+   *
+   * @param reservasjon reservasjonen som skal forlenges.
+   * @param leietid     den nye leietiden. Må være positiv.
+   * @return true hvis reservasjonen ble forlenget, false hvis den allerede var fullført eller utløpt.
+   * @throws IllegalArgumentException hvis leietiden ikke er positiv.
+   */
+  public boolean forleng(Reservasjon reservasjon, Duration leietid)
+      throws IllegalArgumentException {
+    long utløper = beregnUtløp(leietid);
+    long forrigeUtløper = reservasjon.forleng(utløper);
+    if (forrigeUtløper < 0) {
+      return false;
+    }
+    // Utløper den senere, blir den liggende i sitt gamle spor og flyttes når det gjennomgås. Utløper
+    // den tidligere, må den også legges i et tidligere spor. Kopien i det gamle sporet forkastes når
+    // reservasjonen er utløpt, eller flyttes på nytt hvis den er forlenget igjen.
+    if (utløper / tikkNanos < forrigeUtløper / tikkNanos) {
+      leggISpor(reservasjon, utløper);
+    }
+    return true;
+  }
+
+  /**
+   * Gjennomgår sporene for alle tikk som har passert siden forrige gjennomgang, og legger resultater
+   * med utløpte reservasjoner tilbake i køen.
+   *
+   * @return antall reservasjoner som utløp.
+   */
+  public synchronized int frigiUtløpte() {
+    long nå = nå();
+    long nåTikk = nå / tikkNanos;
+    long fraTikk = Math.max(behandletTikk + 1, nåTikk - ANTALL_SPOR + 1);
+    int antallUtløpt = 0;
+    // Markeres før gjennomgangen, slik at reservasjoner som legges i spor underveis havner etter nå.
+    behandletTikk = Math.max(behandletTikk, nåTikk);
+
+    for (long tikk = fraTikk; tikk <= nåTikk; tikk++) {
+      Queue<Reservasjon> gjeldendeSpor = spor[(int) (tikk % ANTALL_SPOR)];
+      List<Reservasjon> reservasjoner = new ArrayList<>();
+      Reservasjon reservasjon;
+      while ((reservasjon = gjeldendeSpor.poll()) != null) {
+        reservasjoner.add(reservasjon);
+      }
+      for (Reservasjon kandidat : reservasjoner) {
+        if (frigiHvisUtløpt(kandidat, nå)) {
+          antallUtløpt++;
+        }
+      }
+    }
+    return antallUtløpt;
+  }
+
+  private boolean frigiHvisUtløpt(Reservasjon reservasjon, long nå) {
+    while (true) {
+      long utløper = reservasjon.hentUtløperNanos();
+      if (utløper < 0) {
+        return false;
+      }
+      if (utløper > nå) {
+        leggISpor(reservasjon, utløper);
+        return false;
+      }
+      if (reservasjon.utløp(utløper)) {
+        varsleUtløp(reservasjon);
+        Resultat resultat = reservasjon.hentResultat();
+        if (resultat.hentStatus() == ResultatStatus.UBEHANDLET) {
+          resultatKø.leggTil(resultat);
+        }
+        return true;
+      }
+    }
+  }
+
+  private void varsleUtløp(Reservasjon reservasjon) {
+    try {
+      utløpslytter.accept(reservasjon);
+    } catch (RuntimeException exception) {
+      // En feil fra lytteren skal ikke stoppe bakgrunnstråden eller hindre at resultatet frigis.
+      System.out.println("Kunne ikke varsle om utløpt reservasjon: " + exception.getMessage());
+    }
+  }
+
+  private void leggISpor(Reservasjon reservasjon, long utløper) {
+    // Et tikk som allerede er gjennomgått får ikke flere besøk før hjulet har gått rundt, så
+    // reservasjoner som utløper i et passert tikk legges i det neste.
+    while (true) {
+      long tikk = Math.max(utløper / tikkNanos, behandletTikk + 1);
+      Queue<Reservasjon> valgtSpor = spor[(int) (tikk % ANTALL_SPOR)];
+      valgtSpor.add(reservasjon);
+      // Gjennomgangen kan ha passert tikket mellom lesingen av behandletTikk og innsettingen. Da er
+      // det usikkert om sporet ble tømt før eller etter, så reservasjonen flyttes til et nytt spor
+      // hvis den fortsatt ligger der. Ellers ville den blitt liggende til hjulet hadde gått rundt.
+      if (behandletTikk < tikk || !valgtSpor.remove(reservasjon)) {
+        return;
+      }
+    }
+  }
+
+  private long beregnUtløp(Duration leietid) throws IllegalArgumentException {
+    if (leietid.isNegative() || leietid.isZero()) {
+      throw new IllegalArgumentException("Leietiden til en reservasjon må være positiv.");
+    }
+    return nå() + leietid.toNanos();
+  }
+
+  private long nå() {
+    return klokke.getAsLong() - startNanos;
+  }
+
+  /**
+   * Stopper bakgrunnstråden som frigir utløpte reservasjoner.
+   */
+  @Override
+  public void close() {
+    if (tikker != null) {
+      tikker.shutdownNow();
+    }
+  }
+}
@@ -1,54 +1,325 @@
 package no.nav.resultat;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import no.nav.beløp.Øre;
 import no.nav.saksbehandler.SaksbehandlerSpesialisering;
 
 /**
- * Representerer et resultat av en dagpengeforesprsel.
+ * Representerer et resultat av en dagpengeforespørsel.
  *
  * <p>
  * Resultatet inneholder informasjon om dagsatsen som er beregnet, samt hvilken spesialisering som
- * har behandlet foresprselen.
+ * har behandlet forespørselen. Hvert resultat har et saksnummer som er unikt i prosessen, og
+ * tidspunktet det ble opprettet. Dagsatsen lagres som et helt antall øre.
+ * </p>
+ *
+ * <p>
+ * Hvert resultat har også en frist for når det skal være behandlet, gitt som et helt antall dager
+ * etter at det ble opprettet. Fristen er {@value #STANDARD_FRIST_DAGER} dager hvis ikke annet er
+ * oppgitt, og kan være høyst {@value #MAKS_FRIST_DAGER} dager, slik at den får plass i én byte der
+ * resultatet lagres.
+ * </p>
+ *
+ * <p>
+ * Statusen kan kun endres én gang, fra {@link ResultatStatus#UBEHANDLET} til en avgjort status.
+ * Endringen gjøres atomisk uten låsing, slik at kun én av flere samtidige saksbehandlere kan
+ * behandle resultatet.
+ * </p>
+ *
+ * <p>
+ * Et resultat kan ha én {@link Statuslytter}, som får beskjed om hver statusendring. Slik holder for
+ * eksempel en journal oversikt over endringer som gjøres direkte av en saksbehandler.
  * </p>
  *
  * @author Sigurd Riseth
- * @version 1.0
+ * @version 1.8
  * @see no.nav.saksbehandler.Saksbehandler
  * @see no.nav.saksbehandler.SaksbehandlerSpesialisering
  * @see ResultatStatus
+ * @see LagretResultat
  */
 public class Resultat {
 
+  /**
+   * Fristen et resultat får hvis ikke annet er oppgitt, i dager etter at det ble opprettet.
+   */
+  public static final int STANDARD_FRIST_DAGER = 28;
+
+  /**
+   * Den lengste fristen et resultat kan ha, i dager etter at det ble opprettet.
+   */
+  public static final int MAKS_FRIST_DAGER = 255;
+
+  private static final long MILLIS_PER_DAG = 24L * 60 * 60 * 1000;
+  private static final VarHandle STATUS;
+  private static final VarHandle STATUSLYTTER;
+  private static final AtomicLong NESTE_SAKSNUMMER = new AtomicLong(1);
+
+  static {
+    try {
+      MethodHandles.Lookup oppslag = MethodHandles.lookup();
+      STATUS = oppslag.findVarHandle(Resultat.class, "status", ResultatStatus.class);
+      STATUSLYTTER = oppslag.findVarHandle(Resultat.class, "statuslytter", Statuslytter.class);
+    } catch (ReflectiveOperationException exception) {
+      throw new ExceptionInInitializerError(exception);
+    }
+  }
+
+  private final long saksnummer;
   private final SaksbehandlerSpesialisering spesialisering;
-  private final double dagsats;
-  private ResultatStatus status;
+  private final long dagsatsIØre;
+  private final long opprettet;
+  private final int fristDager;
+  private volatile ResultatStatus status;
+  private volatile Statuslytter statuslytter;
 
   /**
-   * Oppretter et nytt resultat.
+   * Oppretter et nytt resultat med neste ledige saksnummer.
    *
    * <p> Resultatet er initialisert som ubehandlet. </p>
    *
-   * @param dagsats        dagsatsen som er beregnet.
-   * @param spesialisering spesialiseringen som har behandlet foresprselen.
+   * @param dagsats        dagsatsen som er beregnet, i kroner.
+   * @param spesialisering spesialiseringen som har behandlet forespørselen.
    */
   public Resultat(double dagsats, SaksbehandlerSpesialisering spesialisering) {
-    this.dagsats = dagsats;
+    this(NESTE_SAKSNUMMER.getAndIncrement(), spesialisering, Øre.fraKroner(dagsats),
+        System.currentTimeMillis(), STANDARD_FRIST_DAGER);
+  }
+
+  /**
+   * Oppretter et ubehandlet resultat med et kjent saksnummer, for eksempel når et lagret resultat
+   * lastes inn igjen. Senere resultater får saksnummer som er høyere enn dette.
+   *
+   * @param saksnummer     saksnummeret til resultatet. Må være positivt.
+   * @param dagsats        dagsatsen som er beregnet, i kroner.
+   * @param spesialisering spesialiseringen som har behandlet forespørselen.
+   * @throws IllegalArgumentException hvis saksnummeret ikke er positivt.
+   */
+  public Resultat(long saksnummer, double dagsats, SaksbehandlerSpesialisering spesialisering)
+      throws IllegalArgumentException {
+    this(sjekkSaksnummer(saksnummer), spesialisering, Øre.fraKroner(dagsats),
+        System.currentTimeMillis(), STANDARD_FRIST_DAGER);
+    NESTE_SAKSNUMMER.accumulateAndGet(saksnummer + 1, Math::max);
+  }
+
+  /**
+   * Oppretter et resultat uten egne data, for flyvekter som overstyrer alle metodene og holder
+   * dataene et annet sted.
+   */
+  Resultat() {
+    this(0, null, 0, 0, STANDARD_FRIST_DAGER);
+  }
+
+  private Resultat(long saksnummer, SaksbehandlerSpesialisering spesialisering, long dagsatsIØre,
+      long opprettet, int fristDager) {
+    this.saksnummer = saksnummer;
+    this.dagsatsIØre = dagsatsIØre;
+    this.opprettet = opprettet;
+    this.fristDager = fristDager;
     this.spesialisering = spesialisering;
     this.status = ResultatStatus.UBEHANDLET;
   }
 
+  /**
+   * Oppretter et nytt resultat med neste ledige saksnummer, og en dagsats gitt i øre.
+   *
+   * @param dagsatsIØre    dagsatsen som er beregnet, i øre.
+   * @param spesialisering spesialiseringen som har behandlet forespørselen.
+   * @return det nye resultatet.
+   */
+  public static Resultat medDagsatsIØre(long dagsatsIØre,
+      SaksbehandlerSpesialisering spesialisering) {
+    return new Resultat(NESTE_SAKSNUMMER.getAndIncrement(), spesialisering, dagsatsIØre,
+        System.currentTimeMillis(), STANDARD_FRIST_DAGER);
+  }
+
+  /**
+   * Oppretter et nytt resultat med neste ledige saksnummer, en dagsats gitt i øre og en egen frist.
+   *
+   * @param dagsatsIØre    dagsatsen som er beregnet, i øre.
+   * @param spesialisering spesialiseringen som har behandlet forespørselen.
+   * @param fristDager     fristen for behandling, i dager fra nå. Må være mellom 1 og
+   *                       {@value #MAKS_FRIST_DAGER}.
+   * @return det nye resultatet.
+   * @throws IllegalArgumentException hvis fristen er utenfor det gyldige området.
+   */
+  public static Resultat medFrist(long dagsatsIØre, SaksbehandlerSpesialisering spesialisering,
+      int fristDager) throws IllegalArgumentException {
+    return new Resultat(NESTE_SAKSNUMMER.getAndIncrement(), spesialisering, dagsatsIØre,
+        System.currentTimeMillis(), sjekkFrist(fristDager));
+  }
+
+  /**
+   * Oppretter et ubehandlet resultat med et kjent saksnummer, dagsats i øre og opprettelsestidspunkt,
+   * for eksempel når et lagret resultat gjenopprettes. Senere resultater får saksnummer som er høyere
+   * enn dette.
+   *
+   * @param saksnummer     saksnummeret til resultatet. Må være positivt.
+   * @param dagsatsIØre    dagsatsen som er beregnet, i øre.
+   * @param spesialisering spesialiseringen som har behandlet forespørselen.
+   * @param opprettet      tidspunktet resultatet ble opprettet, i millisekunder siden epoken.
+   * @return det gjenopprettede resultatet.
+   * @throws IllegalArgumentException hvis saksnummeret ikke er positivt.
+   */
+  public static Resultat medSaksnummer(long saksnummer, long dagsatsIØre,
+      SaksbehandlerSpesialisering spesialisering, long opprettet) throws IllegalArgumentException {
+    return medSaksnummer(saksnummer, dagsatsIØre, spesialisering, opprettet,
+        STANDARD_FRIST_DAGER);
+  }
+
+  /**
+   * Oppretter et ubehandlet resultat med et kjent saksnummer, dagsats i øre, opprettelsestidspunkt
+   * og frist, for eksempel når et lagret resultat gjenopprettes.
+   *
+   * @param saksnummer     saksnummeret til resultatet. Må være positivt.
+   * @param dagsatsIØre    dagsatsen som er beregnet, i øre.
+   * @param spesialisering spesialiseringen som har behandlet forespørselen.
+   * @param opprettet      tidspunktet resultatet ble opprettet, i millisekunder siden epoken.
+   * @param fristDager     fristen for behandling, i dager etter opprettelsen. Må være mellom 1 og
+   *                       {@value #MAKS_FRIST_DAGER}.
+   * @return det gjenopprettede resultatet.
+   * @throws IllegalArgumentException hvis saksnummeret ikke er positivt eller fristen er utenfor
+   *                                  det gyldige området.
+   */
+  public static Resultat medSaksnummer(long saksnummer, long dagsatsIØre,
+      SaksbehandlerSpesialisering spesialisering, long opprettet, int fristDager)
+      throws IllegalArgumentException {
+    Resultat resultat = new Resultat(sjekkSaksnummer(saksnummer), spesialisering, dagsatsIØre,
+        opprettet, sjekkFrist(fristDager));
+    NESTE_SAKSNUMMER.accumulateAndGet(saksnummer + 1, Math::max);
+    return resultat;
+  }
+
+  /**
+   * Reserverer neste ledige saksnummer, for resultater som lagres utenfor et resultatobjekt.
+   */
+  static long nesteSaksnummer() {
+    return NESTE_SAKSNUMMER.getAndIncrement();
+  }
+
+  private static long sjekkSaksnummer(long saksnummer) throws IllegalArgumentException {
+    if (saksnummer <= 0) {
+      throw new IllegalArgumentException("Saksnummeret må være positivt.");
+    }
+    return saksnummer;
+  }
+
+  /**
+   * Sjekker at en frist er mellom 1 og {@value #MAKS_FRIST_DAGER} dager.
+   *
+   * @param fristDager fristen som skal sjekkes.
+   * @return fristen.
+   * @throws IllegalArgumentException hvis fristen er utenfor det gyldige området.
+   */
+  public static int sjekkFrist(int fristDager) throws IllegalArgumentException {
+    if (fristDager < 1 || fristDager > MAKS_FRIST_DAGER) {
+      throw new IllegalArgumentException(
+          "Fristen må være mellom 1 og " + MAKS_FRIST_DAGER + " dager: " + fristDager);
+    }
+    return fristDager;
+  }
+
+  public long hentSaksnummer() {
+    return saksnummer;
+  }
+
   public SaksbehandlerSpesialisering hentSpesialisering() {
     return spesialisering;
   }
 
-  public void setStatus(ResultatStatus status) {
-    this.status = status;
+  /**
+   * Henter tidspunktet resultatet ble opprettet.
+   *
+   * @return opprettelsestidspunktet i millisekunder siden epoken.
+   */
+  public long hentOpprettet() {
+    return opprettet;
+  }
+
+  /**
+   * Henter fristen for behandling.
+   *
+   * @return fristen i hele dager etter at resultatet ble opprettet.
+   */
+  public int hentFristDager() {
+    return fristDager;
+  }
+
+  /**
+   * Henter tidspunktet resultatet skal være behandlet innen.
+   *
+   * @return fristen i millisekunder siden epoken.
+   */
+  public long hentFrist() {
+    return hentOpprettet() + hentFristDager() * MILLIS_PER_DAG;
+  }
+
+  /**
+   * Endrer statusen til resultatet fra {@link ResultatStatus#UBEHANDLET} til en avgjort status.
+   * Har resultatet en {@link Statuslytter}, kalles den etter endringen.
+   *
+   * @param nyStatus den avgjorte statusen resultatet skal få.
+   * @return true hvis statusen ble endret, false hvis resultatet allerede var behandlet.
+   * @throws IllegalArgumentException hvis den nye statusen er {@link ResultatStatus#UBEHANDLET}.
+   */
+  public boolean endreStatus(ResultatStatus nyStatus) throws IllegalArgumentException {
+    if (nyStatus == ResultatStatus.UBEHANDLET) {
+      throw new IllegalArgumentException("Et resultat kan ikke endres tilbake til ubehandlet.");
+    }
+    if (!STATUS.compareAndSet(this, ResultatStatus.UBEHANDLET, nyStatus)) {
+      return false;
+    }
+    varsleStatuslytter(nyStatus);
+    return true;
+  }
+
+  /**
+   * Gir lytteren beskjed om en statusendring. Underklasser som lagrer statusen selv, må kalle denne
+   * etter hver vellykkede endring.
+   *
+   * @param nyStatus den nye statusen.
+   */
+  void varsleStatuslytter(ResultatStatus nyStatus) {
+    Statuslytter lytter = statuslytter;
+    if (lytter != null) {
+      lytter.statusEndret(this, nyStatus);
+    }
+  }
+
+  /**
+   * Setter lytteren som får beskjed når statusen endres.
+   *
+   * @param lytter lytteren, eller <code>null</code> for å fjerne den.
+   * @throws IllegalStateException hvis resultatet allerede har en annen lytter.
+   */
+  public void settStatuslytter(Statuslytter lytter) throws IllegalStateException {
+    if (lytter == null) {
+      statuslytter = null;
+      return;
+    }
+    // Settes atomisk, slik at to som registrerer resultatet samtidig ikke begge tror de lykkes.
+    Statuslytter gjeldende = (Statuslytter) STATUSLYTTER.compareAndExchange(this, null, lytter);
+    if (gjeldende != null && gjeldende != lytter) {
+      throw new IllegalStateException("Resultat " + saksnummer + " har allerede en statuslytter.");
+    }
   }
 
   public ResultatStatus hentStatus() {
     return status;
   }
 
+  /**
+   * Henter dagsatsen.
+   *
+   * @return dagsatsen i kroner.
+   */
   public double hentDagsats() {
-    return dagsats;
+    return Øre.tilKroner(dagsatsIØre);
+  }
+
+  public long hentDagsatsIØre() {
+    return dagsatsIØre;
   }
 }
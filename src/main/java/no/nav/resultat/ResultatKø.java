@@ -0,0 +1,190 @@
+package no.nav.resultat;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+
+/**
+ * Prioritetskø med ubehandlede resultater, delt opp etter hvilken spesialisering som skal behandle
+ * dem.
+ *
+ * <p>
+ * Hver {@link SaksbehandlerSpesialisering} har sin egen samtidige kø. En saksbehandler henter
+ * dermed kun fra sin egen del av køen, i stedet for å lete gjennom alle ubehandlede resultater.
+ * Antall resultater i hver del holdes oppdatert, slik at dybden kan leses uten å telle køen.
+ * </p>
+ *
+ * <p>
+ * Resultatet med tidligst frist hentes først. For å hindre at resultater med lang frist blir liggende
+ * mens nye resultater med kortere frist går foran, regnes ingen frist som lengre enn en
+ * aldringsgrense etter at resultatet ble opprettet. Et resultat som har ligget i køen like lenge som
+ * aldringsgrensen blir dermed ikke forbigått av nye resultater. Resultater med lik prioritet hentes
+ * i den rekkefølgen de ble lagt til. Prioriteten beregnes én gang når resultatet legges til, så hver
+ * del av køen er et sortert kart uten låser, der både innsetting og henting fra toppen tar
+ * logaritmisk tid.
+ * </p>
+ *
+ * <p>
+ * Køen kan brukes av flere tråder samtidig.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.1
+ * @see Resultat#hentFrist()
+ * @see no.nav.saksbehandler.Saksbehandler#behandleUbehandledeResultater(ResultatKø)
+ */
+public class ResultatKø {
+
+  /**
+   * Aldringsgrensen køen får hvis ikke annet er oppgitt.
+   */
+  public static final Duration STANDARD_ALDRINGSGRENSE = Duration.ofDays(14);
+
+  private final long aldringsgrenseMillis;
+  private final Map<SaksbehandlerSpesialisering, Partisjon> partisjoner;
+
+  /**
+   * Oppretter en tom kø med én del per spesialisering og standard aldringsgrense.
+   */
+  public ResultatKø() {
+    this(STANDARD_ALDRINGSGRENSE);
+  }
+
+  /**
+   * Oppretter en tom kø med én del per spesialisering.
+   *
+   * @param aldringsgrense den lengste fristen som regnes med når resultatene prioriteres, regnet
+   *                       fra opprettelsen. Må være positiv.
+   * @throws IllegalArgumentException hvis aldringsgrensen ikke er positiv.
+   */
+  public ResultatKø(Duration aldringsgrense) throws IllegalArgumentException {
+    if (aldringsgrense.isNegative() || aldringsgrense.isZero()) {
+      throw new IllegalArgumentException("Aldringsgrensen må være positiv.");
+    }
+    this.aldringsgrenseMillis = aldringsgrense.toMillis();
+    this.partisjoner = new EnumMap<>(SaksbehandlerSpesialisering.class);
+    for (SaksbehandlerSpesialisering spesialisering : SaksbehandlerSpesialisering.values()) {
+      partisjoner.put(spesialisering, new Partisjon());
+    }
+  }
+
+  /**
+   * Legger et resultat i køen til resultatets spesialisering, etter fristen og hvor lenge siden det
+   * ble opprettet.
+   *
+   * @param resultat resultatet som skal legges i køen.
+   */
+  public void leggTil(Resultat resultat) {
+    Partisjon partisjon = partisjoner.get(resultat.hentSpesialisering());
+    long opprettet = resultat.hentOpprettet();
+    long prioritet = opprettet
+        + Math.min(resultat.hentFrist() - opprettet, aldringsgrenseMillis);
+    // Dybden økes før resultatet blir synlig, slik at den aldri blir negativ under henting.
+    partisjon.dybde.incrementAndGet();
+    partisjon.kø.put(new Prioritet(prioritet, partisjon.nesteRekkefølge.getAndIncrement()),
+        resultat);
+  }
+
+  /**
+   * Henter og fjerner resultatet med høyest prioritet i køen til en spesialisering.
+   *
+   * @param spesialisering spesialiseringen det skal hentes resultat for.
+   * @return resultatet med høyest prioritet, eller <code>null</code> hvis køen er tom.
+   */
+  public Resultat hent(SaksbehandlerSpesialisering spesialisering) {
+    Partisjon partisjon = partisjoner.get(spesialisering);
+    Map.Entry<Prioritet, Resultat> første = partisjon.kø.pollFirstEntry();
+    if (første == null) {
+      return null;
+    }
+    partisjon.dybde.decrementAndGet();
+    return første.getValue();
+  }
+
+  /**
+   * Henter og fjerner inntil et gitt antall resultater fra køen til en spesialisering, i
+   * prioritert rekkefølge.
+   *
+   * @param spesialisering spesialiseringen det skal hentes resultater for.
+   * @param mottaker       samlingen de hentede resultatene legges i.
+   * @param maksAntall     det største antallet resultater som skal hentes.
+   * @return antall resultater som ble hentet.
+   */
+  public int tøm(SaksbehandlerSpesialisering spesialisering, Collection<? super Resultat> mottaker,
+      int maksAntall) {
+    int antall = 0;
+    Resultat resultat;
+    while (antall < maksAntall && (resultat = hent(spesialisering)) != null) {
+      mottaker.add(resultat);
+      antall++;
+    }
+    return antall;
+  }
+
+  /**
+   * Henter antall resultater som ligger i køen til en spesialisering.
+   *
+   * @param spesialisering spesialiseringen dybden skal hentes for.
+   * @return antall resultater i køen.
+   */
+  public int hentDybde(SaksbehandlerSpesialisering spesialisering) {
+    return partisjoner.get(spesialisering).dybde.get();
+  }
+
+  /**
+   * Finner opprettelsestidspunktet til det eldste resultatet i køen til en spesialisering.
+   *
+   * <p>
+   * Ingen resultater er opprettet mer enn aldringsgrensen før sin prioritet, så køen gjennomgås
+   * fra toppen kun til prioriteten er mer enn aldringsgrensen etter det eldste resultatet som er
+   * funnet.
+   * </p>
+   *
+   * @param spesialisering spesialiseringen det skal letes i.
+   * @return opprettelsestidspunktet i millisekunder siden epoken, eller -1 hvis køen er tom.
+   */
+  public long hentEldsteOpprettet(SaksbehandlerSpesialisering spesialisering) {
+    long eldste = Long.MAX_VALUE;
+    for (Map.Entry<Prioritet, Resultat> oppføring
+        : partisjoner.get(spesialisering).kø.entrySet()) {
+      if (oppføring.getKey().prioritet - aldringsgrenseMillis >= eldste) {
+        break;
+      }
+      eldste = Math.min(eldste, oppføring.getValue().hentOpprettet());
+    }
+    return eldste == Long.MAX_VALUE ? -1 : eldste;
+  }
+
+  private static final class Partisjon {
+
+    private final ConcurrentSkipListMap<Prioritet, Resultat> kø = new ConcurrentSkipListMap<>();
+    private final AtomicInteger dybde = new AtomicInteger();
+    private final AtomicLong nesteRekkefølge = new AtomicLong();
+  }
+
+  /**
+   * Nøkkelen til et resultat i køen, sortert etter prioritet og deretter rekkefølgen resultatene ble
+   * lagt til i.
+   */
+  private static final class Prioritet implements Comparable<Prioritet> {
+
+    private final long prioritet;
+    private final long rekkefølge;
+
+    private Prioritet(long prioritet, long rekkefølge) {
+      this.prioritet = prioritet;
+      this.rekkefølge = rekkefølge;
+    }
+
+    @Override
+    public int compareTo(Prioritet annen) {
+      int sammenligning = Long.compare(prioritet, annen.prioritet);
+      return sammenligning != 0 ? sammenligning : Long.compare(rekkefølge, annen.rekkefølge);
+    }
+  }
+}
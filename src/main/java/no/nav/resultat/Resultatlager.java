@@ -0,0 +1,285 @@
+package no.nav.resultat;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+
+/**
+ * Lager for mange resultater utenfor Java-heapen, i direkte <code>ByteBuffer</code>-er.
+ *
+ * <p>
+ * Hvert resultat lagres i en plass med fast bredde på 24 byte:
+ * <ul>
+ * <li>byte 0-7: saksnummeret.</li>
+ * <li>byte 8-15: opprettelsestidspunktet i millisekunder siden epoken.</li>
+ * <li>byte 16-19: dagsatsen i øre.</li>
+ * <li>byte 20-23: tilstanden, med statusen i de laveste 8 bitene, spesialiseringen i de neste 8
+ * bitene, en bit som sier at plassen er skrevet, og fristen i dager i de høyeste 8 bitene.</li>
+ * </ul>
+ * Plassene ligger i segmenter som allokeres etter hvert som lageret vokser, slik at heapen kun
+ * holder én referanse per segment uansett hvor mange resultater som lagres. Statusen endres atomisk
+ * med compare-and-set direkte på plassen, med samme regler som {@link Resultat#endreStatus}.
+ * </p>
+ * <p>
+ * Resultatene leses gjennom {@link LagretResultat}, som er en gjenbrukbar flyvekt som peker på en
+ * plass. Flyvekten er et {@link Resultat}, og kan dermed brukes direkte med
+ * {@link no.nav.saksbehandler.Saksbehandler#behandleResultat(Resultat)}.
+ * </p>
+ * <p>
+ * Flere tråder kan legge til resultater og endre statuser samtidig. En plass reserveres før den
+ * skrives, så plassene kan bli ferdige i en annen rekkefølge enn de ble reservert i. Lesere ser
+ * derfor kun plassene før den første som ikke er ferdig skrevet, slik at de aldri får en halvskrevet
+ * plass eller en plass i et segment som ikke er allokert ennå.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.3
+ * @see LagretResultat
+ */
+public final class Resultatlager {
+
+  static final int PLASSBREDDE = 24;
+  private static final int SAKSNUMMER = 0;
+  private static final int OPPRETTET = 8;
+  private static final int DAGSATS = 16;
+  private static final int TILSTAND = 20;
+  private static final int SKREVET = 1 << 16;
+  private static final int FRIST = 24;
+  private static final int UTEN_FRIST = (1 << FRIST) - 1;
+  private static final int STANDARD_SEGMENTBITS = 20;
+
+  private static final VarHandle HELTALL =
+      MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+  private static final ResultatStatus[] STATUSER = ResultatStatus.values();
+  private static final SaksbehandlerSpesialisering[] SPESIALISERINGER =
+      SaksbehandlerSpesialisering.values();
+
+  private final int segmentbits;
+  private final int segmentmaske;
+  private final AtomicLong nesteplass = new AtomicLong();
+  private final AtomicLong skrevet = new AtomicLong();
+  private final Object vekstlås = new Object();
+  private volatile ByteBuffer[] segmenter = new ByteBuffer[0];
+
+  /**
+   * Oppretter et tomt lager med segmenter på 24 MiB, som har plass til litt over én million
+   * resultater hver.
+   */
+  public Resultatlager() {
+    this(STANDARD_SEGMENTBITS);
+  }
+
+  Resultatlager(int segmentbits) {
+    this.segmentbits = segmentbits;
+    this.segmentmaske = (1 << segmentbits) - 1;
+  }
+
+  /**
+   * Legger til et nytt ubehandlet resultat med neste ledige saksnummer.
+   *
+   * @param dagsatsIØre    dagsatsen som er beregnet, i øre.
+   * @param spesialisering spesialiseringen som skal behandle resultatet.
+   * @return plassen resultatet ble lagret på.
+   * @throws IllegalArgumentException hvis dagsatsen er negativ eller for stor for plassen.
+   */
+  public long leggTil(long dagsatsIØre, SaksbehandlerSpesialisering spesialisering)
+      throws IllegalArgumentException {
+    return skriv(Resultat.nesteSaksnummer(), System.currentTimeMillis(), dagsatsIØre,
+        spesialisering, ResultatStatus.UBEHANDLET, Resultat.STANDARD_FRIST_DAGER);
+  }
+
+  /**
+   * Kopierer et resultat inn i lageret, med saksnummer, opprettelsestidspunkt, dagsats,
+   * spesialisering, status og frist.
+   *
+   * @param resultat resultatet som skal kopieres.
+   * @return plassen resultatet ble lagret på.
+   * @throws IllegalArgumentException hvis dagsatsen er negativ eller for stor for plassen.
+   */
+  public long leggTil(Resultat resultat) throws IllegalArgumentException {
+    return skriv(resultat.hentSaksnummer(), resultat.hentOpprettet(), resultat.hentDagsatsIØre(),
+        resultat.hentSpesialisering(), resultat.hentStatus(), resultat.hentFristDager());
+  }
+
+  private long skriv(long saksnummer, long opprettet, long dagsatsIØre,
+      SaksbehandlerSpesialisering spesialisering, ResultatStatus status, int fristDager)
+      throws IllegalArgumentException {
+    if (dagsatsIØre < 0 || dagsatsIØre > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Dagsatsen får ikke plass i lageret: " + dagsatsIØre);
+    }
+    long plass = nesteplass.getAndIncrement();
+    ByteBuffer segment = hentEllerLagSegment(plass);
+    int posisjon = posisjon(plass);
+    segment.putLong(posisjon + SAKSNUMMER, saksnummer);
+    segment.putLong(posisjon + OPPRETTET, opprettet);
+    segment.putInt(posisjon + DAGSATS, (int) dagsatsIØre);
+    // Tilstanden skrives sist, slik at lesere som ser den også ser resten av plassen.
+    HELTALL.setVolatile(segment, posisjon + TILSTAND,
+        fristDager << FRIST | SKREVET | spesialisering.ordinal() << 8 | status.ordinal());
+    publiser();
+    return plass;
+  }
+
+  /**
+   * Flytter grensen for hva lesere ser forbi alle plasser som er ferdig skrevet uten hull foran seg.
+   * Den som skriver plassen ved grensen flytter den også forbi plassene etter som allerede er ferdige.
+   */
+  private void publiser() {
+    long grense;
+    while ((grense = skrevet.get()) < nesteplass.get() && erSkrevet(grense)) {
+      skrevet.compareAndSet(grense, grense + 1);
+    }
+  }
+
+  private boolean erSkrevet(long plass) {
+    ByteBuffer[] gjeldende = segmenter;
+    int indeks = (int) (plass >>> segmentbits);
+    if (indeks >= gjeldende.length) {
+      return false;
+    }
+    int tilstand = (int) HELTALL.getVolatile(gjeldende[indeks], posisjon(plass) + TILSTAND);
+    return (tilstand & SKREVET) != 0;
+  }
+
+  private ByteBuffer hentEllerLagSegment(long plass) {
+    int indeks = (int) (plass >>> segmentbits);
+    ByteBuffer[] gjeldende = segmenter;
+    if (indeks < gjeldende.length) {
+      return gjeldende[indeks];
+    }
+    synchronized (vekstlås) {
+      gjeldende = segmenter;
+      if (indeks >= gjeldende.length) {
+        ByteBuffer[] nye = Arrays.copyOf(gjeldende, indeks + 1);
+        for (int i = gjeldende.length; i < nye.length; i++) {
+          nye[i] = ByteBuffer.allocateDirect(PLASSBREDDE << segmentbits)
+              .order(ByteOrder.nativeOrder());
+        }
+        segmenter = nye;
+        gjeldende = nye;
+      }
+      return gjeldende[indeks];
+    }
+  }
+
+  /**
+   * Henter antall plasser som er ferdig skrevet og synlige for lesere.
+   *
+   * @return antall resultater i lageret.
+   */
+  public long hentAntall() {
+    return skrevet.get();
+  }
+
+  /**
+   * Henter en ny flyvekt som peker på en gitt plass.
+   *
+   * @param plass plassen til resultatet.
+   * @return en flyvekt for resultatet.
+   * @throws IndexOutOfBoundsException hvis plassen ikke er tatt i bruk.
+   */
+  public LagretResultat hent(long plass) throws IndexOutOfBoundsException {
+    LagretResultat resultat = new LagretResultat(this);
+    resultat.flyttTil(plass);
+    return resultat;
+  }
+
+  /**
+   * Går gjennom alle resultater med gitt spesialisering og status, med én og samme flyvekt.
+   *
+   * <p>
+   * Flyvekten flyttes til neste plass etter hvert kall, så mottakeren må ikke ta vare på den.
+   * Resultater som legges til eller endres mens gjennomgangen pågår, kan bli med eller ikke.
+   * </p>
+   *
+   * @param spesialisering spesialiseringen resultatene skal ha.
+   * @param status         statusen resultatene skal ha.
+   * @param mottaker       mottakeren av hvert resultat.
+   * @return antall resultater mottakeren fikk.
+   */
+  public long forHver(SaksbehandlerSpesialisering spesialisering, ResultatStatus status,
+      Consumer<? super Resultat> mottaker) {
+    int ønsket = SKREVET | spesialisering.ordinal() << 8 | status.ordinal();
+    LagretResultat flyvekt = new LagretResultat(this);
+    long antall = 0;
+    long slutt = skrevet.get();
+    for (long plass = 0; plass < slutt; plass++) {
+      if ((lesTilstand(plass) & UTEN_FRIST) == ønsket) {
+        flyvekt.plass = plass;
+        mottaker.accept(flyvekt);
+        antall++;
+      }
+    }
+    return antall;
+  }
+
+  /**
+   * Teller resultatene med gitt spesialisering og status.
+   *
+   * @param spesialisering spesialiseringen resultatene skal ha.
+   * @param status         statusen resultatene skal ha.
+   * @return antall resultater.
+   */
+  public long tell(SaksbehandlerSpesialisering spesialisering, ResultatStatus status) {
+    return forHver(spesialisering, status, resultat -> { });
+  }
+
+  void sjekkPlass(long plass) throws IndexOutOfBoundsException {
+    if (plass < 0 || plass >= skrevet.get() && !erSkrevet(plass)) {
+      throw new IndexOutOfBoundsException("Ugyldig plass i resultatlageret: " + plass);
+    }
+  }
+
+  long lesSaksnummer(long plass) {
+    return segment(plass).getLong(posisjon(plass) + SAKSNUMMER);
+  }
+
+  long lesOpprettet(long plass) {
+    return segment(plass).getLong(posisjon(plass) + OPPRETTET);
+  }
+
+  long lesDagsatsIØre(long plass) {
+    return segment(plass).getInt(posisjon(plass) + DAGSATS);
+  }
+
+  int lesFristDager(long plass) {
+    return lesTilstand(plass) >>> FRIST;
+  }
+
+  SaksbehandlerSpesialisering lesSpesialisering(long plass) {
+    return SPESIALISERINGER[(lesTilstand(plass) >>> 8) & 0xFF];
+  }
+
+  ResultatStatus lesStatus(long plass) {
+    return STATUSER[lesTilstand(plass) & 0xFF];
+  }
+
+  /**
+   * Endrer statusen på en plass fra ubehandlet til en avgjort status med compare-and-set.
+   */
+  boolean endreStatus(long plass, ResultatStatus nyStatus) {
+    ByteBuffer segment = segment(plass);
+    int posisjon = posisjon(plass) + TILSTAND;
+    int tilstand = (int) HELTALL.getAcquire(segment, posisjon);
+    int ubehandlet = (tilstand & ~0xFF) | ResultatStatus.UBEHANDLET.ordinal();
+    return HELTALL.compareAndSet(segment, posisjon, ubehandlet,
+        (tilstand & ~0xFF) | nyStatus.ordinal());
+  }
+
+  private int lesTilstand(long plass) {
+    return (int) HELTALL.getAcquire(segment(plass), posisjon(plass) + TILSTAND);
+  }
+
+  private ByteBuffer segment(long plass) {
+    return segmenter[(int) (plass >>> segmentbits)];
+  }
+
+  private int posisjon(long plass) {
+    return (int) (plass & segmentmaske) * PLASSBREDDE;
+  }
+}
@@ -0,0 +1,25 @@
+package no.nav.resultat;
+
+/**
+ * Får beskjed når statusen til et resultat endres, uansett hvem som endrer den.
+ *
+ * <p>
+ * Lytteren kalles i tråden som endret statusen, rett etter at endringen er gjort, og kun når
+ * statusen faktisk ble endret. Et unntak fra lytteren går videre til den som endret statusen.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see Resultat#settStatuslytter(Statuslytter)
+ */
+@FunctionalInterface
+public interface Statuslytter {
+
+  /**
+   * Kalles når et resultat har fått ny status.
+   *
+   * @param resultat resultatet som ble endret.
+   * @param nyStatus den nye statusen.
+   */
+  void statusEndret(Resultat resultat, ResultatStatus nyStatus);
+}
@@ -0,0 +1,69 @@
+package no.nav.saksbehandler;
+
+import java.util.Collections;
+import java.util.List;
+import no.nav.resultat.Resultat;
+
+/**
+ * Oppsummerer en samlet behandling av flere reserverte resultater.
+ *
+ * <p>
+ * Oppsummeringen teller hvor mange resultater som ble behandlet, og hvor mange som ble hoppet over
+ * fordi de allerede var behandlet, hadde feil spesialisering for saksbehandleren eller hadde en
+ * reservasjon som ikke lenger var aktiv. Resultatene som ble behandlet er med, slik at statusene
+ * deres kan lagres samlet.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see Saksbehandler#behandleReservasjoner(java.util.Collection)
+ * @see Behandlingsutfall
+ */
+public final class Behandlingsoppsummering {
+
+  private final List<Resultat> behandlede;
+  private final int alleredeBehandlet;
+  private final int feilSpesialisering;
+  private final int reservasjonUtløpt;
+
+  Behandlingsoppsummering(List<Resultat> behandlede, int alleredeBehandlet,
+      int feilSpesialisering, int reservasjonUtløpt) {
+    this.behandlede = Collections.unmodifiableList(behandlede);
+    this.alleredeBehandlet = alleredeBehandlet;
+    this.feilSpesialisering = feilSpesialisering;
+    this.reservasjonUtløpt = reservasjonUtløpt;
+  }
+
+  public int hentAntallBehandlet() {
+    return behandlede.size();
+  }
+
+  public int hentAntallAlleredeBehandlet() {
+    return alleredeBehandlet;
+  }
+
+  public int hentAntallFeilSpesialisering() {
+    return feilSpesialisering;
+  }
+
+  public int hentAntallReservasjonUtløpt() {
+    return reservasjonUtløpt;
+  }
+
+  /**
+   * Henter resultatene som fikk endret status, i samme rekkefølge som reservasjonene.
+   *
+   * @return de behandlede resultatene.
+   */
+  public List<Resultat> hentBehandlede() {
+    return behandlede;
+  }
+
+  @Override
+  public String toString() {
+    return "Behandlet: " + behandlede.size()
+        + ", allerede behandlet: " + alleredeBehandlet
+        + ", feil spesialisering: " + feilSpesialisering
+        + ", reservasjon utløpt: " + reservasjonUtløpt;
+  }
+}
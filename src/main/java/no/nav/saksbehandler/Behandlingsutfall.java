@@ -0,0 +1,24 @@
+package no.nav.saksbehandler;
+
+/**
+ * Representerer utfallet når en saksbehandler forsøker å behandle et resultat.
+ *
+ * <p>
+ * Mulige utfall er:
+ * <ul>
+ * <li><code>BEHANDLET</code>: Saksbehandleren endret statusen til resultatet.</li>
+ * <li><code>ALLEREDE_BEHANDLET</code>: Resultatet var allerede behandlet, og ble ikke endret.</li>
+ * <li><code>RESERVASJON_UTLØPT</code>: Reservasjonen av resultatet var utløpt eller fullført, og
+ * resultatet ble ikke endret.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see Saksbehandler#behandleResultat(no.nav.resultat.Resultat)
+ */
+public enum Behandlingsutfall {
+  BEHANDLET,
+  ALLEREDE_BEHANDLET,
+  RESERVASJON_UTLØPT
+}
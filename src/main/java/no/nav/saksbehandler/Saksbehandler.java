@@ -1,7 +1,18 @@
 package no.nav.saksbehandler;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import jdk.jfr.FlightRecorder;
+import no.nav.metrikk.BehandlingHendelse;
+import no.nav.metrikk.Hastighet;
+import no.nav.metrikk.Metrikker;
+import no.nav.resultat.Reservasjon;
+import no.nav.resultat.Reservasjonsforvalter;
 import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatKø;
 import no.nav.resultat.ResultatStatus;
 
 /**
@@ -13,15 +24,29 @@ import no.nav.resultat.ResultatStatus;
  * resultatets status.
  * </p>
  *
+ * <p>
+ * Hver behandling telles i {@link Metrikker#felles()} for spesialiseringen, og sendes som en
+ * {@link BehandlingHendelse} til JFR når JFR er i gang og hendelsen er slått på. Behandlingene telles
+ * også for saksbehandleren når den er registrert med {@link #registrerIMetrikker()}.
+ * </p>
+ *
+ * <p>
+ * Flere reserverte resultater kan behandles samlet med {@link #behandleReservasjoner(Collection)},
+ * som gir en {@link Behandlingsoppsummering} i stedet for ett utfall per resultat.
+ * </p>
+ *
  * @author Sigurd Riseth
- * @version 1.0
+ * @version 1.6
  * @see no.nav.saksbehandler.SaksbehandlerSpesialisering
  * @see Resultat
+ * @see ResultatKø
+ * @see Reservasjonsforvalter
  */
 public class Saksbehandler {
 
-  private String navn;
-  private SaksbehandlerSpesialisering spesialisering;
+  private final String navn;
+  private final SaksbehandlerSpesialisering spesialisering;
+  private volatile Hastighet behandlet;
 
   /**
    * Oppretter en ny saksbehandler med gitt navn og spesialisering.
@@ -34,6 +59,16 @@ public class Saksbehandler {
     this.spesialisering = spesialisering;
   }
 
+  /**
+   * Registrerer saksbehandleren i {@link Metrikker#felles()}, slik at behandlingene den gjør fra nå
+   * av også telles for saksbehandleren og ikke kun for spesialiseringen.
+   *
+   * @see Metrikker#registrerSaksbehandler(String)
+   */
+  public void registrerIMetrikker() {
+    this.behandlet = Metrikker.felles().registrerSaksbehandler(navn);
+  }
+
   public String hentNavn() {
     return navn;
   }
@@ -48,8 +83,8 @@ public class Saksbehandler {
    *
    * <p>
    * Saksbehandleren kan kun behandle resultater som samsvarer med sin egen spesialisering. Hvis
-   * resultatets spesialisering ikke samsvarer med saksbehandlerens spesialisering, vil det ikke
-   * behandles.
+   * resultatets spesialisering ikke samsvarer med saksbehandlerens spesialisering, kastes et
+   * {@link IllegalArgumentException}, og resultatet forblir uendret.
    * </p>
    *
    * <p>
@@ -58,21 +93,63 @@ public class Saksbehandler {
    * resultatets status til {@link ResultatStatus#INNVILGET}.
    * </p>
    *
+   * <p>
+   * Statusen endres kun dersom resultatet fortsatt er {@link ResultatStatus#UBEHANDLET}. Forsøker
+   * flere saksbehandlere å behandle samme resultat samtidig, vil kun én av dem lykkes.
+   * </p>
+   *
    * @param resultat resultatet som skal behandles.
-   * @throws IllegalArgumentException hvis resultatet har feil spesialisering for saksbehandleren.
+   * @return {@link Behandlingsutfall#BEHANDLET} hvis saksbehandleren endret statusen, eller
+   * {@link Behandlingsutfall#ALLEREDE_BEHANDLET} hvis resultatet allerede var behandlet.
+   * @throws IllegalArgumentException hvis resultatets spesialisering ikke samsvarer med
+   *                                  saksbehandlerens. Statusen er da ikke endret.
    */
-  public void behandleResultat(Resultat resultat) {
-    if (resultat.hentSpesialisering() != spesialisering) {
-      return;
+  public Behandlingsutfall behandleResultat(Resultat resultat) throws IllegalArgumentException {
+    sjekkSpesialisering(resultat);
+    if (FlightRecorder.isInitialized()) {
+      return behandleMedHendelse(resultat);
     }
+    return behandle(resultat);
+  }
 
+  /**
+   * Behandler som {@link #behandleResultat(Resultat)}, og sender en {@link BehandlingHendelse}.
+   * Hendelsesklassen lastes dermed ikke før JFR er i gang.
+   */
+  private Behandlingsutfall behandleMedHendelse(Resultat resultat) {
+    BehandlingHendelse hendelse = new BehandlingHendelse();
+    hendelse.begin();
+    Behandlingsutfall utfall = behandle(resultat);
+    if (hendelse.shouldCommit()) {
+      hendelse.registrer(navn, resultat, utfall == Behandlingsutfall.BEHANDLET
+          ? ResultatStatus.UBEHANDLET : resultat.hentStatus(), utfall);
+      hendelse.commit();
+    }
+    return utfall;
+  }
+
+  private Behandlingsutfall behandle(Resultat resultat) {
+    if (!resultat.endreStatus(hentAvgjørelse())) {
+      return Behandlingsutfall.ALLEREDE_BEHANDLET;
+    }
+    Metrikker.felles().registrerBehandlet(spesialisering, behandlet);
+    return Behandlingsutfall.BEHANDLET;
+  }
+
+  private ResultatStatus hentAvgjørelse() {
     switch (spesialisering) {
       case AVSLAG_FOR_LAV_INNTEKT:
-        resultat.setStatus(ResultatStatus.AVSLÅTT);
-        break;
+        return ResultatStatus.AVSLÅTT;
       default:
-        resultat.setStatus(ResultatStatus.INNVILGET);
-        break;
+        return ResultatStatus.INNVILGET;
+    }
+  }
+
+  private void sjekkSpesialisering(Resultat resultat) throws IllegalArgumentException {
+    if (resultat.hentSpesialisering() != spesialisering) {
+      throw new IllegalArgumentException(
+          "Saksbehandleren kan ikke behandle resultater med spesialisering "
+              + resultat.hentSpesialisering() + ".");
     }
   }
 
@@ -95,5 +172,109 @@ public class Saksbehandler {
     }
   }
 
+  /**
+   * Behandler alle resultater som ligger i køen til saksbehandlerens spesialisering.
+   *
+   * <p>
+   * Resultatene hentes kun fra saksbehandlerens egen del av køen, slik at resultater for andre
+   * spesialiseringer verken leses eller flyttes.
+   * </p>
+   *
+   * @param resultatKø køen med ubehandlede resultater.
+   */
+  public void behandleUbehandledeResultater(ResultatKø resultatKø) {
+    Resultat resultat;
+    while ((resultat = resultatKø.hent(spesialisering)) != null) {
+      behandleResultat(resultat);
+    }
+  }
+
+  /**
+   * Reserverer inntil et gitt antall ubehandlede resultater for saksbehandlerens spesialisering.
+   *
+   * @param reservasjonsforvalter forvalteren resultatene reserveres fra.
+   * @param maksAntall            det største antallet resultater som skal reserveres.
+   * @param leietid               hvor lenge reservasjonene varer før de utløper.
+   * @return reservasjonene saksbehandleren fikk.
+   * @see #behandleReservasjon(Reservasjon)
+   */
+  public List<Reservasjon> reserverResultater(Reservasjonsforvalter reservasjonsforvalter,
+      int maksAntall, Duration leietid) {
+    return reservasjonsforvalter.reserver(spesialisering, maksAntall, leietid);
+  }
 
+  /**
+   * Fullfører en reservasjon og behandler det reserverte resultatet.
+   *
+   * <p>
+   * Har reservasjonen utløpt, kan resultatet allerede være lagt tilbake i køen og reservert av en
+   * annen saksbehandler. Resultatet behandles da ikke.
+   * </p>
+   *
+   * @param reservasjon reservasjonen som skal behandles.
+   * @return utfallet av behandlingen, eller {@link Behandlingsutfall#RESERVASJON_UTLØPT} hvis
+   * reservasjonen ikke lenger var aktiv.
+   * @throws IllegalArgumentException hvis resultatet har feil spesialisering for saksbehandleren.
+   */
+  public Behandlingsutfall behandleReservasjon(Reservasjon reservasjon)
+      throws IllegalArgumentException {
+    Resultat resultat = reservasjon.hentResultat();
+    sjekkSpesialisering(resultat);
+    if (!reservasjon.fullfør()) {
+      return Behandlingsutfall.RESERVASJON_UTLØPT;
+    }
+    return behandleResultat(resultat);
+  }
+
+  /**
+   * Fullfører og behandler flere reservasjoner samlet.
+   *
+   * <p>
+   * Reservasjoner av resultater med feil spesialisering hoppes over og telles, i stedet for å avbryte
+   * hele behandlingen. De fullføres ikke, og resultatene legges tilbake i køen når reservasjonene
+   * utløper. Metrikkene oppdateres én gang for hele behandlingen, og det sendes ingen
+   * {@link BehandlingHendelse} per resultat.
+   * </p>
+   *
+   * @param reservasjoner reservasjonene som skal behandles.
+   * @return en oppsummering av behandlingen, med resultatene som fikk endret status.
+   * @see #behandleReservasjon(Reservasjon)
+   */
+  public Behandlingsoppsummering behandleReservasjoner(Collection<Reservasjon> reservasjoner) {
+    ResultatStatus nyStatus = hentAvgjørelse();
+    List<Resultat> behandlede = new ArrayList<>(reservasjoner.size());
+    int alleredeBehandlet = 0;
+    int feilSpesialisering = 0;
+    int reservasjonUtløpt = 0;
+    for (Reservasjon reservasjon : reservasjoner) {
+      Resultat resultat = reservasjon.hentResultat();
+      if (resultat.hentSpesialisering() != spesialisering) {
+        feilSpesialisering++;
+      } else if (!reservasjon.fullfør()) {
+        reservasjonUtløpt++;
+      } else if (resultat.endreStatus(nyStatus)) {
+        behandlede.add(resultat);
+      } else {
+        alleredeBehandlet++;
+      }
+    }
+    Metrikker.felles().registrerBehandlet(spesialisering, behandlet, behandlede.size());
+    return new Behandlingsoppsummering(behandlede, alleredeBehandlet, feilSpesialisering,
+        reservasjonUtløpt);
+  }
+
+  /**
+   * Reserverer inntil et gitt antall ubehandlede resultater for saksbehandlerens spesialisering, og
+   * behandler dem samlet.
+   *
+   * @param reservasjonsforvalter forvalteren resultatene reserveres fra.
+   * @param maksAntall            det største antallet resultater som skal behandles.
+   * @param leietid               hvor lenge reservasjonene varer før de utløper.
+   * @return en oppsummering av behandlingen.
+   * @see #behandleReservasjoner(Collection)
+   */
+  public Behandlingsoppsummering behandleReserverte(Reservasjonsforvalter reservasjonsforvalter,
+      int maksAntall, Duration leietid) {
+    return behandleReservasjoner(reserverResultater(reservasjonsforvalter, maksAntall, leietid));
+  }
 }
@@ -0,0 +1,57 @@
+package no.nav.søker;
+
+import java.util.List;
+import no.nav.årslønn.Årslønn;
+
+/**
+ * Representerer en person som søker om dagpenger.
+ *
+ * <p>
+ * Holder på en identifikator for søkeren og årslønnene som dagsatsen skal beregnes ut ifra.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.0
+ * @see no.nav.dagpenger.DagpengerKalkulator#kalkulerDagsatser(java.util.Collection)
+ */
+public class Søker {
+
+  private final String id;
+  private final List<Årslønn> årslønner;
+
+  /**
+   * Oppretter en ny søker med gitt identifikator og årslønner.
+   *
+   * @param id        identifikatoren til søkeren. Kan ikke være null.
+   * @param årslønner årslønnene til søkeren. Kan ikke være null.
+   * @throws IllegalArgumentException hvis identifikatoren eller årslønnene er null.
+   */
+  public Søker(String id, List<Årslønn> årslønner) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("Søkeren må ha en identifikator.");
+    }
+    if (årslønner == null) {
+      throw new IllegalArgumentException("Årslønnene til søkeren kan ikke være null.");
+    }
+    this.id = id;
+    this.årslønner = List.copyOf(årslønner);
+  }
+
+  /**
+   * Henter identifikatoren til søkeren.
+   *
+   * @return identifikatoren til søkeren.
+   */
+  public String hentId() {
+    return id;
+  }
+
+  /**
+   * Henter årslønnene til søkeren.
+   *
+   * @return en uforanderlig liste med årslønnene til søkeren.
+   */
+  public List<Årslønn> hentÅrslønner() {
+    return årslønner;
+  }
+}
@@ -0,0 +1,406 @@
+package no.nav.tjeneste;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.dagpenger.DagsatsCache;
+import no.nav.grunnbeløp.GrunnbeløpKilde;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.metrikk.Metrikker;
+import no.nav.resultat.Reservasjon;
+import no.nav.resultat.Reservasjonsforvalter;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatKø;
+import no.nav.resultat.ResultatStatus;
+import no.nav.saksbehandler.Behandlingsutfall;
+import no.nav.saksbehandler.Saksbehandler;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import no.nav.søker.Søker;
+import no.nav.årslønn.Årslønn;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * HTTP-tjeneste for kalkulering av dagsatser og behandling av resultater.
+ *
+ * <p>
+ * Tjenesten bygger på JDK-ens innebygde <code>HttpServer</code>, og behandler hver forespørsel i en
+ * egen virtuell tråd når Java 21 eller nyere brukes. Blokkerende arbeid, som henting av
+ * grunnbeløpet, binder dermed ikke opp plattformtråder. På eldre Java-versjoner brukes et
+ * trådbasseng som vokser ved behov.
+ * </p>
+ *
+ * <p>
+ * Tjenesten har følgende endepunkter:
+ * <ul>
+ *   <li><code>POST /dagsats</code>: Kalkulerer dagsatsen for én søker.</li>
+ *   <li><code>POST /dagsatser</code>: Kalkulerer dagsatsene for mange søkere.</li>
+ *   <li><code>GET /resultater?spesialisering=X&amp;saksbehandler=NAVN&amp;maks=N</code>: Reserverer
+ *   ubehandlede resultater for en spesialisering til en saksbehandler.</li>
+ *   <li><code>POST /resultater/{saksnummer}/behandle</code>: Lar saksbehandleren som har reservert et
+ *   resultat innvilge eller avslå det. Uten en aktiv reservasjon i saksbehandlerens navn svares det
+ *   med 409.</li>
+ * </ul>
+ * Kan ikke grunnbeløpet hentes, svarer kalkuleringene med 503.
+ * </p>
+ * <p>
+ * Er systemegenskapen {@value DagsatsCache#KAPASITET_EGENSKAP} satt, deler alle forespørslene et
+ * mellomlager for dagsatser med den kapasiteten. Alle kalkuleringer av mange søkere deler også ett
+ * trådbasseng, som lever like lenge som tjenesten.
+ * </p>
+ * <p>
+ * Tjenesten bør kjøres med <code>-D{@value #NODELAY_EGENSKAP}=true</code>. Uten TCP_NODELAY venter
+ * små svar på forsinket kvittering fra klienten, som gir rundt 40 ms ekstra svartid per
+ * forespørsel. Egenskapen gjelder for hele JVM-en og leses når <code>HttpServer</code> tas i bruk
+ * første gang, så den settes ved oppstart og ikke av tjenesten.
+ * </p>
+ * <p>
+ * Tjenesten husker kun resultater som ikke er behandlet, og kun reservasjoner som er aktive. Et
+ * resultat glemmes så snart statusen endres, og en reservasjon så snart den utløper, slik at
+ * minnebruken følger antall åpne saker og ikke antall saker tjenesten har sett.
+ * </p>
+ *
+ * @author Sigurd Riseth
+ * @version 1.6
+ * @see DagpengerKalkulator
+ * @see Saksbehandler
+ */
+public class DagpengerTjeneste implements AutoCloseable {
+
+  private static final Duration STANDARD_LEIETID = Duration.ofMinutes(5);
+  private static final int STANDARD_MAKS_ANTALL = 100;
+
+  /**
+   * Systemegenskapen som slår på TCP_NODELAY for JDK-ens <code>HttpServer</code>.
+   */
+  public static final String NODELAY_EGENSKAP = "sun.net.httpserver.nodelay";
+
+  private final HttpServer server;
+  private final ExecutorService forespørselsutfører;
+  private final ForkJoinPool kalkuleringsbasseng;
+  private final GrunnbeløpKilde grunnbeløpKilde;
+  private final ResultatKø resultatKø;
+  private final Reservasjonsforvalter reservasjonsforvalter;
+  private final DagsatsCache dagsatsCache = DagsatsCache.fraSystemegenskap();
+  private final Map<Long, Resultat> resultater = new ConcurrentHashMap<>();
+  private final Map<Long, Leie> reservasjoner = new ConcurrentHashMap<>();
+
+  /**
+   * Oppretter en tjeneste som lytter på gitt port. Tjenesten må startes med {@link #start()}.
+   *
+   * @param port            porten tjenesten skal lytte på, eller 0 for en ledig port.
+   * @param grunnbeløpKilde kilden grunnbeløpet hentes fra for hver kalkulering.
+   * @throws IOException hvis porten ikke kan åpnes.
+   */
+  public DagpengerTjeneste(int port, GrunnbeløpKilde grunnbeløpKilde) throws IOException {
+    this.grunnbeløpKilde = grunnbeløpKilde;
+    this.resultatKø = new ResultatKø();
+    this.reservasjonsforvalter = new Reservasjonsforvalter(resultatKø, this::glemReservasjon);
+    this.forespørselsutfører = lagForespørselsutfører();
+    this.kalkuleringsbasseng = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.setExecutor(forespørselsutfører);
+    server.createContext("/dagsats", beskyttet(this::kalkulerDagsats));
+    server.createContext("/dagsatser", beskyttet(this::kalkulerDagsatser));
+    server.createContext("/resultater", beskyttet(this::behandleResultater));
+  }
+
+  /**
+   * Starter tjenesten, og lar {@link Metrikker#felles()} lese kødybden fra tjenestens resultatkø.
+   */
+  public void start() {
+    Metrikker.felles().overvåkKø(resultatKø);
+    server.start();
+  }
+
+  /**
+   * Henter porten tjenesten lytter på.
+   *
+   * @return porten tjenesten lytter på.
+   */
+  public int hentPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stopper tjenesten og frigir trådene den bruker.
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+    forespørselsutfører.shutdownNow();
+    kalkuleringsbasseng.shutdownNow();
+    reservasjonsforvalter.close();
+  }
+
+  private void kalkulerDagsats(HttpExchange utveksling) throws IOException {
+    krevMetode(utveksling, "POST");
+    JSONObject forespørsel = lesJson(utveksling);
+    Resultat resultat = lagKalkulator().kalkulerDagsats(lesSøker(forespørsel, "søker"));
+    registrer(resultat);
+    skrivJson(utveksling, 200, tilJson(resultat));
+  }
+
+  private void kalkulerDagsatser(HttpExchange utveksling) throws IOException {
+    krevMetode(utveksling, "POST");
+    JSONArray søkereJson = lesJson(utveksling).getJSONArray("søkere");
+    List<Søker> søkere = new ArrayList<>(søkereJson.length());
+    for (int i = 0; i < søkereJson.length(); i++) {
+      søkere.add(lesSøker(søkereJson.getJSONObject(i), "søker-" + i));
+    }
+
+    List<Resultat> kalkulerte = lagKalkulator().kalkulerDagsatser(søkere, kalkuleringsbasseng);
+    JSONArray resultaterJson = new JSONArray();
+    for (Resultat resultat : kalkulerte) {
+      registrer(resultat);
+      resultaterJson.put(tilJson(resultat));
+    }
+    skrivJson(utveksling, 200, new JSONObject().put("resultater", resultaterJson));
+  }
+
+  private void behandleResultater(HttpExchange utveksling) throws IOException {
+    String sti = utveksling.getRequestURI().getPath();
+    String[] deler = sti.split("/");
+    if (deler.length == 2) {
+      reserverResultater(utveksling);
+    } else if (deler.length == 4 && deler[3].equals("behandle")) {
+      behandleResultat(utveksling, Long.parseLong(deler[2]));
+    } else {
+      skrivFeil(utveksling, 404, "Fant ikke " + sti + ".");
+    }
+  }
+
+  private void reserverResultater(HttpExchange utveksling) throws IOException {
+    krevMetode(utveksling, "GET");
+    Map<String, String> parametere = lesParametere(utveksling.getRequestURI());
+    SaksbehandlerSpesialisering spesialisering = SaksbehandlerSpesialisering.valueOf(
+        påkrevd(parametere, "spesialisering"));
+    String saksbehandler = påkrevd(parametere, "saksbehandler");
+    int maksAntall = Integer.parseInt(
+        parametere.getOrDefault("maks", String.valueOf(STANDARD_MAKS_ANTALL)));
+    Duration leietid = Duration.parse(
+        parametere.getOrDefault("leietid", STANDARD_LEIETID.toString()));
+
+    JSONArray resultaterJson = new JSONArray();
+    for (Reservasjon reservasjon : reservasjonsforvalter.reserver(spesialisering, maksAntall,
+        leietid)) {
+      Resultat resultat = reservasjon.hentResultat();
+      reservasjoner.put(resultat.hentSaksnummer(), new Leie(reservasjon, saksbehandler));
+      resultaterJson.put(tilJson(resultat));
+    }
+    skrivJson(utveksling, 200, new JSONObject().put("resultater", resultaterJson));
+  }
+
+  private void behandleResultat(HttpExchange utveksling, long saksnummer) throws IOException {
+    krevMetode(utveksling, "POST");
+    JSONObject forespørsel = lesJson(utveksling);
+    Saksbehandler saksbehandler = new Saksbehandler(forespørsel.getString("navn"),
+        SaksbehandlerSpesialisering.valueOf(forespørsel.getString("spesialisering")));
+
+    Resultat resultat = resultater.get(saksnummer);
+    if (resultat == null) {
+      skrivFeil(utveksling, 404,
+          "Fant ikke ubehandlet resultat med saksnummer " + saksnummer + ".");
+      return;
+    }
+
+    if (resultat.hentSpesialisering() != saksbehandler.hentSpesialisering()) {
+      throw new IllegalArgumentException("Saksbehandleren kan ikke behandle resultater med "
+          + "spesialisering " + resultat.hentSpesialisering() + ".");
+    }
+
+    Leie leie = reservasjoner.get(saksnummer);
+    if (leie == null || !leie.eier.equals(saksbehandler.hentNavn())
+        || !leie.reservasjon.erAktiv()) {
+      skrivFeil(utveksling, 409, "Resultatet med saksnummer " + saksnummer
+          + " er ikke reservert av " + saksbehandler.hentNavn() + ".");
+      return;
+    }
+
+    // Reservasjonen glemmes først når statusen endres, se glemResultat.
+    Behandlingsutfall utfall = saksbehandler.behandleReservasjon(leie.reservasjon);
+    skrivJson(utveksling, utfall == Behandlingsutfall.BEHANDLET ? 200 : 409,
+        tilJson(resultat).put("utfall", utfall.name()));
+  }
+
+  private DagpengerKalkulator lagKalkulator() {
+    // Grunnbeløpet hentes her og ikke av GrunnbeløpVerktøy, som regner med null kroner når kilden
+    // feiler. Da ville tjenesten svart med en dagsats på null i stedet for en feil.
+    double grunnbeløp;
+    try {
+      grunnbeløp = grunnbeløpKilde.hentGrunnbeløp();
+    } catch (IOException | InterruptedException exception) {
+      if (exception instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      Metrikker.felles().registrerGrunnbeløpUtilgjengelig();
+      throw new UgyldigForespørselException(503,
+          "Grunnbeløpet er ikke tilgjengelig: " + exception.getMessage());
+    }
+    return new DagpengerKalkulator(new GrunnbeløpVerktøy(grunnbeløp), null, dagsatsCache);
+  }
+
+  private void registrer(Resultat resultat) {
+    // Resultatet må kunne slås opp før en saksbehandler kan hente det fra køen.
+    resultat.settStatuslytter(this::glemResultat);
+    resultater.put(resultat.hentSaksnummer(), resultat);
+    resultatKø.leggTil(resultat);
+  }
+
+  private void glemResultat(Resultat resultat, ResultatStatus nyStatus) {
+    resultater.remove(resultat.hentSaksnummer());
+    reservasjoner.remove(resultat.hentSaksnummer());
+  }
+
+  private void glemReservasjon(Reservasjon reservasjon) {
+    // Resultatet kan allerede være reservert på nytt, og da skal den nye reservasjonen beholdes.
+    long saksnummer = reservasjon.hentResultat().hentSaksnummer();
+    reservasjoner.computeIfPresent(saksnummer,
+        (nøkkel, leie) -> leie.reservasjon == reservasjon ? null : leie);
+  }
+
+  private static Søker lesSøker(JSONObject søkerJson, String standardId) {
+    JSONArray årslønnerJson = søkerJson.getJSONArray("årslønner");
+    List<Årslønn> årslønner = new ArrayList<>(årslønnerJson.length());
+    for (int i = 0; i < årslønnerJson.length(); i++) {
+      JSONObject årslønn = årslønnerJson.getJSONObject(i);
+      årslønner.add(new Årslønn(årslønn.getInt("år"), årslønn.getDouble("beløp")));
+    }
+    return new Søker(søkerJson.optString("id", standardId), årslønner);
+  }
+
+  private static JSONObject tilJson(Resultat resultat) {
+    return new JSONObject()
+        .put("saksnummer", resultat.hentSaksnummer())
+        .put("dagsats", resultat.hentDagsats())
+        .put("spesialisering", resultat.hentSpesialisering().name())
+        .put("status", resultat.hentStatus().name());
+  }
+
+  private static void krevMetode(HttpExchange utveksling, String metode) {
+    if (!utveksling.getRequestMethod().equals(metode)) {
+      throw new UgyldigForespørselException(405,
+          "Metoden " + utveksling.getRequestMethod() + " støttes ikke.");
+    }
+  }
+
+  private static String påkrevd(Map<String, String> parametere, String navn) {
+    String verdi = parametere.get(navn);
+    if (verdi == null) {
+      throw new IllegalArgumentException("Mangler parameteren " + navn + ".");
+    }
+    return verdi;
+  }
+
+  private static Map<String, String> lesParametere(URI uri) {
+    Map<String, String> parametere = new HashMap<>();
+    String spørring = uri.getRawQuery();
+    if (spørring == null) {
+      return parametere;
+    }
+    for (String par : spørring.split("&")) {
+      int skille = par.indexOf('=');
+      if (skille > 0) {
+        parametere.put(URLDecoder.decode(par.substring(0, skille), StandardCharsets.UTF_8),
+            URLDecoder.decode(par.substring(skille + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return parametere;
+  }
+
+  private static JSONObject lesJson(HttpExchange utveksling) throws IOException {
+    try (InputStream body = utveksling.getRequestBody()) {
+      return new JSONObject(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  private static void skrivJson(HttpExchange utveksling, int statuskode, JSONObject svar)
+      throws IOException {
+    byte[] innhold = svar.toString().getBytes(StandardCharsets.UTF_8);
+    utveksling.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    utveksling.sendResponseHeaders(statuskode, innhold.length);
+    try (OutputStream body = utveksling.getResponseBody()) {
+      body.write(innhold);
+    }
+  }
+
+  private static void skrivFeil(HttpExchange utveksling, int statuskode, String melding)
+      throws IOException {
+    skrivJson(utveksling, statuskode, new JSONObject().put("feil", melding));
+  }
+
+  /**
+   * Gjør om ugyldige forespørsler til feilsvar, slik at hvert endepunkt kun trenger å håndtere
+   * gyldige forespørsler.
+   */
+  private static HttpHandler beskyttet(HttpHandler endepunkt) {
+    return utveksling -> {
+      try (utveksling) {
+        try {
+          endepunkt.handle(utveksling);
+        } catch (UgyldigForespørselException exception) {
+          skrivFeil(utveksling, exception.statuskode, exception.getMessage());
+        } catch (JSONException | IllegalArgumentException exception) {
+          skrivFeil(utveksling, 400, exception.getMessage());
+        } catch (RuntimeException exception) {
+          skrivFeil(utveksling, 500, "Intern feil: " + exception.getMessage());
+        }
+      }
+    };
+  }
+
+  /**
+   * Lager en utfører som gir hver forespørsel en virtuell tråd. Virtuelle tråder finnes fra Java
+   * 21, og slås derfor opp ved kjøring slik at tjenesten også kan kjøres på eldre versjoner.
+   */
+  private static ExecutorService lagForespørselsutfører() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException exception) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  /**
+   * En reservasjon og navnet til saksbehandleren som har den.
+   */
+  private static final class Leie {
+
+    private final Reservasjon reservasjon;
+    private final String eier;
+
+    private Leie(Reservasjon reservasjon, String eier) {
+      this.reservasjon = reservasjon;
+      this.eier = eier;
+    }
+  }
+
+  private static final class UgyldigForespørselException extends RuntimeException {
+
+    private final int statuskode;
+
+    private UgyldigForespørselException(int statuskode, String melding) {
+      super(melding);
+      this.statuskode = statuskode;
+    }
+  }
+}
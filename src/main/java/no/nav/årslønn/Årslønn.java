@@ -1,25 +1,28 @@
 package no.nav.årslønn;
 
+import no.nav.beløp.Øre;
+
 /**
  * Representerer en persons lønn for et kalenderår.
  *
  * <p>
- * Holder på informasjon om hvilket år lønnen tilhører og selve lønnen for det kalenderåret.
+ * Holder på informasjon om hvilket år lønnen tilhører og selve lønnen for det kalenderåret. Lønnen
+ * lagres som et helt antall øre.
  * </p>
  *
  * @author Emil Elton Nilsen, Sigurd Riseth
- * @version 1.1
+ * @version 1.2
  */
 public class Årslønn {
 
   private final int åretForLønn;
-  private final double årslønn;
+  private final long årslønnIØre;
 
   /**
    * Konstruktør for å initialisere en ny instans av Årslønn med gitt år og lønn.
    *
    * @param åretForLønn året som lønnen tilhører. Må være 2010 eller nyere.
-   * @param årslønn     lønnen for det gitte året. Kan ikke være negativ.
+   * @param årslønn     lønnen for det gitte året, i kroner. Kan ikke være negativ.
    * @throws IllegalArgumentException hvis årslønnen er negativ eller året er under 2010.
    */
   public Årslønn(int åretForLønn, double årslønn) throws IllegalArgumentException {
@@ -30,7 +33,7 @@ public class Årslønn {
       throw new IllegalArgumentException("Årslønnen kan ikke være negativ.");
     }
     this.åretForLønn = åretForLønn;
-    this.årslønn = årslønn;
+    this.årslønnIØre = Øre.fraKroner(årslønn);
   }
 
   /**
@@ -45,10 +48,19 @@ public class Årslønn {
   /**
    * Henter årslønnen.
    *
-   * @return årslønnen.
+   * @return årslønnen i kroner.
    */
   public double hentÅrslønn() {
-    return årslønn;
+    return Øre.tilKroner(årslønnIØre);
+  }
+
+  /**
+   * Henter årslønnen som et helt antall øre.
+   *
+   * @return årslønnen i øre.
+   */
+  public long hentÅrslønnIØre() {
+    return årslønnIØre;
   }
 
 }
@@ -0,0 +1,41 @@
+package no.nav.beløp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class ØreTest {
+
+  /**
+   * Tester at kroner gjøres om til øre avrundet til nærmeste øre, og tilbake igjen.
+   */
+  @Test
+  void testFraOgTilKroner() {
+    assertEquals(50000055, Øre.fraKroner(500000.55));
+    assertEquals(30, Øre.fraKroner(0.1 + 0.2));
+    assertEquals(0, Øre.fraKroner(-0.0));
+    assertEquals(500000.55, Øre.tilKroner(50000055));
+  }
+
+  /**
+   * Tester at beløp som ikke er endelige tall, eller som ikke får plass i en long, avvises.
+   */
+  @Test
+  void testUgyldigeBeløp() {
+    assertThrows(IllegalArgumentException.class, () -> Øre.fraKroner(Double.NaN));
+    assertThrows(IllegalArgumentException.class, () -> Øre.fraKroner(Double.POSITIVE_INFINITY));
+    assertThrows(IllegalArgumentException.class, () -> Øre.fraKroner(1e17));
+  }
+
+  /**
+   * Tester at deling rundes opp til hele kroner, og at beløp som allerede går opp ikke endres.
+   */
+  @Test
+  void testDelOgRundOppTilHeleKroner() {
+    assertEquals(211600, Øre.delOgRundOppTilHeleKroner(55000000, 260));
+    assertEquals(211500, Øre.delOgRundOppTilHeleKroner(54990000, 260));
+    assertEquals(211600, Øre.delOgRundOppTilHeleKroner(54990001, 260));
+    assertEquals(0, Øre.delOgRundOppTilHeleKroner(0, 780));
+  }
+}
@@ -2,16 +2,29 @@ package no.nav.dagpenger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatKø;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import no.nav.søker.Søker;
 import no.nav.årslønn.Årslønn;
 import org.junit.jupiter.api.Test;
 
 public class DagpengerKalkulatorTester {
 
+  private static final double GRUNNBELØP = 124028;
+
   @Test
   public void testSkalHaRettigheterTilDagpengerUtifraSisteTreÅrslønner() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 445000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 465000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 300000));
@@ -20,7 +33,8 @@ public class DagpengerKalkulatorTester {
 
   @Test
   public void testSkalHaRetigheterTilDagpengerSisteÅrslønn() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 0));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 0));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 467000));
@@ -29,7 +43,8 @@ public class DagpengerKalkulatorTester {
 
   @Test
   public void testSkalIkkeHaRettigheterTilDagpengerSisteTreÅrslønner() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 44000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 52000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 100000));
@@ -38,7 +53,8 @@ public class DagpengerKalkulatorTester {
 
   @Test
   public void testSkalIkkeHaRettigheterTilDagpengerSisteÅrslønn() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 0));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 130000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 0));
@@ -47,7 +63,8 @@ public class DagpengerKalkulatorTester {
 
   @Test
   public void testBeregningsMetodeBlirSattTilSisteÅrslønn() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 550000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 110000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 24000));
@@ -56,7 +73,8 @@ public class DagpengerKalkulatorTester {
 
   @Test
   public void testBeregningsMetodeBlirSattTilMaksÅrslønnGrunnbeløp() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 830000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 110000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 24000));
@@ -66,7 +84,8 @@ public class DagpengerKalkulatorTester {
 
   @Test
   public void testBeregningsMetodeBlirSattTilGjennomsnittetAvTreÅr() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 330000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 400000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 334000));
@@ -76,7 +95,8 @@ public class DagpengerKalkulatorTester {
 
   @Test
   public void testDagsatsKalkulertUtifraSisteÅrslønn() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 550000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 110000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 24000));
@@ -85,7 +105,8 @@ public class DagpengerKalkulatorTester {
 
   @Test
   public void testDagsatsKalkulertUtifraMaksÅrligGrunnbeløp() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 830000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 24000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 110000));
@@ -95,7 +116,8 @@ public class DagpengerKalkulatorTester {
   @Test
   public void testDagsatsKalkulertUtifraTreÅrsGjennomsnitt() {
 
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 330000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 334000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 400000));
@@ -104,10 +126,147 @@ public class DagpengerKalkulatorTester {
 
   @Test
   public void testDagsatsKalkulertIkkeRettPåDagpenger() {
-    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 80000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 100000));
     dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 70000));
     assertEquals(0, dagpengerKalkulator.kalkulerDagsats().hentDagsats());
   }
+
+  /**
+   * Tester at årslønner med øre som til sammen er nøyaktig 3G gir rett på dagpenger, også når summen
+   * av de samme beløpene som flyttall blir litt lavere enn 3G.
+   */
+  @Test
+  public void testSumNøyaktigTreGMedØreGirRett() {
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 1413.35));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 298894.29));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 71776.36));
+    Resultat resultat = dagpengerKalkulator.kalkulerDagsats();
+    assertEquals(SaksbehandlerSpesialisering.INNVILGET, resultat.hentSpesialisering());
+    assertEquals(478, resultat.hentDagsats());
+  }
+
+  /**
+   * Tester grensen for rett på dagpenger når 1.5G ikke er et helt antall øre, slik at grensen blir
+   * rundet opp til nærmeste øre.
+   */
+  @Test
+  public void testGrenseForSisteÅrslønnMedOddeGrunnbeløp() {
+    GrunnbeløpVerktøy grunnbeløpVerktøy = new GrunnbeløpVerktøy(124028.01);
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(grunnbeløpVerktøy);
+    assertEquals(18604202, grunnbeløpVerktøy.hentMinimumÅrslønnForRettPåDagpengerIØre());
+    assertEquals(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT,
+        dagpengerKalkulator.kalkulerDagsatsIØre(18604201, 18604201).hentSpesialisering());
+    assertEquals(SaksbehandlerSpesialisering.INNVILGET,
+        dagpengerKalkulator.kalkulerDagsatsIØre(18604202, 18604202).hentSpesialisering());
+  }
+
+  /**
+   * Tester at en rettet årslønn innenfor de tre nyeste årene gir ny dagsats, mens en rettelse av et
+   * eldre år eller samme beløp på nytt ikke endrer resultatet.
+   */
+  @Test
+  public void testRettelseAvÅrslønnOppdatererKunVedEndringIVinduet() {
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 330000));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 334000));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 400000));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2021, 900000));
+    assertEquals(1365, dagpengerKalkulator.kalkulerDagsats().hentDagsats());
+
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2021, 50000));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 330000));
+    assertEquals(1365, dagpengerKalkulator.kalkulerDagsats().hentDagsats());
+    assertEquals(Beregningsmetode.GJENNOMSNITTET_AV_TRE_ÅR,
+        dagpengerKalkulator.velgBeregningsMetode());
+
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 550000));
+    assertEquals(Beregningsmetode.SISTE_ÅRSLØNN, dagpengerKalkulator.velgBeregningsMetode());
+    assertEquals(2116, dagpengerKalkulator.kalkulerDagsats().hentDagsats());
+
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2025, 80000));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 20000));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 20000));
+    assertFalse(dagpengerKalkulator.harRettigheterTilDagpenger());
+    assertEquals(0, dagpengerKalkulator.kalkulerDagsats().hentDagsats());
+  }
+
+  /**
+   * Tester at gjentatte kalkuleringer uten endringer gir nye resultater med samme dagsats, og at
+   * hvert av dem legges i resultatkøen.
+   */
+  @Test
+  public void testGjentattKalkuleringGirNyeResultater() {
+    ResultatKø resultatKø = new ResultatKø();
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP), resultatKø);
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 550000));
+
+    Resultat første = dagpengerKalkulator.kalkulerDagsats();
+    Resultat andre = dagpengerKalkulator.kalkulerDagsats();
+
+    assertNotSame(første, andre);
+    assertEquals(første.hentDagsats(), andre.hentDagsats());
+    assertEquals(2, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET));
+  }
+
+  @Test
+  public void testDagsatserKalkuleresParalleltIRekkefølge() {
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
+    List<Søker> søkere = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      søkere.add(new Søker("søker-" + i, List.of(
+          new Årslønn(2024, 550000 + i), new Årslønn(2023, 24000), new Årslønn(2022, 110000))));
+    }
+
+    ForkJoinPool trådbasseng = new ForkJoinPool(4);
+    List<Resultat> resultater;
+    try {
+      resultater = dagpengerKalkulator.kalkulerDagsatser(søkere, trådbasseng);
+    } finally {
+      trådbasseng.shutdown();
+    }
+
+    assertEquals(søkere.size(), resultater.size());
+    for (int i = 0; i < søkere.size(); i++) {
+      assertEquals(Math.ceil((550000.0 + i) / 260), resultater.get(i).hentDagsats(),
+          "Feil dagsats for " + søkere.get(i).hentId());
+    }
+  }
+
+  @Test
+  public void testDagsatserKalkuleresIFellesTrådbasseng() {
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
+    List<Søker> søkere = List.of(
+        new Søker("a", List.of(new Årslønn(2024, 520000))),
+        new Søker("b", List.of(new Årslønn(2024, 80000))));
+
+    List<Resultat> resultater = dagpengerKalkulator.kalkulerDagsatser(søkere);
+
+    assertEquals(2000, resultater.get(0).hentDagsats());
+    assertEquals(0, resultater.get(1).hentDagsats());
+    assertTrue(dagpengerKalkulator.kalkulerDagsatser(List.of()).isEmpty());
+  }
+
+  @Test
+  public void testSummerNyligeÅrslønnerBrukerNyesteÅrOgSisteBeløpPerÅr() {
+    DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+        new GrunnbeløpVerktøy(GRUNNBELØP));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2019, 1000));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 300));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2021, 100));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 50));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 20));
+    dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 30));
+    assertEquals(50, dagpengerKalkulator.summerNyligeÅrslønner(1));
+    assertEquals(100, dagpengerKalkulator.summerNyligeÅrslønner(3));
+    assertEquals(1200, dagpengerKalkulator.summerNyligeÅrslønner(10));
+  }
 }
@@ -0,0 +1,133 @@
+package no.nav.dagpenger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.resultat.Resultat;
+import no.nav.søker.Søker;
+import no.nav.årslønn.Årslønn;
+import org.junit.jupiter.api.Test;
+
+class DagsatsCacheTest {
+
+  private static final double GRUNNBELØP = 124028;
+
+  /**
+   * Tester at søkere med like inntekter de siste tre årene får nye resultater med samme dagsats, og
+   * at bare den første kalkuleringen bommer.
+   */
+  @Test
+  void testLikeInntekterGirTreff() {
+    DagsatsCache dagsatsCache = new DagsatsCache(64);
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(new GrunnbeløpVerktøy(GRUNNBELØP),
+        null, dagsatsCache);
+    Søker første = new Søker("a", List.of(new Årslønn(2024, 550000), new Årslønn(2023, 24000),
+        new Årslønn(2022, 110000)));
+    Søker andre = new Søker("b", List.of(new Årslønn(2024, 550000), new Årslønn(2023, 24000),
+        new Årslønn(2022, 110000), new Årslønn(2021, 900000)));
+
+    Resultat førsteResultat = kalkulator.kalkulerDagsats(første);
+    Resultat andreResultat = kalkulator.kalkulerDagsats(andre);
+
+    assertNotSame(førsteResultat, andreResultat);
+    assertEquals(2116, andreResultat.hentDagsats());
+    assertEquals(førsteResultat.hentSpesialisering(), andreResultat.hentSpesialisering());
+    assertEquals(1, dagsatsCache.hentBom());
+    assertEquals(1, dagsatsCache.hentTreff());
+    assertEquals(0.5, dagsatsCache.hentTreffrate());
+  }
+
+  /**
+   * Tester at et nytt grunnbeløp gir en ny kalkulering, og ikke resultatet for det gamle
+   * grunnbeløpet.
+   */
+  @Test
+  void testNyttGrunnbeløpGirBom() {
+    DagsatsCache dagsatsCache = new DagsatsCache(64);
+    Søker søker = new Søker("a", List.of(new Årslønn(2024, 830000)));
+
+    Resultat gammelt = new DagpengerKalkulator(new GrunnbeløpVerktøy(GRUNNBELØP), null,
+        dagsatsCache).kalkulerDagsats(søker);
+    Resultat nytt = new DagpengerKalkulator(new GrunnbeløpVerktøy(130160), null, dagsatsCache)
+        .kalkulerDagsats(søker);
+
+    assertEquals(2863, gammelt.hentDagsats());
+    assertEquals(3004, nytt.hentDagsats());
+    assertEquals(2, dagsatsCache.hentBom());
+  }
+
+  /**
+   * Tester at mellomlageret ikke vokser over kapasiteten, og at nøkkelen som er brukt minst nylig
+   * kastes ut først.
+   */
+  @Test
+  void testMinstNyligBrukteKastesUt() {
+    DagsatsCache dagsatsCache = new DagsatsCache(2, 1);
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(new GrunnbeløpVerktøy(GRUNNBELØP),
+        null, dagsatsCache);
+
+    kalkulator.kalkulerDagsatsIØre(1, 1);
+    kalkulator.kalkulerDagsatsIØre(2, 2);
+    kalkulator.kalkulerDagsatsIØre(1, 1);
+    kalkulator.kalkulerDagsatsIØre(3, 3);
+    kalkulator.kalkulerDagsatsIØre(1, 1);
+
+    assertEquals(2, dagsatsCache.hentStørrelse());
+    assertEquals(1, dagsatsCache.hentUtkastelser());
+    assertEquals(2, dagsatsCache.hentTreff());
+
+    kalkulator.kalkulerDagsatsIØre(2, 2);
+    assertEquals(4, dagsatsCache.hentBom());
+  }
+
+  /**
+   * Tester at mange tråder kan bruke det samme mellomlageret samtidig og få riktige dagsatser.
+   */
+  @Test
+  void testSamtidigBruk() throws Exception {
+    GrunnbeløpVerktøy grunnbeløpVerktøy = new GrunnbeløpVerktøy(GRUNNBELØP);
+    DagsatsCache dagsatsCache = new DagsatsCache(256);
+    DagpengerKalkulator utenCache = new DagpengerKalkulator(grunnbeløpVerktøy);
+    ExecutorService utfører = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> oppgaver = new ArrayList<>();
+      for (int tråd = 0; tråd < 4; tråd++) {
+        oppgaver.add(utfører.submit(() -> {
+          DagpengerKalkulator medCache = new DagpengerKalkulator(grunnbeløpVerktøy, null,
+              dagsatsCache);
+          for (int i = 0; i < 20_000; i++) {
+            long sisteÅrslønn = (i % 500) * 2_000_00L;
+            assertEquals(utenCache.kalkulerDagsatsIØre(sisteÅrslønn, sisteÅrslønn * 2)
+                    .hentDagsatsIØre(),
+                medCache.kalkulerDagsatsIØre(sisteÅrslønn, sisteÅrslønn * 2).hentDagsatsIØre());
+          }
+          return null;
+        }));
+      }
+      for (Future<?> oppgave : oppgaver) {
+        oppgave.get();
+      }
+    } finally {
+      utfører.shutdown();
+    }
+    assertEquals(80_000, dagsatsCache.hentTreff() + dagsatsCache.hentBom());
+    assertTrue(dagsatsCache.hentStørrelse() <= 256);
+  }
+
+  /**
+   * Tester at ugyldig kapasitet og antall striper avvises.
+   */
+  @Test
+  void testUgyldigOppsett() {
+    assertThrows(IllegalArgumentException.class, () -> new DagsatsCache(8, 3));
+    assertThrows(IllegalArgumentException.class, () -> new DagsatsCache(8, 16));
+  }
+}
@@ -0,0 +1,154 @@
+package no.nav.dagpenger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Random;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.resultat.Resultat;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.junit.jupiter.api.Test;
+
+class DagsatskjerneTest {
+
+  private static final double GRUNNBELØP = 124028;
+  private static final int ANTALL = 100_003;
+
+  private final GrunnbeløpVerktøy grunnbeløpVerktøy = new GrunnbeløpVerktøy(GRUNNBELØP);
+
+  /**
+   * Tester at testene kjøres med vektormodulen, slik at det er vektorkjernen som sammenlignes.
+   */
+  @Test
+  void testVektorkjernenErForetrukket() {
+    assertInstanceOf(VektorDagsatskjerne.class, Dagsatskjerne.FORETRUKKET);
+  }
+
+  /**
+   * Tester at både den skalare kjernen og vektorkjernen gir nøyaktig de samme dagsatsene og
+   * spesialiseringene som kalkulatoren, også for grenseverdier og ett øre på hver side av dem.
+   */
+  @Test
+  void testKjerneneGirSammeResultatSomKalkulatoren() {
+    Dagsatsparti skalar = opprettParti(new Random(42));
+    Dagsatsparti vektor = opprettParti(new Random(42));
+    new SkalarDagsatskjerne().beregn(grunnbeløpVerktøy, skalar, 0, ANTALL);
+    new VektorDagsatskjerne().beregn(grunnbeløpVerktøy, vektor, 0, ANTALL);
+
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(grunnbeløpVerktøy);
+    for (int i = 0; i < ANTALL; i++) {
+      Resultat forventet = kalkulator.kalkulerDagsatsIØre(skalar.sisteÅrslønner[i],
+          skalar.sumTreÅr[i]);
+      String melding = "siste=" + skalar.sisteÅrslønner[i] + ", sum=" + skalar.sumTreÅr[i];
+
+      assertEquals(forventet.hentDagsatsIØre(), skalar.hentDagsatsIØre(i), melding);
+      assertEquals(forventet.hentDagsatsIØre(), vektor.hentDagsatsIØre(i), melding);
+      assertEquals(forventet.hentSpesialisering(), skalar.hentSpesialisering(i), melding);
+      assertEquals(forventet.hentSpesialisering(), vektor.hentSpesialisering(i), melding);
+      assertEquals(skalar.hentBeregningsmetode(i), vektor.hentBeregningsmetode(i), melding);
+    }
+  }
+
+  /**
+   * Tester at kjernene kun endrer det gitte utsnittet av partiet, også når utsnittet ikke fyller
+   * hele vektorer.
+   */
+  @Test
+  void testKunUtsnittetKalkuleres() {
+    Dagsatsparti parti = new Dagsatsparti(37);
+    for (int i = 0; i < 37; i++) {
+      parti.leggTil(50000000, 135000000);
+    }
+
+    new VektorDagsatskjerne().beregn(grunnbeløpVerktøy, parti, 3, 34);
+
+    for (int i = 0; i < 37; i++) {
+      double forventet = i >= 3 && i < 34 ? 1924 : 0;
+      assertEquals(forventet, parti.hentDagsats(i));
+    }
+  }
+
+  /**
+   * Tester at kalkulatoren kalkulerer et helt parti med riktige beregningsmetoder.
+   */
+  @Test
+  void testKalkulerDagsatserForParti() {
+    Dagsatsparti parti = new Dagsatsparti(4);
+    parti.leggTil(55000000, 68400000);
+    parti.leggTil(33000000, 106400000);
+    parti.leggTil(83000000, 96400000);
+    parti.leggTil(10000000, 10000000);
+
+    List<Resultat> resultater = new DagpengerKalkulator(grunnbeløpVerktøy)
+        .kalkulerDagsatser(parti);
+
+    assertEquals(4, resultater.size());
+    assertEquals(Beregningsmetode.SISTE_ÅRSLØNN, parti.hentBeregningsmetode(0));
+    assertEquals(Beregningsmetode.GJENNOMSNITTET_AV_TRE_ÅR, parti.hentBeregningsmetode(1));
+    assertEquals(Beregningsmetode.MAKS_ÅRLIG_DAGPENGERGRUNNLAG, parti.hentBeregningsmetode(2));
+    assertNull(parti.hentBeregningsmetode(3));
+    assertEquals(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT,
+        resultater.get(3).hentSpesialisering());
+    assertEquals(0, resultater.get(3).hentDagsats());
+  }
+
+  /**
+   * Tester at partiet avviser negative og urimelig store beløp.
+   */
+  @Test
+  void testUgyldigeBeløpAvvises() {
+    Dagsatsparti parti = new Dagsatsparti(1);
+
+    assertThrows(IllegalArgumentException.class, () -> parti.leggTil(-1, 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> parti.leggTil(0, Dagsatsparti.MAKS_BELØP_I_ØRE + 1));
+    assertEquals(0, parti.hentAntall());
+  }
+
+  private Dagsatsparti opprettParti(Random tilfeldig) {
+    long halvannenG = grunnbeløpVerktøy.hentMinimumÅrslønnForRettPåDagpengerIØre();
+    long treG = grunnbeløpVerktøy.hentTotaltGrunnbeløpForGittAntallÅrIØre(3);
+    long seksG = grunnbeløpVerktøy.hentMaksÅrligDagpengegrunnlagIØre();
+    long[] spesielle = {
+        0, 1, halvannenG - 1, halvannenG, halvannenG + 1, treG - 1, treG, treG + 1,
+        seksG - 1, seksG, seksG + 1, 26000 * 1500, 26000 * 1500 + 1,
+        Dagsatsparti.MAKS_BELØP_I_ØRE / 3, Dagsatsparti.MAKS_BELØP_I_ØRE
+    };
+    Dagsatsparti parti = new Dagsatsparti(ANTALL);
+    for (int i = 0; i < ANTALL; i++) {
+      long sisteÅrslønn = tilfeldigVerdi(tilfeldig, spesielle);
+      long sumTreÅr;
+      switch (tilfeldig.nextInt(4)) {
+        case 0:
+          sumTreÅr = sisteÅrslønn * 3;
+          break;
+        case 1:
+          sumTreÅr = sisteÅrslønn * 3 + tilfeldig.nextInt(3) - 1;
+          break;
+        case 2:
+          sumTreÅr = sisteÅrslønn + tilfeldigVerdi(tilfeldig, spesielle);
+          break;
+        default:
+          sumTreÅr = tilfeldigVerdi(tilfeldig, spesielle) * 3;
+          break;
+      }
+      sumTreÅr = Math.min(Math.max(sumTreÅr, 0), Dagsatsparti.MAKS_BELØP_I_ØRE);
+      parti.leggTil(Math.min(sisteÅrslønn, Dagsatsparti.MAKS_BELØP_I_ØRE), sumTreÅr);
+    }
+    return parti;
+  }
+
+  private static long tilfeldigVerdi(Random tilfeldig, long[] spesielle) {
+    int valg = tilfeldig.nextInt(10);
+    if (valg == 0) {
+      return spesielle[tilfeldig.nextInt(spesielle.length)];
+    }
+    if (valg == 1) {
+      return tilfeldig.nextInt(5000) * 26000L;
+    }
+    return (long) (tilfeldig.nextDouble() * 10 * GRUNNBELØP * 100);
+  }
+}
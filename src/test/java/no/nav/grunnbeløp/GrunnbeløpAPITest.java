@@ -0,0 +1,115 @@
+package no.nav.grunnbeløp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GrunnbeløpAPITest {
+
+  private HttpServer grunnbeløpServer;
+  private ExecutorService serverTråder;
+  private final AtomicInteger antallForespørsler = new AtomicInteger();
+  private volatile IntFunction<Long> forsinkelseMillis = forespørsel -> 0L;
+
+  @BeforeEach
+  void startGrunnbeløpServer() throws IOException {
+    serverTråder = Executors.newCachedThreadPool();
+    grunnbeløpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    grunnbeløpServer.setExecutor(serverTråder);
+    grunnbeløpServer.createContext("/grunnbeløp", exchange -> {
+      int forespørsel = antallForespørsler.incrementAndGet();
+      try {
+        Thread.sleep(forsinkelseMillis.apply(forespørsel));
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+      byte[] svar = ("{\"grunnbeløp\": " + (124000 + forespørsel) + "}")
+          .getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, svar.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(svar);
+      }
+    });
+    grunnbeløpServer.start();
+  }
+
+  @AfterEach
+  void stoppGrunnbeløpServer() {
+    grunnbeløpServer.stop(0);
+    serverTråder.shutdownNow();
+  }
+
+  private GrunnbeløpAPI lagAPI(Duration svartid, Duration ekstraforsinkelse) {
+    URI adresse = URI.create(
+        "http://localhost:" + grunnbeløpServer.getAddress().getPort() + "/grunnbeløp");
+    return new GrunnbeløpAPI(adresse, Duration.ofSeconds(1), svartid, ekstraforsinkelse);
+  }
+
+  /**
+   * Tester at samtidige hentinger slås sammen til én forespørsel mot API'et.
+   */
+  @Test
+  void testSamtidigeHentingerGirÉnForespørsel() throws Exception {
+    forsinkelseMillis = forespørsel -> 300L;
+    GrunnbeløpAPI grunnbeløpAPI = lagAPI(Duration.ofSeconds(5), Duration.ofSeconds(5));
+
+    List<CompletableFuture<Double>> hentinger = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      hentinger.add(grunnbeløpAPI.hentGrunnbeløpAsynkront());
+    }
+    for (CompletableFuture<Double> henting : hentinger) {
+      assertEquals(124001, henting.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, antallForespørsler.get(), "Forventet nøyaktig én forespørsel til API'et");
+
+    assertEquals(124002, grunnbeløpAPI.hentGrunnbeløp(),
+        "Forventet ny forespørsel etter at forrige henting var ferdig");
+  }
+
+  /**
+   * Tester at en ekstra forespørsel sendes når API'et er tregt, og at det første svaret brukes.
+   */
+  @Test
+  void testEkstraForespørselVedTregtSvar() throws Exception {
+    forsinkelseMillis = forespørsel -> forespørsel == 1 ? 3000L : 0L;
+    GrunnbeløpAPI grunnbeløpAPI = lagAPI(Duration.ofSeconds(5), Duration.ofMillis(100));
+
+    long start = System.nanoTime();
+    assertEquals(124002, grunnbeløpAPI.hentGrunnbeløp());
+    long varighetMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(2, antallForespørsler.get());
+    assertTrue(varighetMillis < 2000, "Forventet svar fra den ekstra forespørselen");
+  }
+
+  /**
+   * Tester at hentingen feiler når API'et ikke svarer innen svartiden.
+   */
+  @Test
+  void testSvartidOverskredet() {
+    forsinkelseMillis = forespørsel -> 2000L;
+    GrunnbeløpAPI grunnbeløpAPI = lagAPI(Duration.ofMillis(200), Duration.ofMillis(50));
+
+    assertThrows(IOException.class, grunnbeløpAPI::hentGrunnbeløp);
+    assertEquals(2, antallForespørsler.get());
+  }
+}
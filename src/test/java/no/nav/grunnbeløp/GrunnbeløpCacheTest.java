@@ -0,0 +1,231 @@
+package no.nav.grunnbeløp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.årslønn.Årslønn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GrunnbeløpCacheTest {
+
+  private HttpServer grunnbeløpServer;
+  private final AtomicInteger antallForespørsler = new AtomicInteger();
+
+  @BeforeEach
+  void startGrunnbeløpServer() throws IOException {
+    grunnbeløpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    grunnbeløpServer.createContext("/grunnbeløp", exchange -> {
+      antallForespørsler.incrementAndGet();
+      byte[] svar = "{\"grunnbeløp\": 124028}".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, svar.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(svar);
+      }
+    });
+    grunnbeløpServer.start();
+  }
+
+  @AfterEach
+  void stoppGrunnbeløpServer() {
+    grunnbeløpServer.stop(0);
+  }
+
+  /**
+   * Tester at mange beregninger mot samme mellomlagring kun gir én forespørsel til API'et.
+   */
+  @Test
+  void testMangeBeregningerGirÉnForespørsel() {
+    URI adresse = URI.create(
+        "http://localhost:" + grunnbeløpServer.getAddress().getPort() + "/grunnbeløp");
+    GrunnbeløpCache cache = new GrunnbeløpCache(new GrunnbeløpAPI(adresse), Duration.ofHours(1));
+
+    for (int i = 0; i < 5000; i++) {
+      DagpengerKalkulator dagpengerKalkulator = new DagpengerKalkulator(
+          new GrunnbeløpVerktøy(cache));
+      dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2024, 550000));
+      dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2023, 24000));
+      dagpengerKalkulator.leggTilÅrslønn(new Årslønn(2022, 110000));
+      assertEquals(2116, dagpengerKalkulator.kalkulerDagsats().hentDagsats());
+    }
+
+    assertEquals(1, antallForespørsler.get(), "Forventet nøyaktig én forespørsel til API'et");
+  }
+
+  /**
+   * Tester at grunnbeløpet friskes opp i bakgrunnen før levetiden er ute.
+   */
+  @Test
+  void testOppfriskningFørLevetidenErUte() throws Exception {
+    AtomicLong klokke = new AtomicLong();
+    AtomicInteger antallHentinger = new AtomicInteger();
+    GrunnbeløpCache cache = new GrunnbeløpCache(() -> 100000 + antallHentinger.incrementAndGet(),
+        Duration.ofNanos(100), 0.5, klokke::get, Runnable::run);
+
+    assertEquals(100001, cache.hentGrunnbeløp());
+    klokke.set(49);
+    assertEquals(100001, cache.hentGrunnbeløp());
+    assertEquals(1, antallHentinger.get());
+
+    klokke.set(60);
+    assertEquals(100001, cache.hentGrunnbeløp(), "Forventet gjeldende verdi under oppfriskning");
+    assertEquals(100002, cache.hentGrunnbeløp());
+    assertEquals(2, antallHentinger.get());
+  }
+
+  /**
+   * Tester at sist kjente grunnbeløp brukes når kilden feiler etter at levetiden er ute.
+   */
+  @Test
+  void testSistKjenteGrunnbeløpBrukesNårKildenFeiler() throws Exception {
+    AtomicLong klokke = new AtomicLong();
+    AtomicInteger antallHentinger = new AtomicInteger();
+    GrunnbeløpCache cache = new GrunnbeløpCache(() -> {
+      if (antallHentinger.incrementAndGet() > 1) {
+        throw new IOException("API'et er nede");
+      }
+      return 124028;
+    }, Duration.ofNanos(100), 0.5, klokke::get, oppgave -> {
+    });
+
+    assertEquals(124028, cache.hentGrunnbeløp());
+    klokke.set(500);
+    assertEquals(124028, cache.hentGrunnbeløp());
+    assertEquals(124028, cache.hentGrunnbeløp());
+    assertEquals(2, antallHentinger.get(), "Forventet at foreldet verdi ikke hentes på nytt");
+  }
+
+  /**
+   * Tester at feilen fra kilden kastes når grunnbeløpet aldri har blitt hentet.
+   */
+  @Test
+  void testFeilUtenKjentGrunnbeløp() {
+    GrunnbeløpCache cache = new GrunnbeløpCache(() -> {
+      throw new IOException("API'et er nede");
+    }, Duration.ofHours(1));
+
+    assertThrows(IOException.class, cache::hentGrunnbeløp);
+  }
+
+  /**
+   * Tester at en ny mellomlagring starter med det lagrede grunnbeløpet uten å kontakte kilden, og at
+   * det friskes opp i bakgrunnen når det er eldre enn tiden før oppfriskning.
+   */
+  @Test
+  void testLagretGrunnbeløpBrukesVedOppstart(@TempDir Path mappe) throws Exception {
+    Path lagringsfil = mappe.resolve("grunnbeløp");
+    AtomicInteger antallHentinger = new AtomicInteger();
+    GrunnbeløpCache første = new GrunnbeløpCache(() -> 124028 + antallHentinger.incrementAndGet(),
+        Duration.ofHours(1), 0.8, System::nanoTime, Runnable::run, lagringsfil);
+    assertEquals(124029, første.hentGrunnbeløp());
+
+    GrunnbeløpCache fersk = new GrunnbeløpCache(() -> {
+      throw new IOException("API'et skal ikke kontaktes");
+    }, Duration.ofHours(1), 0.8, System::nanoTime, Runnable::run, lagringsfil);
+    assertEquals(124029, fersk.hentGrunnbeløp());
+
+    Thread.sleep(600);
+    GrunnbeløpCache gammel = new GrunnbeløpCache(() -> 124028 + antallHentinger.incrementAndGet(),
+        Duration.ofSeconds(1), 0.5, System::nanoTime, Runnable::run, lagringsfil);
+    assertEquals(124029, gammel.hentGrunnbeløp(), "Forventet lagret verdi under oppfriskning");
+    assertEquals(2, antallHentinger.get());
+    assertEquals(124030, gammel.hentGrunnbeløp());
+    assertTrue(Files.readString(lagringsfil).startsWith("124030.0 "));
+  }
+
+  /**
+   * Tester at lagringsfilen kun leses fra systemegenskapen, og at ingen fil brukes uten den.
+   */
+  @Test
+  void testLagringsfilMåOppgis(@TempDir Path mappe) {
+    String før = System.getProperty(GrunnbeløpCache.LAGRINGSFIL_EGENSKAP);
+    try {
+      System.clearProperty(GrunnbeløpCache.LAGRINGSFIL_EGENSKAP);
+      assertNull(GrunnbeløpCache.lesLagringsfil());
+      System.setProperty(GrunnbeløpCache.LAGRINGSFIL_EGENSKAP, "");
+      assertNull(GrunnbeløpCache.lesLagringsfil());
+      Path lagringsfil = mappe.resolve("grunnbeløp");
+      System.setProperty(GrunnbeløpCache.LAGRINGSFIL_EGENSKAP, lagringsfil.toString());
+      assertEquals(lagringsfil, GrunnbeløpCache.lesLagringsfil());
+    } finally {
+      if (før == null) {
+        System.clearProperty(GrunnbeløpCache.LAGRINGSFIL_EGENSKAP);
+      } else {
+        System.setProperty(GrunnbeløpCache.LAGRINGSFIL_EGENSKAP, før);
+      }
+    }
+  }
+
+  /**
+   * Tester at en ugyldig eller ikke-positiv levetid gir standard levetid i stedet for en feil.
+   */
+  @Test
+  void testUgyldigLevetidGirStandard() {
+    String før = System.getProperty(GrunnbeløpCache.LEVETID_EGENSKAP);
+    try {
+      System.clearProperty(GrunnbeløpCache.LEVETID_EGENSKAP);
+      assertEquals(Duration.ofHours(1), GrunnbeløpCache.lesLevetid());
+      System.setProperty(GrunnbeløpCache.LEVETID_EGENSKAP, "PT30M");
+      assertEquals(Duration.ofMinutes(30), GrunnbeløpCache.lesLevetid());
+      System.setProperty(GrunnbeløpCache.LEVETID_EGENSKAP, "30 minutter");
+      assertEquals(Duration.ofHours(1), GrunnbeløpCache.lesLevetid());
+      System.setProperty(GrunnbeløpCache.LEVETID_EGENSKAP, "-PT5M");
+      assertEquals(Duration.ofHours(1), GrunnbeløpCache.lesLevetid());
+    } finally {
+      if (før == null) {
+        System.clearProperty(GrunnbeløpCache.LEVETID_EGENSKAP);
+      } else {
+        System.setProperty(GrunnbeløpCache.LEVETID_EGENSKAP, før);
+      }
+    }
+  }
+
+  /**
+   * Tester at et lagret grunnbeløp fra før siste regulering hentes på nytt før det brukes, og kun
+   * brukes hvis kilden feiler.
+   */
+  @Test
+  void testLagretGrunnbeløpFraFørReguleringen(@TempDir Path mappe) throws Exception {
+    Path lagringsfil = mappe.resolve("grunnbeløp");
+    long nå = System.currentTimeMillis();
+    Files.writeString(lagringsfil, "118620.0 " + (nå - 1000) + " " + (nå - 1));
+
+    GrunnbeløpCache oppdatert = new GrunnbeløpCache(() -> 124028, Duration.ofHours(1), 0.8,
+        System::nanoTime, Runnable::run, lagringsfil);
+    assertEquals(124028, oppdatert.hentGrunnbeløp());
+
+    Files.writeString(lagringsfil, "118620.0 " + (nå - 1000) + " " + (nå - 1));
+    GrunnbeløpCache utilgjengelig = new GrunnbeløpCache(() -> {
+      throw new IOException("API'et er nede");
+    }, Duration.ofHours(1), 0.8, System::nanoTime, Runnable::run, lagringsfil);
+    assertEquals(118620, utilgjengelig.hentGrunnbeløp());
+  }
+
+  /**
+   * Tester at neste regulering er 1. mai samme år før mai, og 1. mai året etter fra og med mai.
+   */
+  @Test
+  void testNesteRegulering() {
+    assertEquals(LocalDate.of(2026, 5, 1),
+        GrunnbeløpCache.hentNesteRegulering(LocalDate.of(2026, 4, 30)));
+    assertEquals(LocalDate.of(2027, 5, 1),
+        GrunnbeløpCache.hentNesteRegulering(LocalDate.of(2026, 5, 1)));
+  }
+}
@@ -0,0 +1,87 @@
+package no.nav.grunnbeløp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.søker.Søker;
+import no.nav.årslønn.Årslønn;
+import org.junit.jupiter.api.Test;
+
+class GrunnbeløpshistorikkTest {
+
+  /**
+   * Tester at grunnbeløpet slås opp for perioden datoen ligger i, også på første og siste dag i en
+   * periode.
+   */
+  @Test
+  void testOppslagPåDato() {
+    Grunnbeløpshistorikk historikk = Grunnbeløpshistorikk.felles();
+
+    assertEquals(118620, historikk.hentGrunnbeløp(LocalDate.of(2024, 4, 30)));
+    assertEquals(124028, historikk.hentGrunnbeløp(LocalDate.of(2024, 5, 1)));
+    assertEquals(124028, historikk.hentGrunnbeløp(LocalDate.of(2025, 1, 15)));
+    assertEquals(111477, historikk.hentGrunnbeløp(2022));
+    assertEquals(124028, historikk.hentVerktøy(LocalDate.of(2024, 12, 31))
+        .hentTotaltGrunnbeløpForGittAntallÅr(1));
+    assertSame(historikk.hentVerktøy(LocalDate.of(2024, 6, 1)),
+        historikk.hentVerktøy(LocalDate.of(2024, 9, 1)));
+  }
+
+  /**
+   * Tester at datoer før det første grunnbeløpet og tomme tabeller avvises.
+   */
+  @Test
+  void testUgyldigeOppslagOgTabeller() {
+    Grunnbeløpshistorikk historikk = new Grunnbeløpshistorikk(
+        Map.of(LocalDate.of(2020, 5, 1), 101351.0));
+
+    assertThrows(IllegalArgumentException.class,
+        () -> historikk.hentGrunnbeløp(LocalDate.of(2020, 4, 30)));
+    assertThrows(IllegalArgumentException.class, () -> new Grunnbeløpshistorikk(Map.of()));
+    assertThrows(IllegalArgumentException.class,
+        () -> new Grunnbeløpshistorikk(Map.of(LocalDate.of(2020, 5, 1), 0.0)));
+  }
+
+  /**
+   * Tester at en regulering gir en ny tabell uten å endre den gamle, og at den felles tabellen
+   * byttes ut.
+   */
+  @Test
+  void testRegulering() {
+    Grunnbeløpshistorikk opprinnelig = Grunnbeløpshistorikk.felles();
+    LocalDate reguleringsdato = LocalDate.of(2099, 5, 1);
+    try {
+      Grunnbeløpshistorikk regulert =
+          Grunnbeløpshistorikk.registrerRegulering(reguleringsdato, 200000);
+
+      assertSame(regulert, Grunnbeløpshistorikk.felles());
+      assertEquals(opprinnelig.hentAntallPerioder() + 1, regulert.hentAntallPerioder());
+      assertEquals(200000, regulert.hentGrunnbeløp(reguleringsdato));
+      assertEquals(opprinnelig.hentGrunnbeløp(reguleringsdato.minusDays(1)),
+          opprinnelig.hentGrunnbeløp(reguleringsdato));
+    } finally {
+      Grunnbeløpshistorikk.byttFelles(opprinnelig);
+    }
+  }
+
+  /**
+   * Tester at kalkulatoren bruker grunnbeløpet som gjaldt på beregningsdatoen for hver sak.
+   */
+  @Test
+  void testKalkuleringMedHistoriskGrunnbeløp() {
+    Grunnbeløpshistorikk historikk = Grunnbeløpshistorikk.felles();
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(new GrunnbeløpVerktøy(124028));
+    Søker søker = new Søker("a", List.of(new Årslønn(2023, 830000)));
+
+    // 6G med G fra 2024 er 744168 kr, og med G fra 2015 er det 540408 kr.
+    assertEquals(2863, kalkulator.kalkulerDagsats(søker, historikk, LocalDate.of(2024, 6, 1))
+        .hentDagsats());
+    assertEquals(2079, kalkulator.kalkulerDagsats(søker, historikk, LocalDate.of(2015, 6, 1))
+        .hentDagsats());
+  }
+}
@@ -0,0 +1,316 @@
+package no.nav.journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import no.nav.resultat.Reservasjon;
+import no.nav.resultat.Reservasjonsforvalter;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatKø;
+import no.nav.resultat.ResultatStatus;
+import no.nav.saksbehandler.Behandlingsoppsummering;
+import no.nav.saksbehandler.Behandlingsutfall;
+import no.nav.saksbehandler.Saksbehandler;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultatjournalTest {
+
+  @TempDir
+  Path mappe;
+
+  /**
+   * Tester at registrerte resultater med frister og statusendringer gjenopprettes når journalen
+   * åpnes på nytt, også når loggen går over flere segmenter.
+   */
+  @Test
+  void testResultaterGjenopprettesEtterOmstart() throws IOException {
+    Saksbehandler saksbehandler =
+        new Saksbehandler("Ola", SaksbehandlerSpesialisering.INNVILGET);
+    List<Resultat> registrerte = new ArrayList<>();
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 8, 0)) {
+      for (int i = 0; i < 20; i++) {
+        Resultat resultat = Resultat.medFrist(100000 + i,
+            SaksbehandlerSpesialisering.INNVILGET, 1 + i * 13);
+        journal.registrer(resultat);
+        registrerte.add(resultat);
+      }
+      assertEquals(Behandlingsutfall.BEHANDLET,
+          journal.behandle(saksbehandler, registrerte.get(3)));
+      assertTrue(journal.endreStatus(registrerte.get(7), ResultatStatus.AVSLÅTT));
+      assertFalse(journal.endreStatus(registrerte.get(7), ResultatStatus.INNVILGET));
+      journal.synkroniser();
+      assertEquals(22, journal.hentLogg().hentLagretTil());
+    }
+
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 8, 0)) {
+      assertEquals(20, journal.hentAntall());
+      for (Resultat forventet : registrerte) {
+        Resultat gjenopprettet = journal.hent(forventet.hentSaksnummer());
+        assertEquals(forventet.hentDagsatsIØre(), gjenopprettet.hentDagsatsIØre());
+        assertEquals(forventet.hentSpesialisering(), gjenopprettet.hentSpesialisering());
+        assertEquals(forventet.hentStatus(), gjenopprettet.hentStatus());
+        assertEquals(forventet.hentFrist(), gjenopprettet.hentFrist());
+      }
+      assertEquals(22, journal.hentLogg().hentNesteSekvens());
+      assertTrue(Resultat.medDagsatsIØre(0, SaksbehandlerSpesialisering.INNVILGET)
+          .hentSaksnummer() > registrerte.get(19).hentSaksnummer());
+    }
+  }
+
+  /**
+   * Tester at et øyeblikksbilde sletter loggsegmentene det dekker, og at kun hendelsene etter bildet
+   * spilles av ved neste åpning.
+   */
+  @Test
+  void testØyeblikksbildeBegrenserAvspillingen() throws IOException {
+    Resultat førBildet = Resultat.medDagsatsIØre(50000, SaksbehandlerSpesialisering.INNVILGET);
+    Resultat etterBildet = Resultat.medDagsatsIØre(60000,
+        SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT);
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 4, 0)) {
+      journal.registrer(førBildet);
+      for (int i = 0; i < 9; i++) {
+        journal.registrer(Resultat.medDagsatsIØre(i, SaksbehandlerSpesialisering.INNVILGET));
+      }
+      assertEquals(10, journal.taØyeblikksbilde());
+      assertEquals(1, journal.hentLogg().hentAntallSegmenter());
+
+      journal.registrer(etterBildet);
+      journal.endreStatus(førBildet, ResultatStatus.INNVILGET);
+    }
+
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 4, 0)) {
+      assertEquals(11, journal.hentAntall());
+      assertEquals(ResultatStatus.INNVILGET,
+          journal.hent(førBildet.hentSaksnummer()).hentStatus());
+      assertEquals(60000, journal.hent(etterBildet.hentSaksnummer()).hentDagsatsIØre());
+      assertEquals(12, journal.hentLogg().hentNesteSekvens());
+    }
+  }
+
+  /**
+   * Tester at et øyeblikksbilde som er større enn ett lesevindu leses tilbake helt, og at segmentene
+   * det dekker er slettet.
+   */
+  @Test
+  void testStortØyeblikksbildeLesesIVinduer() throws IOException {
+    int antall = 50_000;
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 4096, 0)) {
+      for (int i = 0; i < antall; i++) {
+        journal.registrer(Resultat.medDagsatsIØre(i, SaksbehandlerSpesialisering.INNVILGET));
+      }
+      assertEquals(antall, journal.taØyeblikksbilde());
+      assertTrue(journal.hentLogg().hentAntallSegmenter() <= 1);
+    }
+
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 4096, 0)) {
+      assertEquals(antall, journal.hentAntall());
+      assertEquals(antall, journal.hentResultater().stream()
+          .mapToLong(Resultat::hentDagsatsIØre).distinct().count());
+    }
+  }
+
+  /**
+   * Tester at journalen tar øyeblikksbilder av seg selv etter et gitt antall hendelser.
+   */
+  @Test
+  void testAutomatiskeØyeblikksbilder() throws IOException {
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 16, 64)) {
+      for (int i = 0; i < 1000; i++) {
+        journal.registrer(Resultat.medDagsatsIØre(i, SaksbehandlerSpesialisering.INNVILGET));
+      }
+      journal.synkroniser();
+    }
+
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 16, 64)) {
+      assertEquals(1000, journal.hentAntall());
+      assertTrue(journal.hentLogg().hentAntallSegmenter() < 1000 / 16);
+    }
+  }
+
+  /**
+   * Tester at en halvskrevet post på slutten av loggen ignoreres, og at loggen fortsetter fra den.
+   */
+  @Test
+  void testHalvskrevetPostIgnoreres() throws IOException {
+    Resultat helt = Resultat.medDagsatsIØre(1000, SaksbehandlerSpesialisering.INNVILGET);
+    Resultat halvt = Resultat.medDagsatsIØre(2000, SaksbehandlerSpesialisering.INNVILGET);
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 8, 0)) {
+      journal.registrer(helt);
+      journal.registrer(halvt);
+      MappedByteBuffer segment = journal.hentLogg().hentSegmenter().get(0L);
+      segment.putInt(Hendelse.POSTBREDDE + 8, 12345);
+    }
+
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 8, 0)) {
+      assertEquals(1, journal.hentAntall());
+      assertNull(journal.hent(halvt.hentSaksnummer()));
+      assertEquals(1, journal.hentLogg().hentNesteSekvens());
+      journal.registrer(Resultat.medDagsatsIØre(3000, SaksbehandlerSpesialisering.INNVILGET));
+    }
+
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 8, 0)) {
+      assertEquals(2, journal.hentAntall());
+    }
+  }
+
+  /**
+   * Tester at hendelser fra mange tråder samtidig får hvert sitt sekvensnummer og alle blir lagret.
+   */
+  @Test
+  void testSamtidigeRegistreringer() throws Exception {
+    int antallTråder = 4;
+    int perTråd = 2500;
+    ConcurrentHashMap<Long, Long> dagsatser = new ConcurrentHashMap<>();
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 1000, 0)) {
+      ExecutorService utfører = Executors.newFixedThreadPool(antallTråder);
+      List<Future<?>> oppgaver = new ArrayList<>();
+      for (int t = 0; t < antallTråder; t++) {
+        oppgaver.add(utfører.submit(() -> {
+          for (int i = 0; i < perTråd; i++) {
+            Resultat resultat = Resultat.medDagsatsIØre(i,
+                SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS);
+            journal.registrer(resultat);
+            dagsatser.put(resultat.hentSaksnummer(), resultat.hentDagsatsIØre());
+            if (i % 100 == 0) {
+              journal.synkroniser();
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> oppgave : oppgaver) {
+        oppgave.get();
+      }
+      utfører.shutdown();
+    }
+
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 1000, 0)) {
+      assertEquals(antallTråder * perTråd, journal.hentAntall());
+      dagsatser.forEach((saksnummer, dagsats) ->
+          assertEquals(dagsats, journal.hent(saksnummer).hentDagsatsIØre()));
+    }
+  }
+
+  /**
+   * Tester at en midlertidig bildefil etter et avbrutt øyeblikksbilde slettes når journalen åpnes.
+   */
+  @Test
+  void testUferdigBildeSlettes() throws IOException {
+    Path uferdig = mappe.resolve("tilstand-00000000000000000042.bilde.tmp");
+    Files.write(uferdig, new byte[100]);
+
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe)) {
+      assertFalse(Files.exists(uferdig));
+      assertEquals(0, journal.hentAntall());
+    }
+  }
+
+  /**
+   * Tester at samme saksnummer ikke kan registreres to ganger.
+   */
+  @Test
+  void testDuplikatSaksnummerAvvises() throws IOException {
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe)) {
+      Resultat resultat = Resultat.medDagsatsIØre(1, SaksbehandlerSpesialisering.INNVILGET);
+      journal.registrer(resultat);
+      assertThrows(IllegalArgumentException.class, () -> journal.registrer(resultat));
+      assertEquals(1, journal.hentLogg().hentNesteSekvens());
+    }
+  }
+
+  /**
+   * Tester at et resultat som registreres i to journaler samtidig, kun blir registrert i den ene.
+   */
+  @Test
+  void testSammeResultatIToJournalerSamtidig() throws Exception {
+    int antallResultater = 500;
+    List<Resultat> resultater = new ArrayList<>();
+    for (int i = 0; i < antallResultater; i++) {
+      resultater.add(Resultat.medDagsatsIØre(i, SaksbehandlerSpesialisering.INNVILGET));
+    }
+    try (Resultatjournal første = Resultatjournal.åpne(mappe.resolve("første"));
+        Resultatjournal andre = Resultatjournal.åpne(mappe.resolve("andre"))) {
+      ExecutorService utfører = Executors.newFixedThreadPool(2);
+      List<Future<Integer>> oppgaver = new ArrayList<>();
+      for (Resultatjournal journal : List.of(første, andre)) {
+        oppgaver.add(utfører.submit(() -> {
+          int registrert = 0;
+          for (Resultat resultat : resultater) {
+            try {
+              journal.registrer(resultat);
+              registrert++;
+            } catch (IllegalStateException e) {
+              // Den andre journalen kom først.
+            }
+          }
+          return registrert;
+        }));
+      }
+      int registrert = 0;
+      for (Future<Integer> oppgave : oppgaver) {
+        registrert += oppgave.get();
+      }
+      utfører.shutdown();
+
+      assertEquals(antallResultater, registrert);
+      assertEquals(antallResultater, første.hentAntall() + andre.hentAntall());
+    }
+  }
+
+  /**
+   * Tester at en samlet behandling av reservasjoner er varig lagret når den returnerer, og at
+   * statusene gjenopprettes når journalen åpnes på nytt.
+   */
+  @Test
+  void testSamletBehandlingLagresFørDenReturnerer() throws IOException {
+    Saksbehandler saksbehandler =
+        new Saksbehandler("Kari", SaksbehandlerSpesialisering.INNVILGET);
+    ResultatKø resultatKø = new ResultatKø();
+    List<Resultat> registrerte = new ArrayList<>();
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 8, 0);
+        Reservasjonsforvalter forvalter = new Reservasjonsforvalter(resultatKø)) {
+      for (int i = 0; i < 20; i++) {
+        Resultat resultat = Resultat.medDagsatsIØre(1000 + i,
+            SaksbehandlerSpesialisering.INNVILGET);
+        journal.registrer(resultat);
+        resultatKø.leggTil(resultat);
+        registrerte.add(resultat);
+      }
+      List<Reservasjon> reservasjoner = saksbehandler.reserverResultater(forvalter, 12,
+          Duration.ofMinutes(1));
+      // Behandles av noen andre etter at det er reservert.
+      journal.endreStatus(registrerte.get(0), ResultatStatus.AVSLÅTT);
+
+      Behandlingsoppsummering oppsummering = journal.behandleReservasjoner(saksbehandler,
+          reservasjoner);
+      assertEquals(11, oppsummering.hentAntallBehandlet());
+      assertEquals(1, oppsummering.hentAntallAlleredeBehandlet());
+      assertEquals(32, journal.hentLogg().hentLagretTil());
+    }
+
+    try (Resultatjournal journal = Resultatjournal.åpne(mappe, 8, 0)) {
+      assertEquals(ResultatStatus.AVSLÅTT, journal.hent(registrerte.get(0).hentSaksnummer())
+          .hentStatus());
+      for (int i = 1; i < 20; i++) {
+        assertEquals(i < 12 ? ResultatStatus.INNVILGET : ResultatStatus.UBEHANDLET,
+            journal.hent(registrerte.get(i).hentSaksnummer()).hentStatus());
+      }
+    }
+  }
+}
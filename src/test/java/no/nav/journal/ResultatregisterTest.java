@@ -0,0 +1,215 @@
+package no.nav.journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatStatus;
+import no.nav.saksbehandler.Behandlingsutfall;
+import no.nav.saksbehandler.Saksbehandler;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultatregisterTest {
+
+  private static final long START = 1_700_000_000_000L;
+  private static final AtomicLong SAKSNUMMER = new AtomicLong(1_000_000_000L);
+
+  @TempDir
+  Path mappe;
+
+  /**
+   * Tester at sidene gir resultatene med riktig spesialisering og status, sortert etter
+   * opprettelsestidspunkt og ikke etter registreringsrekkefølge.
+   */
+  @Test
+  void testSiderErSortertEtterOpprettet() throws IOException {
+    try (Resultatregister register = Resultatregister.åpne(mappe)) {
+      List<Resultat> innvilget = new ArrayList<>();
+      for (int i = 0; i < 25; i++) {
+        Resultat resultat = opprett(SaksbehandlerSpesialisering.INNVILGET, START + (i * 7) % 25);
+        register.registrer(resultat);
+        innvilget.add(resultat);
+        register.registrer(opprett(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT, START + i));
+      }
+      innvilget.sort((a, b) -> Long.compare(a.hentOpprettet(), b.hentOpprettet()));
+
+      List<Resultat> hentet = new ArrayList<>();
+      List<Resultat> side = register.hentSide(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.UBEHANDLET, 10);
+      while (!side.isEmpty()) {
+        assertTrue(side.size() <= 10);
+        hentet.addAll(side);
+        side = register.hentSideEtter(SaksbehandlerSpesialisering.INNVILGET,
+            ResultatStatus.UBEHANDLET, side.get(side.size() - 1), 10);
+      }
+
+      assertEquals(innvilget, hentet);
+      assertEquals(25, register.tell(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.UBEHANDLET));
+      assertEquals(0, register.tell(SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS,
+          ResultatStatus.UBEHANDLET));
+    }
+  }
+
+  /**
+   * Tester at en behandling flytter resultatet i indeksen, og at indeksen bygges opp igjen likt når
+   * registeret åpnes på nytt.
+   */
+  @Test
+  void testBehandlingFlytterResultatetIIndeksen() throws IOException {
+    Saksbehandler saksbehandler =
+        new Saksbehandler("Kari Nordmann", SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT);
+    Resultat første = opprett(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT, START);
+    Resultat andre = opprett(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT, START + 1);
+    try (Resultatregister register = Resultatregister.åpne(mappe, 4, 0)) {
+      register.registrer(første);
+      register.registrer(andre);
+
+      assertEquals(Behandlingsutfall.BEHANDLET, register.behandle(saksbehandler, første));
+      assertEquals(Behandlingsutfall.ALLEREDE_BEHANDLET, register.behandle(saksbehandler, første));
+
+      assertEquals(List.of(andre), register.hentSide(
+          SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT, ResultatStatus.UBEHANDLET, 10));
+      assertEquals(List.of(første), register.hentSide(
+          SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT, ResultatStatus.AVSLÅTT, 10));
+      assertEquals(1, register.tell(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT,
+          ResultatStatus.AVSLÅTT));
+    }
+
+    try (Resultatregister register = Resultatregister.åpne(mappe, 4, 0)) {
+      List<Resultat> avslått = register.hentSide(
+          SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT, ResultatStatus.AVSLÅTT, 10);
+      assertEquals(1, avslått.size());
+      assertEquals(første.hentSaksnummer(), avslått.get(0).hentSaksnummer());
+      assertEquals(START, avslått.get(0).hentOpprettet());
+      assertEquals(1, register.tell(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT,
+          ResultatStatus.UBEHANDLET));
+      assertSame(avslått.get(0), register.hent(første.hentSaksnummer()));
+    }
+  }
+
+  /**
+   * Tester at iteratoren hopper over resultater som har fått en annen status enn den det spørres
+   * etter, også når statusen er endret utenom registeret.
+   */
+  @Test
+  void testIteratorHopperOverEndredeResultater() throws IOException {
+    try (Resultatregister register = Resultatregister.åpne(mappe)) {
+      Resultat endret = opprett(SaksbehandlerSpesialisering.INNVILGET, START);
+      Resultat ubehandlet = opprett(SaksbehandlerSpesialisering.INNVILGET, START + 1);
+      register.registrer(endret);
+      register.registrer(ubehandlet);
+      endret.endreStatus(ResultatStatus.INNVILGET);
+
+      List<Resultat> hentet = new ArrayList<>();
+      register.hentIterator(SaksbehandlerSpesialisering.INNVILGET, ResultatStatus.UBEHANDLET)
+          .forEachRemaining(hentet::add);
+      assertEquals(List.of(ubehandlet), hentet);
+    }
+  }
+
+  /**
+   * Tester at statusendringer som en saksbehandler gjør direkte på resultatene, også gjennom
+   * iteratoren fra registeret, flytter resultatene i indeksen og logges i journalen.
+   */
+  @Test
+  void testSaksbehandlerHolderIndeksenOppdatert() throws IOException {
+    Saksbehandler saksbehandler =
+        new Saksbehandler("Kari Nordmann", SaksbehandlerSpesialisering.INNVILGET);
+    List<Resultat> resultater = new ArrayList<>();
+    try (Resultatregister register = Resultatregister.åpne(mappe, 4, 0)) {
+      for (int i = 0; i < 10; i++) {
+        Resultat resultat = opprett(SaksbehandlerSpesialisering.INNVILGET, START + i);
+        register.registrer(resultat);
+        resultater.add(resultat);
+      }
+
+      saksbehandler.behandleResultat(resultater.get(9));
+      assertEquals(9, register.tell(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.UBEHANDLET));
+
+      saksbehandler.behandleUbehandledeResultater(register.hentIterator(
+          SaksbehandlerSpesialisering.INNVILGET, ResultatStatus.UBEHANDLET));
+      assertEquals(0, register.tell(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.UBEHANDLET));
+      assertEquals(10, register.tell(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.INNVILGET));
+      assertEquals(List.of(), register.hentSide(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.UBEHANDLET, 10));
+      assertEquals(resultater, register.hentSide(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.INNVILGET, 10));
+      register.synkroniser();
+    }
+
+    try (Resultatregister register = Resultatregister.åpne(mappe, 4, 0)) {
+      assertEquals(10, register.tell(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.INNVILGET));
+    }
+  }
+
+  /**
+   * Tester at resultater som behandles av en annen tråd i det de registreres, ikke blir liggende
+   * igjen som ubehandlet i indeksen.
+   */
+  @Test
+  void testBehandlingUnderRegistreringHolderTellingenRiktig() throws Exception {
+    int antallResultater = 2000;
+    List<Resultat> resultater = new ArrayList<>();
+    for (int i = 0; i < antallResultater; i++) {
+      resultater.add(opprett(SaksbehandlerSpesialisering.INNVILGET, START + i));
+    }
+    try (Resultatregister register = Resultatregister.åpne(mappe, 256, 0)) {
+      Thread behandler = new Thread(() -> {
+        for (Resultat resultat : resultater) {
+          while (register.hent(resultat.hentSaksnummer()) == null) {
+            Thread.onSpinWait();
+          }
+          resultat.endreStatus(ResultatStatus.INNVILGET);
+        }
+      });
+      behandler.start();
+      for (Resultat resultat : resultater) {
+        register.registrer(resultat);
+      }
+      behandler.join();
+
+      assertEquals(0, register.tell(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.UBEHANDLET));
+      assertEquals(antallResultater, register.tell(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.INNVILGET));
+    }
+  }
+
+  /**
+   * Tester at et resultat som avvises av journalen, ikke blir liggende i indeksen.
+   */
+  @Test
+  void testAvvistResultatFjernesFraIndeksen() throws IOException {
+    try (Resultatregister register = Resultatregister.åpne(mappe)) {
+      Resultat resultat = opprett(SaksbehandlerSpesialisering.INNVILGET, START);
+      register.registrer(resultat);
+      Resultat duplikat = Resultat.medSaksnummer(resultat.hentSaksnummer(), 100000,
+          SaksbehandlerSpesialisering.INNVILGET, START + 1);
+
+      assertThrows(IllegalArgumentException.class, () -> register.registrer(duplikat));
+      assertThrows(IllegalArgumentException.class, () -> register.registrer(resultat));
+      assertEquals(List.of(resultat), register.hentSide(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.UBEHANDLET, 10));
+      assertEquals(1, register.tell(SaksbehandlerSpesialisering.INNVILGET,
+          ResultatStatus.UBEHANDLET));
+    }
+  }
+
+  private static Resultat opprett(SaksbehandlerSpesialisering spesialisering, long opprettet) {
+    return Resultat.medSaksnummer(SAKSNUMMER.incrementAndGet(), 100000, spesialisering, opprettet);
+  }
+}
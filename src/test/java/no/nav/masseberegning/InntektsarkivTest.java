@@ -0,0 +1,158 @@
+package no.nav.masseberegning;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.resultat.Resultat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InntektsarkivTest {
+
+  private static final double GRUNNBELØP = 124028;
+
+  @TempDir
+  Path mappe;
+
+  /**
+   * Tester at inntekter kan konverteres fra CSV til arkiv og tilbake, med årene sortert nyeste
+   * først og beløp med øre bevart.
+   */
+  @Test
+  void testKonverteringTilArkivOgTilbake() throws IOException {
+    Path inntektsfil = mappe.resolve("inntekter.csv");
+    Files.write(inntektsfil, List.of(
+        "person,år,beløp",
+        "a,2021,400000",
+        "a,2023,500000.55",
+        "a,2022,450000",
+        "bø,2023,100000"), StandardCharsets.UTF_8);
+    Path arkivfil = mappe.resolve("inntekter" + Inntektsarkiv.FILENDELSE);
+    Path eksportfil = mappe.resolve("eksport.csv");
+
+    assertEquals(2, Inntektsarkiv.konverter(inntektsfil, arkivfil));
+    assertEquals(2, Inntektsarkiv.konverter(arkivfil, eksportfil));
+
+    assertEquals(List.of(
+        "person,år,beløp",
+        "a,2023,500000.55",
+        "a,2022,450000",
+        "a,2021,400000",
+        "bø,2023,100000"), Files.readAllLines(eksportfil, StandardCharsets.UTF_8));
+
+    try (Inntektsarkiv arkiv = Inntektsarkiv.åpne(arkivfil)) {
+      assertEquals(2, arkiv.hentAntallPersoner());
+      assertEquals(4, arkiv.hentAntallPoster());
+      assertEquals("bø", arkiv.hentPersonId(1));
+      assertEquals(50000055, arkiv.summerNyligeIØre(0, 1));
+      assertEquals(135000055, arkiv.summerNyligeIØre(0, 3));
+      assertEquals(10000000, arkiv.summerNyligeIØre(1, 3));
+    }
+  }
+
+  /**
+   * Tester at den siste årslønnen beholdes når en person har flere årslønner for samme år.
+   */
+  @Test
+  void testSisteÅrslønnForSammeÅrBeholdes() throws IOException {
+    Path inntektsfil = mappe.resolve("inntekter.ndjson");
+    Files.write(inntektsfil, List.of(
+        "{\"person\":\"a\",\"år\":2023,\"beløp\":100}",
+        "{\"person\":\"a\",\"år\":2023,\"beløp\":200}"), StandardCharsets.UTF_8);
+    Path arkivfil = mappe.resolve("inntekter" + Inntektsarkiv.FILENDELSE);
+
+    Inntektsarkiv.konverter(inntektsfil, arkivfil);
+
+    try (Inntektsarkiv arkiv = Inntektsarkiv.åpne(arkivfil)) {
+      assertEquals(1, arkiv.hentAntallPoster());
+      assertEquals(20000, arkiv.summerNyligeIØre(0, 3));
+    }
+  }
+
+  /**
+   * Tester at masseberegning fra arkiv gir de samme resultatene som masseberegning fra tekst.
+   */
+  @Test
+  void testArkivGirSammeResultaterSomTekst() throws Exception {
+    Path inntektsfil = mappe.resolve("inntekter.csv");
+    try (BufferedWriter skriver = Files.newBufferedWriter(inntektsfil, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < 5000; i++) {
+        for (int år = 2023; år > 2023 - 1 - i % 4; år--) {
+          skriver.write("p" + i + "," + år + "," + (i * 331 % 1_000_000 + år % 7 * 0.25));
+          skriver.newLine();
+        }
+      }
+    }
+    Path arkivfil = mappe.resolve("inntekter" + Inntektsarkiv.FILENDELSE);
+    Inntektsarkiv.konverter(inntektsfil, arkivfil);
+
+    Masseberegning masseberegning = new Masseberegning(
+        new DagpengerKalkulator(new GrunnbeløpVerktøy(GRUNNBELØP)), 2);
+    Path fraTekst = mappe.resolve("fraTekst.csv");
+    Path fraArkiv = mappe.resolve("fraArkiv.csv");
+    assertEquals(5000, masseberegning.beregn(inntektsfil, fraTekst));
+    assertEquals(5000, masseberegning.beregn(arkivfil, fraArkiv));
+
+    assertEquals(utenSaksnummer(Files.readAllLines(fraTekst, StandardCharsets.UTF_8)),
+        utenSaksnummer(Files.readAllLines(fraArkiv, StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Tester at kalkulering for en person i arkivet gir samme dagsats som kalkulatoren.
+   */
+  @Test
+  void testKalkulerDagsatsFraArkiv() throws IOException {
+    Path inntektsfil = mappe.resolve("inntekter.csv");
+    Files.write(inntektsfil, List.of("a,2023,500000", "a,2022,450000", "a,2021,400000"),
+        StandardCharsets.UTF_8);
+    Path arkivfil = mappe.resolve("inntekter" + Inntektsarkiv.FILENDELSE);
+    Inntektsarkiv.konverter(inntektsfil, arkivfil);
+
+    try (Inntektsarkiv arkiv = Inntektsarkiv.åpne(arkivfil)) {
+      Resultat resultat = arkiv.kalkulerDagsats(
+          new DagpengerKalkulator(new GrunnbeløpVerktøy(GRUNNBELØP)), 0);
+      assertEquals(1924.0, resultat.hentDagsats());
+    }
+  }
+
+  /**
+   * Tester at en fil som ikke er et inntektsarkiv avvises.
+   */
+  @Test
+  void testUgyldigArkivAvvises() throws IOException {
+    Path arkivfil = mappe.resolve("ugyldig" + Inntektsarkiv.FILENDELSE);
+    Files.write(arkivfil, List.of("person,år,beløp"), StandardCharsets.UTF_8);
+
+    assertThrows(IOException.class, () -> Inntektsarkiv.åpne(arkivfil));
+  }
+
+  /**
+   * Tester at et arkiv uten personer kan skrives og åpnes.
+   */
+  @Test
+  void testTomtArkiv() throws IOException {
+    Path inntektsfil = mappe.resolve("tom.csv");
+    Files.write(inntektsfil, List.of("person,år,beløp"), StandardCharsets.UTF_8);
+    Path arkivfil = mappe.resolve("tom" + Inntektsarkiv.FILENDELSE);
+
+    assertEquals(0, Inntektsarkiv.konverter(inntektsfil, arkivfil));
+    try (Inntektsarkiv arkiv = Inntektsarkiv.åpne(arkivfil)) {
+      assertEquals(0, arkiv.hentAntallPersoner());
+      assertEquals(0, arkiv.hentAntallPoster());
+    }
+  }
+
+  private static List<String> utenSaksnummer(List<String> linjer) {
+    return linjer.stream()
+        .map(linje -> linje.replaceFirst(",[0-9]+,", ",,"))
+        .toList();
+  }
+}
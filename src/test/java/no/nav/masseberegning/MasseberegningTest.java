@@ -0,0 +1,152 @@
+package no.nav.masseberegning;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MasseberegningTest {
+
+  private static final double GRUNNBELØP = 124028;
+
+  @TempDir
+  Path mappe;
+
+  private Masseberegning opprettMasseberegning() {
+    return new Masseberegning(new DagpengerKalkulator(new GrunnbeløpVerktøy(GRUNNBELØP)), 2);
+  }
+
+  /**
+   * Tester at inntektsposter i CSV-format grupperes per person, og at resultatene skrives i samme
+   * rekkefølge som personene i inntektsfilen.
+   */
+  @Test
+  void testCsvTilCsv() throws Exception {
+    Path inntektsfil = mappe.resolve("inntekter.csv");
+    Files.write(inntektsfil, List.of(
+        "person,år,beløp",
+        "a,2023,500000",
+        "a,2022,450000",
+        "a,2021,400000",
+        "b,2023,100000",
+        "",
+        "c,2023,1000000"), StandardCharsets.UTF_8);
+    Path resultatfil = mappe.resolve("resultater.csv");
+
+    assertEquals(3, opprettMasseberegning().beregn(inntektsfil, resultatfil));
+
+    List<String> linjer = Files.readAllLines(resultatfil, StandardCharsets.UTF_8);
+    assertEquals(4, linjer.size());
+    assertEquals(Resultatskriver.CSV_OVERSKRIFT, linjer.get(0));
+    assertTrue(linjer.get(1).startsWith("a,"));
+    assertTrue(linjer.get(1).endsWith(",1924.0,INNVILGET,UBEHANDLET"));
+    assertTrue(linjer.get(2).endsWith(",0.0,AVSLAG_FOR_LAV_INNTEKT,UBEHANDLET"));
+    assertTrue(linjer.get(3).endsWith(",2863.0,INNVILGET_MED_MAKSSATS,UBEHANDLET"));
+  }
+
+  /**
+   * Tester at personer med komma, anførselstegn eller linjeskift settes i anførselstegn i CSV-filen,
+   * slik at feltene kan leses tilbake.
+   */
+  @Test
+  void testCsvFelterMedSpesialtegn() throws Exception {
+    Path inntektsfil = mappe.resolve("inntekter.ndjson");
+    Files.write(inntektsfil, List.of(
+        "{\"person\": \"Nordmann, Ola\", \"år\": 2023, \"beløp\": 500000}",
+        "{\"person\": \"Kari \\\"K\\\"\", \"år\": 2023, \"beløp\": 500000}",
+        "{\"person\": \"linje\\nskift\", \"år\": 2023, \"beløp\": 500000}",
+        "{\"person\": \"vanlig\", \"år\": 2023, \"beløp\": 500000}"), StandardCharsets.UTF_8);
+    Path resultatfil = mappe.resolve("resultater.csv");
+
+    assertEquals(4, opprettMasseberegning().beregn(inntektsfil, resultatfil));
+
+    List<String> linjer = Files.readAllLines(resultatfil, StandardCharsets.UTF_8);
+    assertTrue(linjer.get(1).startsWith("\"Nordmann, Ola\","));
+    assertTrue(linjer.get(2).startsWith("\"Kari \"\"K\"\"\","));
+    assertEquals("\"linje", linjer.get(3));
+    assertTrue(linjer.get(4).startsWith("skift\","));
+    assertTrue(linjer.get(5).startsWith("vanlig,"));
+  }
+
+  /**
+   * Tester at inntektsposter og resultater kan leses og skrives i NDJSON-format.
+   */
+  @Test
+  void testNdjsonTilNdjson() throws Exception {
+    Path inntektsfil = mappe.resolve("inntekter.ndjson");
+    Files.write(inntektsfil, List.of(
+        "{\"person\":\"a\",\"år\":2023,\"beløp\":500000}",
+        "{\"person\":\"a\",\"år\":2022,\"beløp\":450000}"), StandardCharsets.UTF_8);
+    Path resultatfil = mappe.resolve("resultater.jsonl");
+
+    assertEquals(1, opprettMasseberegning().beregn(inntektsfil, resultatfil));
+
+    List<String> linjer = Files.readAllLines(resultatfil, StandardCharsets.UTF_8);
+    assertEquals(1, linjer.size());
+    JSONObject resultat = new JSONObject(linjer.get(0));
+    assertEquals("a", resultat.getString("person"));
+    assertEquals(1924.0, resultat.getDouble("dagsats"));
+    assertEquals("INNVILGET", resultat.getString("spesialisering"));
+  }
+
+  /**
+   * Tester at en ugyldig linje gir en feilmelding med linjenummeret.
+   */
+  @Test
+  void testUgyldigLinjeGirFeil() throws IOException {
+    Path inntektsfil = mappe.resolve("inntekter.csv");
+    Files.write(inntektsfil, List.of("a,2023,500000", "b,2023"), StandardCharsets.UTF_8);
+    Path resultatfil = mappe.resolve("resultater.csv");
+
+    IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+        () -> opprettMasseberegning().beregn(inntektsfil, resultatfil));
+    assertTrue(exception.getMessage().contains("linje 2"));
+  }
+
+  /**
+   * Tester at en fil med flere partier enn køene har plass til blir kalkulert i sin helhet og i
+   * riktig rekkefølge.
+   */
+  @Test
+  void testStorFilBeregnesIRekkefølge() throws Exception {
+    int antallPersoner = 50_000;
+    Path inntektsfil = mappe.resolve("inntekter.csv");
+    try (BufferedWriter skriver = Files.newBufferedWriter(inntektsfil, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < antallPersoner; i++) {
+        for (int år = 2023; år > 2020; år--) {
+          skriver.write("p" + i + "," + år + "," + (200000 + i));
+          skriver.newLine();
+        }
+      }
+    }
+    Path resultatfil = mappe.resolve("resultater.csv");
+
+    assertEquals(antallPersoner, opprettMasseberegning().beregn(inntektsfil, resultatfil));
+
+    List<String> linjer = Files.readAllLines(resultatfil, StandardCharsets.UTF_8);
+    assertEquals(antallPersoner + 1, linjer.size());
+    for (int i = 0; i < antallPersoner; i++) {
+      assertTrue(linjer.get(i + 1).startsWith("p" + i + ","));
+    }
+  }
+
+  /**
+   * Tester at parallelliteten må være større enn 0.
+   */
+  @Test
+  void testUgyldigParallellitet() {
+    assertThrows(IllegalArgumentException.class, () -> new Masseberegning(
+        new DagpengerKalkulator(new GrunnbeløpVerktøy(GRUNNBELØP)), 0));
+  }
+}
@@ -0,0 +1,101 @@
+package no.nav.masseberegning;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.resultat.Resultat;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.junit.jupiter.api.Test;
+
+class ReguleringsindeksTest {
+
+  private static final int ANTALL = 20_000;
+
+  /**
+   * Tester at resultatene etter regulering opp og ned er de samme som ved å kalkulere alle sakene på
+   * nytt, og at bare en liten del av sakene kalkuleres på nytt.
+   */
+  @Test
+  void testReguleringGirSammeResultatSomFullKalkulering() {
+    Random tilfeldig = new Random(42);
+    long[] sisteÅrslønner = new long[ANTALL];
+    long[] sumTreÅr = new long[ANTALL];
+    for (int sak = 0; sak < ANTALL; sak++) {
+      sisteÅrslønner[sak] = (long) (tilfeldig.nextDouble() * 1_000_000_00L);
+      sumTreÅr[sak] = sisteÅrslønner[sak] + (long) (tilfeldig.nextDouble() * 2_000_000_00L);
+    }
+    Reguleringsindeks indeks = new Reguleringsindeks(sisteÅrslønner, sumTreÅr,
+        new GrunnbeløpVerktøy(118620));
+    sjekkMotFullKalkulering(indeks, sisteÅrslønner, sumTreÅr);
+
+    for (double grunnbeløp : new double[] {124028, 130160, 124028.01}) {
+      int kalkulertPåNytt = indeks.reguler(new GrunnbeløpVerktøy(grunnbeløp));
+
+      assertTrue(kalkulertPåNytt < ANTALL / 5, "Kalkulert på nytt: " + kalkulertPåNytt);
+      sjekkMotFullKalkulering(indeks, sisteÅrslønner, sumTreÅr);
+    }
+  }
+
+  /**
+   * Tester at saker nøyaktig på grensene flyttes riktig når grunnbeløpet endres.
+   */
+  @Test
+  void testSakerPåGrensene() {
+    GrunnbeløpVerktøy gammelt = new GrunnbeløpVerktøy(100000);
+    GrunnbeløpVerktøy nytt = new GrunnbeløpVerktøy(110000);
+    Reguleringsindeks indeks = new Reguleringsindeks(
+        new long[] {15000000, 16500000, 60000000, 66000000, 0},
+        new long[] {15000000, 16500000, 60000000, 66000000, 30000000},
+        gammelt);
+
+    assertEquals(3, indeks.reguler(nytt));
+
+    assertEquals(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT, indeks.hentSpesialisering(0));
+    assertEquals(SaksbehandlerSpesialisering.INNVILGET, indeks.hentSpesialisering(1));
+    assertEquals(SaksbehandlerSpesialisering.INNVILGET, indeks.hentSpesialisering(2));
+    assertEquals(SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS,
+        indeks.hentSpesialisering(3));
+    assertEquals(253900, indeks.hentDagsatsIØre(3));
+    assertEquals(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT, indeks.hentSpesialisering(4));
+  }
+
+  /**
+   * Tester at oppretting og regulering av indeksen ikke oppretter resultater, og dermed ikke bruker
+   * opp saksnumre.
+   */
+  @Test
+  void testReguleringBrukerIngenSaksnumre() {
+    long før = Resultat.medDagsatsIØre(0, SaksbehandlerSpesialisering.INNVILGET).hentSaksnummer();
+    Reguleringsindeks indeks = new Reguleringsindeks(
+        new long[] {15000000, 16500000, 60000000, 66000000},
+        new long[] {15000000, 16500000, 60000000, 66000000},
+        new GrunnbeløpVerktøy(100000));
+    indeks.reguler(new GrunnbeløpVerktøy(110000));
+    long etter = Resultat.medDagsatsIØre(0, SaksbehandlerSpesialisering.INNVILGET).hentSaksnummer();
+
+    assertEquals(før + 1, etter);
+  }
+
+  /**
+   * Tester at tabeller med ulik lengde avvises.
+   */
+  @Test
+  void testUlikLengdeAvvises() {
+    assertThrows(IllegalArgumentException.class, () -> new Reguleringsindeks(new long[2],
+        new long[3], new GrunnbeløpVerktøy(124028)));
+  }
+
+  private static void sjekkMotFullKalkulering(Reguleringsindeks indeks, long[] sisteÅrslønner,
+      long[] sumTreÅr) {
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(indeks.hentGrunnbeløpVerktøy());
+    for (int sak = 0; sak < indeks.hentAntallSaker(); sak++) {
+      Resultat forventet = kalkulator.kalkulerDagsatsIØre(sisteÅrslønner[sak], sumTreÅr[sak]);
+      assertEquals(forventet.hentDagsatsIØre(), indeks.hentDagsatsIØre(sak), "sak " + sak);
+      assertEquals(forventet.hentSpesialisering(), indeks.hentSpesialisering(sak), "sak " + sak);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package no.nav.metrikk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.grunnbeløp.GrunnbeløpAPI;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.resultat.Resultat;
+import no.nav.saksbehandler.Saksbehandler;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import no.nav.årslønn.Årslønn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JfrHendelserTest {
+
+  private static final String KALKULERING = "no.nav.dagpenger.Kalkulering";
+  private static final String GRUNNBELØPHENTING = "no.nav.dagpenger.Grunnbeløphenting";
+  private static final String BEHANDLING = "no.nav.dagpenger.Behandling";
+  private static final byte[] SVAR =
+      "{\"grunnbeløp\": 124028.0}".getBytes(StandardCharsets.UTF_8);
+
+  @TempDir
+  Path mappe;
+
+  /**
+   * Tester at et opptak med standardprofilen og <code>dagpenger.jfc</code> får hendelser for
+   * kalkulering, henting av grunnbeløp og behandling, med riktige verdier.
+   */
+  @Test
+  void testHendelserSendesMedProfilen() throws Exception {
+    Map<String, String> innstillinger =
+        new HashMap<>(Configuration.getConfiguration("default").getSettings());
+    innstillinger.putAll(lesProfil().getSettings());
+    innstillinger.put(KALKULERING + "#threshold", "0 ms");
+
+    List<RecordedEvent> hendelser = ta(innstillinger, "dagpenger.jfr");
+    Map<String, List<RecordedEvent>> perType = hendelser.stream()
+        .filter(hendelse -> hendelse.getEventType().getName().startsWith("no.nav.dagpenger."))
+        .collect(Collectors.groupingBy(hendelse -> hendelse.getEventType().getName()));
+
+    RecordedEvent kalkulering = perType.get(KALKULERING).get(0);
+    assertEquals("SISTE_ÅRSLØNN", kalkulering.getString("beregningsmetode"));
+    assertEquals("INNVILGET", kalkulering.getString("utfall"));
+    assertTrue(kalkulering.getLong("dagsatsIØre") > 0);
+
+    RecordedEvent henting = perType.get(GRUNNBELØPHENTING).get(0);
+    assertEquals(200, henting.getInt("statuskode"));
+    assertEquals(SVAR.length, henting.getLong("antallBytes"));
+    assertEquals(null, henting.getString("feil"));
+    assertTrue(henting.getDuration().toNanos() > 0);
+
+    List<RecordedEvent> behandlinger = perType.get(BEHANDLING);
+    assertEquals(2, behandlinger.size());
+    assertEquals("UBEHANDLET", behandlinger.get(0).getString("fraStatus"));
+    assertEquals("INNVILGET", behandlinger.get(0).getString("tilStatus"));
+    assertEquals("BEHANDLET", behandlinger.get(0).getString("utfall"));
+    assertEquals("ALLEREDE_BEHANDLET", behandlinger.get(1).getString("utfall"));
+    assertTrue(hendelser.stream()
+        .anyMatch(hendelse -> hendelse.getEventType().getName().startsWith("jdk.")));
+  }
+
+  /**
+   * Tester at hendelsene er slått av i et opptak som ikke slår dem på.
+   */
+  @Test
+  void testHendelserErAvSomStandard() throws Exception {
+    List<RecordedEvent> hendelser =
+        ta(Configuration.getConfiguration("default").getSettings(), "standard.jfr");
+    assertTrue(hendelser.stream()
+        .noneMatch(hendelse -> hendelse.getEventType().getName().startsWith("no.nav.dagpenger.")));
+  }
+
+  private static Configuration lesProfil() throws Exception {
+    try (Reader profil = new InputStreamReader(
+        JfrHendelserTest.class.getResourceAsStream("/dagpenger.jfc"), StandardCharsets.UTF_8)) {
+      return Configuration.create(profil);
+    }
+  }
+
+  private List<RecordedEvent> ta(Map<String, String> innstillinger, String filnavn)
+      throws Exception {
+    HttpServer grunnbeløpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    grunnbeløpServer.createContext("/grunnbeløp", exchange -> {
+      exchange.sendResponseHeaders(200, SVAR.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(SVAR);
+      }
+    });
+    grunnbeløpServer.start();
+    Path fil = mappe.resolve(filnavn);
+    try (Recording opptak = new Recording(innstillinger)) {
+      opptak.start();
+
+      DagpengerKalkulator kalkulator = new DagpengerKalkulator(new GrunnbeløpVerktøy(124028));
+      kalkulator.leggTilÅrslønn(new Årslønn(2024, 465000));
+      kalkulator.kalkulerDagsats();
+
+      new GrunnbeløpAPI(URI.create("http://localhost:"
+          + grunnbeløpServer.getAddress().getPort() + "/grunnbeløp")).hentGrunnbeløp();
+
+      Saksbehandler saksbehandler =
+          new Saksbehandler("Jfr", SaksbehandlerSpesialisering.INNVILGET);
+      Resultat resultat = Resultat.medDagsatsIØre(1, SaksbehandlerSpesialisering.INNVILGET);
+      saksbehandler.behandleResultat(resultat);
+      saksbehandler.behandleResultat(resultat);
+
+      opptak.stop();
+      opptak.dump(fil);
+    } finally {
+      grunnbeløpServer.stop(0);
+    }
+    return RecordingFile.readAllEvents(fil);
+  }
+}
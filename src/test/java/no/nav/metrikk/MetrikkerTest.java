@@ -0,0 +1,175 @@
+package no.nav.metrikk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import no.nav.dagpenger.Beregningsmetode;
+import no.nav.dagpenger.DagpengerKalkulator;
+import no.nav.grunnbeløp.GrunnbeløpVerktøy;
+import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatKø;
+import no.nav.saksbehandler.Saksbehandler;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.junit.jupiter.api.Test;
+
+class MetrikkerTest {
+
+  /**
+   * Tester at hver tid havner i en bøtte med øvre grense som er minst tiden og høyst 25% større, og
+   * at bøttene er sammenhengende.
+   */
+  @Test
+  void testBøtterDekkerAlleTider() {
+    Random tilfeldig = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      long nanos = (tilfeldig.nextLong() >>> 1) >>> tilfeldig.nextInt(63);
+      long øvre = Latenshistogram.øvreGrense(Latenshistogram.bøtte(nanos));
+      assertTrue(øvre >= nanos && øvre - nanos <= nanos / 4, "nanos=" + nanos);
+    }
+    assertEquals(Long.MAX_VALUE,
+        Latenshistogram.øvreGrense(Latenshistogram.bøtte(Long.MAX_VALUE)));
+    for (int bøtte = 0; bøtte < Latenshistogram.bøtte(Long.MAX_VALUE); bøtte++) {
+      assertEquals(bøtte + 1, Latenshistogram.bøtte(Latenshistogram.øvreGrense(bøtte) + 1));
+    }
+  }
+
+  /**
+   * Tester at persentilene, gjennomsnittet og maks blir riktige for kjente tider.
+   */
+  @Test
+  void testPersentiler() {
+    Latenshistogram histogram = new Latenshistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.registrer(i * 1000L);
+    }
+
+    assertEquals(1000, histogram.hentAntall());
+    assertEquals(500_500, histogram.getGjennomsnittNanos());
+    assertEquals(1_000_000, histogram.getMaksNanos());
+    assertEquals(1_000_000, histogram.hentPersentilNanos(100));
+    long median = histogram.getMedianNanos();
+    assertTrue(median >= 500_000 && median <= 625_000, "median=" + median);
+    long p99 = histogram.getPersentil99Nanos();
+    assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99=" + p99);
+    assertEquals(0, new Latenshistogram().getMedianNanos());
+  }
+
+  /**
+   * Tester at hastigheten regnes ut fra økningen siden forrige måling, og kun måles på nytt etter et
+   * helt sekund.
+   */
+  @Test
+  void testHastighet() {
+    AtomicLong klokke = new AtomicLong();
+    Hastighet hastighet = new Hastighet(klokke::get);
+    for (int i = 0; i < 500; i++) {
+      hastighet.registrer();
+    }
+
+    klokke.set(2_000_000_000L);
+    assertEquals(250, hastighet.hentPerSekund());
+    hastighet.registrer();
+    klokke.addAndGet(500_000_000L);
+    assertEquals(250, hastighet.hentPerSekund());
+    assertEquals(501, hastighet.hentTotalt());
+  }
+
+  /**
+   * Tester at et utvalg av kalkuleringene måles per beregningsmetode, og at behandlinger telles per
+   * spesialisering og per saksbehandler.
+   */
+  @Test
+  void testKalkuleringerOgBehandlingerRegistreres() {
+    Metrikker metrikker = Metrikker.felles();
+    Latenshistogram sisteÅrslønn = metrikker.hentKalkuleringstid(Beregningsmetode.SISTE_ÅRSLØNN);
+    Latenshistogram ingenRett = metrikker.hentKalkuleringstid(null);
+    long førSiste = sisteÅrslønn.hentAntall();
+    long førIngenRett = ingenRett.hentAntall();
+
+    DagpengerKalkulator kalkulator = new DagpengerKalkulator(new GrunnbeløpVerktøy(124028));
+    for (int i = 0; i < 100 * Metrikker.UTVALGSINTERVALL; i++) {
+      kalkulator.kalkulerDagsatsIØre(50000000, 60000000);
+      kalkulator.kalkulerDagsatsIØre(100, 100);
+    }
+    assertTrue(sisteÅrslønn.hentAntall() > førSiste);
+    assertTrue(ingenRett.hentAntall() > førIngenRett);
+
+    String navn = "Metrikktest " + System.nanoTime();
+    Saksbehandler saksbehandler = new Saksbehandler(navn, SaksbehandlerSpesialisering.INNVILGET);
+    saksbehandler.registrerIMetrikker();
+    long førSpesialisering = metrikker.getBehandletPerSpesialisering()
+        .get(SaksbehandlerSpesialisering.INNVILGET.name());
+    Resultat resultat = Resultat.medDagsatsIØre(1, SaksbehandlerSpesialisering.INNVILGET);
+    saksbehandler.behandleResultat(resultat);
+    saksbehandler.behandleResultat(resultat);
+
+    assertEquals(1, metrikker.getBehandletPerSaksbehandler().get(navn));
+    assertTrue(metrikker.getBehandletPerSpesialisering()
+        .get(SaksbehandlerSpesialisering.INNVILGET.name()) > førSpesialisering);
+  }
+
+  /**
+   * Tester at kun registrerte saksbehandlere telles hver for seg, at antallet er begrenset, og at
+   * avregistrerte saksbehandlere forsvinner fra metrikkene.
+   */
+  @Test
+  void testSaksbehandlereErBegrenset() {
+    Metrikker metrikker = new Metrikker(2);
+    metrikker.registrerBehandlet(SaksbehandlerSpesialisering.INNVILGET, null);
+    Hastighet ola = metrikker.registrerSaksbehandler("Ola");
+    Hastighet kari = metrikker.registrerSaksbehandler("Kari");
+    Hastighet per = metrikker.registrerSaksbehandler("Per");
+    Hastighet pål = metrikker.registrerSaksbehandler("Pål");
+
+    assertSame(ola, metrikker.registrerSaksbehandler("Ola"));
+    assertSame(per, pål);
+    metrikker.registrerBehandlet(SaksbehandlerSpesialisering.INNVILGET, ola);
+    metrikker.registrerBehandlet(SaksbehandlerSpesialisering.INNVILGET, kari, 2);
+    metrikker.registrerBehandlet(SaksbehandlerSpesialisering.INNVILGET, per);
+    metrikker.registrerBehandlet(SaksbehandlerSpesialisering.INNVILGET, pål);
+
+    assertEquals(Map.of("Ola", 1L, "Kari", 2L, Metrikker.ANDRE_SAKSBEHANDLERE, 2L),
+        metrikker.getBehandletPerSaksbehandler());
+    assertEquals(6, metrikker.getBehandletPerSpesialisering()
+        .get(SaksbehandlerSpesialisering.INNVILGET.name()));
+
+    metrikker.avregistrerSaksbehandler("Kari");
+    assertEquals(Map.of("Ola", 1L, Metrikker.ANDRE_SAKSBEHANDLERE, 2L),
+        metrikker.getBehandletPerSaksbehandler());
+  }
+
+  /**
+   * Tester at metrikkene kan leses over JMX, inkludert kødybden og alderen til det eldste resultatet
+   * fra en overvåket kø.
+   */
+  @Test
+  void testLesOverJmx() throws Exception {
+    Metrikker.registrerIJmx();
+    Metrikker.registrerIJmx();
+    ResultatKø resultatKø = new ResultatKø();
+    resultatKø.leggTil(
+        Resultat.medDagsatsIØre(1, SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS));
+    Metrikker.felles().overvåkKø(resultatKø);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    TabularData dybder = (TabularData) server.getAttribute(
+        new ObjectName(Metrikker.DOMENE + ":type=Metrikker"), "KødybdePerSpesialisering");
+    assertEquals(1, dybder.get(new Object[] {"INNVILGET_MED_MAKSSATS"}).get("value"));
+    TabularData aldre = (TabularData) server.getAttribute(new ObjectName(Metrikker.DOMENE
+        + ":type=Metrikker"), "EldsteSaksalderMillisPerSpesialisering");
+    assertTrue((Long) aldre.get(new Object[] {"INNVILGET_MED_MAKSSATS"}).get("value") >= 0);
+    assertEquals(0L, aldre.get(new Object[] {"INNVILGET"}).get("value"));
+    Object antall = server.getAttribute(new ObjectName(Metrikker.DOMENE
+        + ":type=Kalkuleringstid,beregningsmetode=" + Beregningsmetode.SISTE_ÅRSLØNN), "Antall");
+    assertTrue(antall instanceof Long);
+    Metrikker.felles().overvåkKø(null);
+  }
+}
@@ -0,0 +1,183 @@
+package no.nav.resultat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import no.nav.saksbehandler.Behandlingsutfall;
+import no.nav.saksbehandler.Saksbehandler;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ReservasjonsforvalterTest {
+
+  private static final Duration TIKK = Duration.ofMillis(100);
+  private static final Duration LEIETID = Duration.ofSeconds(1);
+
+  private final AtomicLong klokke = new AtomicLong(5_000_000_000L);
+  private final List<Reservasjon> utløpte = new ArrayList<>();
+  private ResultatKø resultatKø;
+  private Reservasjonsforvalter reservasjonsforvalter;
+
+  @BeforeEach
+  void opprettForvalter() {
+    resultatKø = new ResultatKø();
+    reservasjonsforvalter = new Reservasjonsforvalter(resultatKø, utløpte::add, TIKK, klokke::get,
+        false);
+    for (int i = 0; i < 5; i++) {
+      resultatKø.leggTil(new Resultat(500.0 + i, SaksbehandlerSpesialisering.INNVILGET));
+    }
+  }
+
+  private void gåFram(Duration tid) {
+    klokke.addAndGet(tid.toNanos());
+  }
+
+  /**
+   * Tester at reserverte resultater tas ut av køen, og legges tilbake når reservasjonen utløper.
+   */
+  @Test
+  void testUtløpteReservasjonerLeggesTilbakeIKøen() {
+    List<Reservasjon> reservasjoner = reservasjonsforvalter.reserver(
+        SaksbehandlerSpesialisering.INNVILGET, 3, LEIETID);
+
+    assertEquals(3, reservasjoner.size());
+    assertEquals(2, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET));
+
+    gåFram(Duration.ofMillis(900));
+    assertEquals(0, reservasjonsforvalter.frigiUtløpte());
+
+    gåFram(Duration.ofMillis(200));
+    assertEquals(3, reservasjonsforvalter.frigiUtløpte());
+    assertEquals(5, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET));
+    assertFalse(reservasjoner.get(0).erAktiv());
+    assertEquals(reservasjoner, utløpte);
+  }
+
+  /**
+   * Tester at resultater som er behandlet mens de lå i køen, ikke reserveres.
+   */
+  @Test
+  void testBehandledeResultaterReserveresIkke() {
+    Resultat behandlet = new Resultat(900.0, SaksbehandlerSpesialisering.INNVILGET);
+    resultatKø.leggTil(behandlet);
+    behandlet.endreStatus(ResultatStatus.INNVILGET);
+
+    List<Reservasjon> reservasjoner = reservasjonsforvalter.reserver(
+        SaksbehandlerSpesialisering.INNVILGET, 10, LEIETID);
+
+    assertEquals(5, reservasjoner.size());
+    assertTrue(reservasjoner.stream().noneMatch(reservasjon -> reservasjon.hentResultat()
+        == behandlet));
+    assertEquals(0, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET));
+  }
+
+  /**
+   * Tester at en forlenget reservasjon ikke utløper ved sitt opprinnelige utløpstidspunkt.
+   */
+  @Test
+  void testForlengetReservasjonUtløperSenere() {
+    Reservasjon reservasjon = reservasjonsforvalter.reserver(
+        SaksbehandlerSpesialisering.INNVILGET, 1, LEIETID).get(0);
+
+    gåFram(Duration.ofMillis(800));
+    assertTrue(reservasjonsforvalter.forleng(reservasjon, LEIETID));
+
+    gåFram(Duration.ofMillis(500));
+    assertEquals(0, reservasjonsforvalter.frigiUtløpte());
+    assertTrue(reservasjon.erAktiv());
+
+    gåFram(Duration.ofMillis(600));
+    assertEquals(1, reservasjonsforvalter.frigiUtløpte());
+    assertFalse(reservasjonsforvalter.forleng(reservasjon, LEIETID));
+  }
+
+  /**
+   * Tester at en reservasjon som forlenges med kortere leietid enn det som gjenstår, utløper ved
+   * det nye utløpstidspunktet og bare frigis én gang.
+   */
+  @Test
+  void testForkortetReservasjonUtløperTidligere() {
+    Reservasjon reservasjon = reservasjonsforvalter.reserver(
+        SaksbehandlerSpesialisering.INNVILGET, 1, Duration.ofSeconds(10)).get(0);
+
+    assertTrue(reservasjonsforvalter.forleng(reservasjon, LEIETID));
+
+    gåFram(Duration.ofMillis(1100));
+    assertEquals(1, reservasjonsforvalter.frigiUtløpte());
+    assertFalse(reservasjon.erAktiv());
+
+    gåFram(Duration.ofSeconds(10));
+    assertEquals(0, reservasjonsforvalter.frigiUtløpte());
+    assertEquals(5, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET));
+  }
+
+  /**
+   * Tester at en fullført reservasjon ikke legger resultatet tilbake i køen.
+   */
+  @Test
+  void testFullførtReservasjonLeggesIkkeTilbake() {
+    Saksbehandler saksbehandler = new Saksbehandler("Ola Nordmann",
+        SaksbehandlerSpesialisering.INNVILGET);
+    List<Reservasjon> reservasjoner = saksbehandler.reserverResultater(reservasjonsforvalter, 5,
+        LEIETID);
+
+    for (Reservasjon reservasjon : reservasjoner) {
+      assertEquals(Behandlingsutfall.BEHANDLET, saksbehandler.behandleReservasjon(reservasjon));
+    }
+
+    gåFram(Duration.ofSeconds(2));
+    assertEquals(0, reservasjonsforvalter.frigiUtløpte());
+    assertEquals(0, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET));
+    assertTrue(utløpte.isEmpty());
+  }
+
+  /**
+   * Tester at en saksbehandler med utløpt reservasjon ikke behandler resultatet, slik at den som
+   * reserverte det på nytt kan gjøre det.
+   */
+  @Test
+  void testUtløptReservasjonBehandlesIkke() {
+    Saksbehandler treg = new Saksbehandler("Treg", SaksbehandlerSpesialisering.INNVILGET);
+    Saksbehandler rask = new Saksbehandler("Rask", SaksbehandlerSpesialisering.INNVILGET);
+    Reservasjon gammel = treg.reserverResultater(reservasjonsforvalter, 1, LEIETID).get(0);
+
+    gåFram(Duration.ofSeconds(2));
+    reservasjonsforvalter.frigiUtløpte();
+    // Køen er sortert etter prioritet, så resultatet som ble lagt tilbake kan ligge hvor som helst.
+    Reservasjon ny = rask.reserverResultater(reservasjonsforvalter, 5, LEIETID).stream()
+        .filter(reservasjon -> reservasjon.hentResultat().hentSaksnummer()
+            == gammel.hentResultat().hentSaksnummer())
+        .findFirst().orElseThrow();
+
+    assertSame(gammel.hentResultat(), ny.hentResultat());
+    assertEquals(Behandlingsutfall.RESERVASJON_UTLØPT, treg.behandleReservasjon(gammel));
+    assertEquals(Behandlingsutfall.BEHANDLET, rask.behandleReservasjon(ny));
+  }
+
+  /**
+   * Tester at reservasjoner som utløper lenger fram enn én omdreining av tidshjulet, utløper til
+   * riktig tid.
+   */
+  @Test
+  void testLangLeietidUtløperTilRiktigTid() {
+    Duration langLeietid = TIKK.multipliedBy(1300);
+    Reservasjon reservasjon = reservasjonsforvalter.reserver(
+        SaksbehandlerSpesialisering.INNVILGET, 1, langLeietid).get(0);
+
+    for (int i = 0; i < 1299; i++) {
+      gåFram(TIKK);
+      assertEquals(0, reservasjonsforvalter.frigiUtløpte());
+    }
+    assertTrue(reservasjon.erAktiv());
+
+    gåFram(TIKK);
+    assertEquals(1, reservasjonsforvalter.frigiUtløpte());
+  }
+}
@@ -0,0 +1,112 @@
+package no.nav.resultat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.junit.jupiter.api.Test;
+
+class ResultatKøTest {
+
+  private static final long DAG = Duration.ofDays(1).toMillis();
+
+  /**
+   * Tester at resultater havner i køen til sin egen spesialisering, i den rekkefølgen de ble lagt
+   * til.
+   */
+  @Test
+  void testResultaterFordelesPåSpesialisering() {
+    ResultatKø resultatKø = new ResultatKø();
+    Resultat innvilget1 = new Resultat(500.0, SaksbehandlerSpesialisering.INNVILGET);
+    Resultat avslag = new Resultat(0, SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT);
+    Resultat innvilget2 = new Resultat(1000.0, SaksbehandlerSpesialisering.INNVILGET);
+
+    resultatKø.leggTil(innvilget1);
+    resultatKø.leggTil(avslag);
+    resultatKø.leggTil(innvilget2);
+
+    assertEquals(2, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET));
+    assertEquals(1, resultatKø.hentDybde(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT));
+    assertEquals(0, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS));
+
+    assertSame(innvilget1, resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET));
+    assertSame(innvilget2, resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET));
+    assertNull(resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET));
+    assertNull(resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS));
+    assertEquals(0, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET));
+  }
+
+  /**
+   * Tester at tømming henter høyst det gitte antallet resultater.
+   */
+  @Test
+  void testTømHenterHøystMaksAntall() {
+    ResultatKø resultatKø = new ResultatKø();
+    for (int i = 0; i < 5; i++) {
+      resultatKø.leggTil(new Resultat(i, SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS));
+    }
+
+    List<Resultat> hentet = new ArrayList<>();
+    assertEquals(3,
+        resultatKø.tøm(SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS, hentet, 3));
+    assertEquals(3, hentet.size());
+    assertEquals(2, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET_MED_MAKSSATS));
+  }
+
+  /**
+   * Tester at resultatet med tidligst frist hentes først, uansett rekkefølgen de ble lagt til i.
+   */
+  @Test
+  void testTidligstFristHentesFørst() {
+    ResultatKø resultatKø = new ResultatKø();
+    Resultat senFrist = Resultat.medSaksnummer(1, 100, SaksbehandlerSpesialisering.INNVILGET,
+        0, 10);
+    Resultat tidligFrist = Resultat.medSaksnummer(2, 100, SaksbehandlerSpesialisering.INNVILGET,
+        DAG, 3);
+    Resultat eldsteSomTidligFrist = Resultat.medSaksnummer(3, 100,
+        SaksbehandlerSpesialisering.INNVILGET, 0, 4);
+
+    resultatKø.leggTil(senFrist);
+    resultatKø.leggTil(tidligFrist);
+    resultatKø.leggTil(eldsteSomTidligFrist);
+
+    assertSame(tidligFrist, resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET));
+    assertSame(eldsteSomTidligFrist, resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET));
+    assertSame(senFrist, resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET));
+  }
+
+  /**
+   * Tester at et resultat med lang frist ikke forbigås av nye resultater med kort frist når det har
+   * ventet like lenge som aldringsgrensen, og at det eldste resultatet finnes selv om det ikke ligger
+   * først.
+   */
+  @Test
+  void testAldringHindrerForbigåelse() {
+    ResultatKø resultatKø = new ResultatKø(Duration.ofDays(7));
+    Resultat langFrist = Resultat.medSaksnummer(1, 100, SaksbehandlerSpesialisering.INNVILGET,
+        0, Resultat.MAKS_FRIST_DAGER);
+    resultatKø.leggTil(langFrist);
+    List<Resultat> nye = new ArrayList<>();
+    for (int dag = 1; dag <= 10; dag++) {
+      Resultat kortFrist = Resultat.medSaksnummer(1 + dag, 100,
+          SaksbehandlerSpesialisering.INNVILGET, dag * DAG, 1);
+      resultatKø.leggTil(kortFrist);
+      nye.add(kortFrist);
+    }
+
+    assertEquals(0, resultatKø.hentEldsteOpprettet(SaksbehandlerSpesialisering.INNVILGET));
+    for (int i = 0; i < 5; i++) {
+      assertSame(nye.get(i), resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET));
+    }
+    assertSame(langFrist, resultatKø.hent(SaksbehandlerSpesialisering.INNVILGET));
+    assertEquals(6 * DAG, resultatKø.hentEldsteOpprettet(SaksbehandlerSpesialisering.INNVILGET));
+    assertEquals(-1,
+        resultatKø.hentEldsteOpprettet(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT));
+    assertThrows(IllegalArgumentException.class, () -> new ResultatKø(Duration.ZERO));
+  }
+}
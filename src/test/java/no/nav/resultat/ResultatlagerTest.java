@@ -0,0 +1,199 @@
+package no.nav.resultat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import no.nav.saksbehandler.Behandlingsutfall;
+import no.nav.saksbehandler.Saksbehandler;
+import no.nav.saksbehandler.SaksbehandlerSpesialisering;
+import org.junit.jupiter.api.Test;
+
+class ResultatlagerTest {
+
+  /**
+   * Tester at et kopiert resultat leses tilbake med samme verdier, også fristen, og at lageret
+   * vokser over flere segmenter.
+   */
+  @Test
+  void testLagreOgLesTilbake() {
+    Resultatlager lager = new Resultatlager(4);
+    List<Resultat> resultater = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Resultat resultat = Resultat.medFrist(50025 + i * 100L,
+          SaksbehandlerSpesialisering.values()[i % 3], 1 + i * 37 % Resultat.MAKS_FRIST_DAGER);
+      resultater.add(resultat);
+      assertEquals(i, lager.leggTil(resultat));
+    }
+
+    LagretResultat flyvekt = lager.hent(0);
+    for (int i = 0; i < 100; i++) {
+      flyvekt.flyttTil(i);
+      assertEquals(resultater.get(i).hentSaksnummer(), flyvekt.hentSaksnummer());
+      assertEquals(resultater.get(i).hentDagsats(), flyvekt.hentDagsats());
+      assertEquals(resultater.get(i).hentSpesialisering(), flyvekt.hentSpesialisering());
+      assertEquals(resultater.get(i).hentOpprettet(), flyvekt.hentOpprettet());
+      assertEquals(resultater.get(i).hentFrist(), flyvekt.hentFrist());
+      assertEquals(ResultatStatus.UBEHANDLET, flyvekt.hentStatus());
+    }
+    assertEquals(100, lager.hentAntall());
+    assertThrows(IndexOutOfBoundsException.class, () -> flyvekt.flyttTil(100));
+  }
+
+  /**
+   * Tester at en saksbehandler kan behandle lagrede resultater gjennom flyvekten, og at statusen
+   * kun kan endres én gang.
+   */
+  @Test
+  void testSaksbehandlerBehandlerLagretResultat() {
+    Resultatlager lager = new Resultatlager();
+    long plass = lager.leggTil(211600, SaksbehandlerSpesialisering.INNVILGET);
+    lager.leggTil(0, SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT);
+    Saksbehandler saksbehandler = new Saksbehandler("Kari Nordmann",
+        SaksbehandlerSpesialisering.INNVILGET);
+
+    assertEquals(Behandlingsutfall.BEHANDLET, saksbehandler.behandleResultat(lager.hent(plass)));
+    assertEquals(Behandlingsutfall.ALLEREDE_BEHANDLET,
+        saksbehandler.behandleResultat(lager.hent(plass)));
+    assertEquals(ResultatStatus.INNVILGET, lager.hent(plass).hentStatus());
+    assertEquals(SaksbehandlerSpesialisering.INNVILGET, lager.hent(plass).hentSpesialisering());
+    assertThrows(IllegalArgumentException.class,
+        () -> saksbehandler.behandleResultat(lager.hent(plass + 1)));
+  }
+
+  /**
+   * Tester at statuslytteren på en flyvekt får beskjed om vellykkede statusendringer.
+   */
+  @Test
+  void testStatuslytterVarsles() {
+    Resultatlager lager = new Resultatlager();
+    long plass = lager.leggTil(211600, SaksbehandlerSpesialisering.INNVILGET);
+    LagretResultat flyvekt = lager.hent(plass);
+    List<ResultatStatus> endringer = new ArrayList<>();
+    flyvekt.settStatuslytter((resultat, nyStatus) -> endringer.add(nyStatus));
+
+    assertTrue(flyvekt.endreStatus(ResultatStatus.AVSLÅTT));
+    assertFalse(flyvekt.endreStatus(ResultatStatus.INNVILGET));
+
+    assertEquals(List.of(ResultatStatus.AVSLÅTT), endringer);
+  }
+
+  /**
+   * Tester at gjennomgangen kun gir resultater med gitt spesialisering og status.
+   */
+  @Test
+  void testForHver() {
+    Resultatlager lager = new Resultatlager(3);
+    for (int i = 0; i < 30; i++) {
+      lager.leggTil(1000 * i, SaksbehandlerSpesialisering.values()[i % 3]);
+    }
+    lager.hent(3).endreStatus(ResultatStatus.INNVILGET);
+
+    AtomicLong sum = new AtomicLong();
+    long antall = lager.forHver(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT,
+        ResultatStatus.UBEHANDLET, resultat -> sum.addAndGet(resultat.hentDagsatsIØre()));
+
+    assertEquals(9, antall);
+    assertEquals(1000 * (0 + 6 + 9 + 12 + 15 + 18 + 21 + 24 + 27), sum.get());
+    assertEquals(1, lager.tell(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT,
+        ResultatStatus.INNVILGET));
+  }
+
+  /**
+   * Tester at mange tråder kan legge til og behandle samtidig, og at hvert resultat kun behandles
+   * én gang.
+   */
+  @Test
+  void testSamtidigBehandling() throws Exception {
+    Resultatlager lager = new Resultatlager(8);
+    for (int i = 0; i < 10_000; i++) {
+      lager.leggTil(i, SaksbehandlerSpesialisering.INNVILGET);
+    }
+    AtomicLong behandlet = new AtomicLong();
+    ExecutorService utfører = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> oppgaver = new ArrayList<>();
+      for (int tråd = 0; tråd < 4; tråd++) {
+        oppgaver.add(utfører.submit(() -> {
+          LagretResultat flyvekt = lager.hent(0);
+          for (long plass = 0; plass < 10_000; plass++) {
+            if (flyvekt.flyttTil(plass).endreStatus(ResultatStatus.INNVILGET)) {
+              behandlet.incrementAndGet();
+            }
+          }
+          lager.leggTil(1, SaksbehandlerSpesialisering.INNVILGET);
+          return null;
+        }));
+      }
+      for (Future<?> oppgave : oppgaver) {
+        oppgave.get();
+      }
+    } finally {
+      utfører.shutdown();
+    }
+
+    assertEquals(10_000, behandlet.get());
+    assertEquals(10_004, lager.hentAntall());
+    assertEquals(4, lager.tell(SaksbehandlerSpesialisering.INNVILGET, ResultatStatus.UBEHANDLET));
+  }
+
+  /**
+   * Tester at lesere som går gjennom lageret mens det vokser kun ser ferdig skrevne plasser, og at
+   * en skriver alltid kan lese sin egen plass.
+   */
+  @Test
+  void testLesereSerKunFerdigSkrevnePlasser() throws Exception {
+    Resultatlager lager = new Resultatlager(4);
+    ExecutorService utfører = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> oppgaver = new ArrayList<>();
+      for (int tråd = 0; tråd < 2; tråd++) {
+        oppgaver.add(utfører.submit(() -> {
+          for (int i = 1; i <= 5_000; i++) {
+            long plass = lager.leggTil(i, SaksbehandlerSpesialisering.INNVILGET);
+            assertEquals(i, lager.hent(plass).hentDagsatsIØre());
+          }
+          return null;
+        }));
+        oppgaver.add(utfører.submit(() -> {
+          while (lager.hentAntall() < 10_000) {
+            lager.forHver(SaksbehandlerSpesialisering.INNVILGET, ResultatStatus.UBEHANDLET,
+                resultat -> assertTrue(resultat.hentDagsatsIØre() > 0));
+            long antall = lager.hentAntall();
+            if (antall > 0) {
+              assertTrue(lager.hent(antall - 1).hentSaksnummer() > 0);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> oppgave : oppgaver) {
+        oppgave.get();
+      }
+    } finally {
+      utfører.shutdown();
+    }
+    assertEquals(10_000,
+        lager.tell(SaksbehandlerSpesialisering.INNVILGET, ResultatStatus.UBEHANDLET));
+  }
+
+  /**
+   * Tester at dagsatser som ikke får plass i lageret avvises.
+   */
+  @Test
+  void testUgyldigDagsats() {
+    Resultatlager lager = new Resultatlager();
+    assertThrows(IllegalArgumentException.class,
+        () -> lager.leggTil(-1, SaksbehandlerSpesialisering.INNVILGET));
+    assertThrows(IllegalArgumentException.class,
+        () -> lager.leggTil(1L << 32, SaksbehandlerSpesialisering.INNVILGET));
+    assertEquals(0, lager.hentAntall());
+  }
+}
@@ -3,9 +3,22 @@ package no.nav.saksbehandler;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+import no.nav.resultat.Reservasjon;
+import no.nav.resultat.Reservasjonsforvalter;
 import no.nav.resultat.Resultat;
+import no.nav.resultat.ResultatKø;
 import no.nav.resultat.ResultatStatus;
 import org.junit.jupiter.api.Test;
 
@@ -81,4 +94,114 @@ class SaksbehandlerTest {
     );
   }
 
-}
\ No newline at end of file
+  @Test
+  void testBehandleUbehandledeResultaterFraKø() {
+    Saksbehandler saksbehandler = new Saksbehandler("Ola Nordmann",
+        SaksbehandlerSpesialisering.INNVILGET);
+    ResultatKø resultatKø = new ResultatKø();
+    Resultat innvilget = new Resultat(500.0, SaksbehandlerSpesialisering.INNVILGET);
+    Resultat avslag = new Resultat(0, SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT);
+    resultatKø.leggTil(innvilget);
+    resultatKø.leggTil(avslag);
+
+    saksbehandler.behandleUbehandledeResultater(resultatKø);
+
+    assertAll("Verifiser at kun egen del av køen er behandlet",
+        () -> assertEquals(ResultatStatus.INNVILGET, innvilget.hentStatus()),
+        () -> assertEquals(ResultatStatus.UBEHANDLET, avslag.hentStatus()),
+        () -> assertEquals(0, resultatKø.hentDybde(SaksbehandlerSpesialisering.INNVILGET)),
+        () -> assertEquals(1,
+            resultatKø.hentDybde(SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT))
+    );
+  }
+
+  @Test
+  void testAlleredeBehandletResultatEndresIkke() {
+    Saksbehandler saksbehandler = new Saksbehandler("Ola Nordmann",
+        SaksbehandlerSpesialisering.INNVILGET);
+    Resultat resultat = new Resultat(500.0, SaksbehandlerSpesialisering.INNVILGET);
+
+    assertEquals(Behandlingsutfall.BEHANDLET, saksbehandler.behandleResultat(resultat));
+    assertEquals(Behandlingsutfall.ALLEREDE_BEHANDLET, saksbehandler.behandleResultat(resultat));
+    assertEquals(ResultatStatus.INNVILGET, resultat.hentStatus());
+  }
+
+  @Test
+  void testSamtidigeSaksbehandlereBehandlerHvertResultatNøyaktigÉnGang() throws Exception {
+    int antallResultater = 20000;
+    int antallSaksbehandlere = 8;
+    List<Resultat> resultater = new ArrayList<>();
+    for (int i = 0; i < antallResultater; i++) {
+      resultater.add(new Resultat(500.0, SaksbehandlerSpesialisering.INNVILGET));
+    }
+    AtomicIntegerArray antallBehandlinger = new AtomicIntegerArray(antallResultater);
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService trådbasseng = Executors.newFixedThreadPool(antallSaksbehandlere);
+
+    try {
+      List<Future<?>> saksbehandlere = new ArrayList<>();
+      for (int t = 0; t < antallSaksbehandlere; t++) {
+        Saksbehandler saksbehandler = new Saksbehandler("Saksbehandler " + t,
+            SaksbehandlerSpesialisering.INNVILGET);
+        saksbehandlere.add(trådbasseng.submit(() -> {
+          start.await();
+          for (int i = 0; i < antallResultater; i++) {
+            if (saksbehandler.behandleResultat(resultater.get(i)) == Behandlingsutfall.BEHANDLET) {
+              antallBehandlinger.incrementAndGet(i);
+            }
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> saksbehandler : saksbehandlere) {
+        saksbehandler.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      trådbasseng.shutdownNow();
+    }
+
+    for (int i = 0; i < antallResultater; i++) {
+      assertEquals(1, antallBehandlinger.get(i), "Resultat " + i + " ble ikke behandlet én gang");
+      assertEquals(ResultatStatus.INNVILGET, resultater.get(i).hentStatus());
+    }
+  }
+
+  @Test
+  void testBehandleReservasjonerOppsummerer() {
+    Saksbehandler saksbehandler = new Saksbehandler("Ola Nordmann",
+        SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT);
+    ResultatKø resultatKø = new ResultatKø();
+    for (int i = 0; i < 5; i++) {
+      resultatKø.leggTil(new Resultat(100.0 + i,
+          SaksbehandlerSpesialisering.AVSLAG_FOR_LAV_INNTEKT));
+    }
+    resultatKø.leggTil(new Resultat(900.0, SaksbehandlerSpesialisering.INNVILGET));
+
+    try (Reservasjonsforvalter forvalter = new Reservasjonsforvalter(resultatKø)) {
+      List<Reservasjon> reservasjoner = new ArrayList<>(saksbehandler.reserverResultater(
+          forvalter, 5, Duration.ofMinutes(1)));
+      reservasjoner.addAll(forvalter.reserver(SaksbehandlerSpesialisering.INNVILGET, 1,
+          Duration.ofMinutes(1)));
+      reservasjoner.get(0).hentResultat().endreStatus(ResultatStatus.INNVILGET);
+      reservasjoner.get(1).fullfør();
+
+      Behandlingsoppsummering oppsummering = saksbehandler.behandleReservasjoner(reservasjoner);
+
+      assertAll(
+          () -> assertEquals(3, oppsummering.hentAntallBehandlet()),
+          () -> assertEquals(1, oppsummering.hentAntallAlleredeBehandlet()),
+          () -> assertEquals(1, oppsummering.hentAntallFeilSpesialisering()),
+          () -> assertEquals(1, oppsummering.hentAntallReservasjonUtløpt()),
+          () -> assertEquals(reservasjoner.subList(2, 5).stream()
+              .map(Reservasjon::hentResultat).collect(Collectors.toList()),
+              oppsummering.hentBehandlede()),
+          () -> assertEquals(ResultatStatus.AVSLÅTT,
+              reservasjoner.get(2).hentResultat().hentStatus()),
+          () -> assertEquals(ResultatStatus.UBEHANDLET,
+              reservasjoner.get(5).hentResultat().hentStatus()),
+          () -> assertTrue(reservasjoner.get(5).erAktiv())
+      );
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package no.nav.tjeneste;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DagpengerTjenesteTest {
+
+  private static final String ÅRSLØNNER = "[{\"år\": 2024, \"beløp\": 550000},"
+      + "{\"år\": 2023, \"beløp\": 24000}, {\"år\": 2022, \"beløp\": 110000}]";
+
+  private final HttpClient klient = HttpClient.newHttpClient();
+  private DagpengerTjeneste tjeneste;
+
+  @BeforeEach
+  void startTjeneste() throws IOException {
+    tjeneste = new DagpengerTjeneste(0, () -> 124028);
+    tjeneste.start();
+  }
+
+  @AfterEach
+  void stoppTjeneste() {
+    tjeneste.close();
+  }
+
+  private HttpResponse<String> send(String metode, String sti, String innhold) throws Exception {
+    HttpRequest.Builder forespørsel = HttpRequest.newBuilder(
+        URI.create("http://localhost:" + tjeneste.hentPort() + sti));
+    forespørsel.method(metode, innhold == null
+        ? HttpRequest.BodyPublishers.noBody()
+        : HttpRequest.BodyPublishers.ofString(innhold));
+    return klient.send(forespørsel.build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  /**
+   * Tester at en kalkulert dagsats kan reserveres og behandles av riktig saksbehandler.
+   */
+  @Test
+  void testKalkulerReserverOgBehandle() throws Exception {
+    HttpResponse<String> kalkulert = send("POST", "/dagsats", "{\"årslønner\": " + ÅRSLØNNER + "}");
+    assertEquals(200, kalkulert.statusCode());
+    JSONObject resultat = new JSONObject(kalkulert.body());
+    assertEquals(2116, resultat.getDouble("dagsats"));
+    assertEquals("INNVILGET", resultat.getString("spesialisering"));
+    long saksnummer = resultat.getLong("saksnummer");
+
+    HttpResponse<String> reservert = send("GET",
+        "/resultater?spesialisering=INNVILGET&saksbehandler=Ola%20Nordmann&maks=10", null);
+    JSONArray reserverte = new JSONObject(reservert.body()).getJSONArray("resultater");
+    assertEquals(1, reserverte.length());
+    assertEquals(saksnummer, reserverte.getJSONObject(0).getLong("saksnummer"));
+
+    HttpResponse<String> feil = send("POST", "/resultater/" + saksnummer + "/behandle",
+        "{\"navn\": \"Kari\", \"spesialisering\": \"AVSLAG_FOR_LAV_INNTEKT\"}");
+    assertEquals(400, feil.statusCode());
+
+    HttpResponse<String> annen = send("POST", "/resultater/" + saksnummer + "/behandle",
+        "{\"navn\": \"Kari\", \"spesialisering\": \"INNVILGET\"}");
+    // Resultatet er reservert av Ola, så Kari kan ikke behandle det.
+    assertEquals(409, annen.statusCode());
+
+    String saksbehandler = "{\"navn\": \"Ola Nordmann\", \"spesialisering\": \"INNVILGET\"}";
+    HttpResponse<String> behandlet = send("POST", "/resultater/" + saksnummer + "/behandle",
+        saksbehandler);
+    assertEquals(200, behandlet.statusCode());
+    assertEquals("INNVILGET", new JSONObject(behandlet.body()).getString("status"));
+
+    HttpResponse<String> igjen = send("POST", "/resultater/" + saksnummer + "/behandle",
+        saksbehandler);
+    // Behandlede resultater glemmes, så de kan ikke behandles på nytt.
+    assertEquals(404, igjen.statusCode());
+  }
+
+  /**
+   * Tester at et resultat ikke kan behandles uten å være reservert først.
+   */
+  @Test
+  void testBehandleUtenReservasjon() throws Exception {
+    HttpResponse<String> kalkulert = send("POST", "/dagsats", "{\"årslønner\": " + ÅRSLØNNER + "}");
+    long saksnummer = new JSONObject(kalkulert.body()).getLong("saksnummer");
+
+    HttpResponse<String> svar = send("POST", "/resultater/" + saksnummer + "/behandle",
+        "{\"navn\": \"Ola Nordmann\", \"spesialisering\": \"INNVILGET\"}");
+
+    assertEquals(409, svar.statusCode());
+  }
+
+  /**
+   * Tester at mange søkere kan kalkuleres i én forespørsel, med resultatene i samme rekkefølge.
+   */
+  @Test
+  void testKalkulerDagsatser() throws Exception {
+    String søkere = "{\"søkere\": ["
+        + "{\"id\": \"a\", \"årslønner\": " + ÅRSLØNNER + "},"
+        + "{\"id\": \"b\", \"årslønner\": [{\"år\": 2024, \"beløp\": 80000}]}]}";
+
+    HttpResponse<String> svar = send("POST", "/dagsatser", søkere);
+
+    assertEquals(200, svar.statusCode());
+    JSONArray resultater = new JSONObject(svar.body()).getJSONArray("resultater");
+    assertEquals("INNVILGET", resultater.getJSONObject(0).getString("spesialisering"));
+    assertEquals("AVSLAG_FOR_LAV_INNTEKT",
+        resultater.getJSONObject(1).getString("spesialisering"));
+  }
+
+  /**
+   * Tester at tjenesten svarer med 503 i stedet for en dagsats på null når grunnbeløpet ikke kan
+   * hentes.
+   */
+  @Test
+  void testUtilgjengeligGrunnbeløp() throws Exception {
+    tjeneste.close();
+    tjeneste = new DagpengerTjeneste(0, () -> {
+      throw new IOException("Tidsavbrudd");
+    });
+    tjeneste.start();
+
+    assertEquals(503, send("POST", "/dagsats", "{\"årslønner\": " + ÅRSLØNNER + "}")
+        .statusCode());
+    assertEquals(503, send("POST", "/dagsatser",
+        "{\"søkere\": [{\"id\": \"a\", \"årslønner\": " + ÅRSLØNNER + "}]}").statusCode());
+  }
+
+  /**
+   * Tester at ugyldige forespørsler gir feilsvar i stedet for å stoppe tjenesten.
+   */
+  @Test
+  void testUgyldigeForespørsler() throws Exception {
+    assertEquals(400, send("POST", "/dagsats", "ikke json").statusCode());
+    assertEquals(405, send("GET", "/dagsats", null).statusCode());
+    assertEquals(400, send("GET", "/resultater?spesialisering=UKJENT", null).statusCode());
+    assertEquals(404, send("POST", "/resultater/999999/behandle",
+        "{\"navn\": \"Ola\", \"spesialisering\": \"INNVILGET\"}").statusCode());
+  }
+}